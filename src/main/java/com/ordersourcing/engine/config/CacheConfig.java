@@ -18,7 +18,6 @@ public class CacheConfig {
             "inventories",
             "locationScores",
             "locationFilters",
-            "carrierConfigs",
             "inventory",
             "scoringConfigs",
             "defaultScoringConfig",
@@ -0,0 +1,33 @@
+package com.ordersourcing.engine.config;
+
+import com.ordersourcing.engine.util.AdaptiveLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * One adaptive limit shared by every sourcing repository call, since they all draw on the same
+ * connection pool. Unless set explicitly, the limit starts at the connection pool size and may grow
+ * to the I/O executor's thread count, the most reads that can run at once.
+ */
+@Configuration
+@Slf4j
+public class DatabaseLimiterConfig {
+
+    @Bean
+    public AdaptiveLimiter databaseLimiter(
+            @Value("${sourcing.db-limiter.initial-limit:0}") int initialLimit,
+            @Value("${sourcing.db-limiter.min-limit:1}") int minLimit,
+            @Value("${sourcing.db-limiter.max-limit:0}") int maxLimit,
+            @Value("${sourcing.db-limiter.smoothing:0.2}") double smoothing,
+            @Value("${sourcing.db-limiter.rtt-tolerance:1.5}") double rttTolerance,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${sourcing.executor.io.threads:16}") int ioThreads) {
+        int max = maxLimit > 0 ? maxLimit : Math.max(poolSize, ioThreads);
+        int initial = initialLimit > 0 ? initialLimit : Math.min(poolSize, max);
+        log.info("Database limit starts at {} (min {}, max {}) for a pool of {} connections", 
+                initial, minLimit, max, poolSize);
+        return new AdaptiveLimiter("database", initial, minLimit, max, smoothing, rttTolerance);
+    }
+}
@@ -0,0 +1,83 @@
+package com.ordersourcing.engine.config;
+
+import com.ordersourcing.engine.util.StageExecutor;
+import com.ordersourcing.engine.util.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Dedicated executors for sourcing stages: blocking repository calls and CPU-bound
+ * filtering/scoring run on separate bounded pools instead of the common ForkJoin pool.
+ * With sourcing.executor.virtual-threads enabled on a Java 21 runtime, request handling and the
+ * blocking stages run on virtual threads instead; CPU-bound work stays on the platform pool.
+ */
+@Configuration
+@Slf4j
+public class ExecutorConfig {
+
+    @Value("${sourcing.executor.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Bean(name = "sourcingIoExecutor", destroyMethod = "shutdown")
+    public StageExecutor sourcingIoExecutor(
+            @Value("${sourcing.executor.io.threads:16}") int threads,
+            @Value("${sourcing.executor.io.queue-capacity:500}") int queueCapacity,
+            @Value("${sourcing.executor.io.virtual-max-concurrency:1000}") int virtualMaxConcurrency) {
+        if (useVirtualThreads()) {
+            log.info("Sourcing I/O stages run on virtual threads (max concurrency {})", virtualMaxConcurrency);
+            return StageExecutor.virtual("sourcing-io", virtualMaxConcurrency);
+        }
+        return new StageExecutor("sourcing-io", threads, queueCapacity);
+    }
+
+    @Bean(name = "sourcingCpuExecutor", destroyMethod = "shutdown")
+    public StageExecutor sourcingCpuExecutor(
+            @Value("${sourcing.executor.cpu.threads:0}") int threads,
+            @Value("${sourcing.executor.cpu.queue-capacity:1000}") int queueCapacity) {
+        // 0 = one thread per available processor
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new StageExecutor("sourcing-cpu", size, queueCapacity);
+    }
+
+    /**
+     * Timer for per-line sourcing deadlines. Tasks only hand work to the CPU executor, so one thread
+     * serves every deadline and none of them runs on the JDK's shared delay scheduler.
+     */
+    @Bean(name = "sourcingDeadlineTimer", destroyMethod = "shutdownNow")
+    public ScheduledExecutorService sourcingDeadlineTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sourcing-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most lines finish before their deadline and cancel the timer
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "sourcing.executor.virtual-threads", havingValue = "true")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadRequestExecutor() {
+        return protocolHandler -> {
+            if (useVirtualThreads()) {
+                protocolHandler.setExecutor(VirtualThreads.perTaskExecutor("sourcing-request-"));
+            }
+        };
+    }
+
+    private boolean useVirtualThreads() {
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            log.warn("sourcing.executor.virtual-threads is enabled but the runtime is Java {}; using platform threads",
+                    Runtime.version().feature());
+            return false;
+        }
+        return virtualThreads;
+    }
+}
@@ -1,43 +1,119 @@
 package com.ordersourcing.engine.controller;
 
+import com.ordersourcing.engine.service.AdmissionService;
 import com.ordersourcing.engine.service.BatchSourcingService;
+import com.ordersourcing.engine.service.InventoryApiService;
+import com.ordersourcing.engine.service.PrewarmService;
+import com.ordersourcing.engine.service.QuickPromiseService;
+import com.ordersourcing.engine.service.QuoteCacheService;
 import com.ordersourcing.engine.dto.OrderDTO;
 import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.dto.PrewarmPlan;
+import com.ordersourcing.engine.dto.PrewarmStatus;
+import com.ordersourcing.engine.dto.QuickPromiseResponse;
 import com.ordersourcing.engine.dto.SourcingResponse;
+import com.ordersourcing.engine.util.AdaptiveLimiter;
+import com.ordersourcing.engine.util.Deadline;
+import com.ordersourcing.engine.util.PriorityScheduler;
+import com.ordersourcing.engine.util.StageExecutor;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 @RestController
 @RequestMapping("/api/sourcing")
 @Slf4j
 public class SourcingController {
+    
+    // Optional per-request time budget in milliseconds, counted from arrival (admission wait included)
+    static final String DEADLINE_HEADER = "X-Sourcing-Deadline-Ms";
+    
+    // Time past a stream's deadline to send the lines planned at the deadline and the summary
+    private static final long STREAM_GRACE_MS = 1000;
 
     @Autowired
     private BatchSourcingService batchSourcingService;
+    
+    @Autowired
+    private AdmissionService admissionService;
+    
+    @Autowired
+    private QuoteCacheService quoteCacheService;
+    
+    @Autowired
+    private InventoryApiService inventoryApiService;
+    
+    @Autowired
+    private QuickPromiseService quickPromiseService;
+    
+    @Autowired
+    private PrewarmService prewarmService;
+    
+    @Autowired
+    @Qualifier("sourcingIoExecutor")
+    private StageExecutor ioExecutor;
+    
+    @Autowired
+    @Qualifier("sourcingCpuExecutor")
+    private StageExecutor cpuExecutor;
+    
+    @Autowired
+    private AdaptiveLimiter databaseLimiter;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${sourcing.stream.timeout-ms:30000}")
+    private long streamTimeoutMs;
 
     @PostMapping("/source")
-    public ResponseEntity<SourcingResponse> sourceOrder(@RequestBody @Valid OrderDTO orderDTO) {
+    public ResponseEntity<SourcingResponse> sourceOrder(@RequestBody @Valid OrderDTO orderDTO,
+            @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadlineMs) {
+        Deadline deadline = batchSourcingService.deadlineFor(deadlineMs);
         try {
             log.info("Received sourcing request for order: {} with {} items", 
                     orderDTO.getTempOrderId(), orderDTO.getOrderItems().size());
             
-            // Validate order items have location filter IDs
-            for (OrderItemDTO item : orderDTO.getOrderItems()) {
-                if (item.getLocationFilterId() == null || item.getLocationFilterId().trim().isEmpty()) {
-                    return ResponseEntity.badRequest()
-                            .body(createErrorSourcingResponse(orderDTO, 
-                                    "Missing location filter ID for item: " + item.getSku()));
-                }
+            ResponseEntity<SourcingResponse> invalid = validateLocationFilterIds(orderDTO);
+            if (invalid != null) {
+                return invalid;
             }
             
-            // Execute sourcing
-            SourcingResponse response = batchSourcingService.sourceOrder(orderDTO);
+            // Identical carts re-quoted within the TTL are answered from the quote cache
+            QuoteCacheService.QuoteLookup quote = quoteCacheService.lookup(orderDTO);
+            if (quote.isHit()) {
+                log.debug("Quote cache hit for order: {}", orderDTO.getTempOrderId());
+                return ResponseEntity.ok(quote.cached());
+            }
+            
+            // Execute sourcing once admitted in the order's priority class, shedding it if the deadline passes first
+            SourcingResponse response;
+            try (PriorityScheduler.Permit permit = admissionService.admitBlocking(orderDTO, deadline)) {
+                response = batchSourcingService.sourceOrder(orderDTO, deadline);
+            }
+            quoteCacheService.store(quote, orderDTO, response);
             
             // Log completion
             log.info("Completed sourcing for order: {} in {}ms", 
@@ -45,6 +121,11 @@ public class SourcingController {
             
             return ResponseEntity.ok(response);
             
+        } catch (RejectedExecutionException e) {
+            log.warn("Shed sourcing request for order: {} - {}", orderDTO.getTempOrderId(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(createErrorSourcingResponse(orderDTO, e.getMessage()));
+            
         } catch (IllegalArgumentException e) {
             log.error("Invalid request for sourcing: {}", e.getMessage());
             return ResponseEntity.badRequest()
@@ -58,11 +139,361 @@ public class SourcingController {
         }
     }
     
+    /**
+     * Cart re-quote: only lines that changed since the last call with the same tempOrderId are sourced again
+     */
+    @PostMapping("/source/incremental")
+    public ResponseEntity<SourcingResponse> sourceOrderIncremental(@RequestBody @Valid OrderDTO orderDTO,
+            @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadlineMs) {
+        Deadline deadline = batchSourcingService.deadlineFor(deadlineMs);
+        try {
+            ResponseEntity<SourcingResponse> invalid = validateLocationFilterIds(orderDTO);
+            if (invalid != null) {
+                return invalid;
+            }
+            
+            SourcingResponse response;
+            try (PriorityScheduler.Permit permit = admissionService.admitBlocking(orderDTO, deadline)) {
+                response = batchSourcingService.sourceOrderIncremental(orderDTO, deadline);
+            }
+            
+            log.info("Completed incremental sourcing for cart: {} in {}ms", 
+                    orderDTO.getTempOrderId(), response.getProcessingTimeMs());
+            return ResponseEntity.ok(response);
+            
+        } catch (RejectedExecutionException e) {
+            log.warn("Shed incremental sourcing request for cart: {} - {}", orderDTO.getTempOrderId(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(createErrorSourcingResponse(orderDTO, e.getMessage()));
+        }
+    }
+    
+    /**
+     * Variant of /source answered from in-memory data only, so no thread waits on the database; lines whose
+     * stock, filter or scoring data is not loaded are reported as NOT_IN_MEMORY. Cached checkout quotes are
+     * served, but its own answers are not cached, since they are planned against the in-memory stock index.
+     */
+    @PostMapping("/source/reactive")
+    public Mono<ResponseEntity<SourcingResponse>> sourceOrderReactive(@RequestBody @Valid OrderDTO orderDTO,
+            @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadlineMs) {
+        Deadline deadline = batchSourcingService.deadlineFor(deadlineMs);
+        log.info("Received reactive sourcing request for order: {} with {} items", 
+                orderDTO.getTempOrderId(), orderDTO.getOrderItems().size());
+        
+        ResponseEntity<SourcingResponse> invalid = validateLocationFilterIds(orderDTO);
+        if (invalid != null) {
+            return Mono.just(invalid);
+        }
+        
+        QuoteCacheService.QuoteLookup quote = quoteCacheService.lookup(orderDTO);
+        if (quote.isHit()) {
+            return Mono.just(ResponseEntity.ok(quote.cached()));
+        }
+        
+        return Mono.fromFuture(admissionService.admit(orderDTO))
+                .flatMap(permit -> batchSourcingService.sourceOrderReactive(orderDTO, deadline)
+                        .doFinally(signal -> permit.close()))
+                .map(response -> {
+                    log.info("Completed reactive sourcing for order: {} in {}ms", 
+                            orderDTO.getTempOrderId(), response.getProcessingTimeMs());
+                    return ResponseEntity.ok(response);
+                })
+                .onErrorResume(RejectedExecutionException.class, e -> {
+                    log.warn("Shed reactive sourcing request for order: {} - {}", 
+                            orderDTO.getTempOrderId(), e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                            .body(createErrorSourcingResponse(orderDTO, e.getMessage())));
+                });
+    }
+    
+    /**
+     * Streaming variant of /source: a "plan" server-sent event per fulfillment plan as soon as its line is
+     * sourced, then a "summary" event. Shed requests get a single "rejected" event. Events are sent on the
+     * I/O executor, and the stream times out shortly after the request's deadline.
+     */
+    @PostMapping(value = "/source/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> sourceOrderStream(@RequestBody @Valid OrderDTO orderDTO,
+            @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadlineMs) {
+        Deadline deadline = batchSourcingService.deadlineFor(deadlineMs);
+        log.info("Received streaming sourcing request for order: {} with {} items", 
+                orderDTO.getTempOrderId(), orderDTO.getOrderItems().size());
+        
+        if (validateLocationFilterIds(orderDTO) != null) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        SseEmitter emitter = new SseEmitter(deadline.isBounded() 
+                ? deadline.remainingMillis() + STREAM_GRACE_MS : streamTimeoutMs);
+        emitter.onTimeout(() -> log.warn("Streaming sourcing for order: {} timed out", orderDTO.getTempOrderId()));
+        EventSender sender = new EventSender(emitter, ioExecutor);
+        admissionService.admit(orderDTO)
+                .thenCompose(permit -> batchSourcingService.sourceOrderProgressive(orderDTO, deadline, 
+                                plan -> sender.send("plan", plan))
+                        .whenComplete((summary, e) -> permit.close()))
+                .whenComplete((summary, e) -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause == null) {
+                        log.info("Completed streaming sourcing for order: {} in {}ms", 
+                                orderDTO.getTempOrderId(), summary.getProcessingTimeMs());
+                        sender.send("summary", summary);
+                        sender.complete(null);
+                    } else if (cause instanceof RejectedExecutionException) {
+                        log.warn("Shed streaming sourcing request for order: {} - {}", 
+                                orderDTO.getTempOrderId(), cause.getMessage());
+                        sender.send("rejected", cause.getMessage());
+                        sender.complete(null);
+                    } else {
+                        log.error("Error in streaming sourcing for order: {}", orderDTO.getTempOrderId(), cause);
+                        sender.complete(cause);
+                    }
+                });
+        
+        return ResponseEntity.ok(emitter);
+    }
+    
+    @PostMapping("/wave")
+    public ResponseEntity<List<SourcingResponse>> sourceWave(@RequestBody List<OrderDTO> orders) {
+        try {
+            log.info("Received wave sourcing request with {} orders", orders.size());
+            
+            // Validate order items have location filter IDs
+            for (OrderDTO orderDTO : orders) {
+                for (OrderItemDTO item : orderDTO.getOrderItems()) {
+                    if (item.getLocationFilterId() == null || item.getLocationFilterId().trim().isEmpty()) {
+                        log.error("Invalid wave request: missing location filter ID for item: {} in order: {}", 
+                                item.getSku(), orderDTO.getTempOrderId());
+                        return ResponseEntity.badRequest().build();
+                    }
+                }
+            }
+            
+            List<SourcingResponse> responses;
+            try (PriorityScheduler.Permit permit = admissionService.admitWaveBlocking(orders)) {
+                responses = batchSourcingService.sourceWave(orders);
+            }
+            
+            log.info("Completed wave sourcing for {} orders", responses.size());
+            
+            return ResponseEntity.ok(responses);
+            
+        } catch (RejectedExecutionException e) {
+            log.warn("Shed wave sourcing request with {} orders - {}", orders.size(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+            
+        } catch (Exception e) {
+            log.error("Error in wave sourcing for {} orders", orders != null ? orders.size() : 0, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Bulk quotes: orders are read as NDJSON (or a JSON array) and each SourcingResponse is written as one
+     * NDJSON line as soon as it completes, in completion order. Only one chunk of orders is held at a time.
+     */
+    @PostMapping(value = "/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void sourceBulk(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        
+        try (MappingIterator<OrderDTO> orders = objectMapper.readerFor(OrderDTO.class)
+                .readValues(request.getInputStream())) {
+            // Responses are handed over on this request thread, so writes never run on worker threads
+            int sourced = batchSourcingService.sourceBulk(orders, sourcingResponse -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(sourcingResponse));
+                    out.write('\n');
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Streamed {} bulk sourcing responses", sourced);
+            
+        } catch (RuntimeException e) {
+            // Headers are already committed once streaming starts, so the stream just ends early
+            log.error("Bulk sourcing stream ended early", e);
+            if (!response.isCommitted()) {
+                response.sendError(e instanceof RuntimeJsonMappingException 
+                        ? HttpStatus.BAD_REQUEST.value() : HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+        }
+    }
+    
+    /**
+     * Product-page "get it by" dates for many SKU lines at once; read-only and answered from memory,
+     * so it skips admission and the quote cache
+     */
+    @PostMapping("/quick-promise")
+    public ResponseEntity<QuickPromiseResponse> quickPromise(@RequestBody OrderDTO request) {
+        if (request.getLatitude() == null || request.getLongitude() == null 
+                || request.getOrderItems() == null || request.getOrderItems().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(quickPromiseService.quote(request));
+    }
+    
+    /**
+     * GET form of /quick-promise for cacheable product-page links: the same delivery type, filter and
+     * quantity for every listed SKU
+     */
+    @GetMapping("/quick-promise")
+    public ResponseEntity<QuickPromiseResponse> quickPromise(@RequestParam List<String> skus,
+                                                             @RequestParam Double latitude,
+                                                             @RequestParam Double longitude,
+                                                             @RequestParam String locationFilterId,
+                                                             @RequestParam(defaultValue = "STANDARD") String deliveryType,
+                                                             @RequestParam(defaultValue = "1") int quantity,
+                                                             @RequestParam(required = false) String timeZone) {
+        List<OrderItemDTO> items = new ArrayList<>(skus.size());
+        for (String sku : skus) {
+            items.add(OrderItemDTO.builder()
+                    .sku(sku)
+                    .quantity(quantity)
+                    .deliveryType(deliveryType)
+                    .locationFilterId(locationFilterId)
+                    .build());
+        }
+        return quickPromise(OrderDTO.builder()
+                .latitude(latitude)
+                .longitude(longitude)
+                .timeZone(timeZone)
+                .orderItems(items)
+                .build());
+    }
+    
+    @GetMapping("/quick-promise/stats")
+    public ResponseEntity<Map<String, Object>> quickPromiseStats() {
+        return ResponseEntity.ok(quickPromiseService.getStats());
+    }
+    
+    /**
+     * Schedules cache warm-up ahead of a planned traffic event; progress and coverage via GET /prewarm/{id}
+     */
+    @PostMapping("/prewarm")
+    public ResponseEntity<PrewarmStatus> schedulePrewarm(@RequestBody @Valid PrewarmPlan plan) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(prewarmService.schedule(plan));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected pre-warm plan {}: {}", plan.getName(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/prewarm")
+    public ResponseEntity<List<PrewarmStatus>> prewarmStatuses() {
+        return ResponseEntity.ok(prewarmService.getStatuses());
+    }
+    
+    @GetMapping("/prewarm/{jobId}")
+    public ResponseEntity<PrewarmStatus> prewarmStatus(@PathVariable String jobId) {
+        PrewarmStatus status = prewarmService.getStatus(jobId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+    
+    @DeleteMapping("/prewarm/{jobId}")
+    public ResponseEntity<PrewarmStatus> cancelPrewarm(@PathVariable String jobId) {
+        PrewarmStatus status = prewarmService.cancel(jobId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Inventory feed hook: SKUs whose stock changed, so cached quotes and lookups for them are dropped
+     */
+    @PostMapping("/inventory/changed")
+    public ResponseEntity<Void> inventoryChanged(@RequestBody Set<String> skus) {
+        inventoryApiService.inventoryChanged(skus);
+        return ResponseEntity.noContent().build();
+    }
+    
+    @GetMapping("/quote-cache")
+    public ResponseEntity<Map<String, Object>> quoteCacheStats() {
+        return ResponseEntity.ok(quoteCacheService.getStats());
+    }
+    
+    @GetMapping("/executors")
+    public ResponseEntity<List<StageExecutor.Stats>> executorStats() {
+        return ResponseEntity.ok(List.of(ioExecutor.getStats(), cpuExecutor.getStats()));
+    }
+    
+    @GetMapping("/db-limiter")
+    public ResponseEntity<AdaptiveLimiter.Stats> databaseLimiterStats() {
+        return ResponseEntity.ok(databaseLimiter.getStats());
+    }
+    
+    @GetMapping("/admission")
+    public ResponseEntity<PriorityScheduler.Stats> admissionStats() {
+        return ResponseEntity.ok(admissionService.getStats());
+    }
+    
+    @GetMapping("/strategy-model")
+    public ResponseEntity<Map<String, Object>> strategyModel() {
+        return ResponseEntity.ok(batchSourcingService.getStrategyModelStats());
+    }
+    
+    /**
+     * Sends one server-sent event; a client that has gone away fails the stream
+     */
+    private static void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Sends one stream's events in order on the I/O executor, so the CPU workers that produce plans never
+     * block on a slow client. After a failed send the rest are skipped and the stream ends with the error.
+     */
+    private static final class EventSender {
+        private final SseEmitter emitter;
+        private final Executor executor;
+        private CompletableFuture<Void> sent = CompletableFuture.completedFuture(null);
+        
+        EventSender(SseEmitter emitter, Executor executor) {
+            this.emitter = emitter;
+            this.executor = executor;
+        }
+        
+        synchronized void send(String name, Object data) {
+            sent = sent.thenRunAsync(() -> sendEvent(emitter, name, data), executor);
+        }
+        
+        /**
+         * Completes the stream once every event is sent, with the given error if not null
+         */
+        synchronized void complete(Throwable error) {
+            sent.whenCompleteAsync((done, e) -> {
+                Throwable failure = error != null ? error : e;
+                if (failure == null) {
+                    emitter.complete();
+                } else {
+                    emitter.completeWithError(failure);
+                }
+            }, executor);
+        }
+    }
+    
+    /**
+     * Bad request response if any order item is missing its location filter ID, otherwise null
+     */
+    private ResponseEntity<SourcingResponse> validateLocationFilterIds(OrderDTO orderDTO) {
+        for (OrderItemDTO item : orderDTO.getOrderItems()) {
+            if (item.getLocationFilterId() == null || item.getLocationFilterId().trim().isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(createErrorSourcingResponse(orderDTO, 
+                                "Missing location filter ID for item: " + item.getSku()));
+            }
+        }
+        return null;
+    }
+    
     private SourcingResponse createErrorSourcingResponse(OrderDTO orderDTO, String errorMessage) {
         return SourcingResponse.builder()
                 .orderId(orderDTO != null ? orderDTO.getTempOrderId() : "unknown")
                 .fulfillmentPlans(Collections.emptyList())
                 .processingTimeMs(0L)
+                .error(errorMessage)
                 .build();
     }
 }
@@ -34,6 +34,7 @@ public class OrderItemDTO {
     private Boolean isHazmat; // For hazmat filtering
     private Boolean requiresColdStorage; // For temperature-controlled items
     private String specialHandling; // Additional handling requirements
+    private Double unitWeightKg; // Shipping weight per unit, for rate card pricing
     
     // Customer preferences (for advanced filtering)
     private Boolean customerPrefersSingleLocation;
@@ -0,0 +1,58 @@
+package com.ordersourcing.engine.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Caches to warm ahead of a planned traffic event (drop, sale) and how long to hold them
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PrewarmPlan {
+    
+    private String name;
+    
+    @NotEmpty(message = "At least one SKU is required")
+    private List<String> skus;
+    
+    @NotEmpty(message = "At least one location filter ID is required")
+    private List<String> locationFilterIds;
+    
+    private List<String> deliveryTypes; // Defaults to STANDARD
+    
+    @NotEmpty(message = "At least one region is required")
+    @Valid
+    private List<Region> regions;
+    
+    @NotNull(message = "Event start is required")
+    private LocalDateTime eventStart; // Server time; warming begins sourcing.prewarm.lead-ms earlier
+    private LocalDateTime eventEnd; // Defaults to eventStart plus sourcing.prewarm.default-window-ms
+    
+    private Boolean pin; // Hold warmed entries against eviction until eventEnd
+    
+    /**
+     * Customers around a point; a radius of 0 covers only the point's geo-cell
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Region {
+        private String name;
+        @NotNull
+        private Double latitude;
+        @NotNull
+        private Double longitude;
+        private Double radiusKm;
+    }
+}
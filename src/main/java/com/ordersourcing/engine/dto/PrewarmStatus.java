@@ -0,0 +1,52 @@
+package com.ordersourcing.engine.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress and coverage of one pre-warm job
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PrewarmStatus {
+    
+    private String id;
+    private String name;
+    private State state;
+    private String error;
+    
+    private LocalDateTime warmStartsAt;
+    private LocalDateTime eventStart;
+    private LocalDateTime pinnedUntil; // Null when entries are not pinned
+    private LocalDateTime completedAt;
+    
+    // Progress over warm-up steps: carrier index, stock index, inventory read, one per filter and geo-cell
+    private int completedSteps;
+    private int totalSteps;
+    
+    // Coverage: how much of the plan is actually held warm
+    private int skus;
+    private int skusInStock;
+    private int skusHeld; // Pinned last-known stock checkout is served past the database limit; 0 unless pinned
+    private int filters;
+    private int filtersLoaded; // Definitions loaded and compiled; per-order filter results are not warmed
+    private int geoCells;
+    private int geoCellsWarmed;
+    private long promiseLines; // (SKU, filter, delivery type) lines quoted across all geo-cells
+    private long promiseLinesAvailable;
+    
+    public enum State {
+        SCHEDULED,  // Waiting for warmStartsAt
+        RUNNING,
+        WARM,       // Warmed; pinned entries are held until pinnedUntil
+        RELEASED,   // Event window over, pins released
+        CANCELLED,
+        FAILED
+    }
+}
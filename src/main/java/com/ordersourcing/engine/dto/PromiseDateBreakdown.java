@@ -26,6 +26,14 @@ public class PromiseDateBreakdown {
     private String carrierCode; // UPS, FEDEX, USPS
     private String serviceLevel; // GROUND, EXPRESS, OVERNIGHT
     private String deliveryType; // SAME_DAY, NEXT_DAY, STANDARD
+    private Double shippingCost; // From rate cards; null when the carrier has no matching rate
+    
+    // Promise confidence
+    private Double onTimeProbability; // Probability of delivery by promiseDate (0.0 to 1.0)
+    private LocalDateTime p90DeliveryDate; // Date by which delivery is 90% likely
+    
+    // True when computed after the request deadline: priority carrier only, no rate-card optimisation
+    private Boolean estimated;
     
     public static PromiseDateBreakdown createFallback(LocalDateTime fallbackDate, String reason) {
         LocalDateTime now = LocalDateTime.now();
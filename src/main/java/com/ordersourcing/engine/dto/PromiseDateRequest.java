@@ -0,0 +1,23 @@
+package com.ordersourcing.engine.dto;
+
+import com.ordersourcing.engine.model.Inventory;
+import com.ordersourcing.engine.model.Location;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+/**
+ * One (order line, allocated location) pair that needs a promise date
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PromiseDateRequest {
+    
+    private OrderItemDTO orderItem;
+    private Location location;
+    private Inventory inventory;
+    private Integer quantity; // Allocated quantity; the full line quantity when null
+}
@@ -0,0 +1,39 @@
+package com.ordersourcing.engine.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * "Get it by" answers for product and listing pages, one per requested SKU line
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QuickPromiseResponse {
+    
+    private List<SkuPromise> promises;
+    private Long stockAsOf; // Epoch millis of the oldest stock read the answers used; null when stock is unknown
+    private boolean stockUnknown; // True until stock first loads: no line is answered, none is out of stock
+    private long processingTimeMicros;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class SkuPromise {
+        private String sku;
+        private String deliveryType;
+        private boolean available; // False when no eligible location holds the quantity or no carrier serves it
+        private LocalDateTime promiseDate;
+        private LocalDateTime p90DeliveryDate;
+        private Double onTimeProbability;
+        private Integer locationId;
+        private String carrierCode;
+    }
+}
@@ -17,6 +17,9 @@ public class SourcingResponse {
     private String orderId;
     private List<FulfillmentPlan> fulfillmentPlans;
     private long processingTimeMs;
+    private List<DegradedLine> degradedLines; // Lines answered best-effort: deadline reached or database at its limit
+    private String error; // Why the order could not be sourced; null when it was
+    private Long stockAsOf; // Reactive path only: epoch millis of the oldest in-memory stock read the plans used
     
     @Data
     @NoArgsConstructor
@@ -52,6 +55,45 @@ public class SourcingResponse {
         private LocalDateTime estimatedDeliveryDate;
         private int transitTimeDays;
         private int processingTimeHours;
+        private Double onTimeProbability;
+        private LocalDateTime p90DeliveryDate;
+        private String carrierCode;
+        private Double shippingCost;
+        private Boolean estimated;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class DegradedLine {
+        private int lineIndex;
+        private String sku;
+        private DegradationReason reason;
+    }
+    
+    /**
+     * Closing event of a streamed sourcing request, sent after every plan event
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class StreamSummary {
+        private String orderId;
+        private int planCount;
+        private Long processingTimeMs;
+        private List<DegradedLine> degradedLines;
+    }
+    
+    public enum DegradationReason {
+        TIMED_OUT,              // Inventory (or a never-loaded filter) not ready by the deadline; no plan for the line
+        GREEDY_ALLOCATION,      // Allocated greedily without comparing single-location fulfillment; promises estimated
+        ESTIMATED_PROMISE,      // Allocation complete, promise dates estimated
+        STALE_INVENTORY,        // Planned against the SKU's last known stock because the database was at its limit
+        INVENTORY_UNAVAILABLE,  // Database at its limit and no recent read of the SKU's stock; no plan for the line
+        NOT_IN_MEMORY,          // Reactive path: stock, filter, scoring or index data not loaded in memory; no plan for the line
+        FILTER_UNAVAILABLE      // The line's location filter could not be loaded or evaluated; no plan for the line
     }
     
     // Helper methods
@@ -0,0 +1,43 @@
+package com.ordersourcing.engine.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Published when reference data used by sourcing changes, so in-memory caches and indexes can invalidate
+ */
+@Getter
+public class SourcingDataChangedEvent extends ApplicationEvent {
+    
+    public enum DataType {
+        LOCATION,
+        SCORING_CONFIGURATION,
+        CARRIER,
+        INVENTORY,          // Keys are SKUs
+        LOCATION_FILTER     // Keys are filter IDs
+    }
+    
+    private final DataType dataType;
+    private final Set<String> keys; // Changed IDs; empty means everything of this type
+    
+    public SourcingDataChangedEvent(Object source, DataType dataType, Set<String> keys) {
+        super(source);
+        this.dataType = dataType;
+        this.keys = keys != null ? Set.copyOf(keys) : Collections.emptySet();
+    }
+    
+    public SourcingDataChangedEvent(Object source, DataType dataType) {
+        this(source, dataType, Collections.emptySet());
+    }
+    
+    public boolean affectsAll() {
+        return keys.isEmpty();
+    }
+    
+    public boolean affects(String key) {
+        return keys.isEmpty() || keys.contains(key);
+    }
+}
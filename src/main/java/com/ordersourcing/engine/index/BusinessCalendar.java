@@ -0,0 +1,126 @@
+package com.ordersourcing.engine.index;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Immutable business-day calendar precomputed over a window of days.
+ * Open days are held in a bitmap with prefix ranks and an open-day table, so
+ * "next open day" and "n open days after" are array reads. Dates outside the
+ * window fall back to stepping day by day with the same rules.
+ */
+public final class BusinessCalendar {
+    
+    private final LocalDate start;
+    private final long startEpochDay;
+    private final int days;
+    private final boolean weekendsOpen;
+    private final Set<LocalDate> holidays;
+    
+    private final long[] openBits;
+    private final int[] rank; // rank[i] = number of open days before offset i
+    private final int[] openOffsets; // offsets of open days, ascending
+    
+    private BusinessCalendar(LocalDate start, int days, boolean weekendsOpen, Set<LocalDate> holidays) {
+        this.start = start;
+        this.startEpochDay = start.toEpochDay();
+        this.days = days;
+        this.weekendsOpen = weekendsOpen;
+        this.holidays = Set.copyOf(holidays);
+        this.openBits = new long[(days + 63) >>> 6];
+        this.rank = new int[days + 1];
+        
+        int openCount = 0;
+        int[] offsets = new int[days];
+        for (int offset = 0; offset < days; offset++) {
+            rank[offset] = openCount;
+            if (isOpenByRule(start.plusDays(offset))) {
+                openBits[offset >>> 6] |= 1L << offset;
+                offsets[openCount++] = offset;
+            }
+        }
+        rank[days] = openCount;
+        this.openOffsets = Arrays.copyOf(offsets, openCount);
+    }
+    
+    /**
+     * Builds a calendar covering [start, start + days)
+     */
+    public static BusinessCalendar build(LocalDate start, int days, boolean weekendsOpen, Set<LocalDate> holidays) {
+        return new BusinessCalendar(start, days, weekendsOpen, holidays);
+    }
+    
+    public boolean isOpen(LocalDate date) {
+        int offset = offsetOf(date);
+        if (offset < 0) {
+            return isOpenByRule(date);
+        }
+        return (openBits[offset >>> 6] & (1L << offset)) != 0;
+    }
+    
+    /**
+     * First open day on or after the given date
+     */
+    public LocalDate nextOpenOnOrAfter(LocalDate date) {
+        int offset = offsetOf(date);
+        if (offset >= 0 && rank[offset] < openOffsets.length) {
+            return start.plusDays(openOffsets[rank[offset]]);
+        }
+        
+        LocalDate candidate = date;
+        while (!isOpenByRule(candidate)) {
+            candidate = candidate.plusDays(1);
+        }
+        return candidate;
+    }
+    
+    /**
+     * The n-th open day after the given date; for n = 0, the first open day on or after it
+     */
+    public LocalDate addOpenDays(LocalDate date, int n) {
+        if (n <= 0) {
+            return nextOpenOnOrAfter(date);
+        }
+        
+        int offset = offsetOf(date);
+        if (offset >= 0) {
+            int target = rank[offset + 1] + n - 1;
+            if (target < openOffsets.length) {
+                return start.plusDays(openOffsets[target]);
+            }
+        }
+        
+        LocalDate candidate = date;
+        int remaining = n;
+        while (remaining > 0) {
+            candidate = candidate.plusDays(1);
+            if (isOpenByRule(candidate)) {
+                remaining--;
+            }
+        }
+        return candidate;
+    }
+    
+    public LocalDate getStart() {
+        return start;
+    }
+    
+    public int getDays() {
+        return days;
+    }
+    
+    private int offsetOf(LocalDate date) {
+        long offset = date.toEpochDay() - startEpochDay;
+        return offset >= 0 && offset < days ? (int) offset : -1;
+    }
+    
+    private boolean isOpenByRule(LocalDate date) {
+        if (holidays.contains(date)) {
+            return false;
+        }
+        DayOfWeek dayOfWeek = date.getDayOfWeek();
+        return weekendsOpen || (dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY);
+    }
+}
@@ -0,0 +1,343 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.CarrierConfiguration;
+import com.ordersourcing.engine.model.RateCard;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Immutable snapshot of carrier configurations for in-memory carrier selection.
+ * Per delivery type, carriers are sorted by max service distance; a suffix table holds the
+ * highest-priority carrier for every handling mask, so a lookup is one binary search and an array read.
+ * Rate cards are attached per carrier for cost-aware selection among the eligible carriers, and the
+ * carriers that could undercut each selection are precomputed alongside it.
+ */
+public final class CarrierIndex {
+    
+    private static final Comparator<CarrierConfiguration> PRIORITY_ORDER = Comparator
+            .comparing((CarrierConfiguration carrier) -> carrier.getCarrierPriority() != null 
+                    ? carrier.getCarrierPriority() : Integer.MAX_VALUE)
+            .thenComparing(carrier -> carrier.getId() != null ? carrier.getId() : Integer.MAX_VALUE);
+    
+    private final Map<String, DeliveryTypeCarriers> byDeliveryType;
+    private final List<CarrierConfiguration> carriers;
+    private final Map<CarrierConfiguration, TransitDistribution> transitDistributions;
+    private final Map<CarrierConfiguration, RateTable> rateTables;
+    private final List<RateCard> rateCards;
+    private final long version;
+    
+    private CarrierIndex(List<CarrierConfiguration> carriers, List<RateCard> rateCards, long version) {
+        this.carriers = Collections.unmodifiableList(carriers);
+        this.rateCards = Collections.unmodifiableList(rateCards);
+        this.version = version;
+        
+        this.transitDistributions = new IdentityHashMap<>(carriers.size());
+        for (CarrierConfiguration carrier : carriers) {
+            transitDistributions.put(carrier, TransitDistribution.build(carrier));
+        }
+        
+        Map<String, List<RateCard>> cardsByService = new HashMap<>();
+        for (RateCard card : rateCards) {
+            cardsByService.computeIfAbsent(serviceKey(card.getCarrierCode(), card.getServiceLevel()), 
+                    key -> new ArrayList<>()).add(card);
+        }
+        this.rateTables = new IdentityHashMap<>(carriers.size());
+        for (CarrierConfiguration carrier : carriers) {
+            List<RateCard> cards = cardsByService.get(serviceKey(carrier.getCarrierCode(), carrier.getServiceLevel()));
+            rateTables.put(carrier, cards != null ? RateTable.build(cards) : RateTable.EMPTY);
+        }
+        
+        Map<String, List<CarrierConfiguration>> grouped = new HashMap<>();
+        for (CarrierConfiguration carrier : carriers) {
+            grouped.computeIfAbsent(carrier.getDeliveryType(), type -> new ArrayList<>()).add(carrier);
+        }
+        
+        // Carriers without rate cards are never cheaper, so they are left out of the alternatives
+        Predicate<CarrierConfiguration> hasRates = carrier -> rateTables.get(carrier) != RateTable.EMPTY;
+        Map<String, DeliveryTypeCarriers> built = new HashMap<>();
+        grouped.forEach((deliveryType, group) -> built.put(deliveryType, new DeliveryTypeCarriers(group, hasRates)));
+        this.byDeliveryType = built;
+    }
+    
+    public static CarrierIndex build(List<CarrierConfiguration> carriers, long version) {
+        return build(carriers, Collections.emptyList(), version);
+    }
+    
+    public static CarrierIndex build(List<CarrierConfiguration> carriers, List<RateCard> rateCards, long version) {
+        return new CarrierIndex(List.copyOf(carriers), List.copyOf(rateCards), version);
+    }
+    
+    public static CarrierIndex empty() {
+        return new CarrierIndex(Collections.emptyList(), Collections.emptyList(), 0);
+    }
+    
+    /**
+     * Highest-priority carrier for the delivery type that reaches the distance and supports the handling mask,
+     * or null if there is none. An unknown (NaN) distance only matches carriers without a distance limit.
+     */
+    public CarrierConfiguration bestCarrier(String deliveryType, double distanceKm, int handlingMask) {
+        return select(deliveryType, distanceKm, handlingMask).carrier();
+    }
+    
+    /**
+     * Like bestCarrier, but also reports the carriers that could undercut it on cost and the distance
+     * interval over which the same answer holds. Selections are precomputed per delivery type, handling
+     * mask and distance band, so this is one binary search and an array read.
+     */
+    public Selection select(String deliveryType, double distanceKm, int handlingMask) {
+        DeliveryTypeCarriers group = byDeliveryType.get(deliveryType);
+        return group != null ? group.select(distanceKm, handlingMask) 
+                : new Selection(null, List.of(), Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+    
+    /**
+     * Cheapest carrier that reaches the distance, supports the handling mask and promises delivery no later
+     * than the reference (priority) carrier, so cost never worsens the promise. Promise dates come from the
+     * caller, since they depend on cutoffs, pickup and delivery days and peak delays as of the order.
+     * Carriers without a matching rate card are treated as most expensive; ties keep priority order,
+     * and the reference wins if nothing is cheaper.
+     */
+    public CarrierConfiguration cheapestCarrier(String deliveryType, double distanceKm, int handlingMask, 
+                                                double weightKg, CarrierConfiguration reference,
+                                                Function<CarrierConfiguration, LocalDateTime> promiseDate) {
+        DeliveryTypeCarriers group = byDeliveryType.get(deliveryType);
+        if (group == null || reference == null) {
+            return reference;
+        }
+        return cheapestAmong(group.alternatives(distanceKm, handlingMask, reference), reference, 
+                distanceKm, weightKg, promiseDate);
+    }
+    
+    /**
+     * Cheapest carrier among the selection and its precomputed alternatives, as cheapestCarrier; with no
+     * alternatives the selected carrier is returned without computing any promise date
+     */
+    public CarrierConfiguration cheapestCarrier(Selection selection, double distanceKm, double weightKg,
+                                                Function<CarrierConfiguration, LocalDateTime> promiseDate) {
+        if (selection.carrier() == null) {
+            return null;
+        }
+        return cheapestAmong(selection.alternatives(), selection.carrier(), distanceKm, weightKg, promiseDate);
+    }
+    
+    private CarrierConfiguration cheapestAmong(List<CarrierConfiguration> alternatives, CarrierConfiguration reference,
+                                               double distanceKm, double weightKg,
+                                               Function<CarrierConfiguration, LocalDateTime> promiseDate) {
+        LocalDateTime referencePromise = null;
+        CarrierConfiguration best = reference;
+        double bestCost = costOrInfinity(reference, distanceKm, weightKg);
+        
+        for (CarrierConfiguration candidate : alternatives) {
+            double cost = costOrInfinity(candidate, distanceKm, weightKg);
+            if (cost > bestCost || (cost == bestCost && (best == reference 
+                    || PRIORITY_ORDER.compare(candidate, best) >= 0))) {
+                continue;
+            }
+            
+            // Only candidates that would win on cost pay for a promise date
+            if (referencePromise == null) {
+                referencePromise = promiseDate.apply(reference);
+            }
+            if (!promiseDate.apply(candidate).isAfter(referencePromise)) {
+                best = candidate;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Shipping cost from the carrier's rate cards including fuel surcharge, or NaN if no rate card matches
+     */
+    public double shippingCost(CarrierConfiguration carrier, double distanceKm, double weightKg) {
+        RateTable table = rateTables.get(carrier);
+        if (table == null || Double.isNaN(distanceKm)) {
+            return Double.NaN;
+        }
+        
+        double surcharge = carrier.getFuelSurchargePercent() != null ? carrier.getFuelSurchargePercent() : 0.0;
+        return table.cost(distanceKm, weightKg) * (1.0 + surcharge / 100.0);
+    }
+    
+    private double costOrInfinity(CarrierConfiguration carrier, double distanceKm, double weightKg) {
+        double cost = shippingCost(carrier, distanceKm, weightKg);
+        return Double.isNaN(cost) ? Double.POSITIVE_INFINITY : cost;
+    }
+    
+    private static String serviceKey(String carrierCode, String serviceLevel) {
+        return carrierCode + ':' + serviceLevel;
+    }
+    
+    /**
+     * Farthest distance (km) any carrier can ship the delivery type with the handling mask, negative if none
+     */
+    public double maxServiceDistanceKm(String deliveryType, int handlingMask) {
+        DeliveryTypeCarriers group = byDeliveryType.get(deliveryType);
+        return group != null ? group.maxReach[handlingMask] : -1.0;
+    }
+    
+    /**
+     * Precomputed transit distribution for a carrier of this snapshot, built on demand for others
+     */
+    public TransitDistribution transitDistribution(CarrierConfiguration carrier) {
+        TransitDistribution distribution = transitDistributions.get(carrier);
+        return distribution != null ? distribution : TransitDistribution.build(carrier);
+    }
+    
+    public List<CarrierConfiguration> getCarriers() {
+        return carriers;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public List<RateCard> getRateCards() {
+        return rateCards;
+    }
+    
+    /**
+     * True if this snapshot holds exactly the given carrier configurations
+     */
+    public boolean matches(List<CarrierConfiguration> otherCarriers) {
+        return carriers.equals(otherCarriers);
+    }
+    
+    /**
+     * True if this snapshot holds exactly the given carrier configurations and rate cards
+     */
+    public boolean matches(List<CarrierConfiguration> otherCarriers, List<RateCard> otherRateCards) {
+        return carriers.equals(otherCarriers) && rateCards.equals(otherRateCards);
+    }
+    
+    /**
+     * Selected carrier (null if none) valid for distances in (minDistanceExclusive, maxDistanceInclusive],
+     * with the carriers that reach those distances, support the handling mask and have rate cards,
+     * in the order cost comparison visits them
+     */
+    public record Selection(CarrierConfiguration carrier, List<CarrierConfiguration> alternatives,
+                            double minDistanceExclusive, double maxDistanceInclusive) {
+        
+        public boolean covers(double distanceKm) {
+            return distanceKm > minDistanceExclusive && distanceKm <= maxDistanceInclusive;
+        }
+    }
+    
+    private static final class DeliveryTypeCarriers {
+        final CarrierConfiguration[] carriers; // Sorted by max distance ascending
+        final double[] maxDistances;
+        final int[] capabilities;
+        final int[] bestByMask; // [mask * (n + 1) + k] = best carrier among positions k..n-1, or -1
+        final double[] maxReach; // Per mask
+        final Predicate<CarrierConfiguration> hasRates;
+        final List<List<CarrierConfiguration>> alternativesByMask; // Same layout as bestByMask
+        
+        DeliveryTypeCarriers(List<CarrierConfiguration> group, Predicate<CarrierConfiguration> hasRates) {
+            this.hasRates = hasRates;
+            List<CarrierConfiguration> sorted = new ArrayList<>(group);
+            sorted.sort(Comparator.comparingDouble(DeliveryTypeCarriers::maxDistanceOf));
+            
+            int n = sorted.size();
+            carriers = sorted.toArray(new CarrierConfiguration[0]);
+            maxDistances = new double[n];
+            capabilities = new int[n];
+            for (int k = 0; k < n; k++) {
+                maxDistances[k] = maxDistanceOf(carriers[k]);
+                capabilities[k] = HandlingFlags.capabilityMask(carriers[k]);
+            }
+            
+            bestByMask = new int[HandlingFlags.MASK_COUNT * (n + 1)];
+            maxReach = new double[HandlingFlags.MASK_COUNT];
+            Arrays.fill(maxReach, -1.0);
+            
+            for (int mask = 0; mask < HandlingFlags.MASK_COUNT; mask++) {
+                int base = mask * (n + 1);
+                bestByMask[base + n] = -1;
+                for (int k = n - 1; k >= 0; k--) {
+                    int best = bestByMask[base + k + 1];
+                    if (HandlingFlags.supports(capabilities[k], mask)) {
+                        if (maxReach[mask] < 0) {
+                            maxReach[mask] = maxDistances[k]; // Sorted ascending, so the last supporting carrier reaches farthest
+                        }
+                        if (best < 0 || PRIORITY_ORDER.compare(carriers[k], carriers[best]) <= 0) {
+                            best = k;
+                        }
+                    }
+                    bestByMask[base + k] = best;
+                }
+            }
+            
+            alternativesByMask = new ArrayList<>(bestByMask.length);
+            for (int mask = 0; mask < HandlingFlags.MASK_COUNT; mask++) {
+                for (int k = 0; k <= n; k++) {
+                    int best = bestByMask[mask * (n + 1) + k];
+                    alternativesByMask.add(best >= 0 ? alternativesFrom(k, mask, carriers[best]) : List.of());
+                }
+            }
+        }
+        
+        /**
+         * Carriers from position start on that could replace the reference on cost
+         */
+        List<CarrierConfiguration> alternativesFrom(int start, int handlingMask, CarrierConfiguration reference) {
+            List<CarrierConfiguration> alternatives = new ArrayList<>();
+            for (int k = start; k < carriers.length; k++) {
+                if (carriers[k] != reference && HandlingFlags.supports(capabilities[k], handlingMask) 
+                        && hasRates.test(carriers[k])) {
+                    alternatives.add(carriers[k]);
+                }
+            }
+            return alternatives.isEmpty() ? List.of() : List.copyOf(alternatives);
+        }
+        
+        /**
+         * Precomputed alternatives when the reference is this band's selection, otherwise built on the spot
+         */
+        List<CarrierConfiguration> alternatives(double distanceKm, int handlingMask, CarrierConfiguration reference) {
+            int start = firstReaching(Double.isNaN(distanceKm) ? Double.POSITIVE_INFINITY : distanceKm);
+            int position = handlingMask * (carriers.length + 1) + start;
+            int best = bestByMask[position];
+            return best >= 0 && carriers[best] == reference ? alternativesByMask.get(position) 
+                    : alternativesFrom(start, handlingMask, reference);
+        }
+        
+        Selection select(double distanceKm, int handlingMask) {
+            int start = firstReaching(Double.isNaN(distanceKm) ? Double.POSITIVE_INFINITY : distanceKm);
+            int position = handlingMask * (carriers.length + 1) + start;
+            int best = bestByMask[position];
+            
+            // Every distance between the previous and this carrier's max distance starts the search at the same position
+            double low = start > 0 ? maxDistances[start - 1] : Double.NEGATIVE_INFINITY;
+            double high = start < maxDistances.length ? maxDistances[start] : Double.POSITIVE_INFINITY;
+            return new Selection(best >= 0 ? carriers[best] : null, alternativesByMask.get(position), low, high);
+        }
+        
+        int firstReaching(double distanceKm) {
+            int low = 0;
+            int high = maxDistances.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (maxDistances[mid] >= distanceKm) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+        
+        private static double maxDistanceOf(CarrierConfiguration carrier) {
+            return carrier.getMaxDistanceKm() != null ? carrier.getMaxDistanceKm() : Double.POSITIVE_INFINITY;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.Location;
+import com.ordersourcing.engine.util.GeoUtils;
+
+/**
+ * Customer-to-location distances (km) for one request, indexed by location ordinal.
+ * Computed once per request and shared by filters, scoring and promise-date calculation.
+ */
+public final class DistanceVector {
+    
+    private final LocationIndex index;
+    private final double[] distances;
+    private final double customerLatitude;
+    private final double customerLongitude;
+    
+    private DistanceVector(LocationIndex index, double customerLatitude, double customerLongitude) {
+        this.index = index;
+        this.customerLatitude = customerLatitude;
+        this.customerLongitude = customerLongitude;
+        this.distances = new double[index.size()];
+        
+        for (int ordinal = 0; ordinal < distances.length; ordinal++) {
+            distances[ordinal] = GeoUtils.calculateDistance(index.latitudeAt(ordinal), index.longitudeAt(ordinal),
+                    customerLatitude, customerLongitude);
+        }
+    }
+    
+    /**
+     * Computes distances from the customer to every indexed location.
+     * Missing coordinates produce NaN distances, which fail every distance comparison.
+     */
+    public static DistanceVector compute(LocationIndex index, Double customerLatitude, Double customerLongitude) {
+        if (customerLatitude == null || customerLongitude == null) {
+            return new DistanceVector(index, Double.NaN, Double.NaN);
+        }
+        return new DistanceVector(index, customerLatitude, customerLongitude);
+    }
+    
+    public double distanceAt(int ordinal) {
+        return distances[ordinal];
+    }
+    
+    /**
+     * Distance to a location, computed directly if it is not part of the index snapshot
+     */
+    public double distanceTo(Location location) {
+        int ordinal = index.ordinalOf(location.getId());
+        if (ordinal >= 0) {
+            return distances[ordinal];
+        }
+        return GeoUtils.calculateDistance(location.getLatitude(), location.getLongitude(), 
+                customerLatitude, customerLongitude);
+    }
+    
+    public LocationIndex getIndex() {
+        return index;
+    }
+    
+    public double getCustomerLatitude() {
+        return customerLatitude;
+    }
+    
+    public double getCustomerLongitude() {
+        return customerLongitude;
+    }
+}
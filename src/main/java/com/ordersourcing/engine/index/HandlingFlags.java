@@ -0,0 +1,60 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.model.CarrierConfiguration;
+
+/**
+ * Special-handling requirements and carrier capabilities encoded as a bitmask.
+ * A carrier can ship an item when (capabilityMask & requiredMask) == requiredMask.
+ */
+public final class HandlingFlags {
+    
+    public static final int NONE = 0;
+    public static final int HAZMAT = 1;
+    public static final int COLD_CHAIN = 1 << 1;
+    public static final int HIGH_VALUE = 1 << 2;
+    
+    // Number of distinct masks, for sizing lookup tables
+    public static final int MASK_COUNT = 1 << 3;
+    
+    private HandlingFlags() {
+    }
+    
+    /**
+     * Handling an order item requires from its carrier
+     */
+    public static int requiredMask(OrderItemDTO orderItem) {
+        int mask = NONE;
+        if (Boolean.TRUE.equals(orderItem.getIsHazmat())) {
+            mask |= HAZMAT;
+        }
+        if (Boolean.TRUE.equals(orderItem.getRequiresColdStorage())) {
+            mask |= COLD_CHAIN;
+        }
+        if (orderItem.requiresHighSecurity()) {
+            mask |= HIGH_VALUE;
+        }
+        return mask;
+    }
+    
+    /**
+     * Handling a carrier supports
+     */
+    public static int capabilityMask(CarrierConfiguration carrier) {
+        int mask = NONE;
+        if (Boolean.TRUE.equals(carrier.getSupportsHazmat())) {
+            mask |= HAZMAT;
+        }
+        if (Boolean.TRUE.equals(carrier.getSupportsColdChain())) {
+            mask |= COLD_CHAIN;
+        }
+        if (Boolean.TRUE.equals(carrier.getSupportsHighValue())) {
+            mask |= HIGH_VALUE;
+        }
+        return mask;
+    }
+    
+    public static boolean supports(int capabilityMask, int requiredMask) {
+        return (capabilityMask & requiredMask) == requiredMask;
+    }
+}
@@ -0,0 +1,86 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.Location;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of all locations with dense ordinals (0..size-1) assigned in ID order.
+ * Ordinals let per-request and per-configuration data live in primitive arrays instead of maps.
+ */
+public final class LocationIndex {
+    
+    private final List<Location> locations;
+    private final Map<Integer, Integer> ordinalById;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long version;
+    
+    private LocationIndex(List<Location> locations, long version) {
+        this.locations = Collections.unmodifiableList(locations);
+        this.ordinalById = new HashMap<>(locations.size() * 2);
+        this.latitudes = new double[locations.size()];
+        this.longitudes = new double[locations.size()];
+        this.version = version;
+        
+        for (int ordinal = 0; ordinal < locations.size(); ordinal++) {
+            Location location = locations.get(ordinal);
+            ordinalById.put(location.getId(), ordinal);
+            latitudes[ordinal] = location.getLatitude();
+            longitudes[ordinal] = location.getLongitude();
+        }
+    }
+    
+    /**
+     * Builds an index from locations already sorted by ID
+     */
+    public static LocationIndex build(List<Location> sortedLocations, long version) {
+        return new LocationIndex(List.copyOf(sortedLocations), version);
+    }
+    
+    public static LocationIndex empty() {
+        return new LocationIndex(Collections.emptyList(), 0);
+    }
+    
+    public int size() {
+        return locations.size();
+    }
+    
+    /**
+     * Ordinal of a location, or -1 if the location is not part of this snapshot
+     */
+    public int ordinalOf(Integer locationId) {
+        Integer ordinal = locationId != null ? ordinalById.get(locationId) : null;
+        return ordinal != null ? ordinal : -1;
+    }
+    
+    public Location locationAt(int ordinal) {
+        return locations.get(ordinal);
+    }
+    
+    public double latitudeAt(int ordinal) {
+        return latitudes[ordinal];
+    }
+    
+    public double longitudeAt(int ordinal) {
+        return longitudes[ordinal];
+    }
+    
+    public List<Location> getLocations() {
+        return locations;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * True if this snapshot holds exactly the given (ID-sorted) locations
+     */
+    public boolean matches(List<Location> sortedLocations) {
+        return locations.equals(sortedLocations);
+    }
+}
@@ -0,0 +1,72 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.RateCard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Rate cards of one (carrier, service level) flattened into parallel primitive arrays.
+ * A carrier has a handful of distance/weight bands, so a lookup is a short scan with no allocation.
+ */
+public final class RateTable {
+    
+    public static final RateTable EMPTY = new RateTable(List.of());
+    
+    private final double[] minDistance;
+    private final double[] maxDistance;
+    private final double[] minWeight;
+    private final double[] maxWeight;
+    private final double[] baseRate;
+    private final double[] ratePerKg;
+    
+    private RateTable(List<RateCard> cards) {
+        List<RateCard> sorted = new ArrayList<>(cards);
+        sorted.sort(Comparator.comparingDouble((RateCard card) -> valueOr(card.getMinDistanceKm(), 0.0))
+                .thenComparingDouble(card -> valueOr(card.getMinWeightKg(), 0.0)));
+        
+        int n = sorted.size();
+        minDistance = new double[n];
+        maxDistance = new double[n];
+        minWeight = new double[n];
+        maxWeight = new double[n];
+        baseRate = new double[n];
+        ratePerKg = new double[n];
+        for (int i = 0; i < n; i++) {
+            RateCard card = sorted.get(i);
+            minDistance[i] = valueOr(card.getMinDistanceKm(), 0.0);
+            maxDistance[i] = valueOr(card.getMaxDistanceKm(), Double.POSITIVE_INFINITY);
+            minWeight[i] = valueOr(card.getMinWeightKg(), 0.0);
+            maxWeight[i] = valueOr(card.getMaxWeightKg(), Double.POSITIVE_INFINITY);
+            baseRate[i] = valueOr(card.getBaseRate(), 0.0);
+            ratePerKg[i] = valueOr(card.getRatePerKg(), 0.0);
+        }
+    }
+    
+    public static RateTable build(List<RateCard> cards) {
+        return cards.isEmpty() ? EMPTY : new RateTable(cards);
+    }
+    
+    /**
+     * Shipping cost for a shipment, or NaN if no rate card covers the distance and weight.
+     * Bands include their lower bound and exclude their upper one, so adjacent bands never overlap.
+     */
+    public double cost(double distanceKm, double weightKg) {
+        for (int i = 0; i < baseRate.length; i++) {
+            if (distanceKm >= minDistance[i] && distanceKm < maxDistance[i] 
+                    && weightKg >= minWeight[i] && weightKg < maxWeight[i]) {
+                return baseRate[i] + ratePerKg[i] * weightKg;
+            }
+        }
+        return Double.NaN;
+    }
+    
+    public int size() {
+        return baseRate.length;
+    }
+    
+    private static double valueOr(Double value, double fallback) {
+        return value != null ? value : fallback;
+    }
+}
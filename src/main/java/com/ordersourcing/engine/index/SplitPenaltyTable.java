@@ -0,0 +1,87 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.ScoringConfiguration;
+
+/**
+ * Split penalties for one scoring configuration, precomputed by
+ * (delivery type, high-value flag, location count) so evaluating a split is an array lookup.
+ */
+public final class SplitPenaltyTable {
+    
+    public static final int MAX_PRECOMPUTED_LOCATIONS = 32;
+    
+    // Delivery type indexes - only SAME_DAY and NEXT_DAY carry an urgency penalty
+    public static final int SAME_DAY = 0;
+    public static final int NEXT_DAY = 1;
+    public static final int OTHER_DELIVERY = 2;
+    private static final int DELIVERY_TYPE_COUNT = 3;
+    
+    private final double[] penalties; // [deliveryType][highValue][locationCount], flattened
+    
+    // Kept to compute penalties beyond the precomputed range
+    private final double base;
+    private final double exponent;
+    private final double multiplier;
+    private final double highValuePenalty;
+    private final double[] urgencyPenalties;
+    
+    private SplitPenaltyTable(ScoringConfiguration config) {
+        this.base = config.getSplitPenaltyBase();
+        this.exponent = config.getSplitPenaltyExponent();
+        this.multiplier = config.getSplitPenaltyMultiplier();
+        this.highValuePenalty = config.getHighValuePenalty();
+        this.urgencyPenalties = new double[] {config.getSameDayPenalty(), config.getNextDayPenalty(), 0.0};
+        
+        this.penalties = new double[DELIVERY_TYPE_COUNT * 2 * (MAX_PRECOMPUTED_LOCATIONS + 1)];
+        for (int deliveryType = 0; deliveryType < DELIVERY_TYPE_COUNT; deliveryType++) {
+            for (int highValue = 0; highValue < 2; highValue++) {
+                for (int count = 2; count <= MAX_PRECOMPUTED_LOCATIONS; count++) {
+                    penalties[slot(deliveryType, highValue == 1, count)] = 
+                            compute(count, deliveryType, highValue == 1);
+                }
+            }
+        }
+    }
+    
+    public static SplitPenaltyTable build(ScoringConfiguration config) {
+        return new SplitPenaltyTable(config);
+    }
+    
+    /**
+     * Maps a delivery type to its table index; resolve once per item, not per evaluation
+     */
+    public static int deliveryTypeIndex(String deliveryType) {
+        if ("SAME_DAY".equals(deliveryType)) {
+            return SAME_DAY;
+        }
+        if ("NEXT_DAY".equals(deliveryType)) {
+            return NEXT_DAY;
+        }
+        return OTHER_DELIVERY;
+    }
+    
+    /**
+     * Split penalty for shipping from the given number of locations (0 for a single location)
+     */
+    public double lookup(int locationCount, int deliveryTypeIndex, boolean highValue) {
+        if (locationCount <= 1) {
+            return 0.0;
+        }
+        if (locationCount > MAX_PRECOMPUTED_LOCATIONS) {
+            return compute(locationCount, deliveryTypeIndex, highValue);
+        }
+        return penalties[slot(deliveryTypeIndex, highValue, locationCount)];
+    }
+    
+    private double compute(int locationCount, int deliveryTypeIndex, boolean highValue) {
+        double penalty = base + Math.pow(locationCount - 1, exponent) * multiplier;
+        if (highValue) {
+            penalty += highValuePenalty;
+        }
+        return penalty + urgencyPenalties[deliveryTypeIndex];
+    }
+    
+    private static int slot(int deliveryTypeIndex, boolean highValue, int locationCount) {
+        return ((deliveryTypeIndex * 2) + (highValue ? 1 : 0)) * (MAX_PRECOMPUTED_LOCATIONS + 1) + locationCount;
+    }
+}
@@ -0,0 +1,160 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.Inventory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-stock positions per SKU held in primitive arrays sorted by location ID. A SKU's stock is
+ * replaced as a whole, so readers see either the old or the new positions, never a mix.
+ * SKUs without an entry have no stock anywhere.
+ */
+public final class StockIndex {
+
+    /**
+     * Stock of one SKU: parallel arrays of location ID, quantity and processing days
+     */
+    public static final class Stock {
+
+        private final int[] locationIds;
+        private final int[] quantities;
+        private final int[] processingDays;
+
+        private Stock(int[] locationIds, int[] quantities, int[] processingDays) {
+            this.locationIds = locationIds;
+            this.quantities = quantities;
+            this.processingDays = processingDays;
+        }
+
+        /**
+         * Stock from inventory rows of one SKU; rows for the same location are merged, empty rows dropped
+         */
+        static Stock of(List<Inventory> inventories) {
+            Map<Integer, int[]> byLocation = new HashMap<>();
+            for (Inventory inventory : inventories) {
+                if (inventory.getLocationId() == null || inventory.getQuantity() <= 0) {
+                    continue;
+                }
+                int[] merged = byLocation.computeIfAbsent(inventory.getLocationId(), id -> new int[2]);
+                merged[0] += inventory.getQuantity();
+                merged[1] = Math.max(merged[1], inventory.getProcessingTime());
+            }
+            if (byLocation.isEmpty()) {
+                return null;
+            }
+
+            int[] locationIds = byLocation.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] quantities = new int[locationIds.length];
+            int[] processingDays = new int[locationIds.length];
+            for (int i = 0; i < locationIds.length; i++) {
+                int[] merged = byLocation.get(locationIds[i]);
+                quantities[i] = merged[0];
+                processingDays[i] = merged[1];
+            }
+            return new Stock(locationIds, quantities, processingDays);
+        }
+
+        /**
+         * Position of the location in this stock, or -1 when it holds none
+         */
+        public int positionOf(int locationId) {
+            int position = Arrays.binarySearch(locationIds, locationId);
+            return position >= 0 ? position : -1;
+        }
+
+        public int size() {
+            return locationIds.length;
+        }
+
+        public int locationIdAt(int position) {
+            return locationIds[position];
+        }
+
+        public int quantityAt(int position) {
+            return quantities[position];
+        }
+
+        public int processingDaysAt(int position) {
+            return processingDays[position];
+        }
+    }
+
+    private final Map<String, Stock> stockBySku;
+    private final long builtAtMillis;
+
+    // When each SKU replaced since the build was re-read; the rest are as of the build
+    private final Map<String, Long> replacedAtMillis = new ConcurrentHashMap<>();
+
+    private StockIndex(Map<String, Stock> stockBySku, long builtAtMillis) {
+        this.stockBySku = stockBySku;
+        this.builtAtMillis = builtAtMillis;
+    }
+
+    /**
+     * Builds an index from every in-stock inventory row
+     */
+    public static StockIndex build(List<Inventory> inventories) {
+        Map<String, Stock> stockBySku = new ConcurrentHashMap<>();
+        inventories.stream()
+                .filter(inventory -> inventory.getSku() != null)
+                .collect(Collectors.groupingBy(Inventory::getSku))
+                .forEach((sku, rows) -> {
+                    Stock stock = Stock.of(rows);
+                    if (stock != null) {
+                        stockBySku.put(sku, stock);
+                    }
+                });
+        return new StockIndex(stockBySku, System.currentTimeMillis());
+    }
+
+    /**
+     * Stock of the SKU, or null when it has none
+     */
+    public Stock get(String sku) {
+        return stockBySku.get(sku);
+    }
+
+    /**
+     * Replaces the SKU's stock with the given rows (all rows for that SKU)
+     */
+    public void replace(String sku, List<Inventory> inventories) {
+        replace(sku, inventories, System.currentTimeMillis());
+    }
+
+    /**
+     * Replaces the SKU's stock with rows read at the given epoch millis
+     */
+    public void replace(String sku, List<Inventory> inventories, long readAtMillis) {
+        replacedAtMillis.put(sku, readAtMillis);
+        Stock stock = Stock.of(inventories);
+        if (stock != null) {
+            stockBySku.put(sku, stock);
+        } else {
+            stockBySku.remove(sku);
+        }
+    }
+
+    public int size() {
+        return stockBySku.size();
+    }
+
+    public long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    /**
+     * Epoch millis the SKU's stock was last read: its replacement, or the build
+     */
+    public long readAtMillis(String sku) {
+        return replacedAtMillis.getOrDefault(sku, builtAtMillis);
+    }
+
+    public int replacedCount() {
+        return replacedAtMillis.size();
+    }
+}
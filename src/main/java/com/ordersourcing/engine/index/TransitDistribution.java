@@ -0,0 +1,70 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.CarrierConfiguration;
+
+/**
+ * Precomputed shape of a carrier's late deliveries as a compact CDF over business days late.
+ * Late mass decays geometrically from one day late up to the carrier's maxTransitDays, where every
+ * shipment is assumed delivered. Combined with an on-time probability it gives delivery quantiles
+ * in a few array reads.
+ */
+public final class TransitDistribution {
+    
+    // Each further day late is half as likely as the previous one
+    private static final double LATE_DECAY = 0.5;
+    
+    private final double[] lateCdf; // lateCdf[k] = share of late shipments delivered within k days late, lateCdf[span] = 1
+    
+    private TransitDistribution(double[] lateCdf) {
+        this.lateCdf = lateCdf;
+    }
+    
+    public static TransitDistribution build(CarrierConfiguration carrier) {
+        int baseDays = carrier.getBaseTransitDays() != null ? carrier.getBaseTransitDays() : 0;
+        int maxDays = carrier.getMaxTransitDays() != null ? carrier.getMaxTransitDays() : baseDays;
+        int span = Math.max(1, maxDays - baseDays);
+        
+        double[] weights = new double[span + 1];
+        double total = 0;
+        double weight = 1.0;
+        for (int k = 1; k <= span; k++) {
+            weights[k] = weight;
+            total += weight;
+            weight *= LATE_DECAY;
+        }
+        
+        double[] lateCdf = new double[span + 1];
+        double cumulative = 0;
+        for (int k = 1; k <= span; k++) {
+            cumulative += weights[k] / total;
+            lateCdf[k] = cumulative;
+        }
+        lateCdf[span] = 1.0;
+        return new TransitDistribution(lateCdf);
+    }
+    
+    /**
+     * Business days beyond the planned delivery date needed to reach the quantile,
+     * given the probability of delivering on the planned date
+     */
+    public int delayDaysAtQuantile(double quantile, double onTimeProbability) {
+        if (onTimeProbability >= quantile) {
+            return 0;
+        }
+        
+        double lateProbability = 1.0 - onTimeProbability;
+        for (int k = 1; k < lateCdf.length; k++) {
+            if (onTimeProbability + lateProbability * lateCdf[k] >= quantile) {
+                return k;
+            }
+        }
+        return lateCdf.length - 1;
+    }
+    
+    /**
+     * Maximum business days late this carrier is expected to be
+     */
+    public int getMaxDelayDays() {
+        return lateCdf.length - 1;
+    }
+}
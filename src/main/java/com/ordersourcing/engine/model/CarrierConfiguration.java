@@ -67,6 +67,10 @@ public class CarrierConfiguration {
     // Seasonal adjustments
     private Integer peakSeasonDelayDays = 0;
     
+    // Cost - applied on top of rate card prices for this carrier and service level
+    @Column(name = "fuel_surcharge_percent")
+    private Double fuelSurchargePercent = 0.0;
+    
     public CarrierConfiguration(String carrierCode, String serviceLevel, String deliveryType, 
                               Integer baseTransitDays, LocalTime pickupCutoffTime) {
         this.carrierCode = carrierCode;
@@ -0,0 +1,38 @@
+package com.ordersourcing.engine.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Entity
+@Table(name = "rate_card")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateCard {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    
+    @Column(nullable = false)
+    private String carrierCode; // Matches CarrierConfiguration.carrierCode
+    
+    @Column(nullable = false)
+    private String serviceLevel; // Matches CarrierConfiguration.serviceLevel
+    
+    // Distance band (km), min inclusive, max exclusive; null max = unlimited
+    private Double minDistanceKm = 0.0;
+    private Double maxDistanceKm;
+    
+    // Shipment weight band (kg), min inclusive, max exclusive; null max = unlimited
+    private Double minWeightKg = 0.0;
+    private Double maxWeightKg;
+    
+    // Cost = baseRate + ratePerKg * shipment weight
+    @Column(nullable = false)
+    private Double baseRate;
+    
+    private Double ratePerKg = 0.0;
+}
@@ -1,9 +1,12 @@
 package com.ordersourcing.engine.model;
 
+import com.ordersourcing.engine.index.SplitPenaltyTable;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import lombok.ToString;
 
 @Entity
 @Table(name = "scoring_configuration")
@@ -88,6 +91,12 @@ public class ScoringConfiguration {
     @Column(name = "execution_priority")
     private Integer executionPriority = 1; // Lower number = higher priority
     
+    // Split penalties precomputed from the weights above when the configuration loads
+    @Transient
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient SplitPenaltyTable splitPenaltyTable;
+    
     public ScoringConfiguration(String id, String name, String description) {
         this.id = id;
         this.name = name;
@@ -99,4 +108,19 @@ public class ScoringConfiguration {
         this(id, name, description);
         this.category = category;
     }
+    
+    @PostLoad
+    public void buildSplitPenaltyTable() {
+        this.splitPenaltyTable = SplitPenaltyTable.build(this);
+    }
+    
+    /**
+     * Gets the precomputed split penalty table, building it for configurations not loaded by JPA
+     */
+    public SplitPenaltyTable getSplitPenaltyTable() {
+        if (splitPenaltyTable == null) {
+            buildSplitPenaltyTable();
+        }
+        return splitPenaltyTable;
+    }
 }
\ No newline at end of file
@@ -10,6 +10,8 @@ import java.util.List;
 public interface InventoryRepository extends JpaRepository<Inventory, Integer> {
     List<Inventory> findBySkuAndQuantityGreaterThan(String sku, int quantity);
     
+    List<Inventory> findByQuantityGreaterThan(int quantity);
+    
     @Query("SELECT i FROM Inventory i WHERE i.sku IN :skus AND i.quantity > 0 ORDER BY i.quantity DESC")
     List<Inventory> findBySkusWithStock(@Param("skus") List<String> skus);
 }
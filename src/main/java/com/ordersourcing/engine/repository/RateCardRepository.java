@@ -0,0 +1,9 @@
+package com.ordersourcing.engine.repository;
+
+import com.ordersourcing.engine.model.RateCard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RateCardRepository extends JpaRepository<RateCard, Integer> {
+}
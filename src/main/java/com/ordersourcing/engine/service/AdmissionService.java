@@ -0,0 +1,42 @@
+package com.ordersourcing.engine.service;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.util.Deadline;
+import com.ordersourcing.engine.util.PriorityScheduler;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface AdmissionService {
+    
+    /**
+     * Queues the order in its priority class; completes with a permit to close after sourcing,
+     * or exceptionally with RejectedExecutionException when the order is shed
+     */
+    CompletableFuture<PriorityScheduler.Permit> admit(OrderDTO order);
+    
+    /**
+     * Blocking variant of admit that waits no longer than the request's deadline; throws
+     * RejectedExecutionException when the order is shed or the deadline passes while it is queued
+     */
+    PriorityScheduler.Permit admitBlocking(OrderDTO order, Deadline deadline);
+    
+    /**
+     * Admits a wave in the class of its most urgent order, as one slot
+     */
+    PriorityScheduler.Permit admitWaveBlocking(List<OrderDTO> orders);
+    
+    /**
+     * Admits one bulk quote in the bulk class, or in the order's own class if that is less urgent;
+     * throws RejectedExecutionException when the order is shed
+     */
+    PriorityScheduler.Permit admitBulkBlocking(OrderDTO order);
+    
+    /**
+     * Priority class for an order: orderPriority 1-5 maps to classes 0-4, and bulk sales channels
+     * are never placed above the configured bulk class
+     */
+    int priorityClass(OrderDTO order);
+    
+    PriorityScheduler.Stats getStats();
+}
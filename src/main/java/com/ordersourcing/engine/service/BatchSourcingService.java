@@ -2,6 +2,14 @@ package com.ordersourcing.engine.service;
 
 import com.ordersourcing.engine.dto.OrderDTO;
 import com.ordersourcing.engine.dto.SourcingResponse;
+import com.ordersourcing.engine.util.Deadline;
+import reactor.core.publisher.Mono;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface BatchSourcingService {
     
@@ -9,4 +17,56 @@ public interface BatchSourcingService {
      * Main sourcing method that returns essential fulfillment information
      */
     SourcingResponse sourceOrder(OrderDTO order);
-}
\ No newline at end of file
+    
+    /**
+     * Deadline for a request starting now: the caller's budget if given, otherwise the configured default
+     */
+    Deadline deadlineFor(Long requestedMs);
+    
+    /**
+     * Sourcing bounded by a deadline; lines answered best-effort are listed in degradedLines
+     */
+    SourcingResponse sourceOrder(OrderDTO order, Deadline deadline);
+    
+    /**
+     * Variant of sourceOrder planned from in-memory stock, filters, scoring configurations and indexes
+     * without reading the database; lines whose data is not loaded are reported as NOT_IN_MEMORY
+     */
+    Mono<SourcingResponse> sourceOrderReactive(OrderDTO order);
+    
+    /**
+     * In-memory sourcing bounded by a deadline
+     */
+    Mono<SourcingResponse> sourceOrderReactive(OrderDTO order, Deadline deadline);
+    
+    /**
+     * Sourcing that passes each line's plan to onPlan, possibly from a worker thread, as soon as it is
+     * ready; completes with the summary after the last line
+     */
+    CompletableFuture<SourcingResponse.StreamSummary> sourceOrderProgressive(
+            OrderDTO order, Deadline deadline, Consumer<SourcingResponse.FulfillmentPlan> onPlan);
+    
+    /**
+     * Incremental sourcing keyed by tempOrderId: only lines whose content changed since the previous call
+     * for the same cart are planned again
+     */
+    SourcingResponse sourceOrderIncremental(OrderDTO order, Deadline deadline);
+    
+    /**
+     * Wave sourcing for many orders competing for the same inventory.
+     * Responses are returned in the same order as the input orders.
+     */
+    List<SourcingResponse> sourceWave(List<OrderDTO> orders);
+    
+    /**
+     * Bulk sourcing of independent quotes read lazily from the iterator. Each response is passed to the
+     * sink on the calling thread as soon as its order completes; orders without items or with a missing
+     * location filter ID get an error response. Returns the number of orders.
+     */
+    int sourceBulk(Iterator<OrderDTO> orders, Consumer<SourcingResponse> sink);
+    
+    /**
+     * State of the batch vs sequential cost model: mode, sample counts and fitted coefficients
+     */
+    Map<String, Object> getStrategyModelStats();
+}
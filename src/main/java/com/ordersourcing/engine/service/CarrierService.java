@@ -1,6 +1,7 @@
 package com.ordersourcing.engine.service;
 
 import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.index.CarrierIndex;
 import com.ordersourcing.engine.model.CarrierConfiguration;
 import com.ordersourcing.engine.model.Location;
 
@@ -16,4 +17,25 @@ public interface CarrierService {
     Optional<CarrierConfiguration> getBestCarrierConfiguration(String deliveryType, 
                                                              Double distance, 
                                                              OrderItemDTO orderItem);
+    
+    /**
+     * Gets the farthest distance (km) any carrier can ship a delivery type with the given handling mask.
+     * Returns a negative value when no carrier serves the combination at all.
+     */
+    double getMaxServiceDistanceKm(String deliveryType, int handlingMask);
+    
+    /**
+     * Gets the current carrier index snapshot, building it on first use
+     */
+    CarrierIndex getCarrierIndex();
+    
+    /**
+     * Whether a snapshot has been built, so getCarrierIndex() answers without reading the database
+     */
+    boolean isCarrierIndexLoaded();
+    
+    /**
+     * Reloads carrier configurations and rate cards and swaps in a new index if anything changed
+     */
+    void refreshCarrierIndex();
 }
\ No newline at end of file
@@ -3,19 +3,67 @@ package com.ordersourcing.engine.service;
 import com.ordersourcing.engine.dto.OrderItemDTO;
 import com.ordersourcing.engine.model.Inventory;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 public interface InventoryApiService {
     
     /**
-     * Batch fetch inventory for multiple SKUs from database
+     * Batch fetch inventory for multiple SKUs from database. Past the database limit, SKUs read recently,
+     * or pinned and read at any time, are served from their last read and the rest are reported unknown.
      */
-    CompletableFuture<Map<String, List<Inventory>>> batchFetchInventory(List<OrderItemDTO> orderItems);
+    CompletableFuture<InventoryLookup> batchFetchInventory(List<OrderItemDTO> orderItems);
     
     /**
      * Fetch inventory for a single SKU from database with caching
      */
     List<Inventory> fetchInventoryBySku(String sku);
+    
+    /**
+     * Signals that stock for the given SKUs changed, so caches holding it are invalidated
+     */
+    void inventoryChanged(Set<String> skus);
+    
+    /**
+     * Keeps the last read stock of these SKUs from being evicted until unpinned, and serves it past the
+     * database limit however old it is; every successful read still replaces it
+     */
+    void pinSkus(Set<String> skus);
+    
+    void unpinSkus(Set<String> skus);
+    
+    /**
+     * Whether the SKU is pinned and has a last read stock to serve past the database limit
+     */
+    boolean hasPinnedStock(String sku);
+    
+    /**
+     * Stock per SKU from one batch read: in-stock rows (empty when out of stock) for SKUs read from the
+     * database or served from a recent last-known read, and no entry for SKUs whose stock is unknown.
+     * lastKnownSkus are the SKUs served from the fallback because the database was at its limit.
+     */
+    record InventoryLookup(Map<String, List<Inventory>> inventory, Set<String> lastKnownSkus) {
+        
+        public static InventoryLookup of(Map<String, List<Inventory>> inventory) {
+            return new InventoryLookup(inventory, Collections.emptySet());
+        }
+        
+        /**
+         * In-stock rows of the SKU, or null when its stock is unknown
+         */
+        public List<Inventory> get(String sku) {
+            return inventory.get(sku);
+        }
+        
+        public boolean isKnown(String sku) {
+            return inventory.containsKey(sku);
+        }
+        
+        public boolean isLastKnown(String sku) {
+            return lastKnownSkus.contains(sku);
+        }
+    }
 }
\ No newline at end of file
@@ -1,10 +1,12 @@
 package com.ordersourcing.engine.service;
 
 import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.index.DistanceVector;
 import com.ordersourcing.engine.model.Location;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
@@ -15,9 +17,56 @@ public interface LocationFilterExecutionService {
      */
     List<Location> executeLocationFilter(String filterId, OrderDTO orderContext);
     
+    /**
+     * Execute location filter using the request's precomputed distance vector. Throws
+     * RejectedExecutionException, and caches nothing, when the database limit keeps a filter never
+     * loaded before from being read.
+     */
+    List<Location> executeLocationFilter(String filterId, OrderDTO orderContext, DistanceVector distances);
+    
+    /**
+     * Execute a filter from its last loaded definition against the location index snapshot, without
+     * touching the database; empty when the filter has not been loaded yet
+     */
+    Optional<List<Location>> executeKnownFilter(String filterId, OrderDTO orderContext, DistanceVector distances);
+    
+    /**
+     * Read and compile a filter's definition so later evaluations, from any order, need no database read;
+     * past the database limit the definition already loaded is kept. Returns whether one is loaded.
+     */
+    boolean loadDefinition(String filterId);
+    
     /**
      * Batch execute multiple filters in parallel
      */
     CompletableFuture<Map<String, List<Location>>> batchExecuteFilters(
             Set<String> filterIds, OrderDTO orderContext);
+    
+    /**
+     * Batch execute multiple filters in parallel, sharing the request's distance vector
+     */
+    CompletableFuture<Map<String, List<Location>>> batchExecuteFilters(
+            Set<String> filterIds, OrderDTO orderContext, DistanceVector distances);
+    
+    /**
+     * Start every filter in parallel and return one future per filter ID; a filter that cannot be loaded
+     * or evaluated (for example, past the database limit) completes exceptionally, never with no locations
+     */
+    Map<String, CompletableFuture<List<Location>>> executeFiltersAsync(
+            Set<String> filterIds, OrderDTO orderContext, DistanceVector distances);
+    
+    /**
+     * Key under which this filter's result for the order can be shared with other orders: per filter when
+     * the script ignores the order, per geo-cell of the given size when it only reads the order's
+     * coordinates or distance, and null when it must run per order
+     */
+    String sharedResultKey(String filterId, OrderDTO orderContext, double cellDegrees);
+    
+    /**
+     * Batch execute each filter once against many orders (wave sourcing).
+     * Results are indexed by filter ID, then by the order's position in the wave; a filter that cannot be
+     * loaded or evaluated maps to null.
+     */
+    CompletableFuture<Map<String, List<List<Location>>>> batchExecuteFiltersForOrders(
+            Set<String> filterIds, List<OrderDTO> orders, List<DistanceVector> distances);
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.ordersourcing.engine.service;
+
+import com.ordersourcing.engine.index.DistanceVector;
+import com.ordersourcing.engine.index.LocationIndex;
+
+public interface LocationIndexService {
+    
+    /**
+     * Gets the current location index snapshot, building it on first use
+     */
+    LocationIndex getIndex();
+    
+    /**
+     * Whether a snapshot has been built, so getIndex() answers without reading the database
+     */
+    boolean isIndexLoaded();
+    
+    /**
+     * Reloads locations and swaps in a new index if anything changed
+     */
+    void refresh();
+    
+    /**
+     * Computes the customer-to-location distance vector for one request
+     */
+    DistanceVector computeDistances(Double customerLatitude, Double customerLongitude);
+}
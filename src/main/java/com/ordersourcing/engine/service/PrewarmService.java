@@ -0,0 +1,30 @@
+package com.ordersourcing.engine.service;
+
+import com.ordersourcing.engine.dto.PrewarmPlan;
+import com.ordersourcing.engine.dto.PrewarmStatus;
+
+import java.util.List;
+
+public interface PrewarmService {
+    
+    /**
+     * Schedules warming of inventory, filter, carrier and promise caches ahead of the plan's event;
+     * throws IllegalArgumentException when the event window has already ended
+     */
+    PrewarmStatus schedule(PrewarmPlan plan);
+    
+    /**
+     * Progress and coverage of a job, or null if unknown
+     */
+    PrewarmStatus getStatus(String jobId);
+    
+    /**
+     * Recent jobs, oldest first
+     */
+    List<PrewarmStatus> getStatuses();
+    
+    /**
+     * Stops a job and releases its pins; null if unknown
+     */
+    PrewarmStatus cancel(String jobId);
+}
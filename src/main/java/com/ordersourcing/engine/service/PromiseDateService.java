@@ -1,6 +1,7 @@
 package com.ordersourcing.engine.service;
 
 import com.ordersourcing.engine.dto.*;
+import com.ordersourcing.engine.index.DistanceVector;
 import com.ordersourcing.engine.model.*;
 
 import java.time.LocalDateTime;
@@ -17,9 +18,49 @@ public interface PromiseDateService {
                                                     Inventory inventory, OrderDTO orderContext);
     
     /**
-     * Batch promise date calculation for multiple items
+     * Enhanced promise date calculation using the request's precomputed distance vector
+     */
+    PromiseDateBreakdown calculateEnhancedPromiseDate(OrderItemDTO orderItem, Location location, 
+                                                    Inventory inventory, OrderDTO orderContext, 
+                                                    DistanceVector distances);
+    
+    /**
+     * Promise dates for allocated (line, location) pairs in one parallel pass.
+     * The result is aligned with the requests; an entry is null when no carrier can serve that pair.
+     */
+    List<PromiseDateBreakdown> batchCalculateAllocationPromiseDates(List<PromiseDateRequest> requests, 
+                                                                   OrderDTO orderContext, 
+                                                                   DistanceVector distances);
+    
+    /**
+     * Quick estimate for allocated pairs once the request deadline has passed: the cached priority carrier
+     * without rate-card optimisation. Results are flagged as estimated.
+     */
+    List<PromiseDateBreakdown> estimateAllocationPromiseDates(List<PromiseDateRequest> requests, 
+                                                             OrderDTO orderContext, 
+                                                             DistanceVector distances);
+    
+    /**
+     * Promise for shipping a quantity of an item from a location with the given processing days,
+     * computed exactly as for a fulfillment plan; null when no carrier can serve the pair.
+     * For callers that hold stock levels rather than inventory rows.
+     */
+    PromiseDateBreakdown calculatePromiseDate(OrderItemDTO orderItem, Location location, int processingDays, 
+                                            int quantity, OrderDTO orderContext, double distanceKm);
+    
+    /**
+     * Batch promise date calculation for multiple items.
+     * Gives one indicative date per SKU from the first feasible location; fulfillment plans
+     * use batchCalculateAllocationPromiseDates for the locations actually allocated.
      */
     CompletableFuture<Map<String, PromiseDateBreakdown>> batchCalculatePromiseDates(
             List<OrderItemDTO> orderItems, Map<String, List<Location>> filterResults, 
             Map<String, List<Inventory>> inventoryResults, OrderDTO orderContext);
+    
+    /**
+     * Batch promise date calculation for multiple items, sharing the request's distance vector
+     */
+    CompletableFuture<Map<String, PromiseDateBreakdown>> batchCalculatePromiseDates(
+            List<OrderItemDTO> orderItems, Map<String, List<Location>> filterResults, 
+            Map<String, List<Inventory>> inventoryResults, OrderDTO orderContext, DistanceVector distances);
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.ordersourcing.engine.service;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.dto.QuickPromiseResponse;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public interface QuickPromiseService {
+    
+    /**
+     * Read-only "get it by" date for each line of the request, answered from in-memory stock,
+     * per-cell eligible locations and the carrier index without touching the database
+     */
+    QuickPromiseResponse quote(OrderDTO request);
+    
+    /**
+     * In-stock rows of these SKUs from the in-memory stock index; empty until stock first loads
+     */
+    Optional<StockSnapshot> stockSnapshot(Collection<String> skus);
+    
+    /**
+     * Keeps the eligible locations of these filters in these geo-cells from being evicted until unpinned
+     */
+    void pinCells(Set<String> filterIds, Set<Long> geoCells);
+    
+    void unpinCells(Set<String> filterIds, Set<Long> geoCells);
+    
+    /**
+     * Reloads the in-stock index from the database
+     */
+    void refreshStock();
+    
+    /**
+     * Stock index size and age, eligible-cell cache size and request counts
+     */
+    Map<String, Object> getStats();
+    
+    /**
+     * Stock of some SKUs read from the in-memory index, with the epoch millis of the oldest read behind it
+     */
+    record StockSnapshot(InventoryApiService.InventoryLookup lookup, long asOfMillis) {
+    }
+}
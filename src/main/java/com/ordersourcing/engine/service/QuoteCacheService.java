@@ -0,0 +1,35 @@
+package com.ordersourcing.engine.service;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.dto.SourcingResponse;
+
+import java.util.Map;
+
+public interface QuoteCacheService {
+    
+    /**
+     * Looks up a recent quote for the order's canonical content; on a miss the lookup is passed
+     * back to store once the quote is computed
+     */
+    QuoteLookup lookup(OrderDTO order);
+    
+    /**
+     * Caches a computed quote, unless it was answered best-effort or data changed since the lookup
+     */
+    void store(QuoteLookup lookup, OrderDTO order, SourcingResponse response);
+    
+    /**
+     * Size, hit and invalidation counts of the quote cache
+     */
+    Map<String, Object> getStats();
+    
+    /**
+     * Canonical key and invalidation generation at lookup time, with the cached quote on a hit (else null)
+     */
+    record QuoteLookup(String key, long generation, SourcingResponse cached) {
+        
+        public boolean isHit() {
+            return cached != null;
+        }
+    }
+}
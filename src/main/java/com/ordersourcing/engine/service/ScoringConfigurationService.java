@@ -7,6 +7,7 @@ import com.ordersourcing.engine.model.Location;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface ScoringConfigurationService {
     
@@ -15,6 +16,11 @@ public interface ScoringConfigurationService {
      */
     ScoringConfiguration getScoringConfigurationForItem(OrderItemDTO orderItem);
     
+    /**
+     * The item's scoring configuration if it is already cached; empty instead of reading the database
+     */
+    Optional<ScoringConfiguration> findCachedScoringConfigurationForItem(OrderItemDTO orderItem);
+    
     /**
      * Calculates location score using the specified scoring configuration
      */
@@ -31,4 +37,9 @@ public interface ScoringConfigurationService {
      * Gets scoring weights as a Map for script context
      */
     Map<String, Object> getScoringWeightsAsMap(ScoringConfiguration config);
+    
+    /**
+     * Evicts cached configurations and precomputed scores for the given configuration IDs
+     */
+    void evictScoringConfigurations(Set<String> configurationIds);
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.service.AdmissionService;
+import com.ordersourcing.engine.util.Deadline;
+import com.ordersourcing.engine.util.PriorityScheduler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class AdmissionServiceImpl implements AdmissionService {
+    
+    @Value("${sourcing.admission.max-concurrent:64}")
+    private int maxConcurrent;
+    
+    // One entry per priority class, orderPriority 1 (checkout) first
+    @Value("${sourcing.admission.weights:16,8,4,2,1}")
+    private String weights;
+    
+    @Value("${sourcing.admission.class-limits:64,48,32,16,8}")
+    private String classLimits;
+    
+    @Value("${sourcing.admission.max-queued:500,200,100,50,20}")
+    private String maxQueued;
+    
+    @Value("${sourcing.admission.queue-budget-ms:2000,1000,500,200,100}")
+    private String queueBudgetMs;
+    
+    @Value("${sourcing.admission.bulk-channels:B2B}")
+    private String bulkChannelList;
+    
+    @Value("${sourcing.admission.bulk-class:3}")
+    private int bulkClass;
+    
+    private static final int DEFAULT_ORDER_PRIORITY = 1;
+    
+    private PriorityScheduler scheduler;
+    private Set<String> bulkChannels;
+    
+    @PostConstruct
+    public void initialize() {
+        scheduler = new PriorityScheduler(maxConcurrent, 
+                Arrays.stream(split(weights)).mapToDouble(Double::parseDouble).toArray(),
+                Arrays.stream(split(classLimits)).mapToInt(Integer::parseInt).toArray(),
+                Arrays.stream(split(maxQueued)).mapToInt(Integer::parseInt).toArray(),
+                Arrays.stream(split(queueBudgetMs)).mapToLong(Long::parseLong).toArray());
+        bulkChannels = Arrays.stream(split(bulkChannelList))
+                .map(String::toUpperCase)
+                .collect(Collectors.toSet());
+        log.info("Admission scheduler: {} concurrent, weights {}, class limits {}, queue budgets {}ms", 
+                maxConcurrent, weights, classLimits, queueBudgetMs);
+    }
+    
+    @Override
+    public CompletableFuture<PriorityScheduler.Permit> admit(OrderDTO order) {
+        return scheduler.acquire(priorityClass(order));
+    }
+    
+    @Override
+    public PriorityScheduler.Permit admitBlocking(OrderDTO order, Deadline deadline) {
+        CompletableFuture<PriorityScheduler.Permit> admission = admit(order);
+        if (!deadline.isBounded()) {
+            return join(admission);
+        }
+        try {
+            return admission.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // A slot granted after cancelling is passed on by the scheduler
+            if (admission.cancel(false)) {
+                throw new RejectedExecutionException("Request deadline passed while queued in priority class "
+                        + priorityClass(order));
+            }
+            return join(admission);
+        }
+    }
+    
+    @Override
+    public PriorityScheduler.Permit admitWaveBlocking(List<OrderDTO> orders) {
+        int waveClass = orders.stream()
+                .mapToInt(this::priorityClass)
+                .min()
+                .orElse(scheduler.getClassCount() - 1);
+        return join(scheduler.acquire(waveClass));
+    }
+    
+    @Override
+    public PriorityScheduler.Permit admitBulkBlocking(OrderDTO order) {
+        return join(scheduler.acquire(Math.max(priorityClass(order), 
+                Math.min(bulkClass, scheduler.getClassCount() - 1))));
+    }
+    
+    @Override
+    public int priorityClass(OrderDTO order) {
+        int priority = order.getOrderPriority() != null ? order.getOrderPriority() : DEFAULT_ORDER_PRIORITY;
+        int priorityClass = Math.max(0, Math.min(priority - 1, scheduler.getClassCount() - 1));
+        
+        if (order.getSalesChannel() != null && bulkChannels.contains(order.getSalesChannel().toUpperCase())) {
+            priorityClass = Math.max(priorityClass, Math.min(bulkClass, scheduler.getClassCount() - 1));
+        }
+        return priorityClass;
+    }
+    
+    @Override
+    public PriorityScheduler.Stats getStats() {
+        return scheduler.getStats();
+    }
+    
+    private static PriorityScheduler.Permit join(CompletableFuture<PriorityScheduler.Permit> admission) {
+        try {
+            return admission.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    private static String[] split(String list) {
+        return Arrays.stream(list.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toArray(String[]::new);
+    }
+}
@@ -1,18 +1,54 @@
 package com.ordersourcing.engine.service.impl;
 
 import com.ordersourcing.engine.dto.*;
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
+import com.ordersourcing.engine.index.DistanceVector;
+import com.ordersourcing.engine.index.HandlingFlags;
+import com.ordersourcing.engine.index.SplitPenaltyTable;
 import com.ordersourcing.engine.model.*;
+import com.ordersourcing.engine.service.AdmissionService;
 import com.ordersourcing.engine.service.BatchSourcingService;
+import com.ordersourcing.engine.service.CarrierService;
 import com.ordersourcing.engine.service.LocationFilterExecutionService;
 import com.ordersourcing.engine.service.InventoryApiService;
+import com.ordersourcing.engine.service.LocationIndexService;
 import com.ordersourcing.engine.service.PromiseDateService;
+import com.ordersourcing.engine.service.QuickPromiseService;
 import com.ordersourcing.engine.service.ScoringConfigurationService;
+import com.ordersourcing.engine.util.BoundedCache;
+import com.ordersourcing.engine.util.Deadline;
+import com.ordersourcing.engine.util.LatencyModel;
+import com.ordersourcing.engine.util.PriorityScheduler;
+import com.ordersourcing.engine.util.QuoteKeys;
+import com.ordersourcing.engine.util.StageExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import jakarta.annotation.PostConstruct;
 
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,35 +67,149 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
     @Autowired
     private ScoringConfigurationService scoringConfigurationService;
     
-    // Configuration for batch vs sequential decision
+    @Autowired
+    private LocationIndexService locationIndexService;
+    
+    @Autowired
+    private CarrierService carrierService;
+    
+    @Autowired
+    private AdmissionService admissionService;
+    
+    @Autowired
+    private QuickPromiseService quickPromiseService;
+    
+    @Autowired
+    @Qualifier("sourcingCpuExecutor")
+    private StageExecutor cpuExecutor;
+    
+    @Autowired
+    @Qualifier("sourcingIoExecutor")
+    private StageExecutor ioExecutor;
+    
+    @Autowired
+    @Qualifier("sourcingDeadlineTimer")
+    private ScheduledExecutorService deadlineTimer;
+    
+    // AUTO picks the path the cost model predicts is faster; HEURISTIC, BATCH and SEQUENTIAL override it
+    @Value("${sourcing.strategy.mode:AUTO}")
+    private StrategyMode strategyMode;
+    
+    @Value("${sourcing.strategy.exploration-rate:0.05}")
+    private double explorationRate;
+    
+    @Value("${sourcing.strategy.min-samples:20}")
+    private int minSamples;
+    
+    // Only orders with at most this many lines are sent down the non-preferred path to explore it
+    @Value("${sourcing.strategy.exploration-max-items:5}")
+    private int explorationMaxItems;
+    
+    // Per-request time budget when the caller does not send one; 0 = no deadline
+    @Value("${sourcing.deadline.default-ms:0}")
+    private long defaultDeadlineMs;
+    
+    // Bulk quotes in flight at once; bounds memory regardless of how many orders are streamed in
+    @Value("${sourcing.bulk.chunk-size:200}")
+    private int bulkChunkSize;
+    
+    // Time budget of each bulk chunk; orders still running past it plus a short grace are answered with an error
+    @Value("${sourcing.bulk.deadline-ms:30000}")
+    private long bulkDeadlineMs;
+    
+    // Geo-cell size for sharing distance-based filter results between bulk orders; 0 = per order
+    @Value("${sourcing.bulk.geo-cell-degrees:0.01}")
+    private double bulkGeoCellDegrees;
+    
+    @Value("${sourcing.session.max-entries:10000}")
+    private int sessionMaxEntries;
+    
+    @Value("${sourcing.session.ttl-ms:600000}")
+    private long sessionTtlMs;
+    
+    // Unchanged lines older than this are re-planned so promise dates do not go stale
+    @Value("${sourcing.session.line-ttl-ms:60000}")
+    private long lineTtlMs;
+    
+    // Per-cart line results for incremental re-sourcing, keyed by tempOrderId
+    private BoundedCache<String, CartSession> cartSessions;
+    
+    // Sequence of data changes. A session line or filter result remembers the sequence it was planned at
+    // and is only used while nothing it depends on has changed since: its SKU, its filter, or everything.
+    private final AtomicLong changeSequence = new AtomicLong();
+    private final Map<String, Long> skuChangedAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> filterChangedAt = new ConcurrentHashMap<>();
+    private volatile long allLinesChangedAt;
+    private volatile long allFiltersChangedAt;
+    
+    // Cold-start prior for batch vs sequential until both paths have enough observations
     private static final int BATCH_THRESHOLD_ITEMS = 3;
     private static final int BATCH_THRESHOLD_TOTAL_QUANTITY = 10;
     
+    // Observed latency per path against order features; see orderFeatures()
+    private static final int ORDER_FEATURE_COUNT = 4;
+    private final LatencyModel batchLatencyModel = new LatencyModel(ORDER_FEATURE_COUNT, 0.995, 1.0);
+    private final LatencyModel sequentialLatencyModel = new LatencyModel(ORDER_FEATURE_COUNT, 0.995, 1.0);
+    
+    // Time past a bulk chunk's deadline to wait for the lines planned at the deadline
+    private static final long BULK_GRACE_MS = 1000;
+    
+    // Wave allocation order: orderPriority (1=highest), then best score, then arrival order
+    private static final int DEFAULT_ORDER_PRIORITY = 1;
+    private static final Comparator<WaveLine> WAVE_LINE_ORDER = Comparator
+            .comparingInt((WaveLine line) -> orderPriority(line.order))
+            .thenComparing(line -> line.bestScore, Comparator.reverseOrder())
+            .thenComparingInt(line -> line.orderIndex)
+            .thenComparingInt(line -> line.itemIndex);
+    
+    @PostConstruct
+    public void initialize() {
+        if (bulkDeadlineMs <= 0) {
+            throw new IllegalArgumentException("sourcing.bulk.deadline-ms must be positive, was " + bulkDeadlineMs);
+        }
+        cartSessions = new BoundedCache<>(sessionMaxEntries);
+    }
     
     /**
      * Main sourcing method that returns essential fulfillment information
      */
     public SourcingResponse sourceOrder(OrderDTO order) {
+        return sourceOrder(order, Deadline.afterMillis(defaultDeadlineMs));
+    }
+    
+    @Override
+    public Deadline deadlineFor(Long requestedMs) {
+        return Deadline.afterMillis(requestedMs != null ? requestedMs : defaultDeadlineMs);
+    }
+    
+    /**
+     * Sourcing bounded by a deadline: stages still running when it passes are answered best-effort
+     * and reported in degradedLines
+     */
+    @Override
+    public SourcingResponse sourceOrder(OrderDTO order, Deadline deadline) {
         long startTime = System.currentTimeMillis();
         
         try {
             // Decide processing strategy
-            SourcingStrategy strategy = decideSourcingStrategy(order);
+            double[] features = orderFeatures(order);
+            SourcingStrategy strategy = chooseSourcingStrategy(order, features);
             log.info("Using {} strategy for order: {} with {} items", 
                     strategy, order.getTempOrderId(), order.getOrderItems().size());
             
-            List<SourcingResponse.FulfillmentPlan> fulfillmentPlans;
+            long pathStart = System.nanoTime();
+            List<LineResult> lineResults;
             if (strategy == SourcingStrategy.BATCH) {
-                fulfillmentPlans = batchSourceOrder(order);
+                lineResults = batchSourceOrder(order, deadline);
             } else {
-                fulfillmentPlans = sequentialSourceOrder(order);
+                lineResults = sequentialSourceOrder(order, deadline);
+            }
+            // Deadline-cut runs would teach the model the budget, not the path's cost
+            if (!deadline.isExpired()) {
+                latencyModel(strategy).observe(features, (System.nanoTime() - pathStart) / 1_000_000.0);
             }
             
-            return SourcingResponse.builder()
-                    .orderId(order.getTempOrderId())
-                    .fulfillmentPlans(fulfillmentPlans)
-                    .processingTimeMs(System.currentTimeMillis() - startTime)
-                    .build();
+            return buildResponse(order, lineResults, startTime);
             
         } catch (Exception e) {
             log.error("Error in order sourcing for order: {}", order.getTempOrderId(), e);
@@ -68,45 +218,647 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
     }
     
     /**
-     * Optimized batch processing for multiple items - simplified version
+     * Sourcing from memory only, so no thread ever waits on the database: stock comes from the quick-promise
+     * stock index, eligible locations from each filter's last known definition, and scoring configurations,
+     * locations and carriers from what is already loaded. The order is planned as one task on the CPU
+     * executor. A line whose data is not in memory gets no plan and is reported as NOT_IN_MEMORY.
      */
-    private List<SourcingResponse.FulfillmentPlan> batchSourceOrder(OrderDTO order) {
-        log.debug("Starting batch sourcing for order: {}", order.getTempOrderId());
-        
-        // Step 1: Group OrderItems by LocationFilter ID to eliminate duplicate executions
-        Map<String, List<OrderItemDTO>> filterGroups = order.getOrderItems().stream()
-                .collect(Collectors.groupingBy(OrderItemDTO::getLocationFilterId));
+    @Override
+    public Mono<SourcingResponse> sourceOrderReactive(OrderDTO order) {
+        return sourceOrderReactive(order, Deadline.afterMillis(defaultDeadlineMs));
+    }
+    
+    @Override
+    public Mono<SourcingResponse> sourceOrderReactive(OrderDTO order, Deadline deadline) {
+        long startTime = System.currentTimeMillis();
         
-        log.debug("Grouped {} items into {} filter groups", order.getOrderItems().size(), filterGroups.size());
+        return Mono.defer(() -> {
+                    log.info("Using in-memory strategy for order: {} with {} items", 
+                            order.getTempOrderId(), order.getOrderItems().size());
+                    return Mono.fromFuture(cpuExecutor.supply(() -> sourceFromMemory(order, deadline, startTime)));
+                })
+                .onErrorResume(e -> {
+                    log.error("Error in reactive sourcing for order: {}", order.getTempOrderId(), e);
+                    return Mono.just(createErrorResponse(order, e, System.currentTimeMillis() - startTime));
+                });
+    }
+    
+    /**
+     * Plans every line whose inputs are all in memory, in line order; past the deadline the remaining lines
+     * are allocated greedily with estimated promises. Nothing is planned until the location and carrier
+     * indexes and the stock index have loaded, since planning would otherwise read them from the database.
+     */
+    private SourcingResponse sourceFromMemory(OrderDTO order, Deadline deadline, long startTime) {
+        List<OrderItemDTO> orderItems = order.getOrderItems();
+        Optional<QuickPromiseService.StockSnapshot> stock = 
+                locationIndexService.isIndexLoaded() && carrierService.isCarrierIndexLoaded()
+                        ? quickPromiseService.stockSnapshot(orderItems.stream()
+                                .map(OrderItemDTO::getSku)
+                                .collect(Collectors.toList()))
+                        : Optional.empty();
+        if (stock.isEmpty()) {
+            return buildResponse(order, Collections.nCopies(orderItems.size(), LineResult.NOT_IN_MEMORY), startTime);
+        }
         
-        // Step 2: Parallel filter execution (one per unique filter)
-        CompletableFuture<Map<String, List<Location>>> filterFuture = 
-                locationFilterService.batchExecuteFilters(filterGroups.keySet(), order);
+        DistanceVector distances = computeDistances(order);
+        Map<String, Optional<List<Location>>> eligibleByFilter = new HashMap<>();
+        List<LineResult> lineResults = new ArrayList<>(orderItems.size());
+        for (OrderItemDTO orderItem : orderItems) {
+            Optional<List<Location>> locations = eligibleByFilter.computeIfAbsent(orderItem.getLocationFilterId(), 
+                    filterId -> locationFilterService.executeKnownFilter(filterId, order, distances));
+            if (locations.isEmpty() 
+                    || scoringConfigurationService.findCachedScoringConfigurationForItem(orderItem).isEmpty()) {
+                lineResults.add(LineResult.NOT_IN_MEMORY);
+            } else {
+                lineResults.add(planLine(orderItem, locations.get(), stock.get().lookup(), 
+                        order, distances, deadline, false));
+            }
+        }
         
-        // Step 3: Parallel inventory API call
-        CompletableFuture<Map<String, List<Inventory>>> inventoryFuture = 
-                inventoryApiService.batchFetchInventory(order.getOrderItems());
+        SourcingResponse response = buildResponse(order, lineResults, startTime);
+        response.setStockAsOf(stock.get().asOfMillis());
+        return response;
+    }
+    
+    /**
+     * Batch dataflow that hands each line's plan to onPlan as soon as it is ready, for streaming responses.
+     * Completes with the summary once every line is final.
+     */
+    @Override
+    public CompletableFuture<SourcingResponse.StreamSummary> sourceOrderProgressive(
+            OrderDTO order, Deadline deadline, Consumer<SourcingResponse.FulfillmentPlan> onPlan) {
+        long startTime = System.currentTimeMillis();
+        log.info("Using progressive batch strategy for order: {} with {} items", 
+                order.getTempOrderId(), order.getOrderItems().size());
         
-        // Wait for both parallel operations to complete
-        CompletableFuture<Void> allFutures = CompletableFuture.allOf(filterFuture, inventoryFuture);
+        return pipelineLines(order, computeDistances(order), deadline, lineResult -> {
+                    if (lineResult.plan != null) {
+                        onPlan.accept(lineResult.plan);
+                    }
+                })
+                .thenApply(lineResults -> {
+                    SourcingResponse response = buildResponse(order, lineResults, startTime);
+                    return SourcingResponse.StreamSummary.builder()
+                            .orderId(response.getOrderId())
+                            .planCount(response.getFulfillmentPlans().size())
+                            .processingTimeMs(response.getProcessingTimeMs())
+                            .degradedLines(response.getDegradedLines())
+                            .build();
+                });
+    }
+    
+    /**
+     * Incremental sourcing for a cart re-quoted as it changes, keyed by tempOrderId. Lines unchanged since
+     * the previous call reuse their plan; changed lines are planned with the session's filter results and
+     * an inventory fetch for their SKUs only, then the response is reassembled in cart order. A change to
+     * the order-level fields (address, channel, ...) starts a new session.
+     */
+    @Override
+    public SourcingResponse sourceOrderIncremental(OrderDTO order, Deadline deadline) {
+        long startTime = System.currentTimeMillis();
+        long generation = changeSequence.get();
         
         try {
-            allFutures.join(); // Wait for completion
+            long now = System.nanoTime();
+            CartSession session = cartSession(order, now);
             
-            Map<String, List<Location>> filterResults = filterFuture.get();
-            Map<String, List<Inventory>> inventoryResults = inventoryFuture.get();
+            // Diff the cart against the session by line content
+            List<OrderItemDTO> orderItems = order.getOrderItems();
+            List<String> lineKeys = new ArrayList<>(orderItems.size());
+            List<LineResult> lineResults = new ArrayList<>(Collections.nCopies(orderItems.size(), (LineResult) null));
+            List<Integer> changedIndexes = new ArrayList<>();
+            for (int i = 0; i < orderItems.size(); i++) {
+                String lineKey = QuoteKeys.itemHash(orderItems.get(i));
+                lineKeys.add(lineKey);
+                CartLine line = session.lines.get(lineKey);
+                if (line != null && now - line.plannedAtNanos < lineTtlMs * 1_000_000L 
+                        && lineUnchangedSince(line.sku, line.filterId, line.generation)) {
+                    lineResults.set(i, new LineResult(line.plan, null));
+                } else {
+                    changedIndexes.add(i);
+                }
+            }
+            session.lines.keySet().retainAll(lineKeys);
+            
+            log.debug("Incremental sourcing for cart {}: {} of {} lines to plan", 
+                    order.getTempOrderId(), changedIndexes.size(), orderItems.size());
             
-            // Step 4: Parallel promise date calculation
-            CompletableFuture<Map<String, PromiseDateBreakdown>> promiseDateFuture = 
-                    promiseDateService.batchCalculatePromiseDates(order.getOrderItems(), 
-                            filterResults, inventoryResults, order);
+            if (!changedIndexes.isEmpty()) {
+                List<OrderItemDTO> changedItems = changedIndexes.stream()
+                        .map(orderItems::get)
+                        .collect(Collectors.toList());
+                DistanceVector distances = computeDistances(order);
+                
+                // Eligible locations depend only on the filter and the order context, so reuse the session's
+                Map<String, CompletableFuture<List<Location>>> filterFutures = new HashMap<>();
+                Set<String> missingFilterIds = new HashSet<>();
+                for (OrderItemDTO orderItem : changedItems) {
+                    SessionFilter eligible = session.eligibleLocations.get(orderItem.getLocationFilterId());
+                    if (eligible != null && filterUnchangedSince(orderItem.getLocationFilterId(), eligible.generation)) {
+                        filterFutures.put(orderItem.getLocationFilterId(), 
+                                CompletableFuture.completedFuture(eligible.locations));
+                    } else {
+                        missingFilterIds.add(orderItem.getLocationFilterId());
+                    }
+                }
+                Map<String, CompletableFuture<List<Location>>> executedFilters = 
+                        locationFilterService.executeFiltersAsync(missingFilterIds, order, distances);
+                filterFutures.putAll(executedFilters);
+                CompletableFuture<InventoryApiService.InventoryLookup> inventoryFuture = 
+                        inventoryApiService.batchFetchInventory(changedItems);
+                
+                List<LineResult> changedResults = planLines(order, changedItems, distances, deadline, 
+                        filterFutures, inventoryFuture, null).join();
+                
+                // Keep only complete answers planned against data that did not change meanwhile
+                for (int k = 0; k < changedResults.size(); k++) {
+                    int index = changedIndexes.get(k);
+                    OrderItemDTO orderItem = orderItems.get(index);
+                    LineResult result = changedResults.get(k);
+                    lineResults.set(index, result);
+                    if (result.plan != null && result.degradation == null 
+                            && lineUnchangedSince(orderItem.getSku(), orderItem.getLocationFilterId(), generation)) {
+                        session.lines.put(lineKeys.get(index), new CartLine(orderItem, result.plan, now, generation));
+                    }
+                }
+                executedFilters.forEach((filterId, future) -> {
+                    if (future.isDone() && !future.isCompletedExceptionally() 
+                            && filterUnchangedSince(filterId, generation)) {
+                        session.eligibleLocations.put(filterId, new SessionFilter(future.join(), generation));
+                    }
+                });
+            }
             
-            Map<String, PromiseDateBreakdown> promiseDateResults = promiseDateFuture.get();
+            return buildResponse(order, lineResults, startTime);
             
-            // Step 5: Build simplified fulfillment plans
-            return buildSimplifiedFulfillmentPlans(order.getOrderItems(), filterResults, 
-                    inventoryResults, promiseDateResults, order);
+        } catch (Exception e) {
+            log.error("Error in incremental sourcing for order: {}", order.getTempOrderId(), e);
+            return createErrorResponse(order, e, System.currentTimeMillis() - startTime);
+        }
+    }
+    
+    /**
+     * The cart's session, or a new one if it has none, it expired or its order-level fields changed
+     */
+    private CartSession cartSession(OrderDTO order, long now) {
+        String contextKey = QuoteKeys.contextHash(order);
+        CartSession session = cartSessions.get(order.getTempOrderId());
+        if (session == null || !session.contextKey.equals(contextKey) 
+                || now - session.lastUsedNanos > sessionTtlMs * 1_000_000L) {
+            session = new CartSession(contextKey);
+            cartSessions.put(order.getTempOrderId(), session);
+        }
+        session.lastUsedNanos = now;
+        return session;
+    }
+    
+    private boolean lineUnchangedSince(String sku, String filterId, long generation) {
+        return allLinesChangedAt <= generation 
+                && skuChangedAt.getOrDefault(sku, 0L) <= generation
+                && filterUnchangedSince(filterId, generation);
+    }
+    
+    private boolean filterUnchangedSince(String filterId, long generation) {
+        return allFiltersChangedAt <= generation && filterChangedAt.getOrDefault(filterId, 0L) <= generation;
+    }
+    
+    /**
+     * Records which SKUs or filters changed, so session state planned before the change is no longer used,
+     * then drops that state from the sessions off the caller's thread: inventory changes are published
+     * by the reads of ordinary requests.
+     */
+    @EventListener
+    public void onSourcingDataChanged(SourcingDataChangedEvent event) {
+        recordChange(event);
+        
+        try {
+            cpuExecutor.execute(() -> dropChangedSessionState(event));
+        } catch (RejectedExecutionException e) {
+            // Nothing stale is used either way; it just stays in memory until the session or line expires
+            log.debug("Deferred cart session cleanup for {} change - {}", event.getDataType(), e.getMessage());
+        }
+    }
+    
+    private synchronized void recordChange(SourcingDataChangedEvent event) {
+        long sequence = changeSequence.incrementAndGet();
+        switch (event.getDataType()) {
+            case INVENTORY -> recordKeyChange(skuChangedAt, event, sequence, false);
+            case LOCATION_FILTER -> recordKeyChange(filterChangedAt, event, sequence, true);
+            case LOCATION -> {
+                allFiltersChangedAt = sequence;
+                allLinesChangedAt = sequence;
+            }
+            default -> allLinesChangedAt = sequence;
+        }
+    }
+    
+    /**
+     * Change sequence per key; past the session size, or for a change to every key, the change is recorded
+     * for everything instead
+     */
+    private void recordKeyChange(Map<String, Long> changedAt, SourcingDataChangedEvent event, long sequence, 
+                                 boolean filters) {
+        if (event.affectsAll() || changedAt.size() + event.getKeys().size() > sessionMaxEntries) {
+            changedAt.clear();
+            if (filters) {
+                allFiltersChangedAt = sequence;
+            }
+            allLinesChangedAt = sequence;
+            return;
+        }
+        event.getKeys().forEach(key -> changedAt.put(key, sequence));
+    }
+    
+    /**
+     * Drops cart session state that depends on changed data
+     */
+    private void dropChangedSessionState(SourcingDataChangedEvent event) {
+        for (CartSession session : cartSessions.values()) {
+            switch (event.getDataType()) {
+                case INVENTORY -> session.lines.values().removeIf(line -> event.affects(line.sku));
+                case LOCATION_FILTER -> {
+                    session.eligibleLocations.keySet().removeIf(event::affects);
+                    session.lines.values().removeIf(line -> event.affects(line.filterId));
+                }
+                case LOCATION -> {
+                    session.eligibleLocations.clear();
+                    session.lines.clear();
+                }
+                default -> session.lines.clear();
+            }
+        }
+    }
+    
+    /**
+     * Wave sourcing for many orders competing for shared inventory.
+     * Filter and inventory lookups are shared across the wave, contended stock is allocated
+     * by orderPriority and then by best candidate score, and SKU partitions run in parallel.
+     */
+    @Override
+    public List<SourcingResponse> sourceWave(List<OrderDTO> orders) {
+        long startTime = System.currentTimeMillis();
+        log.info("Starting wave sourcing for {} orders", orders.size());
+        
+        // Step 1: Flatten the wave into lines
+        List<WaveLine> lines = new ArrayList<>();
+        Set<String> filterIds = new HashSet<>();
+        List<OrderItemDTO> allItems = new ArrayList<>();
+        List<DistanceVector> distances = new ArrayList<>(orders.size());
+        for (int orderIndex = 0; orderIndex < orders.size(); orderIndex++) {
+            OrderDTO order = orders.get(orderIndex);
+            DistanceVector orderDistances = computeDistances(order);
+            distances.add(orderDistances);
+            for (int itemIndex = 0; itemIndex < order.getOrderItems().size(); itemIndex++) {
+                OrderItemDTO orderItem = order.getOrderItems().get(itemIndex);
+                lines.add(new WaveLine(orderIndex, itemIndex, order, orderItem, orderDistances));
+                filterIds.add(orderItem.getLocationFilterId());
+                allItems.add(orderItem);
+            }
+        }
+        
+        // Step 2: Shared filter execution and a single inventory fetch for the whole wave
+        CompletableFuture<Map<String, List<List<Location>>>> filterFuture = 
+                locationFilterService.batchExecuteFiltersForOrders(filterIds, orders, distances);
+        CompletableFuture<InventoryApiService.InventoryLookup> inventoryFuture = 
+                inventoryApiService.batchFetchInventory(allItems);
+        
+        CompletableFuture.allOf(filterFuture, inventoryFuture).join();
+        Map<String, List<List<Location>>> filterResults = filterFuture.join();
+        InventoryApiService.InventoryLookup inventoryResults = inventoryFuture.join();
+        
+        // Step 3: Allocate each SKU partition independently - partitions never share stock
+        Map<String, List<WaveLine>> skuPartitions = lines.stream()
+                .collect(Collectors.groupingBy(line -> line.orderItem.getSku()));
+        
+        log.debug("Wave has {} lines across {} SKU partitions and {} filters", 
+                lines.size(), skuPartitions.size(), filterIds.size());
+        
+        List<Runnable> partitionTasks = new ArrayList<>(skuPartitions.size());
+        for (Map.Entry<String, List<WaveLine>> partition : skuPartitions.entrySet()) {
+            partitionTasks.add(() -> {
+                try {
+                    allocateSkuPartition(partition.getValue(), partition.getKey(), inventoryResults, filterResults);
+                } catch (Exception e) {
+                    log.error("Error allocating wave partition for SKU: {}", partition.getKey(), e);
+                }
+            });
+        }
+        cpuExecutor.runAll(partitionTasks);
+        
+        // Step 4: Regroup plans and degraded lines by order, preserving item order
+        List<List<SourcingResponse.FulfillmentPlan>> plansByOrder = new ArrayList<>(orders.size());
+        List<List<SourcingResponse.DegradedLine>> degradedByOrder = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            plansByOrder.add(new ArrayList<>());
+            degradedByOrder.add(new ArrayList<>());
+        }
+        for (WaveLine line : lines) {
+            if (line.plan != null) {
+                plansByOrder.get(line.orderIndex).add(line.plan);
+            }
+            if (line.degradation != null) {
+                degradedByOrder.get(line.orderIndex).add(new SourcingResponse.DegradedLine(
+                        line.itemIndex, line.orderItem.getSku(), line.degradation));
+            }
+        }
+        
+        long processingTime = System.currentTimeMillis() - startTime;
+        log.info("Completed wave sourcing for {} orders ({} lines) in {}ms", 
+                orders.size(), lines.size(), processingTime);
+        
+        List<SourcingResponse> responses = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            responses.add(SourcingResponse.builder()
+                    .orderId(orders.get(i).getTempOrderId())
+                    .fulfillmentPlans(plansByOrder.get(i))
+                    .processingTimeMs(processingTime)
+                    .degradedLines(degradedByOrder.get(i))
+                    .build());
+        }
+        return responses;
+    }
+    
+    /**
+     * Bulk sourcing of independent quotes, read and processed one chunk at a time. Each response is
+     * handed to the sink on the calling thread as soon as its order completes, so responses arrive in
+     * completion order.
+     */
+    @Override
+    public int sourceBulk(Iterator<OrderDTO> orders, Consumer<SourcingResponse> sink) {
+        int sourced = 0;
+        List<OrderDTO> chunk = new ArrayList<>(bulkChunkSize);
+        while (orders.hasNext()) {
+            chunk.add(orders.next());
+            if (chunk.size() >= bulkChunkSize || !orders.hasNext()) {
+                sourceBulkChunk(chunk, sink);
+                sourced += chunk.size();
+                chunk = new ArrayList<>(bulkChunkSize);
+            }
+        }
+        log.info("Completed bulk sourcing for {} orders", sourced);
+        return sourced;
+    }
+    
+    /**
+     * One chunk of bulk quotes: a single inventory fetch for every distinct SKU, and one filter execution
+     * per shared result key (filter, or filter and geo-cell) instead of one per order. Quotes do not
+     * reserve stock, so every order plans against the full inventory. Each order is admitted on its own
+     * in the bulk class and holds its slot until its lines are planned, so a chunk occupies as many slots
+     * as it has orders running. The chunk runs under the bulk deadline, and every order gets exactly one
+     * response: its plans, or an error if it was shed, failed or is still running a grace period past the deadline.
+     */
+    private void sourceBulkChunk(List<OrderDTO> chunk, Consumer<SourcingResponse> sink) {
+        long startTime = System.currentTimeMillis();
+        
+        List<OrderDTO> valid = new ArrayList<>(chunk.size());
+        for (OrderDTO order : chunk) {
+            String invalid = invalidBulkOrder(order);
+            if (invalid != null) {
+                log.warn("Skipping bulk order {}: {}", order.getTempOrderId(), invalid);
+                sink.accept(createErrorResponse(order, invalid, 0));
+            } else {
+                valid.add(order);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+        
+        try {
+            Deadline deadline = Deadline.afterMillis(bulkDeadlineMs);
+            List<OrderItemDTO> allItems = valid.stream()
+                    .flatMap(order -> order.getOrderItems().stream())
+                    .collect(Collectors.toList());
+            CompletableFuture<InventoryApiService.InventoryLookup> inventoryFuture = 
+                    inventoryApiService.batchFetchInventory(allItems);
+            
+            // Orders complete on worker threads but reach the sink on this thread, so a slow sink holds up
+            // the next chunk instead of a worker; one slot per order means workers never wait for space
+            BulkResponses responses = new BulkResponses(valid.size());
+            Map<String, CompletableFuture<List<Location>>> sharedFilters = new HashMap<>();
+            for (int i = 0; i < valid.size(); i++) {
+                int index = i;
+                OrderDTO order = valid.get(i);
+                PriorityScheduler.Permit permit;
+                try {
+                    permit = admissionService.admitBulkBlocking(order);
+                } catch (RejectedExecutionException e) {
+                    log.warn("Shed bulk order {} - {}", order.getTempOrderId(), e.getMessage());
+                    responses.answer(index, createErrorResponse(order, e, System.currentTimeMillis() - startTime));
+                    continue;
+                }
+                try {
+                    DistanceVector distances = computeDistances(order);
+                    Map<String, CompletableFuture<List<Location>>> filterFutures = new HashMap<>();
+                    for (OrderItemDTO orderItem : order.getOrderItems()) {
+                        String filterId = orderItem.getLocationFilterId();
+                        if (!filterFutures.containsKey(filterId)) {
+                            filterFutures.put(filterId, sharedFilterResult(filterId, order, distances, sharedFilters));
+                        }
+                    }
                     
+                    planLines(order, order.getOrderItems(), distances, deadline, filterFutures, inventoryFuture, null)
+                            .whenComplete((lineResults, e) -> {
+                                permit.close();
+                                try {
+                                    responses.answer(index, e == null 
+                                            ? buildResponse(order, lineResults, startTime) 
+                                            : createErrorResponse(order, e, System.currentTimeMillis() - startTime));
+                                } catch (RuntimeException failure) {
+                                    log.error("Error building bulk response for order: {}", order.getTempOrderId(), failure);
+                                    responses.answer(index, 
+                                            createErrorResponse(order, failure, System.currentTimeMillis() - startTime));
+                                }
+                            });
+                } catch (RuntimeException e) {
+                    permit.close();
+                    log.error("Error starting bulk order: {}", order.getTempOrderId(), e);
+                    responses.answer(index, createErrorResponse(order, e, System.currentTimeMillis() - startTime));
+                }
+            }
+            
+            long waitUntil = System.currentTimeMillis() + deadline.remainingMillis() + BULK_GRACE_MS;
+            for (int i = 0; i < valid.size(); i++) {
+                SourcingResponse response = responses.poll(Math.max(0, waitUntil - System.currentTimeMillis()));
+                if (response == null) {
+                    int late = responses.answerRemaining(index -> createErrorResponse(valid.get(index), 
+                            "Bulk quote not finished within " + bulkDeadlineMs + "ms", 
+                            System.currentTimeMillis() - startTime));
+                    log.warn("Bulk chunk of {} orders answered {} still running orders with an error", 
+                            valid.size(), late);
+                    // Every order is answered now, so this only waits for a concurrent answer to be queued
+                    response = responses.take();
+                }
+                sink.accept(response);
+            }
+            log.debug("Bulk chunk of {} orders shared {} filter executions", valid.size(), sharedFilters.size());
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException("Interrupted waiting for bulk responses", e);
+        }
+    }
+    
+    /**
+     * Why a bulk order cannot be sourced, or null if it can
+     */
+    private static String invalidBulkOrder(OrderDTO order) {
+        if (order.getOrderItems() == null || order.getOrderItems().isEmpty()) {
+            return "Order has no items";
+        }
+        for (OrderItemDTO item : order.getOrderItems()) {
+            if (item.getLocationFilterId() == null || item.getLocationFilterId().trim().isEmpty()) {
+                return "Missing location filter ID for item: " + item.getSku();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Filter result for one order, reusing an execution already started for another order in the chunk
+     * when the filter's result does not depend on anything that differs between them
+     */
+    private CompletableFuture<List<Location>> sharedFilterResult(String filterId, OrderDTO order, 
+            DistanceVector distances, Map<String, CompletableFuture<List<Location>>> sharedFilters) {
+        String key = locationFilterService.sharedResultKey(filterId, order, bulkGeoCellDegrees);
+        CompletableFuture<List<Location>> shared = key != null ? sharedFilters.get(key) : null;
+        if (shared != null) {
+            return shared;
+        }
+        
+        CompletableFuture<List<Location>> result = locationFilterService
+                .executeFiltersAsync(Collections.singleton(filterId), order, distances).get(filterId);
+        if (key != null) {
+            sharedFilters.put(key, result);
+        }
+        return result;
+    }
+    
+    /**
+     * Allocate the stock of one SKU across all wave lines that request it.
+     * Lines are served in priority order against a shared remaining-quantity ledger.
+     * Lines of a SKU whose stock is unknown, or whose filter failed, get no plan, and all lines planned
+     * against last-known stock are marked as such.
+     */
+    private void allocateSkuPartition(List<WaveLine> lines, String sku, InventoryApiService.InventoryLookup inventory,
+                                      Map<String, List<List<Location>>> filterResults) {
+        if (!inventory.isKnown(sku)) {
+            lines.forEach(line -> line.degradation = SourcingResponse.DegradationReason.INVENTORY_UNAVAILABLE);
+            return;
+        }
+        if (inventory.isLastKnown(sku)) {
+            lines.forEach(line -> line.degradation = SourcingResponse.DegradationReason.STALE_INVENTORY);
+        }
+        List<Inventory> inventories = inventory.get(sku);
+        if (inventories.isEmpty()) {
+            return;
+        }
+        
+        int[] remaining = inventories.stream().mapToInt(Inventory::getQuantity).toArray();
+        
+        // Pruned once per line here; ranking and allocation below both use the pruned list
+        for (WaveLine line : lines) {
+            List<List<Location>> perOrder = filterResults.get(line.orderItem.getLocationFilterId());
+            if (perOrder == null) {
+                line.degradation = SourcingResponse.DegradationReason.FILTER_UNAVAILABLE;
+            }
+            line.locations = perOrder != null 
+                    ? pruneInfeasibleLocations(perOrder.get(line.orderIndex), line.orderItem, line.distances) 
+                    : Collections.emptyList();
+            line.bestScore = bestCandidateScore(line.locations, inventories, line.orderItem, line.distances);
+        }
+        
+        lines.sort(WAVE_LINE_ORDER);
+        
+        for (WaveLine line : lines) {
+            if (line.locations.isEmpty()) {
+                continue;
+            }
+            
+            // Snapshot of what is still available for this SKU
+            List<Inventory> available = new ArrayList<>();
+            Map<Inventory, Integer> ledgerIndex = new IdentityHashMap<>();
+            for (int i = 0; i < inventories.size(); i++) {
+                if (remaining[i] > 0) {
+                    Inventory snapshot = copyWithQuantity(inventories.get(i), remaining[i]);
+                    available.add(snapshot);
+                    ledgerIndex.put(snapshot, i);
+                }
+            }
+            if (available.isEmpty()) {
+                log.debug("Stock for SKU {} exhausted before order {}", 
+                        line.orderItem.getSku(), line.order.getTempOrderId());
+                return;
+            }
+            
+            FulfillmentStrategy strategy = findOptimalFulfillmentStrategy(
+                    line.locations, available, line.orderItem, line.order, line.distances, false);
+            if (strategy == null) {
+                continue;
+            }
+            
+            List<FulfillmentStrategy> strategies = new ArrayList<>(List.of(strategy));
+            SourcingResponse.FulfillmentPlan plan = buildPlansWithPromiseDates(
+                    Collections.singletonList(line.orderItem), strategies, line.order, line.distances, false).get(0);
+            if (plan == null) {
+                continue;
+            }
+            strategy = strategies.get(0);
+            
+            // Commit the allocation against the shared ledger
+            for (LocationInventoryPair pair : strategy.allocations) {
+                remaining[ledgerIndex.get(pair.inventory)] -= pair.allocatedQuantity;
+            }
+            line.plan = plan;
+        }
+    }
+    
+    /**
+     * Best score any eligible location could give this line, used to rank contending lines
+     */
+    private double bestCandidateScore(List<Location> locations, List<Inventory> inventories, 
+                                      OrderItemDTO orderItem, DistanceVector distances) {
+        ScoringConfiguration scoringConfig = scoringConfigurationService.getScoringConfigurationForItem(orderItem);
+        double best = Double.NEGATIVE_INFINITY;
+        for (Location location : locations) {
+            for (Inventory inventory : inventories) {
+                if (inventory.getLocationId().equals(location.getId()) && inventory.getQuantity() > 0) {
+                    best = Math.max(best, calculateLocationScore(location, inventory, orderItem, distances, scoringConfig));
+                }
+            }
+        }
+        return best;
+    }
+    
+    private static Inventory copyWithQuantity(Inventory source, int quantity) {
+        Inventory copy = new Inventory();
+        copy.setId(source.getId());
+        copy.setSku(source.getSku());
+        copy.setLocationId(source.getLocationId());
+        copy.setQuantity(quantity);
+        copy.setProcessingTime(source.getProcessingTime());
+        return copy;
+    }
+    
+    /**
+     * Customer-to-location distances for one order, computed once and shared by every stage
+     */
+    private DistanceVector computeDistances(OrderDTO order) {
+        return locationIndexService.computeDistances(order.getLatitude(), order.getLongitude());
+    }
+    
+    private static int orderPriority(OrderDTO order) {
+        return order.getOrderPriority() != null ? order.getOrderPriority() : DEFAULT_ORDER_PRIORITY;
+    }
+    
+    /**
+     * Optimized batch processing for multiple items, run as a per-line dataflow
+     */
+    private List<LineResult> batchSourceOrder(OrderDTO order, Deadline deadline) {
+        log.debug("Starting batch sourcing for order: {}", order.getTempOrderId());
+        
+        try {
+            return pipelineLines(order, computeDistances(order), deadline, null).join();
         } catch (Exception e) {
             log.error("Error in batch processing", e);
             throw new RuntimeException("Batch processing failed", e);
@@ -114,18 +866,202 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
     }
     
     /**
-     * Sequential processing for simple orders - simplified version
+     * Batch dataflow: every unique filter starts in parallel with one bulk inventory query, and each line
+     * is allocated and promised on the CPU executor as soon as its own filter result and the inventory
+     * are ready. A slow filter only delays the lines that use it. Results keep the order of the lines;
+     * a line still running at the deadline is planned greedily from its ready inputs.
+     */
+    private CompletableFuture<List<LineResult>> pipelineLines(OrderDTO order, DistanceVector distances, 
+                                                              Deadline deadline, Consumer<LineResult> onLine) {
+        List<OrderItemDTO> orderItems = order.getOrderItems();
+        
+        // Step 1: One execution per unique filter, one future per filter
+        Set<String> filterIds = orderItems.stream()
+                .map(OrderItemDTO::getLocationFilterId)
+                .collect(Collectors.toSet());
+        Map<String, CompletableFuture<List<Location>>> filterFutures = 
+                locationFilterService.executeFiltersAsync(filterIds, order, distances);
+        
+        log.debug("Grouped {} items into {} filter groups", orderItems.size(), filterIds.size());
+        
+        // Step 2: Bulk inventory query for every SKU, in parallel with the filters
+        CompletableFuture<InventoryApiService.InventoryLookup> inventoryFuture = 
+                inventoryApiService.batchFetchInventory(orderItems);
+        
+        return planLines(order, orderItems, distances, deadline, filterFutures, inventoryFuture, onLine);
+    }
+    
+    /**
+     * Each of the given lines allocates and computes its promise dates once its own filter result and the
+     * inventory are ready. A line not finished at the deadline is planned greedily on the CPU executor from
+     * whatever inputs are ready by then, or timed out if that executor is full. onLine, if given, sees each
+     * line's result as soon as it is final.
      */
-    private List<SourcingResponse.FulfillmentPlan> sequentialSourceOrder(OrderDTO order) {
+    private CompletableFuture<List<LineResult>> planLines(OrderDTO order, List<OrderItemDTO> orderItems, 
+            DistanceVector distances, Deadline deadline, Map<String, CompletableFuture<List<Location>>> filterFutures,
+            CompletableFuture<InventoryApiService.InventoryLookup> inventoryFuture, Consumer<LineResult> onLine) {
+        List<CompletableFuture<LineResult>> lineResults = new ArrayList<>(orderItems.size());
+        for (OrderItemDTO orderItem : orderItems) {
+            CompletableFuture<List<Location>> filterFuture = filterFutures.get(orderItem.getLocationFilterId());
+            CompletableFuture<LineResult> lineResult = filterFuture
+                    .thenCombineAsync(inventoryFuture, 
+                            (locations, inventoryResults) -> planLine(orderItem, locations, 
+                                    inventoryResults, order, distances, deadline, false), 
+                            cpuExecutor)
+                    .exceptionally(e -> {
+                        // A failed filter is not an empty one; any other failure fails the order
+                        if (!filterFuture.isCompletedExceptionally()) {
+                            throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                        }
+                        return LineResult.FILTER_UNAVAILABLE;
+                    });
+            if (deadline.isBounded()) {
+                CompletableFuture<LineResult> bounded = new CompletableFuture<>();
+                lineResult.whenComplete((result, e) -> {
+                    if (e != null) {
+                        bounded.completeExceptionally(e);
+                    } else {
+                        bounded.complete(result);
+                    }
+                });
+                // Whichever finishes first answers the line; the timer thread only hands the fallback over
+                ScheduledFuture<?> timer = deadlineTimer.schedule(() -> {
+                    if (bounded.isDone()) {
+                        return;
+                    }
+                    boolean handedOver = cpuExecutor.tryExecute(() -> {
+                        if (!bounded.isDone()) {
+                            bounded.complete(planAtDeadline(orderItem, filterFuture, inventoryFuture, 
+                                    order, distances));
+                        }
+                    });
+                    if (!handedOver) {
+                        bounded.complete(LineResult.TIMED_OUT);
+                    }
+                }, deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+                bounded.whenComplete((result, e) -> timer.cancel(false));
+                lineResult = bounded;
+            }
+            if (onLine != null) {
+                lineResult = lineResult.thenApply(result -> {
+                    onLine.accept(result);
+                    return result;
+                });
+            }
+            lineResults.add(lineResult);
+        }
+        
+        return CompletableFuture.allOf(lineResults.toArray(new CompletableFuture[0]))
+                .thenApply(done -> lineResults.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList()));
+    }
+    
+    /**
+     * Greedy plan with estimated promises for a line still running at the deadline. The filter result falls
+     * back to the filter's last known definition evaluated in memory; stock is never guessed, so a line
+     * whose inventory has not been read yet is reported as timed out, and one whose stock is unknown as such.
+     */
+    private LineResult planAtDeadline(OrderItemDTO orderItem, CompletableFuture<List<Location>> filterFuture,
+                                      CompletableFuture<InventoryApiService.InventoryLookup> inventoryFuture,
+                                      OrderDTO order, DistanceVector distances) {
+        InventoryApiService.InventoryLookup inventoryResults = readyValue(inventoryFuture);
+        if (inventoryResults == null) {
+            return LineResult.TIMED_OUT;
+        }
+        if (!inventoryResults.isKnown(orderItem.getSku())) {
+            return LineResult.INVENTORY_UNAVAILABLE;
+        }
+        
+        List<Location> locations = readyValue(filterFuture);
+        if (locations == null) {
+            locations = locationFilterService.executeKnownFilter(orderItem.getLocationFilterId(), order, distances)
+                    .orElse(null);
+            if (locations == null) {
+                return LineResult.TIMED_OUT;
+            }
+        }
+        
+        LineResult result = planLine(orderItem, locations, inventoryResults, order, distances, Deadline.NONE, true);
+        return result.plan != null ? result : LineResult.TIMED_OUT;
+    }
+    
+    /**
+     * Value of a future that already completed normally, otherwise null
+     */
+    private static <T> T readyValue(CompletableFuture<T> future) {
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+    
+    /**
+     * Allocates one line and builds its plan with per-allocation promise dates. Past the deadline, or when
+     * forced, the allocation is greedy and promises are estimated. A line whose stock is unknown gets no plan,
+     * and one planned against last-known stock is marked as such.
+     */
+    private LineResult planLine(OrderItemDTO orderItem, List<Location> locations, 
+                                InventoryApiService.InventoryLookup inventory, OrderDTO order, 
+                                DistanceVector distances, Deadline deadline, boolean forceGreedy) {
+        if (!inventory.isKnown(orderItem.getSku())) {
+            return LineResult.INVENTORY_UNAVAILABLE;
+        }
+        try {
+            List<Inventory> inventories = inventory.get(orderItem.getSku());
+            boolean greedy = forceGreedy || deadline.isExpired();
+            FulfillmentStrategy strategy = null;
+            if (locations != null && !locations.isEmpty() && inventories != null && !inventories.isEmpty()) {
+                // Drop locations no carrier can ship from before any scoring work
+                strategy = findOptimalFulfillmentStrategy(pruneInfeasibleLocations(locations, orderItem, distances), 
+                        inventories, orderItem, order, distances, greedy);
+            }
+            
+            boolean estimated = greedy || deadline.isExpired();
+            SourcingResponse.FulfillmentPlan plan = buildPlansWithPromiseDates(Collections.singletonList(orderItem), 
+                    new ArrayList<>(Collections.singletonList(strategy)), order, distances, estimated).get(0);
+            
+            if (plan != null && estimated) {
+                return new LineResult(plan, greedy ? SourcingResponse.DegradationReason.GREEDY_ALLOCATION 
+                        : SourcingResponse.DegradationReason.ESTIMATED_PROMISE);
+            }
+            return new LineResult(plan, inventory.isLastKnown(orderItem.getSku()) 
+                    ? SourcingResponse.DegradationReason.STALE_INVENTORY : null);
+        } catch (Exception e) {
+            log.error("Error planning item: {}", orderItem.getSku(), e);
+            return LineResult.NONE;
+        }
+    }
+    
+    /**
+     * Sequential processing for simple orders - simplified version.
+     * Lookups are cut off at the deadline; lines not started by then, or whose stock could not be read,
+     * are reported as timed out.
+     */
+    private List<LineResult> sequentialSourceOrder(OrderDTO order, Deadline deadline) {
         log.debug("Starting sequential sourcing for order: {}", order.getTempOrderId());
         
-        List<SourcingResponse.FulfillmentPlan> fulfillmentPlans = new ArrayList<>();
+        DistanceVector distances = computeDistances(order);
+        List<FulfillmentStrategy> strategies = new ArrayList<>(order.getOrderItems().size());
+        boolean[] timedOut = new boolean[order.getOrderItems().size()];
         
         for (OrderItemDTO orderItem : order.getOrderItems()) {
+            strategies.add(null);
+            if (deadline.isExpired()) {
+                timedOut[strategies.size() - 1] = true;
+                continue;
+            }
             try {
-                // Filter execution
-                List<Location> locations = locationFilterService.executeLocationFilter(
-                        orderItem.getLocationFilterId(), order);
+                // Filter execution; past the deadline or the database limit, the filter's last known definition
+                List<Location> locations;
+                try {
+                    locations = withinDeadline(() -> locationFilterService.executeLocationFilter(
+                            orderItem.getLocationFilterId(), order, distances), deadline);
+                } catch (TimeoutException | RejectedExecutionException e) {
+                    locations = locationFilterService.executeKnownFilter(
+                            orderItem.getLocationFilterId(), order, distances).orElse(null);
+                    if (locations == null) {
+                        timedOut[strategies.size() - 1] = true;
+                        continue;
+                    }
+                }
                 
                 if (locations.isEmpty()) {
                     log.warn("No locations found for item: {} with filter: {}", 
@@ -133,46 +1069,170 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
                     continue;
                 }
                 
-                // Inventory fetch
-                List<Inventory> inventories = inventoryApiService.fetchInventoryBySku(orderItem.getSku());
+                // Inventory fetch; stock is never guessed, so a read cut off by the deadline times the line out
+                List<Inventory> inventories;
+                try {
+                    inventories = withinDeadline(() -> inventoryApiService.fetchInventoryBySku(orderItem.getSku()), 
+                            deadline);
+                } catch (TimeoutException e) {
+                    timedOut[strategies.size() - 1] = true;
+                    continue;
+                }
                 
                 if (inventories.isEmpty()) {
                     log.warn("No inventory found for SKU: {}", orderItem.getSku());
                     continue;
                 }
                 
-                // Find optimal fulfillment strategy
-                FulfillmentStrategy strategy = findOptimalFulfillmentStrategy(
-                        locations, inventories, orderItem, order);
-                
-                if (strategy != null) {
-                    // Promise date calculation (use primary location for timing)
-                    LocationInventoryPair primaryPair = strategy.allocations.get(0);
-                    PromiseDateBreakdown promiseDate = promiseDateService.calculateEnhancedPromiseDate(
-                            orderItem, primaryPair.location, primaryPair.inventory, order);
-                    
-                    // Only add fulfillment plan if promise date calculation was successful
-                    if (promiseDate != null) {
-                        // Build simplified fulfillment plan
-                        SourcingResponse.FulfillmentPlan plan = buildFulfillmentPlan(
-                                orderItem, strategy, promiseDate, order);
-                        fulfillmentPlans.add(plan);
-                    } else {
-                        log.info("Skipping fulfillment plan for item {} - delivery type {} not feasible", 
-                                orderItem.getSku(), orderItem.getDeliveryType());
-                    }
-                }
+                // Find optimal fulfillment strategy among the locations a carrier can ship from
+                strategies.set(strategies.size() - 1, findOptimalFulfillmentStrategy(
+                        pruneInfeasibleLocations(locations, orderItem, distances), 
+                        inventories, orderItem, order, distances, false));
                 
             } catch (Exception e) {
                 log.error("Error processing item: {}", orderItem.getSku(), e);
             }
         }
         
-        return fulfillmentPlans;
+        // Promise dates for every allocated location, then build plans
+        boolean estimated = deadline.isExpired();
+        List<SourcingResponse.FulfillmentPlan> plans = 
+                buildPlansWithPromiseDates(order.getOrderItems(), strategies, order, distances, estimated);
+        
+        List<LineResult> results = new ArrayList<>(plans.size());
+        for (int i = 0; i < plans.size(); i++) {
+            if (timedOut[i]) {
+                results.add(LineResult.TIMED_OUT);
+            } else if (estimated && plans.get(i) != null) {
+                results.add(new LineResult(plans.get(i), SourcingResponse.DegradationReason.ESTIMATED_PROMISE));
+            } else {
+                results.add(new LineResult(plans.get(i), null));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Runs a blocking lookup on the I/O executor and waits at most until the deadline; unbounded
+     * deadlines run it on the caller
+     */
+    private <T> T withinDeadline(Supplier<T> lookup, Deadline deadline) throws TimeoutException {
+        if (!deadline.isBounded()) {
+            return lookup.get();
+        }
+        CompletableFuture<T> future = ioExecutor.supply(lookup);
+        try {
+            return future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("Interrupted waiting for lookup");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new CompletionException(e.getCause());
+        }
+    }
+    
+    /**
+     * Response with the plans of every sourced line and the lines answered best-effort
+     */
+    private SourcingResponse buildResponse(OrderDTO order, List<LineResult> lineResults, long startTime) {
+        List<SourcingResponse.FulfillmentPlan> fulfillmentPlans = new ArrayList<>(lineResults.size());
+        List<SourcingResponse.DegradedLine> degradedLines = new ArrayList<>();
+        for (int i = 0; i < lineResults.size(); i++) {
+            LineResult result = lineResults.get(i);
+            if (result.plan != null) {
+                fulfillmentPlans.add(result.plan);
+            }
+            if (result.degradation != null) {
+                degradedLines.add(new SourcingResponse.DegradedLine(i, 
+                        order.getOrderItems().get(i).getSku(), result.degradation));
+            }
+        }
+        
+        if (!degradedLines.isEmpty()) {
+            log.warn("Order {} answered with {} degraded lines", 
+                    order.getTempOrderId(), degradedLines.size());
+        }
+        
+        return SourcingResponse.builder()
+                .orderId(order.getTempOrderId())
+                .fulfillmentPlans(fulfillmentPlans)
+                .processingTimeMs(System.currentTimeMillis() - startTime)
+                .degradedLines(degradedLines)
+                .build();
+    }
+    
+    /**
+     * Picks the path for an order. In AUTO mode the heuristic decides until both paths have minSamples
+     * observations, then the path with the lower predicted latency wins. Either way, small orders take
+     * the other path at the exploration rate, so both models keep learning without risking large orders.
+     */
+    private SourcingStrategy chooseSourcingStrategy(OrderDTO order, double[] features) {
+        switch (strategyMode) {
+            case BATCH:
+                return SourcingStrategy.BATCH;
+            case SEQUENTIAL:
+                return SourcingStrategy.SEQUENTIAL;
+            case HEURISTIC:
+                return decideSourcingStrategy(order);
+            default:
+                break;
+        }
+        
+        SourcingStrategy preferred;
+        if (batchLatencyModel.getSamples() < minSamples || sequentialLatencyModel.getSamples() < minSamples) {
+            preferred = decideSourcingStrategy(order);
+        } else {
+            double batchMs = batchLatencyModel.predict(features);
+            double sequentialMs = sequentialLatencyModel.predict(features);
+            preferred = batchMs <= sequentialMs ? SourcingStrategy.BATCH : SourcingStrategy.SEQUENTIAL;
+            log.debug("Predicted batch {}ms vs sequential {}ms for order: {}", 
+                    batchMs, sequentialMs, order.getTempOrderId());
+        }
+        
+        if (order.getOrderItems().size() <= explorationMaxItems 
+                && ThreadLocalRandom.current().nextDouble() < explorationRate) {
+            return preferred == SourcingStrategy.BATCH ? SourcingStrategy.SEQUENTIAL : SourcingStrategy.BATCH;
+        }
+        return preferred;
+    }
+    
+    /**
+     * Cost-model features: item count, distinct filters, distinct SKUs, and whether delivery types are mixed
+     */
+    private static double[] orderFeatures(OrderDTO order) {
+        List<OrderItemDTO> items = order.getOrderItems();
+        return new double[] {
+                items.size(),
+                items.stream().map(OrderItemDTO::getLocationFilterId).distinct().count(),
+                items.stream().map(OrderItemDTO::getSku).distinct().count(),
+                order.hasMultipleDeliveryTypes() ? 1.0 : 0.0
+        };
+    }
+    
+    private LatencyModel latencyModel(SourcingStrategy strategy) {
+        return strategy == SourcingStrategy.BATCH ? batchLatencyModel : sequentialLatencyModel;
     }
     
     /**
-     * Smart decision engine for batch vs sequential processing
+     * Current cost model state for both paths
+     */
+    @Override
+    public Map<String, Object> getStrategyModelStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", strategyMode);
+        stats.put("explorationRate", explorationRate);
+        stats.put("explorationMaxItems", explorationMaxItems);
+        stats.put("minSamples", minSamples);
+        stats.put("featureNames", List.of("itemCount", "distinctFilters", "distinctSkus", "mixedDeliveryTypes"));
+        stats.put("batchSamples", batchLatencyModel.getSamples());
+        stats.put("batchCoefficients", batchLatencyModel.getCoefficients());
+        stats.put("sequentialSamples", sequentialLatencyModel.getSamples());
+        stats.put("sequentialCoefficients", sequentialLatencyModel.getCoefficients());
+        return stats;
+    }
+    
+    /**
+     * Heuristic decision for batch vs sequential processing, used as the cost model's cold-start prior
      */
     private SourcingStrategy decideSourcingStrategy(OrderDTO order) {
         int itemCount = order.getOrderItems().size();
@@ -198,72 +1258,141 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
     }
     
     /**
-     * Build simplified fulfillment plans from batch results
+     * Computes promise dates for every (line, allocated location) in one pass and builds the plans.
+     * The result is aligned with the lines; an entry is null when the line has no strategy. A line with an
+     * allocated location no carrier can serve for its delivery type is re-allocated without that location,
+     * and its entry in strategies is replaced by the strategy the plan was built from.
      */
-    private List<SourcingResponse.FulfillmentPlan> buildSimplifiedFulfillmentPlans(
+    private List<SourcingResponse.FulfillmentPlan> buildPlansWithPromiseDates(
             List<OrderItemDTO> orderItems,
-            Map<String, List<Location>> filterResults,
-            Map<String, List<Inventory>> inventoryResults,
-            Map<String, PromiseDateBreakdown> promiseDateResults,
-            OrderDTO order) {
+            List<FulfillmentStrategy> strategies,
+            OrderDTO order,
+            DistanceVector distances,
+            boolean estimated) {
         
-        List<SourcingResponse.FulfillmentPlan> plans = new ArrayList<>();
+        // Each line owns the contiguous slots [firstSlot[i], firstSlot[i + 1])
+        List<PromiseDateRequest> requests = new ArrayList<>();
+        int[] firstSlot = new int[orderItems.size() + 1];
+        for (int i = 0; i < orderItems.size(); i++) {
+            firstSlot[i] = requests.size();
+            addPromiseDateRequests(orderItems.get(i), strategies.get(i), requests);
+        }
+        firstSlot[orderItems.size()] = requests.size();
         
-        for (OrderItemDTO orderItem : orderItems) {
-            try {
-                List<Location> locations = filterResults.get(orderItem.getLocationFilterId());
-                List<Inventory> inventories = inventoryResults.get(orderItem.getSku());
-                PromiseDateBreakdown promiseDate = promiseDateResults.get(orderItem.getSku());
-                
-                if (locations != null && !locations.isEmpty() && 
-                    inventories != null && !inventories.isEmpty()) {
-                    
-                    FulfillmentStrategy strategy = findOptimalFulfillmentStrategy(
-                            locations, inventories, orderItem, order);
-                    
-                    if (strategy != null && promiseDate != null) {
-                        SourcingResponse.FulfillmentPlan plan = buildFulfillmentPlan(
-                                orderItem, strategy, promiseDate, order);
-                        plans.add(plan);
+        List<PromiseDateBreakdown> promiseDates = promiseDates(requests, order, distances, estimated);
+        
+        List<SourcingResponse.FulfillmentPlan> plans = new ArrayList<>(orderItems.size());
+        for (int i = 0; i < orderItems.size(); i++) {
+            OrderItemDTO orderItem = orderItems.get(i);
+            FulfillmentStrategy strategy = strategies.get(i);
+            List<PromiseDateBreakdown> linePromiseDates = promiseDates.subList(firstSlot[i], firstSlot[i + 1]);
+            
+            // Every pass drops at least one location, so this ends once all are promised or none are left
+            Set<Integer> unpromisable = new HashSet<>();
+            while (strategy != null && !allAllocationsPromised(strategy, linePromiseDates)) {
+                for (int k = 0; k < strategy.allocations.size(); k++) {
+                    if (strategy.allocations.get(k).allocatedQuantity > 0 && linePromiseDates.get(k) == null) {
+                        unpromisable.add(strategy.allocations.get(k).location.getId());
                     }
                 }
-            } catch (Exception e) {
-                log.error("Error building fulfillment plan for item: {}", orderItem.getSku(), e);
+                log.info("Re-allocating item {} without locations {} - delivery type {} not feasible from them", 
+                        orderItem.getSku(), unpromisable, orderItem.getDeliveryType());
+                strategy = reallocateWithout(strategy, unpromisable, orderItem, order, estimated);
+                if (strategy != null) {
+                    List<PromiseDateRequest> lineRequests = new ArrayList<>(strategy.allocations.size());
+                    addPromiseDateRequests(orderItem, strategy, lineRequests);
+                    linePromiseDates = promiseDates(lineRequests, order, distances, estimated);
+                }
+            }
+            
+            if (strategies.get(i) != strategy) {
+                strategies.set(i, strategy);
             }
+            plans.add(strategy != null ? buildFulfillmentPlan(orderItem, strategy, linePromiseDates, order) : null);
         }
         
         return plans;
     }
     
+    private static void addPromiseDateRequests(OrderItemDTO orderItem, FulfillmentStrategy strategy, 
+                                               List<PromiseDateRequest> requests) {
+        if (strategy != null) {
+            for (LocationInventoryPair pair : strategy.allocations) {
+                requests.add(new PromiseDateRequest(orderItem, pair.location, pair.inventory, pair.allocatedQuantity));
+            }
+        }
+    }
+    
+    private List<PromiseDateBreakdown> promiseDates(List<PromiseDateRequest> requests, OrderDTO order, 
+                                                    DistanceVector distances, boolean estimated) {
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        } else if (estimated) {
+            return promiseDateService.estimateAllocationPromiseDates(requests, order, distances);
+        }
+        return promiseDateService.batchCalculateAllocationPromiseDates(requests, order, distances);
+    }
+    
+    /**
+     * The line's best strategy among its remaining candidates once the given locations are excluded
+     */
+    private FulfillmentStrategy reallocateWithout(FulfillmentStrategy strategy, Set<Integer> excludedLocationIds, 
+                                                  OrderItemDTO orderItem, OrderDTO order, boolean greedyOnly) {
+        List<LocationInventoryPair> remaining = strategy.candidates.stream()
+                .filter(pair -> !excludedLocationIds.contains(pair.location.getId()))
+                .collect(Collectors.toList());
+        return chooseStrategy(remaining, orderItem, order, 
+                scoringConfigurationService.getScoringConfigurationForItem(orderItem), greedyOnly);
+    }
+    
     /**
-     * Find optimal multi-location fulfillment strategy for an item
+     * Find optimal multi-location fulfillment strategy for an item over locations already pruned by
+     * pruneInfeasibleLocations
      */
     private FulfillmentStrategy findOptimalFulfillmentStrategy(
-            List<Location> locations, List<Inventory> inventories, OrderItemDTO orderItem, OrderDTO order) {
+            List<Location> locations, List<Inventory> inventories, OrderItemDTO orderItem, OrderDTO order,
+            DistanceVector distances, boolean greedyOnly) {
+        
+        if (locations.isEmpty()) {
+            return null;
+        }
+        
+        // Resolve the scoring configuration once for every candidate and split evaluation of this item
+        ScoringConfiguration scoringConfig = scoringConfigurationService.getScoringConfigurationForItem(orderItem);
         
         // Get all viable location-inventory pairs
         List<LocationInventoryPair> availablePairs = new ArrayList<>();
         for (Location location : locations) {
             for (Inventory inventory : inventories) {
                 if (inventory.getLocationId().equals(location.getId()) && inventory.getQuantity() > 0) {
-                    double score = calculateLocationScore(location, inventory, orderItem);
+                    double score = calculateLocationScore(location, inventory, orderItem, distances, scoringConfig);
                     availablePairs.add(new LocationInventoryPair(location, inventory, score));
                 }
             }
         }
         
+        // Sort by score (best first)
+        availablePairs.sort((a, b) -> Double.compare(b.score, a.score));
+        
+        return chooseStrategy(availablePairs, orderItem, order, scoringConfig, greedyOnly);
+    }
+    
+    /**
+     * Best of the single-location and multi-location strategies over candidate pairs sorted best first
+     */
+    private FulfillmentStrategy chooseStrategy(List<LocationInventoryPair> availablePairs, OrderItemDTO orderItem, 
+                                               OrderDTO order, ScoringConfiguration scoringConfig, boolean greedyOnly) {
         if (availablePairs.isEmpty()) {
             return null;
         }
         
-        // Sort by score (best first)
-        availablePairs.sort((a, b) -> Double.compare(b.score, a.score));
-        
-        // Strategy 1: Single location (if possible)
-        FulfillmentStrategy singleLocationStrategy = evaluateSingleLocationStrategy(availablePairs, orderItem, order);
+        // Strategy 1: Single location (if possible); skipped when answering past the deadline
+        FulfillmentStrategy singleLocationStrategy = greedyOnly ? null 
+                : evaluateSingleLocationStrategy(availablePairs, orderItem, order);
         
         // Strategy 2: Multi-location (greedy allocation)  
-        FulfillmentStrategy multiLocationStrategy = evaluateMultiLocationStrategy(availablePairs, orderItem, order);
+        FulfillmentStrategy multiLocationStrategy = evaluateMultiLocationStrategy(
+                availablePairs, orderItem, order, scoringConfig);
         
         // Choose the best strategy (single location preferred due to no split penalty)
         if (singleLocationStrategy != null && multiLocationStrategy != null) {
@@ -274,6 +1403,40 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
         return singleLocationStrategy != null ? singleLocationStrategy : multiLocationStrategy;
     }
     
+    /**
+     * Feasibility pruning: removes locations beyond the reach of every carrier that serves the
+     * item's delivery type and handling needs, so they are never scored or allocated. Locations whose
+     * distance is unknown (NaN, from missing coordinates) are removed as well.
+     */
+    private List<Location> pruneInfeasibleLocations(List<Location> locations, OrderItemDTO orderItem, 
+                                                    DistanceVector distances) {
+        double maxDistance = carrierService.getMaxServiceDistanceKm(
+                orderItem.getDeliveryType(), HandlingFlags.requiredMask(orderItem));
+        
+        List<Location> feasible = new ArrayList<>(locations.size());
+        int unknownDistance = 0;
+        for (Location location : locations) {
+            double distance = distances.distanceTo(location);
+            if (Double.isNaN(distance)) {
+                unknownDistance++;
+            } else if (distance <= maxDistance) {
+                feasible.add(location);
+            }
+        }
+        
+        if (unknownDistance > 0) {
+            log.warn("Excluded {} locations for item {} - no customer distance (missing coordinates)", 
+                    unknownDistance, orderItem.getSku());
+        }
+        
+        if (feasible.size() < locations.size()) {
+            log.debug("Pruned {} of {} locations for item {} - no carrier for {} within reach", 
+                    locations.size() - feasible.size(), locations.size(), 
+                    orderItem.getSku(), orderItem.getDeliveryType());
+        }
+        return feasible;
+    }
+    
     /**
      * Evaluate single location fulfillment strategy
      */
@@ -305,7 +1468,7 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
         
         double overallScore = bestPair.score; // No split penalty for single location
         
-        return new FulfillmentStrategy(allocations, quantityToFulfill, isPartialFulfillment, 
+        return new FulfillmentStrategy(allocations, pairs, quantityToFulfill, isPartialFulfillment, 
                                      false, overallScore, 0.0);
     }
     
@@ -313,7 +1476,8 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
      * Evaluate multi-location fulfillment strategy (greedy allocation)
      */
     private FulfillmentStrategy evaluateMultiLocationStrategy(
-            List<LocationInventoryPair> pairs, OrderItemDTO orderItem, OrderDTO order) {
+            List<LocationInventoryPair> pairs, OrderItemDTO orderItem, OrderDTO order, 
+            ScoringConfiguration scoringConfig) {
         
         List<LocationInventoryPair> allocations = new ArrayList<>();
         int remainingQuantity = orderItem.getQuantity();
@@ -341,7 +1505,7 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
         double baseScore = totalWeightedScore / totalAllocated;
         
         // Apply split penalty (configurable)
-        double splitPenalty = calculateSplitPenalty(allocations.size(), orderItem);
+        double splitPenalty = calculateSplitPenalty(allocations.size(), orderItem, scoringConfig);
         double overallScore = baseScore - splitPenalty;
         
         boolean isPartialFulfillment = totalAllocated < orderItem.getQuantity();
@@ -368,22 +1532,19 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
                      orderItem.getSku(), order.getTempOrderId());
         }
         
-        return new FulfillmentStrategy(allocations, totalAllocated, isPartialFulfillment, 
+        return new FulfillmentStrategy(allocations, pairs, totalAllocated, isPartialFulfillment, 
                                      isMultiLocation, overallScore, splitPenalty);
     }
     
     /**
-     * Calculate penalty for splitting shipments across multiple locations using configurable weights
+     * Calculate penalty for splitting shipments across multiple locations from the configuration's
+     * precomputed penalty table (no value-based penalty in the solver)
      */
-    private double calculateSplitPenalty(int locationCount, OrderItemDTO orderItem) {
+    private double calculateSplitPenalty(int locationCount, OrderItemDTO orderItem, ScoringConfiguration scoringConfig) {
         if (locationCount <= 1) return 0.0;
         
-        // Get scoring configuration for this order item
-        var scoringConfig = scoringConfigurationService.getScoringConfigurationForItem(orderItem);
-        
-        // Use configurable scoring service (without value-based penalties)
-        double penalty = scoringConfigurationService.calculateSplitPenalty(
-            locationCount, 0.0, scoringConfig, orderItem);
+        double penalty = scoringConfig.getSplitPenaltyTable().lookup(locationCount, 
+                SplitPenaltyTable.deliveryTypeIndex(orderItem.getDeliveryType()), false);
         
         log.debug("Calculated split penalty: {} for {} locations, item: {}, using config: {}", 
                   penalty, locationCount, orderItem.getSku(), scoringConfig.getId());
@@ -455,15 +1616,14 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
     /**
      * Calculate location score based on multiple factors using configurable weights
      */
-    private double calculateLocationScore(Location location, Inventory inventory, OrderItemDTO orderItem) {
-        // Get scoring configuration for this order item
-        var scoringConfig = scoringConfigurationService.getScoringConfigurationForItem(orderItem);
-        
+    private double calculateLocationScore(Location location, Inventory inventory, OrderItemDTO orderItem, 
+                                          DistanceVector distances, ScoringConfiguration scoringConfig) {
         // Create context for scoring calculation
         Map<String, Object> context = new HashMap<>();
         double inventoryRatio = Math.min(1.0, (double) inventory.getQuantity() / orderItem.getQuantity());
         context.put("inventoryRatio", inventoryRatio);
         context.put("processingTime", inventory.getProcessingTime());
+        context.put("distance", distances.distanceTo(location));
         
         // Use configurable scoring service
         double score = scoringConfigurationService.calculateLocationScore(location, scoringConfig, orderItem, context);
@@ -474,17 +1634,28 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
         return score;
     }
     
+    private static boolean allAllocationsPromised(FulfillmentStrategy strategy, List<PromiseDateBreakdown> promiseDates) {
+        for (int i = 0; i < strategy.allocations.size(); i++) {
+            if (strategy.allocations.get(i).allocatedQuantity > 0 && promiseDates.get(i) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     /**
      * Build fulfillment plan
      */
     private SourcingResponse.FulfillmentPlan buildFulfillmentPlan(
             OrderItemDTO orderItem, FulfillmentStrategy strategy, 
-            PromiseDateBreakdown promiseDate, OrderDTO order) {
+            List<PromiseDateBreakdown> promiseDates, OrderDTO order) {
         
         List<SourcingResponse.LocationAllocation> locationAllocations = new ArrayList<>();
         
         // Only include locations that are actually allocated in the optimal plan
-        for (LocationInventoryPair pair : strategy.allocations) {
+        for (int i = 0; i < strategy.allocations.size(); i++) {
+            LocationInventoryPair pair = strategy.allocations.get(i);
+            PromiseDateBreakdown promiseDate = promiseDates.get(i);
             if (pair.allocatedQuantity > 0) {
                 SourcingResponse.DeliveryTiming deliveryTiming = 
                     SourcingResponse.DeliveryTiming.builder()
@@ -492,6 +1663,11 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
                         .estimatedDeliveryDate(promiseDate.getEstimatedDeliveryDate())
                         .transitTimeDays(pair.location.getTransitTime())
                         .processingTimeHours(pair.inventory.getProcessingTime() * 24)
+                        .onTimeProbability(promiseDate.getOnTimeProbability())
+                        .p90DeliveryDate(promiseDate.getP90DeliveryDate())
+                        .carrierCode(promiseDate.getCarrierCode())
+                        .shippingCost(promiseDate.getShippingCost())
+                        .estimated(promiseDate.getEstimated())
                         .build();
                 
                 SourcingResponse.LocationAllocation allocation = 
@@ -518,11 +1694,18 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
     }
     
     
-    private SourcingResponse createErrorResponse(OrderDTO order, Exception e, long processingTime) {
+    private SourcingResponse createErrorResponse(OrderDTO order, Throwable e, long processingTime) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return createErrorResponse(order, cause != null ? cause.getMessage() : null, processingTime);
+    }
+    
+    private SourcingResponse createErrorResponse(OrderDTO order, String error, long processingTime) {
         return SourcingResponse.builder()
                 .orderId(order.getTempOrderId())
                 .fulfillmentPlans(Collections.emptyList())
                 .processingTimeMs(processingTime)
+                .degradedLines(Collections.emptyList())
+                .error(error)
                 .build();
     }
     
@@ -558,16 +1741,18 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
     
     private static class FulfillmentStrategy {
         final List<LocationInventoryPair> allocations;
+        final List<LocationInventoryPair> candidates; // Every pair considered, best first; for re-allocation
         final int totalFulfilled;
         final boolean isPartialFulfillment;
         final boolean isMultiLocation;
         final double overallScore;
         final double splitPenalty;
         
-        FulfillmentStrategy(List<LocationInventoryPair> allocations, int totalFulfilled, 
-                          boolean isPartialFulfillment, boolean isMultiLocation, 
+        FulfillmentStrategy(List<LocationInventoryPair> allocations, List<LocationInventoryPair> candidates, 
+                          int totalFulfilled, boolean isPartialFulfillment, boolean isMultiLocation, 
                           double overallScore, double splitPenalty) {
             this.allocations = allocations;
+            this.candidates = candidates;
             this.totalFulfilled = totalFulfilled;
             this.isPartialFulfillment = isPartialFulfillment;
             this.isMultiLocation = isMultiLocation;
@@ -576,6 +1761,137 @@ public class BatchSourcingServiceImpl implements BatchSourcingService {
         }
     }
     
+    private static class WaveLine {
+        final int orderIndex;
+        final int itemIndex;
+        final OrderDTO order;
+        final OrderItemDTO orderItem;
+        final DistanceVector distances;
+        List<Location> locations = Collections.emptyList();
+        double bestScore = Double.NEGATIVE_INFINITY;
+        SourcingResponse.FulfillmentPlan plan;
+        SourcingResponse.DegradationReason degradation;
+        
+        WaveLine(int orderIndex, int itemIndex, OrderDTO order, OrderItemDTO orderItem, DistanceVector distances) {
+            this.orderIndex = orderIndex;
+            this.itemIndex = itemIndex;
+            this.order = order;
+            this.orderItem = orderItem;
+            this.distances = distances;
+        }
+    }
+    
+    /**
+     * Outcome of one order line: its plan (null if it could not be sourced) and why it was answered best-effort
+     */
+    private static class LineResult {
+        static final LineResult NONE = new LineResult(null, null);
+        static final LineResult TIMED_OUT = new LineResult(null, SourcingResponse.DegradationReason.TIMED_OUT);
+        static final LineResult INVENTORY_UNAVAILABLE = 
+                new LineResult(null, SourcingResponse.DegradationReason.INVENTORY_UNAVAILABLE);
+        static final LineResult NOT_IN_MEMORY = 
+                new LineResult(null, SourcingResponse.DegradationReason.NOT_IN_MEMORY);
+        static final LineResult FILTER_UNAVAILABLE = 
+                new LineResult(null, SourcingResponse.DegradationReason.FILTER_UNAVAILABLE);
+        
+        final SourcingResponse.FulfillmentPlan plan;
+        final SourcingResponse.DegradationReason degradation;
+        
+        LineResult(SourcingResponse.FulfillmentPlan plan, SourcingResponse.DegradationReason degradation) {
+            this.plan = plan;
+            this.degradation = degradation;
+        }
+    }
+    
+    /**
+     * Responses of one bulk chunk in completion order; only the first answer for each order is kept, so each
+     * order is handed over exactly once however its pipeline and the chunk's deadline race
+     */
+    private static class BulkResponses {
+        final BlockingQueue<SourcingResponse> completed;
+        final AtomicBoolean[] answered;
+        
+        BulkResponses(int orders) {
+            completed = new ArrayBlockingQueue<>(orders);
+            answered = new AtomicBoolean[orders];
+            for (int i = 0; i < orders; i++) {
+                answered[i] = new AtomicBoolean();
+            }
+        }
+        
+        void answer(int index, SourcingResponse response) {
+            if (answered[index].compareAndSet(false, true)) {
+                completed.add(response);
+            }
+        }
+        
+        /**
+         * Answers every order that has no response yet; returns how many there were
+         */
+        int answerRemaining(IntFunction<SourcingResponse> response) {
+            int answeredNow = 0;
+            for (int i = 0; i < answered.length; i++) {
+                if (answered[i].compareAndSet(false, true)) {
+                    completed.add(response.apply(i));
+                    answeredNow++;
+                }
+            }
+            return answeredNow;
+        }
+        
+        SourcingResponse poll(long timeoutMs) throws InterruptedException {
+            return completed.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        
+        SourcingResponse take() throws InterruptedException {
+            return completed.take();
+        }
+    }
+    
+    /**
+     * Incremental sourcing state of one cart: eligible locations per filter and plans per line content
+     */
+    private static class CartSession {
+        final String contextKey;
+        final Map<String, CartLine> lines = new ConcurrentHashMap<>();
+        final Map<String, SessionFilter> eligibleLocations = new ConcurrentHashMap<>();
+        volatile long lastUsedNanos;
+        
+        CartSession(String contextKey) {
+            this.contextKey = contextKey;
+        }
+    }
+    
+    private static class CartLine {
+        final String sku;
+        final String filterId;
+        final SourcingResponse.FulfillmentPlan plan;
+        final long plannedAtNanos;
+        final long generation;
+        
+        CartLine(OrderItemDTO orderItem, SourcingResponse.FulfillmentPlan plan, long plannedAtNanos, long generation) {
+            this.sku = orderItem.getSku();
+            this.filterId = orderItem.getLocationFilterId();
+            this.plan = plan;
+            this.plannedAtNanos = plannedAtNanos;
+            this.generation = generation;
+        }
+    }
+    
+    private static class SessionFilter {
+        final List<Location> locations;
+        final long generation;
+        
+        SessionFilter(List<Location> locations, long generation) {
+            this.locations = locations;
+            this.generation = generation;
+        }
+    }
+    
+    private enum StrategyMode {
+        AUTO, HEURISTIC, BATCH, SEQUENTIAL
+    }
+    
     private enum SourcingStrategy {
         BATCH, SEQUENTIAL
     }
@@ -1,16 +1,27 @@
 package com.ordersourcing.engine.service.impl;
 
 import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
+import com.ordersourcing.engine.index.CarrierIndex;
+import com.ordersourcing.engine.index.HandlingFlags;
 import com.ordersourcing.engine.model.CarrierConfiguration;
+import com.ordersourcing.engine.model.RateCard;
 import com.ordersourcing.engine.repository.CarrierConfigurationRepository;
+import com.ordersourcing.engine.repository.RateCardRepository;
 import com.ordersourcing.engine.service.CarrierService;
+import com.ordersourcing.engine.util.AdaptiveLimiter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 @Slf4j
@@ -19,37 +30,36 @@ public class CarrierServiceImpl implements CarrierService {
     @Autowired
     private CarrierConfigurationRepository carrierConfigurationRepository;
     
+    @Autowired
+    private RateCardRepository rateCardRepository;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private AdaptiveLimiter databaseLimiter;
+    
+    private volatile CarrierIndex carrierIndex;
+    private final AtomicLong versions = new AtomicLong();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    
     /**
      * Gets the best carrier configuration for a delivery type and location
      */
-    @Cacheable(value = "carrierConfigs", key = "#deliveryType + ':' + #distance")
     @Override
     public Optional<CarrierConfiguration> getBestCarrierConfiguration(String deliveryType, 
                                                                      Double distance, 
                                                                      OrderItemDTO orderItem) {
         log.debug("Finding carrier for delivery type: {}, distance: {} km", deliveryType, distance);
         
-        List<CarrierConfiguration> carriers = carrierConfigurationRepository
-                .findByDeliveryTypeAndMaxDistance(deliveryType, distance);
-        
-        log.debug("Found {} carriers for delivery type: {}", carriers.size(), deliveryType);
-        
-        Optional<CarrierConfiguration> result = carriers.stream()
-                .filter(carrier -> {
-                    boolean suitable = isCarrierSuitableForItem(carrier, orderItem);
-                    if (!suitable) {
-                        log.debug("Carrier {} not suitable for item - hazmat: {}, cold: {}, high value: {}", 
-                                carrier.getCarrierCode(), 
-                                orderItem.getIsHazmat(),
-                                orderItem.getRequiresColdStorage(),
-                                orderItem.requiresHighSecurity());
-                    }
-                    return suitable;
-                })
-                .findFirst(); // Already ordered by priority
+        int handlingMask = HandlingFlags.requiredMask(orderItem);
+        Optional<CarrierConfiguration> result = Optional.ofNullable(getCarrierIndex().bestCarrier(
+                deliveryType, distance != null ? distance : Double.NaN, handlingMask));
         
         if (result.isEmpty()) {
-            log.warn("No suitable carrier found for delivery type: {} at distance: {} km", deliveryType, distance);
+            log.warn("No suitable carrier found for delivery type: {} at distance: {} km - hazmat: {}, cold: {}, high value: {}", 
+                    deliveryType, distance, orderItem.getIsHazmat(), orderItem.getRequiresColdStorage(), 
+                    orderItem.requiresHighSecurity());
         } else {
             log.debug("Selected carrier: {} for delivery type: {}", result.get().getCarrierCode(), deliveryType);
         }
@@ -58,21 +68,81 @@ public class CarrierServiceImpl implements CarrierService {
     }
     
     /**
-     * Checks if carrier supports special handling requirements
+     * Gets the farthest distance (km) any carrier can ship a delivery type with the given handling mask
      */
-    private boolean isCarrierSuitableForItem(CarrierConfiguration carrier, OrderItemDTO orderItem) {
-        // Check hazmat requirements
-        if (orderItem.getIsHazmat() != null && orderItem.getIsHazmat() && !carrier.getSupportsHazmat()) {
-            return false;
+    @Override
+    public double getMaxServiceDistanceKm(String deliveryType, int handlingMask) {
+        return getCarrierIndex().maxServiceDistanceKm(deliveryType, handlingMask);
+    }
+    
+    /**
+     * Gets the current carrier index snapshot, building it on first use
+     */
+    @Override
+    public CarrierIndex getCarrierIndex() {
+        CarrierIndex current = carrierIndex;
+        if (current == null) {
+            refreshCarrierIndex();
+            current = carrierIndex;
         }
-        
-        // Check cold storage requirements
-        if (orderItem.getRequiresColdStorage() != null && orderItem.getRequiresColdStorage() 
-                && !carrier.getSupportsColdChain()) {
-            return false;
+        return current != null ? current : CarrierIndex.empty();
+    }
+    
+    @Override
+    public boolean isCarrierIndexLoaded() {
+        return carrierIndex != null;
+    }
+    
+    /**
+     * Reloads carrier configurations and rate cards and swaps in a new index if anything changed
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${sourcing.index.carrier-refresh-ms:60000}", 
+               initialDelayString = "${sourcing.index.carrier-refresh-ms:60000}")
+    public void refreshCarrierIndex() {
+        refreshLock.lock();
+        try {
+            // Under database pressure keep serving the current snapshot; the next refresh retries.
+            // With no snapshot yet the load runs regardless, since sourcing cannot proceed without one.
+            AdaptiveLimiter.Token token = databaseLimiter.tryAcquire();
+            if (token == null && carrierIndex != null) {
+                log.debug("Database limit reached; keeping carrier index version {}", carrierIndex.getVersion());
+                return;
+            }
+            List<CarrierConfiguration> carriers;
+            List<RateCard> rateCards;
+            try {
+                carriers = new ArrayList<>(carrierConfigurationRepository.findAll());
+                rateCards = new ArrayList<>(rateCardRepository.findAll());
+            } catch (RuntimeException e) {
+                if (token != null) {
+                    token.dropped();
+                }
+                throw e;
+            }
+            if (token != null) {
+                token.success();
+            }
+            carriers.sort(Comparator.comparing(CarrierConfiguration::getId));
+            rateCards.sort(Comparator.comparing(RateCard::getId));
+            
+            CarrierIndex previous = carrierIndex;
+            if (previous != null && previous.matches(carriers, rateCards)) {
+                return;
+            }
+            
+            carrierIndex = CarrierIndex.build(carriers, rateCards, versions.incrementAndGet());
+            log.info("Built carrier index version {} with {} carrier configurations and {} rate cards", 
+                    carrierIndex.getVersion(), carriers.size(), rateCards.size());
+            
+            if (previous != null) {
+                eventPublisher.publishEvent(new SourcingDataChangedEvent(
+                        this, SourcingDataChangedEvent.DataType.CARRIER));
+            }
+        } catch (Exception e) {
+            log.error("Error refreshing carrier index, keeping previous snapshot", e);
+        } finally {
+            refreshLock.unlock();
         }
-        
-        // Check high value requirements
-        return !orderItem.requiresHighSecurity() || carrier.getSupportsHighValue();
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,28 @@
 package com.ordersourcing.engine.service.impl;
 
 import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
 import com.ordersourcing.engine.model.Inventory;
 import com.ordersourcing.engine.repository.InventoryRepository;
 import com.ordersourcing.engine.service.InventoryApiService;
+import com.ordersourcing.engine.util.AdaptiveLimiter;
+import com.ordersourcing.engine.util.BoundedCache;
+import com.ordersourcing.engine.util.StageExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,14 +32,37 @@ public class InventoryApiServiceImpl implements InventoryApiService {
     @Autowired
     private InventoryRepository inventoryRepository;
     
-    public InventoryApiServiceImpl() {
+    @Autowired
+    @Qualifier("sourcingIoExecutor")
+    private StageExecutor ioExecutor;
+    
+    @Autowired
+    private AdaptiveLimiter databaseLimiter;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    // Last inventory read per SKU, served when the database limit is reached while younger than the max age,
+    // or for as long as the SKU is pinned
+    private final BoundedCache<String, KnownStock> lastKnownInventory;
+    private final long fallbackMaxAgeNanos;
+    private LongSupplier nanoClock = System::nanoTime;
+    
+    public InventoryApiServiceImpl(
+            @Value("${sourcing.db-limiter.inventory-fallback-entries:10000}") int fallbackEntries,
+            @Value("${sourcing.db-limiter.inventory-fallback-max-age-ms:30000}") long fallbackMaxAgeMs) {
+        this.lastKnownInventory = new BoundedCache<>(fallbackEntries);
+        this.fallbackMaxAgeNanos = fallbackMaxAgeMs * 1_000_000L;
     }
     
     /**
-     * Batch fetch inventory for multiple SKUs from database
+     * Batch fetch inventory for multiple SKUs from database on the I/O executor
      */
-    public CompletableFuture<Map<String, List<Inventory>>> batchFetchInventory(List<OrderItemDTO> orderItems) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<InventoryLookup> batchFetchInventory(List<OrderItemDTO> orderItems) {
+        return ioExecutor.supply(() -> {
             try {
                 // Extract unique SKUs
                 List<String> skus = orderItems.stream()
@@ -37,27 +72,44 @@ public class InventoryApiServiceImpl implements InventoryApiService {
                 
                 log.debug("Batch fetching inventory for {} SKUs from database", skus.size());
                 
-                // Use batch query to fetch all inventory records at once
-                List<Inventory> allInventories = inventoryRepository.findBySkusWithStock(skus);
+                // Use batch query to fetch all inventory records at once, unless the database is at its limit
+                List<Inventory> allInventories = databaseLimiter.call(
+                        () -> inventoryRepository.findBySkusWithStock(skus), () -> null);
+                if (allInventories == null) {
+                    return lastKnownInventory(skus);
+                }
                 
                 // Group by SKU
                 Map<String, List<Inventory>> results = allInventories.stream()
                         .collect(Collectors.groupingBy(Inventory::getSku));
                 
-                // Ensure all requested SKUs are in the results (even if empty)
+                // Ensure all requested SKUs are in the results (even if empty), noting stock that moved since the last read
+                Set<String> changed = new HashSet<>();
+                long readAt = nanoClock.getAsLong();
                 for (String sku : skus) {
                     results.putIfAbsent(sku, Collections.emptyList());
+                    KnownStock previous = lastKnownInventory.get(sku);
+                    // Rows with equal quantity come back in no fixed order, so compare as sets
+                    if (previous != null 
+                            && !new HashSet<>(previous.inventories()).equals(new HashSet<>(results.get(sku)))) {
+                        changed.add(sku);
+                    }
+                    lastKnownInventory.put(sku, new KnownStock(results.get(sku), readAt));
+                }
+                if (!changed.isEmpty()) {
+                    inventoryChanged(changed);
                 }
                 
                 log.debug("Found inventory for {} out of {} requested SKUs", 
                          results.values().stream().mapToInt(inventories -> inventories.isEmpty() ? 0 : 1).sum(),
                          skus.size());
                 
-                return results;
+                return InventoryLookup.of(results);
                 
             } catch (Exception e) {
+                // Stock of every SKU is unknown, not zero
                 log.error("Error in batch inventory fetch from database", e);
-                return new HashMap<>();
+                return InventoryLookup.of(Collections.emptyMap());
             }
         });
     }
@@ -67,9 +119,15 @@ public class InventoryApiServiceImpl implements InventoryApiService {
      */
     @Cacheable(value = "inventory", key = "#sku", unless = "#result == null")
     public List<Inventory> fetchInventoryBySku(String sku) {
+        // Fail fast past the database limit; the exception keeps the miss out of the cache
+        AdaptiveLimiter.Token token = databaseLimiter.tryAcquire();
+        if (token == null) {
+            throw new RejectedExecutionException("Database limit reached fetching inventory for SKU: " + sku);
+        }
         try {
             log.debug("Fetching inventory for SKU: {} from database", sku);
             List<Inventory> inventories = inventoryRepository.findBySkuAndQuantityGreaterThan(sku, 0);
+            token.success();
             
             if (inventories.isEmpty()) {
                 log.warn("No inventory found for SKU: {}", sku);
@@ -80,9 +138,79 @@ public class InventoryApiServiceImpl implements InventoryApiService {
             return inventories;
             
         } catch (Exception e) {
+            token.dropped();
             log.error("Error fetching inventory for SKU: {} from database", sku, e);
             return Collections.emptyList();
         }
     }
     
+    /**
+     * Publishes an inventory change for the given SKUs
+     */
+    @Override
+    public void inventoryChanged(Set<String> skus) {
+        log.debug("Inventory changed for SKUs: {}", skus);
+        eventPublisher.publishEvent(new SourcingDataChangedEvent(
+                this, SourcingDataChangedEvent.DataType.INVENTORY, skus));
+    }
+    
+    @Override
+    public void pinSkus(Set<String> skus) {
+        lastKnownInventory.pin(skus);
+    }
+    
+    @Override
+    public void unpinSkus(Set<String> skus) {
+        lastKnownInventory.unpin(skus);
+    }
+    
+    @Override
+    public boolean hasPinnedStock(String sku) {
+        return lastKnownInventory.isPinned(sku) && lastKnownInventory.get(sku) != null;
+    }
+    
+    /**
+     * Evicts cached single-SKU lookups for changed inventory
+     */
+    @EventListener
+    public void onSourcingDataChanged(SourcingDataChangedEvent event) {
+        if (event.getDataType() != SourcingDataChangedEvent.DataType.INVENTORY) {
+            return;
+        }
+        Cache inventoryCache = cacheManager.getCache("inventory");
+        if (inventoryCache == null) {
+            return;
+        }
+        if (event.affectsAll()) {
+            inventoryCache.clear();
+        } else {
+            event.getKeys().forEach(inventoryCache::evict);
+        }
+    }
+    
+    /**
+     * Last inventory read for each SKU pinned or read within the max age; SKUs never read, or read too
+     * long ago and not pinned, are left out so their stock is reported unknown rather than zero
+     */
+    private InventoryLookup lastKnownInventory(List<String> skus) {
+        Map<String, List<Inventory>> results = new HashMap<>();
+        long now = nanoClock.getAsLong();
+        for (String sku : skus) {
+            KnownStock known = lastKnownInventory.get(sku);
+            if (known != null 
+                    && (now - known.readAtNanos() <= fallbackMaxAgeNanos || lastKnownInventory.isPinned(sku))) {
+                results.put(sku, known.inventories());
+            }
+        }
+        log.warn("Database limit reached; serving last known inventory for {} of {} SKUs, the rest unknown", 
+                results.size(), skus.size());
+        return new InventoryLookup(results, results.keySet());
+    }
+    
+    /**
+     * One SKU's rows from a database read and when they were read
+     */
+    private record KnownStock(List<Inventory> inventories, long readAtNanos) {
+    }
+    
 }
\ No newline at end of file
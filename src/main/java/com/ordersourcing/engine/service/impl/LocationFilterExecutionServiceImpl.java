@@ -8,15 +8,26 @@ import com.googlecode.aviator.runtime.type.AviatorDouble;
 import com.googlecode.aviator.runtime.type.AviatorObject;
 import com.ordersourcing.engine.dto.OrderDTO;
 import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
+import com.ordersourcing.engine.index.DistanceVector;
 import com.ordersourcing.engine.model.Location;
 import com.ordersourcing.engine.model.LocationFilter;
 import com.ordersourcing.engine.repository.LocationFilterRepository;
 import com.ordersourcing.engine.repository.LocationRepository;
 import com.ordersourcing.engine.service.LocationFilterExecutionService;
+import com.ordersourcing.engine.service.LocationIndexService;
+import com.ordersourcing.engine.util.AdaptiveLimiter;
+import com.ordersourcing.engine.util.GeoUtils;
+import com.ordersourcing.engine.util.StageExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
@@ -24,6 +35,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @Slf4j
@@ -36,7 +48,30 @@ public class LocationFilterExecutionServiceImpl implements LocationFilterExecuti
     private LocationRepository locationRepository;
     
     @Autowired
-    private ApplicationContext applicationContext;
+    private LocationIndexService locationIndexService;
+    
+    @Autowired
+    @Qualifier("sourcingIoExecutor")
+    private StageExecutor ioExecutor;
+    
+    @Autowired
+    @Qualifier("sourcingCpuExecutor")
+    private StageExecutor cpuExecutor;
+    
+    @Autowired
+    private AdaptiveLimiter databaseLimiter;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    // Script variable holding the precomputed customer distance for the current location
+    private static final String DISTANCE_VARIABLE = "distance";
+    
+    // Order fields a filter may read and still share results across orders in the same geo-cell
+    private static final Set<String> GEO_ORDER_VARIABLES = Set.of("order.latitude", "order.longitude");
     
     // Pre-computed filter results cache
     private final Map<String, Set<Integer>> precomputedResults = new ConcurrentHashMap<>();
@@ -45,12 +80,24 @@ public class LocationFilterExecutionServiceImpl implements LocationFilterExecuti
     // Compiled expression cache
     private final Map<String, Expression> expressionCache = new ConcurrentHashMap<>();
     
+    // Last active definition read per filter, used when the database limit is reached
+    private final Map<String, LocationFilter> knownFilters = new ConcurrentHashMap<>();
+    
     
     /**
      * Execute location filter with intelligent caching
      */
     @Cacheable(value = "locationFilters", key = "#filterId + ':' + #orderContext.hashCode()")
     public List<Location> executeLocationFilter(String filterId, OrderDTO orderContext) {
+        return executeLocationFilter(filterId, orderContext, 
+                locationIndexService.computeDistances(orderContext.getLatitude(), orderContext.getLongitude()));
+    }
+    
+    /**
+     * Execute location filter using the request's precomputed distance vector
+     */
+    @Cacheable(value = "locationFilters", key = "#filterId + ':' + #orderContext.hashCode()")
+    public List<Location> executeLocationFilter(String filterId, OrderDTO orderContext, DistanceVector distances) {
         try {
             // Try pre-computed results first (fastest path)
             Optional<List<Location>> precomputed = tryPrecomputedResults(filterId);
@@ -59,7 +106,7 @@ public class LocationFilterExecutionServiceImpl implements LocationFilterExecuti
             }
             
             // Get filter configuration
-            Optional<LocationFilter> filterOpt = locationFilterRepository.findByIdAndIsActiveTrue(filterId);
+            Optional<LocationFilter> filterOpt = findActiveFilter(filterId);
             if (filterOpt.isEmpty()) {
                 log.warn("Location filter not found or inactive: {}", filterId);
                 return Collections.emptyList();
@@ -68,56 +115,379 @@ public class LocationFilterExecutionServiceImpl implements LocationFilterExecuti
             LocationFilter filter = filterOpt.get();
             
             // Execute script on all locations
-            return executeFilterScript(filter, orderContext);
+            return executeFilterScript(filter, orderContext, distances);
             
+        } catch (RejectedExecutionException e) {
+            // Thrown past the cache, so a definition the database could not serve is read again next time
+            throw e;
         } catch (Exception e) {
             log.error("Error executing location filter: {}", filterId, e);
             return Collections.emptyList();
         }
     }
     
+    /**
+     * Execute a filter from its last loaded definition against the location index snapshot
+     */
+    public Optional<List<Location>> executeKnownFilter(String filterId, OrderDTO orderContext, DistanceVector distances) {
+        LocationFilter filter = knownFilters.get(filterId);
+        if (filter == null) {
+            return Optional.empty();
+        }
+        Expression compiledExpression = getCompiledExpression(filter);
+        if (compiledExpression == null) {
+            return Optional.of(Collections.emptyList());
+        }
+        return Optional.of(evaluateFilter(filter, compiledExpression, 
+                distances.getIndex().getLocations(), orderContext, distances));
+    }
+    
+    /**
+     * Read and compile a filter's definition without evaluating it, so no per-order result is cached
+     */
+    public boolean loadDefinition(String filterId) {
+        try {
+            findActiveFilter(filterId).ifPresent(this::getCompiledExpression);
+        } catch (RejectedExecutionException e) {
+            log.debug("Database limit reached loading filter: {}", filterId);
+        }
+        return knownFilters.containsKey(filterId);
+    }
+    
     /**
      * Batch execute multiple filters in parallel
      */
     public CompletableFuture<Map<String, List<Location>>> batchExecuteFilters(
             Set<String> filterIds, OrderDTO orderContext) {
+        return batchExecuteFilters(filterIds, orderContext, 
+                locationIndexService.computeDistances(orderContext.getLatitude(), orderContext.getLongitude()));
+    }
+    
+    /**
+     * Batch execute multiple filters in parallel on the CPU executor, sharing the request's distance vector
+     */
+    public CompletableFuture<Map<String, List<Location>>> batchExecuteFilters(
+            Set<String> filterIds, OrderDTO orderContext, DistanceVector distances) {
+        return collectResults(executeFiltersAsync(filterIds, orderContext, distances));
+    }
+    
+    /**
+     * Start every filter in parallel and return one future per filter, so callers can continue
+     * with each filter's result as soon as it is ready. Definitions not loaded yet are read on the
+     * I/O executor; only script evaluation, against the distance vector's location snapshot, runs on the CPU pool.
+     * A filter that cannot be loaded or evaluated completes exceptionally rather than with no locations.
+     */
+    public Map<String, CompletableFuture<List<Location>>> executeFiltersAsync(
+            Set<String> filterIds, OrderDTO orderContext, DistanceVector distances) {
         
-        return CompletableFuture.supplyAsync(() -> {
-            Map<String, List<Location>> results = new ConcurrentHashMap<>();
-            
-            filterIds.parallelStream().forEach(filterId -> {
-                try {
-                    List<Location> locations = applicationContext.getBean(LocationFilterExecutionService.class)
-                            .executeLocationFilter(filterId, orderContext);
-                    results.put(filterId, locations);
-                } catch (Exception e) {
-                    log.error("Error in batch filter execution for filter: {}", filterId, e);
-                    results.put(filterId, Collections.emptyList());
-                }
-            });
+        Cache resultCache = cacheManager.getCache("locationFilters");
+        Map<String, CompletableFuture<List<Location>>> futures = new HashMap<>();
+        for (String filterId : filterIds) {
+            String cacheKey = filterId + ':' + orderContext.hashCode();
+            List<Location> cached = cachedResult(resultCache, cacheKey);
+            if (cached != null) {
+                futures.put(filterId, CompletableFuture.completedFuture(cached));
+                continue;
+            }
             
-            return results;
+            futures.put(filterId, resolveFilter(filterId)
+                    .thenApplyAsync(resolved -> {
+                        if (resolved.precomputed() != null) {
+                            return resolved.precomputed();
+                        }
+                        List<Location> result = evaluateResolved(resolved, filterId, orderContext, distances);
+                        if (resultCache != null && resolved.filter() != null) {
+                            resultCache.put(cacheKey, result);
+                        }
+                        return result;
+                    }, cpuExecutor)
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.error("Error in batch filter execution for filter: {}", filterId, e);
+                        }
+                    }));
+        }
+        
+        return futures;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Location> cachedResult(Cache resultCache, String cacheKey) {
+        Cache.ValueWrapper cached = resultCache != null ? resultCache.get(cacheKey) : null;
+        return cached != null ? (List<Location>) cached.get() : null;
+    }
+    
+    /**
+     * Definition (or pre-computed result) of a filter. The last loaded definition is used directly;
+     * anything that needs the repository is read on the I/O executor.
+     */
+    private CompletableFuture<ResolvedFilter> resolveFilter(String filterId) {
+        LocationFilter known = knownFilters.get(filterId);
+        if (known != null && !precomputedResults.containsKey(filterId)) {
+            return CompletableFuture.completedFuture(new ResolvedFilter(known, null));
+        }
+        return ioExecutor.supply(() -> {
+            Optional<List<Location>> precomputed = tryPrecomputedResults(filterId);
+            if (precomputed.isPresent()) {
+                return new ResolvedFilter(null, precomputed.get());
+            }
+            return new ResolvedFilter(findActiveFilter(filterId).orElse(null), null);
         });
     }
     
+    /**
+     * Evaluate a resolved definition for one order; a missing definition or broken script matches nothing
+     */
+    private List<Location> evaluateResolved(ResolvedFilter resolved, String filterId, OrderDTO orderContext,
+                                            DistanceVector distances) {
+        if (resolved.filter() == null) {
+            log.warn("Location filter not found or inactive: {}", filterId);
+            return Collections.emptyList();
+        }
+        Expression compiledExpression = getCompiledExpression(resolved.filter());
+        if (compiledExpression == null) {
+            return Collections.emptyList();
+        }
+        return evaluateFilter(resolved.filter(), compiledExpression, 
+                distances.getIndex().getLocations(), orderContext, distances);
+    }
     
+    /**
+     * Active filter definition, or a pre-computed result that replaces evaluation
+     */
+    private record ResolvedFilter(LocationFilter filter, List<Location> precomputed) {
+    }
     
     /**
-     * Execute filter script with enhanced context
+     * Key under which a filter's result can be shared between orders: the filter ID when the script
+     * never reads the order, the filter ID and geo-cell when it only reads the order's coordinates or
+     * distance, and null when it reads other order fields and must run per order
      */
-    private List<Location> executeFilterScript(LocationFilter filter, OrderDTO orderContext) {
-        List<Location> allLocations = locationRepository.findAll();
-        List<Location> filteredLocations = new ArrayList<>();
+    public String sharedResultKey(String filterId, OrderDTO orderContext, double cellDegrees) {
+        Expression compiledExpression = expressionCache.get(filterId);
+        if (compiledExpression == null) {
+            Optional<LocationFilter> filterOpt;
+            try {
+                filterOpt = findActiveFilter(filterId);
+            } catch (RejectedExecutionException e) {
+                // Definition unknown for now, so nothing can be shared
+                return null;
+            }
+            if (filterOpt.isEmpty()) {
+                // Resolves to an empty result for every order
+                return filterId;
+            }
+            compiledExpression = getCompiledExpression(filterOpt.get());
+            if (compiledExpression == null) {
+                return filterId;
+            }
+        }
+        
+        boolean readsLocation = false;
+        for (String variable : compiledExpression.getVariableFullNames()) {
+            if (variable.equals(DISTANCE_VARIABLE) || GEO_ORDER_VARIABLES.contains(variable)) {
+                readsLocation = true;
+            } else if (variable.equals("order") || variable.startsWith("order.")) {
+                return null;
+            }
+        }
+        if (!readsLocation) {
+            return filterId;
+        }
+        if (cellDegrees <= 0 || orderContext.getLatitude() == null || orderContext.getLongitude() == null) {
+            return null;
+        }
+        return filterId + '@' + (long) Math.floor(orderContext.getLatitude() / cellDegrees) 
+                + ':' + (long) Math.floor(orderContext.getLongitude() / cellDegrees);
+    }
+    
+    /**
+     * Batch execute each filter once against many orders (wave sourcing).
+     * The filter lookup, compiled script and location list are shared by every order in the wave;
+     * lookups run on the I/O executor and evaluation on the CPU pool. A filter that cannot be loaded
+     * or evaluated maps to null.
+     */
+    public CompletableFuture<Map<String, List<List<Location>>>> batchExecuteFiltersForOrders(
+            Set<String> filterIds, List<OrderDTO> orders, List<DistanceVector> distances) {
         
+        Map<String, CompletableFuture<List<List<Location>>>> futures = new HashMap<>();
+        for (String filterId : filterIds) {
+            futures.put(filterId, resolveFilter(filterId)
+                    .thenApplyAsync(resolved -> executeLocationFilterForOrders(resolved, filterId, orders, distances), 
+                            cpuExecutor)
+                    .exceptionally(e -> {
+                        log.error("Error in wave filter execution for filter: {}", filterId, e);
+                        return null;
+                    }));
+        }
+        
+        return collectResults(futures);
+    }
+    
+    /**
+     * Completes once every per-filter future has, without blocking an executor thread while waiting
+     */
+    private static <T> CompletableFuture<Map<String, T>> collectResults(Map<String, CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .thenApply(done -> {
+                    Map<String, T> results = new HashMap<>();
+                    futures.forEach((filterId, future) -> results.put(filterId, future.join()));
+                    return results;
+                });
+    }
+    
+    /**
+     * Execute one filter for every order that references it; other orders get an empty result
+     */
+    private List<List<Location>> executeLocationFilterForOrders(ResolvedFilter resolved, String filterId, 
+                                                                List<OrderDTO> orders, List<DistanceVector> distances) {
+        if (resolved.precomputed() != null) {
+            return Collections.nCopies(orders.size(), resolved.precomputed());
+        }
+        if (resolved.filter() == null) {
+            log.warn("Location filter not found or inactive: {}", filterId);
+            return Collections.nCopies(orders.size(), Collections.emptyList());
+        }
+        
+        LocationFilter filter = resolved.filter();
+        Expression compiledExpression = getCompiledExpression(filter);
+        if (compiledExpression == null) {
+            return Collections.nCopies(orders.size(), Collections.emptyList());
+        }
+        
+        List<List<Location>> results = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            OrderDTO order = orders.get(i);
+            boolean usesFilter = order.getOrderItems().stream()
+                    .anyMatch(item -> filterId.equals(item.getLocationFilterId()));
+            results.add(usesFilter 
+                    ? evaluateFilter(filter, compiledExpression, distances.get(i).getIndex().getLocations(), 
+                            order, distances.get(i)) 
+                    : Collections.emptyList());
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Execute filter script with enhanced context
+     */
+    private List<Location> executeFilterScript(LocationFilter filter, OrderDTO orderContext, DistanceVector distances) {
         // Get or compile expression
         Expression compiledExpression = getCompiledExpression(filter);
         if (compiledExpression == null) {
             return Collections.emptyList();
         }
         
+        return evaluateFilter(filter, compiledExpression, findAllLocations(), orderContext, distances);
+    }
+    
+    /**
+     * Active filter definition; past the database limit, the last definition read for it. A filter never
+     * read before is unknown rather than missing at that point, so the rejection is thrown instead.
+     */
+    private Optional<LocationFilter> findActiveFilter(String filterId) {
+        Optional<LocationFilter> filter = databaseLimiter.call(
+                () -> locationFilterRepository.findByIdAndIsActiveTrue(filterId), () -> null);
+        if (filter == null) {
+            LocationFilter known = knownFilters.get(filterId);
+            if (known == null) {
+                throw new RejectedExecutionException("Database limit reached loading filter: " + filterId);
+            }
+            log.debug("Database limit reached; using last known definition of filter: {}", filterId);
+            return Optional.of(known);
+        }
+        
+        LocationFilter previous = filter.isPresent() 
+                ? knownFilters.put(filterId, filter.get()) : knownFilters.remove(filterId);
+        if (previous != null && !previous.equals(filter.orElse(null))) {
+            filtersChanged(Collections.singleton(filterId));
+        }
+        return filter;
+    }
+    
+    /**
+     * Polls filter definitions and publishes a change for any that were edited, deactivated or removed
+     */
+    @Scheduled(fixedDelayString = "${sourcing.filter.refresh-ms:60000}", 
+               initialDelayString = "${sourcing.filter.refresh-ms:60000}")
+    public void refreshFilters() {
+        if (knownFilters.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, LocationFilter> current = new HashMap<>();
+            for (LocationFilter filter : locationFilterRepository.findAll()) {
+                if (Boolean.TRUE.equals(filter.getIsActive())) {
+                    current.put(filter.getId(), filter);
+                }
+            }
+            
+            Set<String> changed = new HashSet<>();
+            knownFilters.forEach((filterId, known) -> {
+                LocationFilter latest = current.get(filterId);
+                if (!known.equals(latest)) {
+                    changed.add(filterId);
+                    if (latest != null) {
+                        knownFilters.put(filterId, latest);
+                    } else {
+                        knownFilters.remove(filterId);
+                    }
+                }
+            });
+            
+            if (!changed.isEmpty()) {
+                filtersChanged(changed);
+            }
+        } catch (Exception e) {
+            log.error("Error refreshing location filters", e);
+        }
+    }
+    
+    private void filtersChanged(Set<String> filterIds) {
+        log.info("Location filters changed: {}", filterIds);
+        eventPublisher.publishEvent(new SourcingDataChangedEvent(
+                this, SourcingDataChangedEvent.DataType.LOCATION_FILTER, filterIds));
+    }
+    
+    /**
+     * Drops compiled scripts and cached results of changed filters
+     */
+    @EventListener
+    public void onSourcingDataChanged(SourcingDataChangedEvent event) {
+        if (event.getDataType() != SourcingDataChangedEvent.DataType.LOCATION_FILTER) {
+            return;
+        }
+        expressionCache.keySet().removeIf(event::affects);
+        
+        // Results are cached under "filterId:orderHash"
+        Cache resultCache = cacheManager.getCache("locationFilters");
+        if (resultCache != null && resultCache.getNativeCache() instanceof Map<?, ?> entries) {
+            entries.keySet().removeIf(key -> event.affects(String.valueOf(key).split(":", 2)[0]));
+        }
+    }
+    
+    /**
+     * All locations; past the database limit, the location index snapshot
+     */
+    private List<Location> findAllLocations() {
+        return databaseLimiter.call(locationRepository::findAll, () -> {
+            log.debug("Database limit reached; evaluating filter against the location index snapshot");
+            return locationIndexService.getIndex().getLocations();
+        });
+    }
+    
+    /**
+     * Evaluate a compiled filter script against a set of locations for one order
+     */
+    private List<Location> evaluateFilter(LocationFilter filter, Expression compiledExpression,
+                                          List<Location> allLocations, OrderDTO orderContext, 
+                                          DistanceVector distances) {
+        List<Location> filteredLocations = new ArrayList<>();
+        
         for (Location location : allLocations) {
             try {
-                Map<String, Object> env = createExecutionEnvironment(location, orderContext, null);
+                Map<String, Object> env = createExecutionEnvironment(location, orderContext, null, distances);
                 Boolean result = (Boolean) compiledExpression.execute(env);
                 
                 if (result != null && result) {
@@ -135,7 +505,8 @@ public class LocationFilterExecutionServiceImpl implements LocationFilterExecuti
     /**
      * Create rich execution environment for script
      */
-    private Map<String, Object> createExecutionEnvironment(Location location, OrderDTO orderContext, OrderItemDTO orderItem) {
+    private Map<String, Object> createExecutionEnvironment(Location location, OrderDTO orderContext, 
+                                                           OrderItemDTO orderItem, DistanceVector distances) {
         Map<String, Object> env = new HashMap<>();
         
         // Location context - used in actual filter scripts
@@ -144,6 +515,9 @@ public class LocationFilterExecutionServiceImpl implements LocationFilterExecuti
         // Order context - used in actual filter scripts  
         env.put("order", orderContext);
         
+        // Precomputed customer distance - available to scripts and reused by calculateDistance()
+        env.put(DISTANCE_VARIABLE, distances.distanceTo(location));
+        
         return env;
     }
     
@@ -153,8 +527,14 @@ public class LocationFilterExecutionServiceImpl implements LocationFilterExecuti
      */
     private Expression getCompiledExpression(LocationFilter filter) {
         try {
-            return expressionCache.computeIfAbsent(filter.getId(), 
-                    k -> AviatorEvaluator.compile(filter.getFilterScript()));
+            // Compile outside ConcurrentHashMap's bin lock so a slow compile never pins a virtual thread
+            Expression cached = expressionCache.get(filter.getId());
+            if (cached != null) {
+                return cached;
+            }
+            Expression compiled = AviatorEvaluator.compile(filter.getFilterScript());
+            Expression existing = expressionCache.putIfAbsent(filter.getId(), compiled);
+            return existing != null ? existing : compiled;
         } catch (Exception e) {
             log.error("Failed to compile filter script for filter: {}", filter.getId(), e);
             return null;
@@ -194,7 +574,8 @@ public class LocationFilterExecutionServiceImpl implements LocationFilterExecuti
 
     
     /**
-     * Custom Aviator function for calculating distance
+     * Custom Aviator function for calculating distance.
+     * Calls for the current location and order reuse the precomputed request distance.
      */
     public static class CalculateDistanceFunction extends AbstractFunction {
         @Override
@@ -209,8 +590,26 @@ public class LocationFilterExecutionServiceImpl implements LocationFilterExecuti
             double lat2 = FunctionUtils.getNumberValue(arg3, env).doubleValue();
             double lon2 = FunctionUtils.getNumberValue(arg4, env).doubleValue();
             
-            double distance = Math.sqrt(Math.pow(lat1 - lat2, 2) + Math.pow(lon1 - lon2, 2)) * 111.32;
-            return new AviatorDouble(distance);
+            Object precomputed = env.get(DISTANCE_VARIABLE);
+            if (precomputed instanceof Double && isCurrentLocationAndOrder(env, lat1, lon1, lat2, lon2)) {
+                return new AviatorDouble((Double) precomputed);
+            }
+            
+            return new AviatorDouble(GeoUtils.calculateDistance(lat1, lon1, lat2, lon2));
+        }
+        
+        private boolean isCurrentLocationAndOrder(Map<String, Object> env, 
+                                                  double lat1, double lon1, double lat2, double lon2) {
+            if (!(env.get("location") instanceof Location location) || !(env.get("order") instanceof OrderDTO order)
+                    || order.getLatitude() == null || order.getLongitude() == null) {
+                return false;
+            }
+            
+            boolean locationFirst = lat1 == location.getLatitude() && lon1 == location.getLongitude()
+                    && lat2 == order.getLatitude() && lon2 == order.getLongitude();
+            boolean orderFirst = lat2 == location.getLatitude() && lon2 == location.getLongitude()
+                    && lat1 == order.getLatitude() && lon1 == order.getLongitude();
+            return locationFirst || orderFirst;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
+import com.ordersourcing.engine.index.DistanceVector;
+import com.ordersourcing.engine.index.LocationIndex;
+import com.ordersourcing.engine.model.Location;
+import com.ordersourcing.engine.repository.LocationRepository;
+import com.ordersourcing.engine.service.LocationIndexService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+@Slf4j
+public class LocationIndexServiceImpl implements LocationIndexService {
+    
+    @Autowired
+    private LocationRepository locationRepository;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    private volatile LocationIndex index;
+    private final AtomicLong versions = new AtomicLong();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    
+    /**
+     * Gets the current location index snapshot, building it on first use
+     */
+    @Override
+    public LocationIndex getIndex() {
+        LocationIndex current = index;
+        if (current == null) {
+            refresh();
+            current = index;
+        }
+        return current != null ? current : LocationIndex.empty();
+    }
+    
+    @Override
+    public boolean isIndexLoaded() {
+        return index != null;
+    }
+    
+    /**
+     * Reloads locations and swaps in a new index if anything changed
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${sourcing.index.location-refresh-ms:60000}", 
+               initialDelayString = "${sourcing.index.location-refresh-ms:60000}")
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            // findAll() is cached, so drop the cached copy to observe changes
+            Cache locationsCache = cacheManager.getCache("locations");
+            if (locationsCache != null) {
+                locationsCache.clear();
+            }
+            
+            List<Location> locations = new ArrayList<>(locationRepository.findAll());
+            locations.sort(Comparator.comparing(Location::getId));
+            
+            LocationIndex previous = index;
+            if (previous != null && previous.matches(locations)) {
+                return;
+            }
+            
+            index = LocationIndex.build(locations, versions.incrementAndGet());
+            log.info("Built location index version {} with {} locations", index.getVersion(), index.size());
+            
+            // Ordinals may have shifted, so listeners must treat every location as changed
+            if (previous != null) {
+                eventPublisher.publishEvent(new SourcingDataChangedEvent(
+                        this, SourcingDataChangedEvent.DataType.LOCATION));
+            }
+        } catch (Exception e) {
+            log.error("Error refreshing location index, keeping previous snapshot", e);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+    
+    /**
+     * Computes the customer-to-location distance vector for one request
+     */
+    @Override
+    public DistanceVector computeDistances(Double customerLatitude, Double customerLongitude) {
+        return DistanceVector.compute(getIndex(), customerLatitude, customerLongitude);
+    }
+}
@@ -0,0 +1,398 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.dto.PrewarmPlan;
+import com.ordersourcing.engine.dto.PrewarmStatus;
+import com.ordersourcing.engine.dto.QuickPromiseResponse;
+import com.ordersourcing.engine.model.Inventory;
+import com.ordersourcing.engine.service.CarrierService;
+import com.ordersourcing.engine.service.InventoryApiService;
+import com.ordersourcing.engine.service.LocationFilterExecutionService;
+import com.ordersourcing.engine.service.PrewarmService;
+import com.ordersourcing.engine.service.QuickPromiseService;
+import com.ordersourcing.engine.util.BoundedCache;
+import com.ordersourcing.engine.util.GeoUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class PrewarmServiceImpl implements PrewarmService {
+
+    @Autowired
+    private CarrierService carrierService;
+
+    @Autowired
+    private InventoryApiService inventoryApiService;
+
+    @Autowired
+    private LocationFilterExecutionService locationFilterExecutionService;
+
+    @Autowired
+    private QuickPromiseService quickPromiseService;
+
+    @Value("${sourcing.prewarm.lead-ms:600000}")
+    private long leadMs;
+
+    @Value("${sourcing.prewarm.default-window-ms:3600000}")
+    private long defaultWindowMs;
+
+    @Value("${sourcing.prewarm.max-cells-per-region:400}")
+    private int maxCellsPerRegion;
+
+    private static final String DEFAULT_DELIVERY_TYPE = "STANDARD";
+
+    // Jobs stay here until released, cancelled or failed, then move to the bounded history
+    private final Map<String, Job> activeJobs = new ConcurrentHashMap<>();
+    private final BoundedCache<String, Job> finishedJobs;
+
+    // Jobs warm one at a time, so a warm-up never competes with another for the database
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-prewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PrewarmServiceImpl(@Value("${sourcing.prewarm.max-finished-jobs:100}") int maxFinishedJobs) {
+        this.finishedJobs = new BoundedCache<>(maxFinishedJobs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public PrewarmStatus schedule(PrewarmPlan plan) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime eventEnd = plan.getEventEnd() != null
+                ? plan.getEventEnd() : plan.getEventStart().plus(Duration.ofMillis(defaultWindowMs));
+        if (!eventEnd.isAfter(plan.getEventStart())) {
+            throw new IllegalArgumentException("Event end must be after event start");
+        }
+        if (!eventEnd.isAfter(now)) {
+            throw new IllegalArgumentException("Event window ended at " + eventEnd);
+        }
+
+        Set<Long> geoCells = new LinkedHashSet<>();
+        for (PrewarmPlan.Region region : plan.getRegions()) {
+            double radiusKm = region.getRadiusKm() != null ? region.getRadiusKm() : 0.0;
+            try {
+                geoCells.addAll(GeoUtils.cellsWithin(region.getLatitude(), region.getLongitude(),
+                        radiusKm, maxCellsPerRegion));
+            } catch (IllegalArgumentException e) {
+                // Warming part of a region would report it covered, so the plan is refused instead
+                throw new IllegalArgumentException("Region " + (region.getName() != null ? region.getName() : 
+                        region.getLatitude() + "," + region.getLongitude()) + ": " + e.getMessage() 
+                        + "; use a smaller radius or split it into several regions");
+            }
+        }
+        List<String> deliveryTypes = plan.getDeliveryTypes() != null && !plan.getDeliveryTypes().isEmpty()
+                ? plan.getDeliveryTypes() : List.of(DEFAULT_DELIVERY_TYPE);
+        LocalDateTime warmStartsAt = plan.getEventStart().minus(Duration.ofMillis(leadMs));
+
+        Job job = new Job(UUID.randomUUID().toString(), plan.getName(), new LinkedHashSet<>(plan.getSkus()),
+                new LinkedHashSet<>(plan.getLocationFilterIds()), deliveryTypes, geoCells,
+                warmStartsAt, plan.getEventStart(), eventEnd, Boolean.TRUE.equals(plan.getPin()));
+        activeJobs.put(job.id, job);
+
+        job.warmTask = scheduler.schedule(() -> warm(job), millisUntil(warmStartsAt), TimeUnit.MILLISECONDS);
+        job.endTask = scheduler.schedule(() -> endWindow(job), millisUntil(eventEnd), TimeUnit.MILLISECONDS);
+        log.info("Scheduled pre-warm {} ({}) for {} SKUs, {} filters and {} geo-cells at {}",
+                job.id, job.name, job.skus.size(), job.filterIds.size(), geoCells.size(), warmStartsAt);
+        return job.status();
+    }
+
+    @Override
+    public PrewarmStatus getStatus(String jobId) {
+        Job job = findJob(jobId);
+        return job != null ? job.status() : null;
+    }
+
+    @Override
+    public List<PrewarmStatus> getStatuses() {
+        List<PrewarmStatus> statuses = activeJobs.values().stream().map(Job::status).collect(Collectors.toList());
+        finishedJobs.values().forEach(job -> statuses.add(job.status()));
+        return statuses;
+    }
+
+    private Job findJob(String jobId) {
+        Job job = activeJobs.get(jobId);
+        return job != null ? job : finishedJobs.get(jobId);
+    }
+
+    /**
+     * Moves a released, cancelled or failed job to the bounded history
+     */
+    private void finish(Job job) {
+        finishedJobs.put(job.id, job);
+        activeJobs.remove(job.id);
+    }
+
+    @Override
+    public PrewarmStatus cancel(String jobId) {
+        Job job = findJob(jobId);
+        if (job == null) {
+            return null;
+        }
+        PrewarmStatus.State previous = job.state.getAndUpdate(state ->
+                state == PrewarmStatus.State.RELEASED || state == PrewarmStatus.State.FAILED
+                        ? state : PrewarmStatus.State.CANCELLED);
+        if (previous != PrewarmStatus.State.CANCELLED && job.state.get() == PrewarmStatus.State.CANCELLED) {
+            cancelTask(job.warmTask);
+            cancelTask(job.endTask);
+            releasePins(job);
+            finish(job);
+            log.info("Cancelled pre-warm {} ({})", job.id, job.name);
+        }
+        return job.status();
+    }
+
+    /**
+     * Warms each cache in dependency order: carrier index, stock, last-known inventory, filter definitions,
+     * then one quick-promise pass per geo-cell, which fills the eligible-location sets
+     */
+    private void warm(Job job) {
+        if (!job.state.compareAndSet(PrewarmStatus.State.SCHEDULED, PrewarmStatus.State.RUNNING)) {
+            return;
+        }
+        log.info("Warming caches for pre-warm {} ({})", job.id, job.name);
+        try {
+            // Pin first so entries loaded early are not evicted while later ones load
+            if (job.pin) {
+                pin(job);
+                if (job.isCancelled()) {
+                    releasePins(job);
+                    return;
+                }
+            }
+
+            carrierService.getCarrierIndex();
+            job.completedSteps.incrementAndGet();
+
+            quickPromiseService.refreshStock();
+            job.completedSteps.incrementAndGet();
+
+            warmInventory(job);
+            warmFilters(job);
+            warmGeoCells(job);
+
+            if (job.state.compareAndSet(PrewarmStatus.State.RUNNING, PrewarmStatus.State.WARM)) {
+                job.completedAt = LocalDateTime.now();
+                log.info("Pre-warm {} ({}) complete: {}/{} SKUs in stock, {}/{} filters, {}/{} promise lines available",
+                        job.id, job.name, job.skusInStock.get(), job.skus.size(), job.filtersLoaded.get(),
+                        job.filterIds.size(), job.promiseLinesAvailable.get(), job.promiseLines.get());
+            }
+        } catch (Exception e) {
+            log.error("Pre-warm {} ({}) failed", job.id, job.name, e);
+            job.error = e.getMessage();
+            job.state.set(PrewarmStatus.State.FAILED);
+            job.completedAt = LocalDateTime.now();
+            releasePins(job);
+            finish(job);
+        }
+    }
+
+    /**
+     * Last-known stock per SKU from one batch read, the stock checkout is served when the database is at
+     * its limit; only pinned SKUs keep it for the event, unpinned reads age out after the fallback max age
+     */
+    private void warmInventory(Job job) {
+        List<OrderItemDTO> items = job.skus.stream()
+                .map(sku -> OrderItemDTO.builder().sku(sku).quantity(1).build())
+                .collect(Collectors.toList());
+        InventoryApiService.InventoryLookup inventory = inventoryApiService.batchFetchInventory(items).join();
+        job.skusInStock.set((int) job.skus.stream()
+                .filter(sku -> inventory.isKnown(sku) && !inventory.get(sku).isEmpty())
+                .count());
+        if (job.pin) {
+            job.skusHeld.set((int) job.skus.stream().filter(inventoryApiService::hasPinnedStock).count());
+        }
+        job.completedSteps.incrementAndGet();
+    }
+
+    /**
+     * Loads and compiles each filter definition, which checkout and quick promise evaluate per order
+     * without a database read; per-order filter results are not warmed
+     */
+    private void warmFilters(Job job) {
+        for (String filterId : job.filterIds) {
+            if (job.isCancelled()) {
+                return;
+            }
+            if (locationFilterExecutionService.loadDefinition(filterId)) {
+                job.filtersLoaded.incrementAndGet();
+            }
+            job.completedSteps.incrementAndGet();
+        }
+    }
+
+    /**
+     * Quotes every (SKU, filter, delivery type) line from each geo-cell
+     */
+    private void warmGeoCells(Job job) {
+        List<OrderItemDTO> lines = new ArrayList<>();
+        for (String sku : job.skus) {
+            for (String filterId : job.filterIds) {
+                for (String deliveryType : job.deliveryTypes) {
+                    lines.add(OrderItemDTO.builder()
+                            .sku(sku)
+                            .quantity(1)
+                            .deliveryType(deliveryType)
+                            .locationFilterId(filterId)
+                            .build());
+                }
+            }
+        }
+
+        for (long geoCell : job.geoCells) {
+            if (job.isCancelled()) {
+                return;
+            }
+            QuickPromiseResponse response = quickPromiseService.quote(cellOrder(job, geoCell, lines));
+            job.promiseLines.addAndGet(response.getPromises().size());
+            job.promiseLinesAvailable.addAndGet(response.getPromises().stream()
+                    .filter(QuickPromiseResponse.SkuPromise::isAvailable)
+                    .count());
+            job.geoCellsWarmed.incrementAndGet();
+            job.completedSteps.incrementAndGet();
+        }
+    }
+
+    private void endWindow(Job job) {
+        releasePins(job);
+        if (job.state.compareAndSet(PrewarmStatus.State.WARM, PrewarmStatus.State.RELEASED)) {
+            finish(job);
+            log.info("Event window of pre-warm {} ({}) ended", job.id, job.name);
+        }
+    }
+
+    private void pin(Job job) {
+        if (job.pinsHeld.compareAndSet(false, true)) {
+            inventoryApiService.pinSkus(job.skus);
+            quickPromiseService.pinCells(job.filterIds, job.geoCells);
+        }
+    }
+
+    private void releasePins(Job job) {
+        if (job.pinsHeld.compareAndSet(true, false)) {
+            inventoryApiService.unpinSkus(job.skus);
+            quickPromiseService.unpinCells(job.filterIds, job.geoCells);
+        }
+    }
+
+    private static OrderDTO cellOrder(Job job, long geoCell, List<OrderItemDTO> lines) {
+        return OrderDTO.builder()
+                .tempOrderId("prewarm-" + job.id)
+                .latitude(GeoUtils.cellCenterLatitude(geoCell))
+                .longitude(GeoUtils.cellCenterLongitude(geoCell))
+                .orderItems(lines)
+                .build();
+    }
+
+    private static void cancelTask(ScheduledFuture<?> task) {
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    private static long millisUntil(LocalDateTime time) {
+        return Math.max(0, Duration.between(LocalDateTime.now(), time).toMillis());
+    }
+
+    /**
+     * One scheduled warm-up; counters are written by the scheduler thread and read by status requests
+     */
+    private static final class Job {
+        private final String id;
+        private final String name;
+        private final Set<String> skus;
+        private final Set<String> filterIds;
+        private final List<String> deliveryTypes;
+        private final Set<Long> geoCells;
+        private final LocalDateTime warmStartsAt;
+        private final LocalDateTime eventStart;
+        private final LocalDateTime eventEnd;
+        private final boolean pin;
+
+        private final AtomicReference<PrewarmStatus.State> state = new AtomicReference<>(PrewarmStatus.State.SCHEDULED);
+        private final AtomicBoolean pinsHeld = new AtomicBoolean();
+        private final AtomicInteger completedSteps = new AtomicInteger();
+        private final AtomicInteger skusInStock = new AtomicInteger();
+        private final AtomicInteger skusHeld = new AtomicInteger();
+        private final AtomicInteger filtersLoaded = new AtomicInteger();
+        private final AtomicInteger geoCellsWarmed = new AtomicInteger();
+        private final AtomicLong promiseLines = new AtomicLong();
+        private final AtomicLong promiseLinesAvailable = new AtomicLong();
+        private volatile String error;
+        private volatile LocalDateTime completedAt;
+        private volatile ScheduledFuture<?> warmTask;
+        private volatile ScheduledFuture<?> endTask;
+
+        private Job(String id, String name, Set<String> skus, Set<String> filterIds, List<String> deliveryTypes,
+                    Set<Long> geoCells, LocalDateTime warmStartsAt, LocalDateTime eventStart,
+                    LocalDateTime eventEnd, boolean pin) {
+            this.id = id;
+            this.name = name;
+            this.skus = skus;
+            this.filterIds = filterIds;
+            this.deliveryTypes = deliveryTypes;
+            this.geoCells = geoCells;
+            this.warmStartsAt = warmStartsAt;
+            this.eventStart = eventStart;
+            this.eventEnd = eventEnd;
+            this.pin = pin;
+        }
+
+        private boolean isCancelled() {
+            return state.get() == PrewarmStatus.State.CANCELLED;
+        }
+
+        private int totalSteps() {
+            // Carrier index, stock index and inventory read, then one step per filter and geo-cell
+            return 3 + filterIds.size() + geoCells.size();
+        }
+
+        private PrewarmStatus status() {
+            return PrewarmStatus.builder()
+                    .id(id)
+                    .name(name)
+                    .state(state.get())
+                    .error(error)
+                    .warmStartsAt(warmStartsAt)
+                    .eventStart(eventStart)
+                    .pinnedUntil(pin ? eventEnd : null)
+                    .completedAt(completedAt)
+                    .completedSteps(completedSteps.get())
+                    .totalSteps(totalSteps())
+                    .skus(skus.size())
+                    .skusInStock(skusInStock.get())
+                    .skusHeld(skusHeld.get())
+                    .filters(filterIds.size())
+                    .filtersLoaded(filtersLoaded.get())
+                    .geoCells(geoCells.size())
+                    .geoCellsWarmed(geoCellsWarmed.get())
+                    .promiseLines(promiseLines.get())
+                    .promiseLinesAvailable(promiseLinesAvailable.get())
+                    .build();
+        }
+    }
+}
@@ -2,17 +2,42 @@ package com.ordersourcing.engine.service.impl;
 
 import com.ordersourcing.engine.model.*;
 import com.ordersourcing.engine.dto.*;
+import com.ordersourcing.engine.index.BusinessCalendar;
+import com.ordersourcing.engine.index.CarrierIndex;
+import com.ordersourcing.engine.index.DistanceVector;
+import com.ordersourcing.engine.index.HandlingFlags;
+import com.ordersourcing.engine.index.TransitDistribution;
 import com.ordersourcing.engine.service.CarrierService;
+import com.ordersourcing.engine.service.LocationIndexService;
 import com.ordersourcing.engine.service.PromiseDateService;
+import com.ordersourcing.engine.service.ScoringConfigurationService;
+import com.ordersourcing.engine.util.StageExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -22,56 +47,338 @@ public class PromiseDateServiceImpl implements PromiseDateService {
 
     @Autowired
     private CarrierService carrierService;
+    
+    @Autowired
+    private LocationIndexService locationIndexService;
+    
+    @Autowired
+    private ScoringConfigurationService scoringConfigurationService;
+    
+    @Autowired
+    @Qualifier("sourcingCpuExecutor")
+    private StageExecutor cpuExecutor;
+    
+    @Value("${sourcing.promise.facility-time-zone:}")
+    private String facilityTimeZone;
+    
+    @Value("${sourcing.promise.holidays:}")
+    private String holidayList;
+    
+    @Value("${sourcing.promise.calendar-horizon-days:730}")
+    private int calendarHorizonDays;
+    
+    @Value("${sourcing.promise.weather-event-active:false}")
+    private boolean weatherEventActive;
+    
+    private static final LocalTime DEFAULT_DELIVERY_END = LocalTime.of(18, 0);
+    private static final double P90 = 0.9;
+    private static final double MIN_ON_TIME_PROBABILITY = 0.01;
+    private static final double MAX_ON_TIME_PROBABILITY = 0.999;
+    
+    // Below this many allocations a parallel pass costs more than it saves
+    private static final int PARALLEL_PROMISE_THRESHOLD = 8;
+    private static final int PROMISE_CHUNK_SIZE = 4;
+    
+    private ZoneId facilityZone;
+    
+    // Source of "now" for promise timelines; fixed in tests
+    private Clock clock = Clock.systemUTC();
+    
+    // Business-day calendars for carriers that do / do not operate on weekends
+    private volatile BusinessCalendar weekdayCalendar;
+    private volatile BusinessCalendar sevenDayCalendar;
+    
+    // Order time zones resolved once per distinct zone ID
+    private final Map<String, ZoneId> zoneCache = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void initialize() {
+        facilityZone = facilityTimeZone == null || facilityTimeZone.isBlank() 
+                ? ZoneId.systemDefault() : ZoneId.of(facilityTimeZone.trim());
+        clock = clock.withZone(facilityZone);
+        rebuildCalendars();
+    }
+    
+    /**
+     * Rebuilds business-day calendars so the precomputed window keeps starting at today
+     */
+    @Scheduled(cron = "${sourcing.promise.calendar-rebuild-cron:0 5 0 * * *}")
+    public void rebuildCalendars() {
+        Set<LocalDate> holidays = holidayList == null || holidayList.isBlank() ? Set.of() 
+                : Arrays.stream(holidayList.split(","))
+                        .map(String::trim)
+                        .filter(date -> !date.isEmpty())
+                        .map(LocalDate::parse)
+                        .collect(Collectors.toSet());
+        
+        // Start a week back so requests with early time zones still land inside the window
+        LocalDate start = LocalDate.now(clock).minusDays(7);
+        weekdayCalendar = BusinessCalendar.build(start, calendarHorizonDays, false, holidays);
+        sevenDayCalendar = BusinessCalendar.build(start, calendarHorizonDays, true, holidays);
+        log.info("Built business calendars from {} for {} days with {} holidays", 
+                start, calendarHorizonDays, holidays.size());
+    }
 
     /**
-     * Simplified promise date calculation: processing time + transit time
+     * Calendar-aware promise date calculation: processing time, carrier pickup cutoff, business-day transit
      */
     @Override
     public PromiseDateBreakdown calculateEnhancedPromiseDate(OrderItemDTO orderItem, Location location, 
                                                            Inventory inventory, OrderDTO orderContext) {
+        return calculateEnhancedPromiseDate(orderItem, location, inventory, orderContext, 
+                locationIndexService.computeDistances(orderContext.getLatitude(), orderContext.getLongitude()));
+    }
+    
+    /**
+     * Calendar-aware promise date calculation using the request's precomputed distance vector
+     */
+    @Override
+    public PromiseDateBreakdown calculateEnhancedPromiseDate(OrderItemDTO orderItem, Location location, 
+                                                           Inventory inventory, OrderDTO orderContext,
+                                                           DistanceVector distances) {
         try {
-            LocalDateTime now = LocalDateTime.now();
-            
-            // Step 1: Get carrier configuration for this delivery type
-            double distance = calculateDistance(location, orderContext.getLatitude(), orderContext.getLongitude());
-            Optional<CarrierConfiguration> carrierOpt = carrierService.getBestCarrierConfiguration(
-                    orderItem.getDeliveryType(), distance, orderItem);
-            
-            if (carrierOpt.isEmpty()) {
-                log.warn("No carrier found for delivery type: {} at distance: {} km", orderItem.getDeliveryType(), distance);
-                return null; // Signal that this delivery mode is not feasible
-            }
-            
-            CarrierConfiguration carrier = carrierOpt.get();
-            
-            // Step 2: Calculate processing time (inventory processing time in hours)
-            int processingHours = inventory.getProcessingTime() * 24; // Convert days to hours
-            LocalDateTime processingComplete = now.plusHours(processingHours);
-            
-            // Step 3: Calculate transit time (carrier base transit time in hours)
-            int transitHours = carrier.getBaseTransitDays() * 24; // Convert days to hours
-            LocalDateTime estimatedDeliveryDate = processingComplete.plusHours(transitHours);
-            
-            // Step 4: Promise date = delivery date (no additional buffer)
-
-            // Build simple breakdown
-            return PromiseDateBreakdown.builder()
-                    .promiseDate(estimatedDeliveryDate)
-                    .carrierPickupTime(processingComplete)
-                    .estimatedDeliveryDate(estimatedDeliveryDate)
-                    .locationProcessingHours(processingHours)
-                    .carrierTransitHours(transitHours)
-                    .carrierCode(carrier.getCarrierCode())
-                    .serviceLevel(carrier.getServiceLevel())
-                    .deliveryType(orderItem.getDeliveryType())
-                    .build();
-                    
+            return promiseFor(orderItem, location, inventory.getProcessingTime(), orderItem.getQuantity(), orderContext, 
+                    distances.distanceTo(location), ZonedDateTime.now(clock));
         } catch (Exception e) {
             log.error("Error calculating promise date for item: {}", orderItem.getSku(), e);
             return null; // Return null instead of fallback for failed calculations
         }
     }
     
+    /**
+     * Promise dates for allocated (line, location) pairs in one parallel pass.
+     * Each request writes only its own result slot; carrier lookups read the immutable carrier index.
+     */
+    @Override
+    public List<PromiseDateBreakdown> batchCalculateAllocationPromiseDates(List<PromiseDateRequest> requests, 
+                                                                          OrderDTO orderContext, 
+                                                                          DistanceVector distances) {
+        PromiseDateBreakdown[] results = new PromiseDateBreakdown[requests.size()];
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        
+        if (requests.size() < PARALLEL_PROMISE_THRESHOLD) {
+            calculatePromiseSlots(requests, 0, requests.size(), results, orderContext, distances, now, false);
+            return Arrays.asList(results);
+        }
+        
+        // Contiguous chunks on the CPU executor; each chunk owns its slots
+        List<Runnable> chunks = new ArrayList<>();
+        for (int start = 0; start < requests.size(); start += PROMISE_CHUNK_SIZE) {
+            int from = start;
+            int to = Math.min(start + PROMISE_CHUNK_SIZE, requests.size());
+            chunks.add(() -> calculatePromiseSlots(requests, from, to, results, orderContext, distances, now, false));
+        }
+        cpuExecutor.runAll(chunks);
+        
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * Estimated promises past the deadline, computed inline on the caller
+     */
+    @Override
+    public List<PromiseDateBreakdown> estimateAllocationPromiseDates(List<PromiseDateRequest> requests, 
+                                                                    OrderDTO orderContext, 
+                                                                    DistanceVector distances) {
+        PromiseDateBreakdown[] results = new PromiseDateBreakdown[requests.size()];
+        calculatePromiseSlots(requests, 0, requests.size(), results, orderContext, distances, 
+                ZonedDateTime.now(clock), true);
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * Same promise as checkout for one (line, location) pair, from the location's processing days
+     */
+    @Override
+    public PromiseDateBreakdown calculatePromiseDate(OrderItemDTO orderItem, Location location, int processingDays, 
+                                                   int quantity, OrderDTO orderContext, double distanceKm) {
+        try {
+            return promiseFor(orderItem, location, processingDays, quantity, orderContext, distanceKm, 
+                    ZonedDateTime.now(clock));
+        } catch (Exception e) {
+            log.error("Error calculating promise date for item: {} at location: {}", 
+                    orderItem.getSku(), location.getId(), e);
+            return null;
+        }
+    }
+    
+    private void calculatePromiseSlots(List<PromiseDateRequest> requests, int from, int to, 
+                                       PromiseDateBreakdown[] results, OrderDTO orderContext, 
+                                       DistanceVector distances, ZonedDateTime now, boolean estimated) {
+        for (int i = from; i < to; i++) {
+            PromiseDateRequest request = requests.get(i);
+            OrderItemDTO orderItem = request.getOrderItem();
+            try {
+                int quantity = request.getQuantity() != null ? request.getQuantity() : orderItem.getQuantity();
+                results[i] = promiseFor(orderItem, request.getLocation(), request.getInventory().getProcessingTime(), quantity, 
+                        orderContext, distances.distanceTo(request.getLocation()), now, estimated);
+            } catch (Exception e) {
+                log.error("Error calculating promise date for item: {} at location: {}", 
+                        orderItem.getSku(), request.getLocation().getId(), e);
+            }
+        }
+    }
+    
+    /**
+     * Promise for shipping a quantity of an item from a location, or null when no carrier serves it.
+     * Step 1 probes the carrier index's precomputed selection for the delivery type, handling needs and
+     * distance band: the priority carrier and the carriers that could undercut it. Only when there are
+     * such alternatives is the cheapest carrier whose timeline delivers no later chosen from rate cards;
+     * the remaining steps apply the pickup cutoff and calendar to the chosen carrier.
+     */
+    private PromiseDateBreakdown promiseFor(OrderItemDTO orderItem, Location location, int processingDays, 
+                                            int quantity, OrderDTO orderContext, double distance, ZonedDateTime now) {
+        return promiseFor(orderItem, location, processingDays, quantity, orderContext, distance, now, false);
+    }
+    
+    /**
+     * An estimated promise stops after step 1 and uses the priority carrier as-is
+     */
+    private PromiseDateBreakdown promiseFor(OrderItemDTO orderItem, Location location, int processingDays, 
+                                            int quantity, OrderDTO orderContext, double distance, ZonedDateTime now,
+                                            boolean estimated) {
+        CarrierIndex carrierIndex = carrierService.getCarrierIndex();
+        CarrierIndex.Selection selection = carrierIndex.select(
+                orderItem.getDeliveryType(), distance, HandlingFlags.requiredMask(orderItem));
+        if (selection.carrier() == null) {
+            log.warn("No carrier found for delivery type: {} at distance: {} km", orderItem.getDeliveryType(), distance);
+            return null; // Signal that this delivery mode is not feasible
+        }
+        
+        if (estimated) {
+            PromiseDateBreakdown breakdown = buildBreakdown(orderItem, processingDays, selection.carrier(), orderContext, now);
+            breakdown.setEstimated(true);
+            return breakdown;
+        }
+        
+        // Timelines built while comparing carriers are kept, so the chosen carrier's is not rebuilt
+        Map<CarrierConfiguration, PromiseDateBreakdown> timelines = new IdentityHashMap<>(4);
+        Function<CarrierConfiguration, PromiseDateBreakdown> timeline = candidate -> timelines.computeIfAbsent(
+                candidate, c -> buildBreakdown(orderItem, processingDays, c, orderContext, now));
+        
+        double weightKg = orderItem.getUnitWeightKg() != null ? orderItem.getUnitWeightKg() * quantity : 0.0;
+        CarrierConfiguration carrier = carrierIndex.cheapestCarrier(selection, distance, weightKg, 
+                candidate -> timeline.apply(candidate).getEstimatedDeliveryDate());
+        
+        PromiseDateBreakdown breakdown = timeline.apply(carrier);
+        double cost = carrierIndex.shippingCost(carrier, distance, weightKg);
+        breakdown.setShippingCost(Double.isNaN(cost) ? null : cost);
+        return breakdown;
+    }
+    
+    /**
+     * Builds the promise timeline for one carrier:
+     * processing at the facility, pickup at the carrier cutoff on a pickup day,
+     * then transit in carrier delivery days ending at the close of the delivery window.
+     * Times are reported in the order's time zone when it has one.
+     */
+    private PromiseDateBreakdown buildBreakdown(OrderItemDTO orderItem, int processingDays, 
+                                                CarrierConfiguration carrier, OrderDTO orderContext, 
+                                                ZonedDateTime now) {
+        // Step 2: Processing time (inventory processing time in hours)
+        int processingHours = processingDays * 24; // Convert days to hours
+        LocalDateTime readyAt = now.plusHours(processingHours).toLocalDateTime();
+        
+        // Step 3: Carrier pickup - same day if ready by the cutoff on a pickup day, otherwise the next pickup day
+        BusinessCalendar pickupCalendar = calendarFor(carrier.getWeekendPickup());
+        LocalTime cutoff = carrier.getPickupCutoffTime();
+        LocalDateTime pickupLocal;
+        if (pickupCalendar.isOpen(readyAt.toLocalDate()) 
+                && (cutoff == null || !readyAt.toLocalTime().isAfter(cutoff))) {
+            pickupLocal = cutoff != null ? readyAt.toLocalDate().atTime(cutoff) : readyAt;
+        } else {
+            LocalTime nextPickup = carrier.getNextPickupTime() != null ? carrier.getNextPickupTime() 
+                    : cutoff != null ? cutoff : readyAt.toLocalTime();
+            pickupLocal = pickupCalendar.addOpenDays(readyAt.toLocalDate(), 1).atTime(nextPickup);
+        }
+        
+        // Step 4: Transit in delivery days, in the customer's time zone
+        ZoneId customerZone = resolveZone(orderContext.getTimeZone());
+        ZonedDateTime pickup = pickupLocal.atZone(facilityZone).withZoneSameInstant(customerZone);
+        
+        int transitDays = carrier.getBaseTransitDays() != null ? carrier.getBaseTransitDays() : 0;
+        if (Boolean.TRUE.equals(orderContext.getIsPeakSeason()) && carrier.getPeakSeasonDelayDays() != null) {
+            transitDays += carrier.getPeakSeasonDelayDays();
+        }
+        
+        BusinessCalendar deliveryCalendar = calendarFor(carrier.getWeekendDelivery());
+        LocalTime deliveryEnd = carrier.getDeliveryEndTime() != null ? carrier.getDeliveryEndTime() : DEFAULT_DELIVERY_END;
+        LocalDate deliveryDate = deliveryCalendar.addOpenDays(pickup.toLocalDate(), transitDays);
+        if (deliveryDate.equals(pickup.toLocalDate()) && deliveryEnd.isBefore(pickup.toLocalTime())) {
+            // Picked up after today's delivery window closed
+            deliveryDate = deliveryCalendar.addOpenDays(deliveryDate, 1);
+        }
+        ZonedDateTime delivery = deliveryDate.atTime(deliveryEnd).atZone(customerZone);
+        
+        // Step 5: Promise date = delivery date (no additional buffer)
+        LocalDateTime estimatedDeliveryDate = delivery.toLocalDateTime();
+        
+        // Step 6: Confidence - on-time probability and P90 date from the carrier's transit distribution
+        double onTimeProbability = onTimeProbability(carrier, orderItem, orderContext);
+        TransitDistribution distribution = carrierService.getCarrierIndex().transitDistribution(carrier);
+        LocalDate p90Date = deliveryCalendar.addOpenDays(deliveryDate, 
+                distribution.delayDaysAtQuantile(P90, onTimeProbability));
+        
+        return PromiseDateBreakdown.builder()
+                .promiseDate(estimatedDeliveryDate)
+                .carrierPickupTime(pickup.toLocalDateTime())
+                .estimatedDeliveryDate(estimatedDeliveryDate)
+                .locationProcessingHours(processingHours)
+                .carrierTransitHours((int) Duration.between(pickup, delivery).toHours())
+                .carrierCode(carrier.getCarrierCode())
+                .serviceLevel(carrier.getServiceLevel())
+                .deliveryType(orderItem.getDeliveryType())
+                .onTimeProbability(onTimeProbability)
+                .p90DeliveryDate(p90Date.atTime(deliveryEnd))
+                .build();
+    }
+    
+    /**
+     * Carrier on-time performance (or the configuration's base confidence when unknown),
+     * adjusted for peak season, active weather events and hazmat handling
+     */
+    private double onTimeProbability(CarrierConfiguration carrier, OrderItemDTO orderItem, OrderDTO orderContext) {
+        ScoringConfiguration config = scoringConfigurationService.getScoringConfigurationForItem(orderItem);
+        
+        double probability = carrier.getOnTimePerformance() != null 
+                ? carrier.getOnTimePerformance() : valueOrZero(config.getBaseConfidence());
+        if (Boolean.TRUE.equals(orderContext.getIsPeakSeason())) {
+            probability += valueOrZero(config.getPeakSeasonAdjustment());
+        }
+        if (weatherEventActive) {
+            probability += valueOrZero(config.getWeatherAdjustment());
+        }
+        if (Boolean.TRUE.equals(orderItem.getIsHazmat())) {
+            probability += valueOrZero(config.getHazmatAdjustment());
+        }
+        return Math.max(MIN_ON_TIME_PROBABILITY, Math.min(MAX_ON_TIME_PROBABILITY, probability));
+    }
+    
+    private static double valueOrZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+    
+    private BusinessCalendar calendarFor(Boolean weekendService) {
+        return Boolean.TRUE.equals(weekendService) ? sevenDayCalendar : weekdayCalendar;
+    }
+    
+    /**
+     * Resolves an order time zone, falling back to the facility zone when absent or invalid
+     */
+    private ZoneId resolveZone(String timeZone) {
+        if (timeZone == null || timeZone.isBlank()) {
+            return facilityZone;
+        }
+        return zoneCache.computeIfAbsent(timeZone, id -> {
+            try {
+                return ZoneId.of(id);
+            } catch (Exception e) {
+                log.warn("Unknown order time zone: {}, using facility time zone", id);
+                return facilityZone;
+            }
+        });
+    }
+    
     /**
      * Batch promise date calculation for multiple items
      */
@@ -79,11 +386,22 @@ public class PromiseDateServiceImpl implements PromiseDateService {
     public CompletableFuture<Map<String, PromiseDateBreakdown>> batchCalculatePromiseDates(
             List<OrderItemDTO> orderItems, Map<String, List<Location>> filterResults, 
             Map<String, List<Inventory>> inventoryResults, OrderDTO orderContext) {
+        return batchCalculatePromiseDates(orderItems, filterResults, inventoryResults, orderContext,
+                locationIndexService.computeDistances(orderContext.getLatitude(), orderContext.getLongitude()));
+    }
+    
+    /**
+     * Batch promise date calculation for multiple items, sharing the request's distance vector
+     */
+    @Override
+    public CompletableFuture<Map<String, PromiseDateBreakdown>> batchCalculatePromiseDates(
+            List<OrderItemDTO> orderItems, Map<String, List<Location>> filterResults, 
+            Map<String, List<Inventory>> inventoryResults, OrderDTO orderContext, DistanceVector distances) {
         
-        return CompletableFuture.supplyAsync(() -> {
+        return cpuExecutor.supply(() -> {
             Map<String, PromiseDateBreakdown> results = new HashMap<>();
             
-            orderItems.parallelStream().forEach(orderItem -> {
+            orderItems.forEach(orderItem -> {
                 try {
                     List<Location> eligibleLocations = filterResults.get(orderItem.getLocationFilterId());
                     List<Inventory> inventories = inventoryResults.get(orderItem.getSku());
@@ -99,9 +417,9 @@ public class PromiseDateServiceImpl implements PromiseDateService {
                             
                             if (inventoryOpt.isPresent()) {
                                 PromiseDateBreakdown breakdown = calculateEnhancedPromiseDate(
-                                        orderItem, location, inventoryOpt.get(), orderContext);
+                                        orderItem, location, inventoryOpt.get(), orderContext, distances);
                                 if (breakdown != null) {
-                                    results.put(orderItem.getSku(), breakdown);
+                                    results.putIfAbsent(orderItem.getSku(), breakdown);
                                     break;
                                 }
                                 // Continue to next location if this delivery type is not feasible
@@ -121,11 +439,4 @@ public class PromiseDateServiceImpl implements PromiseDateService {
             return results;
         });
     }
-    
-    
-    private double calculateDistance(Location location, Double customerLat, Double customerLon) {
-        return Math.sqrt(Math.pow(location.getLatitude() - customerLat, 2) + 
-                        Math.pow(location.getLongitude() - customerLon, 2)) * 111.32; // Approximate km
-    }
-    
-}
\ No newline at end of file
+}
@@ -0,0 +1,435 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.dto.PromiseDateBreakdown;
+import com.ordersourcing.engine.dto.QuickPromiseResponse;
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
+import com.ordersourcing.engine.index.DistanceVector;
+import com.ordersourcing.engine.index.LocationIndex;
+import com.ordersourcing.engine.index.StockIndex;
+import com.ordersourcing.engine.model.Inventory;
+import com.ordersourcing.engine.model.Location;
+import com.ordersourcing.engine.repository.InventoryRepository;
+import com.ordersourcing.engine.service.InventoryApiService;
+import com.ordersourcing.engine.service.LocationFilterExecutionService;
+import com.ordersourcing.engine.service.LocationIndexService;
+import com.ordersourcing.engine.service.PromiseDateService;
+import com.ordersourcing.engine.service.QuickPromiseService;
+import com.ordersourcing.engine.util.AdaptiveLimiter;
+import com.ordersourcing.engine.util.BoundedCache;
+import com.ordersourcing.engine.util.GeoUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class QuickPromiseServiceImpl implements QuickPromiseService {
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private LocationIndexService locationIndexService;
+
+    @Autowired
+    private LocationFilterExecutionService locationFilterExecutionService;
+
+    @Autowired
+    private PromiseDateService promiseDateService;
+
+    @Autowired
+    private AdaptiveLimiter databaseLimiter;
+
+    @Value("${sourcing.quick-promise.max-candidates:5}")
+    private int maxCandidates;
+
+    // Eligible location ordinals per "filterId@geoCell", evaluated once at the cell center
+    private final BoundedCache<String, EligibleSet> eligibleByCell;
+
+    // Null until the first load succeeds; requests never load it themselves
+    private volatile StockIndex stockIndex;
+
+    // SKUs reported changed since the last stock read, re-read together on the next change refresh
+    private final Set<String> changedSkus = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+
+    // Full reloads and change refreshes run on different scheduler threads (and from pre-warm jobs), so
+    // a change read into an index that a reload is about to replace cannot be lost
+    private final ReentrantLock stockUpdates = new ReentrantLock();
+
+    private final AtomicLong quotes = new AtomicLong();
+    private final AtomicLong lines = new AtomicLong();
+    private final AtomicLong cellMisses = new AtomicLong();
+
+    public QuickPromiseServiceImpl(@Value("${sourcing.quick-promise.max-cells:50000}") int maxCells) {
+        this.eligibleByCell = new BoundedCache<>(maxCells);
+    }
+
+    /**
+     * Eligible location ordinals, sorted, valid for one location index version
+     */
+    private record EligibleSet(long locationVersion, int[] ordinals) {
+    }
+
+    /**
+     * Each line is promised from the nearest eligible locations holding its full quantity; the earliest
+     * of their promises is returned, computed by the same promise logic as checkout
+     */
+    @Override
+    public QuickPromiseResponse quote(OrderDTO request) {
+        long startTime = System.nanoTime();
+        StockIndex stock = stockIndex;
+        if (stock == null) {
+            return stockUnknown(request, startTime);
+        }
+        LocationIndex index = locationIndexService.getIndex();
+        long geoCell = GeoUtils.toGeoCell(request.getLatitude(), request.getLongitude());
+
+        // Candidate buffers shared by every line of the request
+        int[] candidateOrdinals = new int[maxCandidates];
+        int[] candidatePositions = new int[maxCandidates];
+        double[] candidateDistances = new double[maxCandidates];
+
+        List<QuickPromiseResponse.SkuPromise> promises = new ArrayList<>(request.getOrderItems().size());
+        long stockAsOf = Long.MAX_VALUE;
+        for (OrderItemDTO item : request.getOrderItems()) {
+            promises.add(promiseFor(item, request, stock, index, geoCell,
+                    candidateOrdinals, candidatePositions, candidateDistances));
+            stockAsOf = Math.min(stockAsOf, stock.readAtMillis(item.getSku()));
+        }
+
+        quotes.incrementAndGet();
+        lines.addAndGet(promises.size());
+        return QuickPromiseResponse.builder()
+                .promises(promises)
+                .stockAsOf(promises.isEmpty() ? stock.getBuiltAtMillis() : stockAsOf)
+                .processingTimeMicros((System.nanoTime() - startTime) / 1_000)
+                .build();
+    }
+
+    /**
+     * Index positions turned back into one inventory row per location; SKUs without stock get no rows
+     */
+    @Override
+    public Optional<StockSnapshot> stockSnapshot(Collection<String> skus) {
+        StockIndex stock = stockIndex;
+        if (stock == null) {
+            return Optional.empty();
+        }
+        Map<String, List<Inventory>> inventory = new HashMap<>();
+        long asOf = Long.MAX_VALUE;
+        for (String sku : skus) {
+            if (inventory.containsKey(sku)) {
+                continue;
+            }
+            StockIndex.Stock skuStock = stock.get(sku);
+            List<Inventory> rows = new ArrayList<>(skuStock != null ? skuStock.size() : 0);
+            for (int position = 0; skuStock != null && position < skuStock.size(); position++) {
+                Inventory row = new Inventory();
+                row.setSku(sku);
+                row.setLocationId(skuStock.locationIdAt(position));
+                row.setQuantity(skuStock.quantityAt(position));
+                row.setProcessingTime(skuStock.processingDaysAt(position));
+                rows.add(row);
+            }
+            inventory.put(sku, rows);
+            asOf = Math.min(asOf, stock.readAtMillis(sku));
+        }
+        return Optional.of(new StockSnapshot(InventoryApiService.InventoryLookup.of(inventory),
+                inventory.isEmpty() ? stock.getBuiltAtMillis() : asOf));
+    }
+
+    /**
+     * Answer while stock has never loaded: every line unanswered rather than reported out of stock
+     */
+    private QuickPromiseResponse stockUnknown(OrderDTO request, long startTime) {
+        List<QuickPromiseResponse.SkuPromise> promises = request.getOrderItems().stream()
+                .map(item -> QuickPromiseResponse.SkuPromise.builder()
+                        .sku(item.getSku())
+                        .deliveryType(item.getDeliveryType())
+                        .build())
+                .toList();
+        quotes.incrementAndGet();
+        lines.addAndGet(promises.size());
+        return QuickPromiseResponse.builder()
+                .promises(promises)
+                .stockUnknown(true)
+                .processingTimeMicros((System.nanoTime() - startTime) / 1_000)
+                .build();
+    }
+
+    private QuickPromiseResponse.SkuPromise promiseFor(OrderItemDTO item, OrderDTO request, StockIndex stockIndex,
+                                                      LocationIndex index, long geoCell, int[] candidateOrdinals,
+                                                      int[] candidatePositions, double[] candidateDistances) {
+        QuickPromiseResponse.SkuPromise.SkuPromiseBuilder result = QuickPromiseResponse.SkuPromise.builder()
+                .sku(item.getSku())
+                .deliveryType(item.getDeliveryType());
+
+        StockIndex.Stock stock = stockIndex.get(item.getSku());
+        if (stock == null || item.getLocationFilterId() == null) {
+            return result.available(false).build();
+        }
+        int quantity = Math.max(1, item.getQuantity());
+
+        // Nearest eligible locations holding the full quantity, kept sorted by distance
+        int candidates = 0;
+        for (int ordinal : eligibleLocations(item.getLocationFilterId(), geoCell, index)) {
+            int position = stock.positionOf(index.locationAt(ordinal).getId());
+            if (position < 0 || stock.quantityAt(position) < quantity) {
+                continue;
+            }
+            double distance = GeoUtils.calculateDistance(request.getLatitude(), request.getLongitude(),
+                    index.latitudeAt(ordinal), index.longitudeAt(ordinal));
+            if (candidates == maxCandidates && distance >= candidateDistances[candidates - 1]) {
+                continue;
+            }
+            int slot = candidates < maxCandidates ? candidates++ : candidates - 1;
+            while (slot > 0 && candidateDistances[slot - 1] > distance) {
+                candidateOrdinals[slot] = candidateOrdinals[slot - 1];
+                candidatePositions[slot] = candidatePositions[slot - 1];
+                candidateDistances[slot] = candidateDistances[slot - 1];
+                slot--;
+            }
+            candidateOrdinals[slot] = ordinal;
+            candidatePositions[slot] = position;
+            candidateDistances[slot] = distance;
+        }
+
+        PromiseDateBreakdown best = null;
+        int bestOrdinal = -1;
+        for (int i = 0; i < candidates; i++) {
+            PromiseDateBreakdown promise = promiseDateService.calculatePromiseDate(item,
+                    index.locationAt(candidateOrdinals[i]), stock.processingDaysAt(candidatePositions[i]),
+                    quantity, request, candidateDistances[i]);
+            if (promise != null && (best == null || promise.getPromiseDate().isBefore(best.getPromiseDate()))) {
+                best = promise;
+                bestOrdinal = candidateOrdinals[i];
+            }
+        }
+        if (best == null) {
+            return result.available(false).build();
+        }
+        return result.available(true)
+                .promiseDate(best.getPromiseDate())
+                .p90DeliveryDate(best.getP90DeliveryDate())
+                .onTimeProbability(best.getOnTimeProbability())
+                .locationId(index.locationAt(bestOrdinal).getId())
+                .carrierCode(best.getCarrierCode())
+                .build();
+    }
+
+    /**
+     * Locations the filter allows for customers in the geo-cell. Product pages are anonymous, so the
+     * filter sees an order with only the cell-center coordinates, as for a guest checkout.
+     */
+    private int[] eligibleLocations(String filterId, long geoCell, LocationIndex index) {
+        String key = cellKey(filterId, geoCell);
+        EligibleSet cached = eligibleByCell.get(key);
+        if (cached != null && cached.locationVersion() == index.getVersion()) {
+            return cached.ordinals();
+        }
+
+        cellMisses.incrementAndGet();
+        double latitude = GeoUtils.cellCenterLatitude(geoCell);
+        double longitude = GeoUtils.cellCenterLongitude(geoCell);
+        OrderDTO cellContext = OrderDTO.builder()
+                .tempOrderId(key)
+                .latitude(latitude)
+                .longitude(longitude)
+                .orderItems(Collections.emptyList())
+                .build();
+        DistanceVector distances = DistanceVector.compute(index, latitude, longitude);
+
+        // Only a filter never loaded before needs a database read; past the database limit nothing is cached
+        List<Location> eligible;
+        try {
+            eligible = locationFilterExecutionService.executeKnownFilter(filterId, cellContext, distances)
+                    .orElseGet(() -> locationFilterExecutionService.executeLocationFilter(filterId, cellContext, distances));
+        } catch (RejectedExecutionException e) {
+            log.debug("Database limit reached loading filter {} for quick promise", filterId);
+            return new int[0];
+        }
+        int[] ordinals = eligible.stream()
+                .mapToInt(location -> index.ordinalOf(location.getId()))
+                .filter(ordinal -> ordinal >= 0)
+                .sorted()
+                .toArray();
+        eligibleByCell.put(key, new EligibleSet(index.getVersion(), ordinals));
+        return ordinals;
+    }
+
+    private static String cellKey(String filterId, long geoCell) {
+        return filterId + '@' + geoCell;
+    }
+
+    @Override
+    public void pinCells(Set<String> filterIds, Set<Long> geoCells) {
+        eligibleByCell.pin(cellKeys(filterIds, geoCells));
+    }
+
+    @Override
+    public void unpinCells(Set<String> filterIds, Set<Long> geoCells) {
+        eligibleByCell.unpin(cellKeys(filterIds, geoCells));
+    }
+
+    private static Set<String> cellKeys(Set<String> filterIds, Set<Long> geoCells) {
+        Set<String> keys = new HashSet<>();
+        for (String filterId : filterIds) {
+            for (long geoCell : geoCells) {
+                keys.add(cellKey(filterId, geoCell));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Loads the stock index once the application is up, before the first request needs it
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadStockAtStartup() {
+        refreshStock();
+    }
+
+    /**
+     * Full reload of in-stock rows; past the database limit or on error the current index and the
+     * pending changes are kept
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${sourcing.quick-promise.stock-refresh-ms:300000}",
+               initialDelayString = "${sourcing.quick-promise.stock-refresh-ms:300000}")
+    public void refreshStock() {
+        stockUpdates.lock();
+        try {
+            reloadStock();
+        } finally {
+            stockUpdates.unlock();
+        }
+    }
+
+    private void reloadStock() {
+        // Changes reported from here on are re-read after this load; those taken here are put back if it fails
+        boolean reload = reloadPending.getAndSet(false);
+        List<String> pending = new ArrayList<>(changedSkus);
+        changedSkus.removeAll(pending);
+        boolean loaded = false;
+        try {
+            List<Inventory> inventories = databaseLimiter.call(
+                    () -> inventoryRepository.findByQuantityGreaterThan(0), () -> null);
+            if (inventories == null) {
+                log.debug("Database limit reached; keeping the current stock index");
+                return;
+            }
+            StockIndex rebuilt = StockIndex.build(inventories);
+            stockIndex = rebuilt;
+            loaded = true;
+            log.info("Built stock index with {} SKUs from {} inventory rows", rebuilt.size(), inventories.size());
+        } catch (Exception e) {
+            log.error("Error loading stock index, keeping the current one", e);
+        } finally {
+            if (!loaded) {
+                changedSkus.addAll(pending);
+                if (reload) {
+                    reloadPending.set(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-reads SKUs reported changed since the last refresh in one query
+     */
+    @Scheduled(fixedDelayString = "${sourcing.quick-promise.change-refresh-ms:1000}")
+    public void applyStockChanges() {
+        stockUpdates.lock();
+        try {
+            rereadChangedSkus();
+        } finally {
+            stockUpdates.unlock();
+        }
+    }
+
+    private void rereadChangedSkus() {
+        StockIndex current = stockIndex;
+        // Also retries a startup load that failed or was past the database limit
+        if (current == null || reloadPending.get()) {
+            reloadStock();
+            return;
+        }
+        if (changedSkus.isEmpty()) {
+            return;
+        }
+
+        List<String> skus = new ArrayList<>(changedSkus);
+        changedSkus.removeAll(skus);
+        long readAtMillis = System.currentTimeMillis();
+        try {
+            List<Inventory> inventories = databaseLimiter.call(
+                    () -> inventoryRepository.findBySkusWithStock(skus), () -> null);
+            if (inventories == null) {
+                changedSkus.addAll(skus);
+                return;
+            }
+            Map<String, List<Inventory>> bySku = inventories.stream()
+                    .collect(Collectors.groupingBy(Inventory::getSku));
+            for (String sku : skus) {
+                current.replace(sku, bySku.getOrDefault(sku, Collections.emptyList()), readAtMillis);
+            }
+            log.debug("Updated stock index for {} changed SKUs", skus.size());
+        } catch (Exception e) {
+            log.error("Error updating stock index for changed SKUs", e);
+            changedSkus.addAll(skus);
+        }
+    }
+
+    /**
+     * Queues changed SKUs for re-reading and drops eligible sets of changed filters or locations
+     */
+    @EventListener
+    public void onSourcingDataChanged(SourcingDataChangedEvent event) {
+        switch (event.getDataType()) {
+            case INVENTORY -> {
+                if (event.affectsAll()) {
+                    reloadPending.set(true);
+                } else {
+                    changedSkus.addAll(event.getKeys());
+                }
+            }
+            case LOCATION_FILTER -> eligibleByCell.invalidateIf(
+                    key -> event.affects(key.substring(0, key.lastIndexOf('@'))));
+            case LOCATION -> eligibleByCell.clear();
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        StockIndex current = stockIndex;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("stockSkus", current != null ? current.size() : 0);
+        stats.put("stockLoaded", current != null);
+        stats.put("stockBuiltAt", current != null ? current.getBuiltAtMillis() : null);
+        stats.put("stockSkusReplaced", current != null ? current.replacedCount() : 0);
+        stats.put("pendingSkuChanges", changedSkus.size());
+        stats.put("eligibleCells", eligibleByCell.size());
+        stats.put("pinnedCells", eligibleByCell.pinnedKeys());
+        stats.put("cellMisses", cellMisses.get());
+        stats.put("quotes", quotes.get());
+        stats.put("lines", lines.get());
+        return stats;
+    }
+}
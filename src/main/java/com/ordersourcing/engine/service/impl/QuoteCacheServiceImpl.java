@@ -0,0 +1,163 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.dto.SourcingResponse;
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
+import com.ordersourcing.engine.model.ScoringConfiguration;
+import com.ordersourcing.engine.service.QuoteCacheService;
+import com.ordersourcing.engine.service.ScoringConfigurationService;
+import com.ordersourcing.engine.util.BoundedCache;
+import com.ordersourcing.engine.util.QuoteKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+public class QuoteCacheServiceImpl implements QuoteCacheService {
+    
+    @Autowired
+    private ScoringConfigurationService scoringConfigurationService;
+    
+    @Value("${sourcing.quote-cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${sourcing.quote-cache.ttl-ms:5000}")
+    private long ttlMs;
+    
+    private final BoundedCache<QuoteKey, CachedQuote> quotes;
+    
+    // Bumped by every invalidation, so a quote computed across one is not stored
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    
+    public QuoteCacheServiceImpl(@Value("${sourcing.quote-cache.max-entries:10000}") int maxEntries) {
+        this.quotes = new BoundedCache<>(maxEntries);
+    }
+    
+    @Override
+    public QuoteLookup lookup(OrderDTO order) {
+        if (!enabled) {
+            return new QuoteLookup(null, 0, null);
+        }
+        long startTime = System.nanoTime();
+        long currentGeneration = generation.get();
+        String key = QuoteKeys.canonicalHash(order);
+        
+        QuoteKey probe = QuoteKey.probe(key);
+        CachedQuote cached = quotes.get(probe);
+        if (cached == null || cached.expiresAtNanos - startTime <= 0) {
+            if (cached != null) {
+                quotes.invalidate(probe);
+            }
+            misses.incrementAndGet();
+            return new QuoteLookup(key, currentGeneration, null);
+        }
+        
+        hits.incrementAndGet();
+        SourcingResponse response = SourcingResponse.builder()
+                .orderId(order.getTempOrderId())
+                .fulfillmentPlans(cached.response.getFulfillmentPlans())
+                .degradedLines(cached.response.getDegradedLines())
+                .processingTimeMs((System.nanoTime() - startTime) / 1_000_000)
+                .build();
+        return new QuoteLookup(key, currentGeneration, response);
+    }
+    
+    @Override
+    public void store(QuoteLookup lookup, OrderDTO order, SourcingResponse response) {
+        if (lookup.key() == null || lookup.isHit()) {
+            return;
+        }
+        // Best-effort answers are not worth repeating, and empty ones may be errors
+        if (response.getFulfillmentPlans() == null || response.getFulfillmentPlans().isEmpty()
+                || (response.getDegradedLines() != null && !response.getDegradedLines().isEmpty())) {
+            return;
+        }
+        if (generation.get() != lookup.generation()) {
+            log.debug("Not caching quote for order {}: sourcing data changed while it was computed", 
+                    order.getTempOrderId());
+            return;
+        }
+        
+        Set<String> skus = new HashSet<>();
+        Set<String> filterIds = new HashSet<>();
+        Set<String> scoringConfigIds = new HashSet<>();
+        for (OrderItemDTO orderItem : order.getOrderItems()) {
+            if (orderItem.getSku() == null || orderItem.getLocationFilterId() == null) {
+                return;
+            }
+            skus.add(orderItem.getSku());
+            filterIds.add(orderItem.getLocationFilterId());
+            ScoringConfiguration config = scoringConfigurationService.getScoringConfigurationForItem(orderItem);
+            if (config != null) {
+                scoringConfigIds.add(config.getId());
+            }
+        }
+        
+        quotes.put(new QuoteKey(lookup.key(), skus, filterIds, scoringConfigIds), 
+                new CachedQuote(response, System.nanoTime() + ttlMs * 1_000_000L));
+    }
+    
+    /**
+     * Drops exactly the quotes that depend on changed inventory, filters or scoring configurations;
+     * location and carrier changes can affect any quote
+     */
+    @EventListener
+    public void onSourcingDataChanged(SourcingDataChangedEvent event) {
+        generation.incrementAndGet();
+        int before = quotes.size();
+        switch (event.getDataType()) {
+            case INVENTORY -> quotes.invalidateIf(key -> key.skus().stream().anyMatch(event::affects));
+            case LOCATION_FILTER -> quotes.invalidateIf(key -> key.filterIds().stream().anyMatch(event::affects));
+            case SCORING_CONFIGURATION -> 
+                    quotes.invalidateIf(key -> key.scoringConfigIds().stream().anyMatch(event::affects));
+            default -> quotes.clear();
+        }
+        invalidations.addAndGet(Math.max(0, before - quotes.size()));
+    }
+    
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ttlMs", ttlMs);
+        stats.put("entries", quotes.size());
+        stats.put("maxEntries", quotes.getMaxEntries());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("invalidated", invalidations.get());
+        return stats;
+    }
+    
+    /**
+     * Cache key: the canonical hash, carrying the data the quote depended on. Equality is by hash only.
+     */
+    private record QuoteKey(String hash, Set<String> skus, Set<String> filterIds, Set<String> scoringConfigIds) {
+        
+        static QuoteKey probe(String hash) {
+            return new QuoteKey(hash, Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof QuoteKey key && hash.equals(key.hash);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash.hashCode();
+        }
+    }
+    
+    private record CachedQuote(SourcingResponse response, long expiresAtNanos) {
+    }
+}
@@ -1,16 +1,26 @@
 package com.ordersourcing.engine.service.impl;
 
 import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
+import com.ordersourcing.engine.index.LocationIndex;
+import com.ordersourcing.engine.index.SplitPenaltyTable;
 import com.ordersourcing.engine.model.Location;
 import com.ordersourcing.engine.model.ScoringConfiguration;
 import com.ordersourcing.engine.repository.ScoringConfigurationRepository;
+import com.ordersourcing.engine.service.LocationIndexService;
 import com.ordersourcing.engine.service.ScoringConfigurationService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Slf4j
@@ -19,8 +29,23 @@ public class ScoringConfigurationServiceImpl implements ScoringConfigurationServ
     @Autowired
     private ScoringConfigurationRepository scoringConfigurationRepository;
     
+    @Autowired
+    private LocationIndexService locationIndexService;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     private static final String DEFAULT_SCORING_CONFIG_ID = "DEFAULT_SCORING";
     
+    // Static score components per configuration, one slot per location ordinal; read without locking
+    private final Map<String, StaticScoreTable> staticScoreTables = new ConcurrentHashMap<>();
+    
+    // Last seen content hash per configuration, used to detect changes
+    private final Map<String, Integer> configurationFingerprints = new ConcurrentHashMap<>();
+    
     /**
      * Gets the scoring configuration for a specific ID
      */
@@ -52,15 +77,33 @@ public class ScoringConfigurationServiceImpl implements ScoringConfigurationServ
     }
     
     /**
-     * Calculates location score using the specified scoring configuration
+     * Reads the same cache entry getScoringConfigurationForItem fills, without loading it on a miss
+     */
+    @Override
+    public Optional<ScoringConfiguration> findCachedScoringConfigurationForItem(OrderItemDTO orderItem) {
+        Cache configCache = cacheManager.getCache("scoringConfigForItem");
+        if (configCache == null) {
+            return Optional.empty();
+        }
+        Object key = orderItem.getScoringConfigurationId() != null ? orderItem.getScoringConfigurationId() : "DEFAULT";
+        return Optional.ofNullable(configCache.get(key, ScoringConfiguration.class));
+    }
+    
+    /**
+     * Calculates location score using the specified scoring configuration.
+     * Transit time and express bonus are precomputed per configuration for every indexed location;
+     * distance and inventory-dependent terms come from the per-request context.
      */
     @Override
     public double calculateLocationScore(Location location, ScoringConfiguration config, 
                                        OrderItemDTO orderItem, Map<String, Object> context) {
-        double score = 0;
+        LocationIndex index = locationIndexService.getIndex();
+        int ordinal = index.ordinalOf(location.getId());
+        StaticScoreTable table = ordinal >= 0 ? getStaticScoreTable(config, index) : null;
         
-        // Apply transit time weight (transitTime is primitive int, so no null check needed)
-        score += location.getTransitTime() * config.getTransitTimeWeight();
+        // Apply transit time weight (precomputed per configuration)
+        double score = table != null ? table.transitScores[ordinal] 
+                : location.getTransitTime() * config.getTransitTimeWeight();
         
         // Apply processing time weight (from context, as it comes from Inventory)
         if (context.containsKey("processingTime")) {
@@ -74,13 +117,13 @@ public class ScoringConfigurationServiceImpl implements ScoringConfigurationServ
             score += inventoryRatio * config.getInventoryWeight();
         }
         
-        // Apply express weight for locations with short transit times
-        if (orderItem.getIsExpressPriority() != null && orderItem.getIsExpressPriority() && 
-            location.getTransitTime() <= 1) {
-            score += config.getExpressWeight();
+        // Apply express weight for locations with short transit times (precomputed per configuration)
+        if (orderItem.getIsExpressPriority() != null && orderItem.getIsExpressPriority()) {
+            score += table != null ? table.expressBonuses[ordinal] : expressBonus(location, config);
         }
         
-        // Apply distance weight if available
+        // Apply distance weight if available. Not memoized: per (location, customer cell) it would cost a
+        // table probe to save one compare and multiply, and the cell count is unbounded
         if (context.containsKey("distance")) {
             double distance = (Double) context.get("distance");
             if (distance <= config.getDistanceThreshold()) {
@@ -95,7 +138,99 @@ public class ScoringConfigurationServiceImpl implements ScoringConfigurationServ
     }
     
     /**
-     * Calculates split penalty using the specified scoring configuration
+     * Static score components of every indexed location for the configuration, built on first use and
+     * rebuilt when the location index changes
+     */
+    private StaticScoreTable getStaticScoreTable(ScoringConfiguration config, LocationIndex index) {
+        StaticScoreTable table = staticScoreTables.get(config.getId());
+        if (table != null && table.indexVersion == index.getVersion()) {
+            return table;
+        }
+        
+        double[] transitScores = new double[index.size()];
+        double[] expressBonuses = new double[index.size()];
+        for (int ordinal = 0; ordinal < index.size(); ordinal++) {
+            Location location = index.locationAt(ordinal);
+            transitScores[ordinal] = location.getTransitTime() * config.getTransitTimeWeight();
+            expressBonuses[ordinal] = expressBonus(location, config);
+        }
+        table = new StaticScoreTable(index.getVersion(), transitScores, expressBonuses);
+        staticScoreTables.put(config.getId(), table);
+        return table;
+    }
+    
+    private static double expressBonus(Location location, ScoringConfiguration config) {
+        return location.getTransitTime() <= 1 ? config.getExpressWeight() : 0.0;
+    }
+    
+    /**
+     * Evicts cached configurations and precomputed scores for the given configuration IDs
+     */
+    @Override
+    public void evictScoringConfigurations(Set<String> configurationIds) {
+        log.info("Evicting scoring configurations: {}", configurationIds);
+        eventPublisher.publishEvent(new SourcingDataChangedEvent(
+                this, SourcingDataChangedEvent.DataType.SCORING_CONFIGURATION, configurationIds));
+    }
+    
+    /**
+     * Polls scoring configurations and evicts any that were added, changed or removed
+     */
+    @Scheduled(fixedDelayString = "${sourcing.scoring.config-refresh-ms:60000}")
+    public void refreshConfigurations() {
+        try {
+            Map<String, Integer> current = new HashMap<>();
+            for (ScoringConfiguration config : scoringConfigurationRepository.findAll()) {
+                current.put(config.getId(), config.hashCode());
+            }
+            
+            if (configurationFingerprints.isEmpty()) {
+                configurationFingerprints.putAll(current);
+                return;
+            }
+            
+            Set<String> changed = new HashSet<>();
+            current.forEach((id, fingerprint) -> {
+                if (!fingerprint.equals(configurationFingerprints.get(id))) {
+                    changed.add(id);
+                }
+            });
+            configurationFingerprints.keySet().stream()
+                    .filter(id -> !current.containsKey(id))
+                    .forEach(changed::add);
+            
+            if (!changed.isEmpty()) {
+                configurationFingerprints.clear();
+                configurationFingerprints.putAll(current);
+                evictScoringConfigurations(changed);
+            }
+        } catch (Exception e) {
+            log.error("Error refreshing scoring configurations", e);
+        }
+    }
+    
+    /**
+     * Drops precomputed scores when configurations or locations change
+     */
+    @EventListener
+    public void onSourcingDataChanged(SourcingDataChangedEvent event) {
+        switch (event.getDataType()) {
+            case SCORING_CONFIGURATION -> {
+                // Items are cached by their own configuration ID or by 'DEFAULT', so clear all of them
+                Cache configCache = cacheManager.getCache("scoringConfigForItem");
+                if (configCache != null) {
+                    configCache.clear();
+                }
+                staticScoreTables.keySet().removeIf(event::affects);
+            }
+            case LOCATION -> staticScoreTables.clear();
+            default -> {
+            }
+        }
+    }
+    
+    /**
+     * Calculates split penalty using the specified scoring configuration's precomputed penalty table
      */
     @Override
     public double calculateSplitPenalty(int locationCount, double totalValue, 
@@ -104,23 +239,9 @@ public class ScoringConfigurationServiceImpl implements ScoringConfigurationServ
             return 0;
         }
         
-        double penalty = config.getSplitPenaltyBase();
-        
-        // Apply exponential penalty
-        penalty += Math.pow(locationCount - 1, config.getSplitPenaltyExponent()) * 
-                   config.getSplitPenaltyMultiplier();
-        
-        // Apply high-value penalty
-        if (totalValue > config.getHighValueThreshold()) {
-            penalty += config.getHighValuePenalty();
-        }
-        
-        // Apply urgency penalty
-        if ("SAME_DAY".equals(orderItem.getDeliveryType())) {
-            penalty += config.getSameDayPenalty();
-        } else if ("NEXT_DAY".equals(orderItem.getDeliveryType())) {
-            penalty += config.getNextDayPenalty();
-        }
+        double penalty = config.getSplitPenaltyTable().lookup(locationCount,
+                SplitPenaltyTable.deliveryTypeIndex(orderItem.getDeliveryType()),
+                totalValue > config.getHighValueThreshold());
         
         log.debug("Calculated split penalty: {} for {} locations, value: {}, delivery type: {}", 
                   penalty, locationCount, totalValue, orderItem.getDeliveryType());
@@ -188,7 +309,24 @@ public class ScoringConfigurationServiceImpl implements ScoringConfigurationServ
         config.setPeakSeasonAdjustment(-0.1);
         config.setWeatherAdjustment(-0.05);
         config.setHazmatAdjustment(-0.15);
+        config.buildSplitPenaltyTable();
         
         return config;
     }
+    
+    /**
+     * Transit and express terms of one configuration, indexed by location ordinal of the given index version;
+     * the distance term depends on the customer and is scored per request
+     */
+    private static class StaticScoreTable {
+        final long indexVersion;
+        final double[] transitScores;
+        final double[] expressBonuses; // Only applied for express-priority items
+        
+        StaticScoreTable(long indexVersion, double[] transitScores, double[] expressBonuses) {
+            this.indexVersion = indexVersion;
+            this.transitScores = transitScores;
+            this.expressBonuses = expressBonuses;
+        }
+    }
 }
\ No newline at end of file
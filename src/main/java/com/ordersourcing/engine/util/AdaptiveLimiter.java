@@ -0,0 +1,194 @@
+package com.ordersourcing.engine.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Concurrency limit that adapts to observed round-trip time. A short-term RTT average is compared
+ * with a long-term baseline: while they agree the limit grows by about its square root, and when
+ * the short-term RTT rises above the baseline the limit shrinks by the ratio (gradient). Failed
+ * calls cut the limit multiplicatively. Calls over the limit are rejected immediately instead of
+ * queuing, so callers can fail fast or fall back to cached data.
+ */
+public class AdaptiveLimiter {
+
+    private static final double SHORT_RTT_WEIGHT = 0.2;
+    private static final double LONG_RTT_WEIGHT = 0.01;
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile double limit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                           double smoothing, double rttTolerance) {
+        this(name, initialLimit, minLimit, maxLimit, smoothing, rttTolerance, System::nanoTime);
+    }
+
+    AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                    double smoothing, double rttTolerance, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.rttTolerance = rttTolerance;
+        this.nanoClock = nanoClock;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+    }
+
+    /**
+     * Runs the query if a slot is free, otherwise returns the fallback without waiting.
+     * A query that throws counts as a dropped call and the exception is rethrown.
+     */
+    public <T> T call(Supplier<T> query, Supplier<T> onRejected) {
+        Token token = tryAcquire();
+        if (token == null) {
+            return onRejected.get();
+        }
+        try {
+            T result = query.get();
+            token.success();
+            return result;
+        } catch (RuntimeException e) {
+            token.dropped();
+            throw e;
+        }
+    }
+
+    /**
+     * A slot to be completed with success or dropped, or null if the limit is reached
+     */
+    public Token tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.incrementAndGet();
+                return new Token(current + 1, nanoClock.getAsLong());
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(name, (int) limit, minLimit, maxLimit, inFlight.get(),
+                    shortRttNanos / 1_000_000.0, longRttNanos / 1_000_000.0,
+                    admitted.get(), rejected.get(), dropped.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onSample(long rttNanos, int inFlightAtStart) {
+        lock.lock();
+        try {
+            if (longRttNanos == 0) {
+                shortRttNanos = rttNanos;
+                longRttNanos = rttNanos;
+            } else {
+                shortRttNanos += SHORT_RTT_WEIGHT * (rttNanos - shortRttNanos);
+                longRttNanos += LONG_RTT_WEIGHT * (rttNanos - longRttNanos);
+            }
+            // After a sustained slowdown clears, pull the baseline back down so the limit can recover
+            if (longRttNanos > 2 * shortRttNanos) {
+                longRttNanos *= 0.95;
+            }
+
+            // Calls well under the limit say nothing about whether a higher limit would hold up
+            if (inFlightAtStart < limit / 2) {
+                return;
+            }
+
+            double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / shortRttNanos));
+            double target = limit * gradient + Math.sqrt(limit);
+            limit = clamp(limit * (1 - smoothing) + target * smoothing);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onDropped() {
+        lock.lock();
+        try {
+            limit = clamp(limit * DROP_BACKOFF);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    /**
+     * One admitted call; completing it more than once has no further effect
+     */
+    public final class Token {
+        private final int inFlightAtStart;
+        private final long startNanos;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Token(int inFlightAtStart, long startNanos) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * The call completed; its round-trip time feeds the limit
+         */
+        public void success() {
+            if (release()) {
+                onSample(Math.max(1, nanoClock.getAsLong() - startNanos), inFlightAtStart);
+            }
+        }
+
+        /**
+         * The call failed or timed out; the limit backs off
+         */
+        public void dropped() {
+            if (release()) {
+                dropped.incrementAndGet();
+                onDropped();
+            }
+        }
+
+        private boolean release() {
+            if (!completed.compareAndSet(false, true)) {
+                return false;
+            }
+            inFlight.decrementAndGet();
+            return true;
+        }
+    }
+
+    public record Stats(String name, int limit, int minLimit, int maxLimit, int inFlight,
+                        double shortRttMs, double longRttMs, long admitted, long rejected, long dropped) {
+    }
+}
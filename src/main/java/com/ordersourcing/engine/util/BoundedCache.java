@@ -0,0 +1,217 @@
+package com.ordersourcing.engine.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe LRU cache with a fixed maximum number of entries. Entries of pinned keys are held
+ * outside the LRU order and never evicted, though they can still be invalidated; they count toward
+ * the bound, so each insertion past it evicts the least recently used unpinned entry, and a cache
+ * holding only pinned entries grows past its bound.
+ */
+public class BoundedCache<K, V> {
+    
+    private final int maxEntries;
+    private final LinkedHashMap<K, V> entries;
+    private final Map<K, V> pinnedEntries = new HashMap<>();
+    private final PinSet<K> pins = new PinSet<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    
+    public BoundedCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() + pinnedEntries.size() > BoundedCache.this.maxEntries;
+            }
+        };
+    }
+    
+    public V get(K key) {
+        lock.lock();
+        try {
+            V value = entries.get(key);
+            return value != null ? value : pinnedEntries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the cached value, computing it outside the lock on a miss
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        
+        V computed = loader.apply(key);
+        if (computed == null) {
+            return null;
+        }
+        
+        lock.lock();
+        try {
+            V existing = entries.containsKey(key) ? entries.get(key) : pinnedEntries.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            store(key, computed);
+            return computed;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            store(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void store(K key, V value) {
+        if (pins.contains(key)) {
+            entries.remove(key);
+            pinnedEntries.put(key, value);
+        } else {
+            pinnedEntries.remove(key);
+            entries.put(key, value);
+        }
+    }
+    
+    /**
+     * Holds the keys against eviction, whether or not they are cached yet, until each pin is released
+     */
+    public void pin(Collection<? extends K> keys) {
+        lock.lock();
+        try {
+            pins.pin(keys);
+            for (K key : keys) {
+                V value = entries.remove(key);
+                if (value != null) {
+                    pinnedEntries.put(key, value);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Releases one pin per key; keys no longer pinned rejoin the LRU order as most recently used
+     */
+    public void unpin(Collection<? extends K> keys) {
+        lock.lock();
+        try {
+            pins.unpin(keys);
+            for (K key : keys) {
+                if (!pins.contains(key)) {
+                    V value = pinnedEntries.remove(key);
+                    if (value != null) {
+                        entries.put(key, value);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public boolean isPinned(K key) {
+        lock.lock();
+        try {
+            return pins.contains(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Number of pinned keys, cached or not
+     */
+    public int pinnedKeys() {
+        return pins.size();
+    }
+    
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+            pinnedEntries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void invalidateIf(Predicate<? super K> predicate) {
+        lock.lock();
+        try {
+            entries.keySet().removeIf(predicate);
+            pinnedEntries.keySet().removeIf(predicate);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            pinnedEntries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size() + pinnedEntries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Snapshot of the current keys: pinned ones, then the rest least recently used first
+     */
+    public List<K> keys() {
+        lock.lock();
+        try {
+            List<K> keys = new ArrayList<>(pinnedEntries.keySet());
+            keys.addAll(entries.keySet());
+            return keys;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Snapshot of the current values, without touching their recency
+     */
+    public List<V> values() {
+        lock.lock();
+        try {
+            List<V> values = new ArrayList<>(pinnedEntries.values());
+            values.addAll(entries.values());
+            return values;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+}
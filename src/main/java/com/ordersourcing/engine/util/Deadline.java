@@ -0,0 +1,54 @@
+package com.ordersourcing.engine.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Point in time by which a request must answer, shared by every stage of that request
+ */
+public final class Deadline {
+
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE, System::nanoTime);
+
+    private final long expiresAtNanos;
+    private final LongSupplier nanoClock;
+
+    private Deadline(long expiresAtNanos, LongSupplier nanoClock) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Deadline the given number of milliseconds from now; zero or less means no deadline
+     */
+    public static Deadline afterMillis(long millis) {
+        return afterMillis(millis, System::nanoTime);
+    }
+
+    /**
+     * Deadline measured against the given nanosecond clock, so tests can advance time explicitly
+     */
+    public static Deadline afterMillis(long millis, LongSupplier nanoClock) {
+        if (millis <= 0) {
+            return NONE;
+        }
+        return new Deadline(nanoClock.getAsLong() + millis * 1_000_000L, nanoClock);
+    }
+
+    public boolean isBounded() {
+        return this != NONE;
+    }
+
+    public boolean isExpired() {
+        return isBounded() && nanoClock.getAsLong() - expiresAtNanos >= 0;
+    }
+
+    /**
+     * Milliseconds left, never negative; Long.MAX_VALUE when unbounded
+     */
+    public long remainingMillis() {
+        if (!isBounded()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (expiresAtNanos - nanoClock.getAsLong()) / 1_000_000L);
+    }
+}
@@ -1,9 +1,19 @@
 package com.ordersourcing.engine.util;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 public class GeoUtils {
 
     private static final int EARTH_RADIUS = 6371; // Radius of Earth in kilometers
 
+    // Geo-cells are a fixed lat/long grid (0.01 degrees, roughly 1.1 km north-south)
+    private static final double CELL_SIZE_DEGREES = 0.01;
+    private static final long CELLS_PER_ROW = Math.round(360.0 / CELL_SIZE_DEGREES);
+
     public static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
         double latDistance = Math.toRadians(lat2 - lat1);
         double lonDistance = Math.toRadians(lon2 - lon1);
@@ -16,4 +26,54 @@ public class GeoUtils {
 
         return EARTH_RADIUS * c;
     }
+
+    /**
+     * Encodes a coordinate as the ID of the geo-cell containing it
+     */
+    public static long toGeoCell(double latitude, double longitude) {
+        long row = (long) Math.floor((latitude + 90.0) / CELL_SIZE_DEGREES);
+        long column = (long) Math.floor((longitude + 180.0) / CELL_SIZE_DEGREES);
+        return row * CELLS_PER_ROW + column;
+    }
+
+    public static double cellCenterLatitude(long geoCell) {
+        return (geoCell / CELLS_PER_ROW + 0.5) * CELL_SIZE_DEGREES - 90.0;
+    }
+
+    public static double cellCenterLongitude(long geoCell) {
+        return (geoCell % CELLS_PER_ROW + 0.5) * CELL_SIZE_DEGREES - 180.0;
+    }
+
+    /**
+     * Geo-cells whose centers lie within the radius of a point, the point's own cell first and the
+     * rest nearest first. A radius covering more than maxCells cells is rejected rather than cut
+     * short; the scan stops at the first cell past the limit.
+     */
+    public static List<Long> cellsWithin(double latitude, double longitude, double radiusKm, int maxCells) {
+        long ownCell = toGeoCell(latitude, longitude);
+        Set<Long> cells = new LinkedHashSet<>();
+        double latitudeSpan = Math.max(0, radiusKm) / 111.0;
+        double longitudeSpan = latitudeSpan / Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+        for (double dLat = -latitudeSpan; dLat <= latitudeSpan; dLat += CELL_SIZE_DEGREES) {
+            for (double dLon = -longitudeSpan; dLon <= longitudeSpan; dLon += CELL_SIZE_DEGREES) {
+                long cell = toGeoCell(latitude + dLat, longitude + dLon);
+                if (cell != ownCell && calculateDistance(latitude, longitude, 
+                        cellCenterLatitude(cell), cellCenterLongitude(cell)) <= radiusKm) {
+                    cells.add(cell);
+                    if (cells.size() + 1 > maxCells) {
+                        throw new IllegalArgumentException(String.format(
+                                "Radius of %.1f km covers more than %d geo-cells", radiusKm, maxCells));
+                    }
+                }
+            }
+        }
+
+        List<Long> nearest = new ArrayList<>(cells);
+        nearest.sort(Comparator.comparingDouble(cell -> calculateDistance(latitude, longitude, 
+                cellCenterLatitude(cell), cellCenterLongitude(cell))));
+        List<Long> result = new ArrayList<>();
+        result.add(ownCell);
+        result.addAll(nearest);
+        return result;
+    }
 }
@@ -0,0 +1,156 @@
+package com.ordersourcing.engine.util;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Online linear cost model: predicts latency from a small feature vector using exponentially
+ * decayed ridge regression, so the fit tracks the node it runs on and drifts with the data.
+ * An intercept term is added internally and left out of the ridge penalty, so the fixed cost of a path
+ * is not shrunk towards zero.
+ */
+public class LatencyModel {
+
+    private final int dimensions;
+    private final double decay;
+    private final double ridge;
+    private final double[][] xtx;
+    private final double[] xty;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long samples;
+    private double[] coefficients;
+
+    /**
+     * @param features number of features, excluding the intercept
+     * @param decay weight kept by past observations per new one, in (0, 1]
+     * @param ridge regularisation added to the feature diagonal so the fit is defined from the first sample
+     */
+    public LatencyModel(int features, double decay, double ridge) {
+        this.dimensions = features + 1;
+        this.decay = decay;
+        this.ridge = ridge;
+        this.xtx = new double[dimensions][dimensions];
+        this.xty = new double[dimensions];
+    }
+
+    public void observe(double[] features, double latencyMs) {
+        double[] x = withIntercept(features);
+        lock.lock();
+        try {
+            for (int i = 0; i < dimensions; i++) {
+                for (int j = 0; j < dimensions; j++) {
+                    xtx[i][j] = xtx[i][j] * decay + x[i] * x[j];
+                }
+                xty[i] = xty[i] * decay + x[i] * latencyMs;
+            }
+            samples++;
+            coefficients = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Predicted latency in milliseconds, or NaN before the first observation
+     */
+    public double predict(double[] features) {
+        double[] beta = getCoefficients();
+        if (beta == null) {
+            return Double.NaN;
+        }
+        double[] x = withIntercept(features);
+        double prediction = 0;
+        for (int i = 0; i < dimensions; i++) {
+            prediction += beta[i] * x[i];
+        }
+        return prediction;
+    }
+
+    public long getSamples() {
+        lock.lock();
+        try {
+            return samples;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Intercept first, then one coefficient per feature; null before the first observation
+     */
+    public double[] getCoefficients() {
+        lock.lock();
+        try {
+            if (samples == 0) {
+                return null;
+            }
+            if (coefficients == null) {
+                coefficients = solve();
+            }
+            return coefficients.clone();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double[] withIntercept(double[] features) {
+        if (features.length != dimensions - 1) {
+            throw new IllegalArgumentException("Expected " + (dimensions - 1) + " features, got " + features.length);
+        }
+        double[] x = new double[dimensions];
+        x[0] = 1.0;
+        System.arraycopy(features, 0, x, 1, features.length);
+        return x;
+    }
+
+    /**
+     * Solves (XᵀX + ridge·D)β = Xᵀy by Gaussian elimination with partial pivoting, where D is the identity
+     * except for a zero at the intercept
+     */
+    private double[] solve() {
+        int n = dimensions;
+        double[][] a = new double[n][n + 1];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(xtx[i], 0, a[i], 0, n);
+            if (i > 0) {
+                a[i][i] += ridge;
+            }
+            a[i][n] = xty[i];
+        }
+
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++) {
+                if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            double[] swap = a[col];
+            a[col] = a[pivot];
+            a[pivot] = swap;
+
+            for (int row = col + 1; row < n; row++) {
+                double factor = a[row][col] / a[col][col];
+                for (int k = col; k <= n; k++) {
+                    a[row][k] -= factor * a[col][k];
+                }
+            }
+        }
+
+        double[] beta = new double[n];
+        for (int row = n - 1; row >= 0; row--) {
+            double sum = a[row][n];
+            for (int k = row + 1; k < n; k++) {
+                sum -= a[row][k] * beta[k];
+            }
+            beta[row] = sum / a[row][row];
+        }
+        return beta;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyModel{samples=" + getSamples() + ", coefficients=" + Arrays.toString(getCoefficients()) + "}";
+    }
+}
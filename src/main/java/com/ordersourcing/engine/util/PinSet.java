@@ -0,0 +1,34 @@
+package com.ordersourcing.engine.util;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe counted set of pinned keys: a key pinned by several holders stays pinned until each
+ * of them releases it
+ */
+public class PinSet<T> {
+    
+    private final Map<T, Integer> counts = new ConcurrentHashMap<>();
+    
+    public void pin(Collection<? extends T> keys) {
+        for (T key : keys) {
+            counts.merge(key, 1, Integer::sum);
+        }
+    }
+    
+    public void unpin(Collection<? extends T> keys) {
+        for (T key : keys) {
+            counts.computeIfPresent(key, (pinned, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+    
+    public boolean contains(T key) {
+        return counts.containsKey(key);
+    }
+    
+    public int size() {
+        return counts.size();
+    }
+}
@@ -0,0 +1,211 @@
+package com.ordersourcing.engine.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission scheduler with one queue per priority class. Slots are bounded globally and per class;
+ * when a slot frees, backlogged classes are served by weighted fair (stride) scheduling, so higher
+ * weights get proportionally more slots without starving the rest. A request that cannot be queued,
+ * or waits longer than its class budget, fails fast with {@link RejectedExecutionException}.
+ */
+public class PriorityScheduler {
+
+    private final int totalLimit;
+    private final double[] strides;
+    private final int[] classLimits;
+    private final int[] maxQueued;
+    private final long[] budgetMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<ArrayDeque<CompletableFuture<Permit>>> queues;
+    private final double[] pass;
+    private final int[] active;
+    private final long[] admitted;
+    private final long[] shed;
+    private double globalPass;
+    private int totalActive;
+
+    /**
+     * Every array is indexed by class, 0 being the most urgent
+     */
+    public PriorityScheduler(int totalLimit, double[] weights, int[] classLimits, int[] maxQueued, long[] budgetMs) {
+        int classes = weights.length;
+        if (classLimits.length != classes || maxQueued.length != classes || budgetMs.length != classes) {
+            throw new IllegalArgumentException("Weights, limits, queue sizes and budgets must have one entry per class");
+        }
+        this.totalLimit = totalLimit;
+        this.strides = new double[classes];
+        for (int c = 0; c < classes; c++) {
+            strides[c] = 1.0 / weights[c];
+        }
+        this.classLimits = classLimits.clone();
+        this.maxQueued = maxQueued.clone();
+        this.budgetMs = budgetMs.clone();
+        this.queues = new ArrayList<>(classes);
+        for (int c = 0; c < classes; c++) {
+            queues.add(new ArrayDeque<>());
+        }
+        this.pass = new double[classes];
+        this.active = new int[classes];
+        this.admitted = new long[classes];
+        this.shed = new long[classes];
+    }
+
+    public int getClassCount() {
+        return strides.length;
+    }
+
+    /**
+     * Completes with a permit once a slot is granted, or exceptionally with RejectedExecutionException
+     * if the class queue is full or the wait exceeds the class budget. The permit must be closed.
+     */
+    public CompletableFuture<Permit> acquire(int priorityClass) {
+        int c = Math.max(0, Math.min(priorityClass, getClassCount() - 1));
+        CompletableFuture<Permit> waiter = new CompletableFuture<>();
+
+        // Futures are completed outside the lock so callers' continuations never run while holding it
+        boolean granted = false;
+        boolean queued = false;
+        lock.lock();
+        try {
+            ArrayDeque<CompletableFuture<Permit>> queue = queues.get(c);
+            if (queue.isEmpty() && totalActive < totalLimit && active[c] < classLimits[c]) {
+                reserve(c);
+                granted = true;
+            } else if (queue.size() < maxQueued[c] && budgetMs[c] > 0) {
+                if (queue.isEmpty()) {
+                    // A class returning from idle gets no credit for the time it was idle
+                    pass[c] = Math.max(pass[c], globalPass);
+                }
+                queue.addLast(waiter);
+                queued = true;
+            } else {
+                shed[c]++;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (granted) {
+            waiter.complete(new Permit(this, c));
+        } else if (queued) {
+            CompletableFuture.delayedExecutor(budgetMs[c], TimeUnit.MILLISECONDS).execute(() -> expire(c, waiter));
+        } else {
+            waiter.completeExceptionally(new RejectedExecutionException(
+                    "Sourcing is overloaded for priority class " + c));
+        }
+        return waiter;
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            List<ClassStats> classes = new ArrayList<>(getClassCount());
+            for (int c = 0; c < getClassCount(); c++) {
+                classes.add(new ClassStats(c, 1.0 / strides[c], classLimits[c], budgetMs[c], active[c],
+                        queues.get(c).size(), admitted[c], shed[c]));
+            }
+            return new Stats(totalLimit, totalActive, classes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reserve(int c) {
+        active[c]++;
+        totalActive++;
+        admitted[c]++;
+    }
+
+    private void expire(int c, CompletableFuture<Permit> waiter) {
+        lock.lock();
+        try {
+            if (!queues.get(c).remove(waiter)) {
+                return;
+            }
+            shed[c]++;
+        } finally {
+            lock.unlock();
+        }
+        waiter.completeExceptionally(new RejectedExecutionException(
+                "Queue wait exceeded " + budgetMs[c] + "ms for priority class " + c));
+    }
+
+    private void release(int c) {
+        List<CompletableFuture<Permit>> grantedWaiters = new ArrayList<>(1);
+        List<Integer> grantedClasses = new ArrayList<>(1);
+        lock.lock();
+        try {
+            active[c]--;
+            totalActive--;
+
+            // Hand free slots to the backlogged class with the lowest pass, skipping classes at their own limit
+            while (totalActive < totalLimit) {
+                int next = -1;
+                for (int k = 0; k < getClassCount(); k++) {
+                    if (!queues.get(k).isEmpty() && active[k] < classLimits[k]
+                            && (next < 0 || pass[k] < pass[next])) {
+                        next = k;
+                    }
+                }
+                if (next < 0) {
+                    break;
+                }
+                globalPass = pass[next];
+                pass[next] += strides[next];
+                reserve(next);
+                grantedWaiters.add(queues.get(next).pollFirst());
+                grantedClasses.add(next);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (int i = 0; i < grantedWaiters.size(); i++) {
+            Permit permit = new Permit(this, grantedClasses.get(i));
+            if (!grantedWaiters.get(i).complete(permit)) {
+                // The caller cancelled while queued; pass the slot on
+                permit.close();
+            }
+        }
+    }
+
+    /**
+     * An admitted slot; closing it more than once has no further effect
+     */
+    public static final class Permit implements AutoCloseable {
+        private final PriorityScheduler scheduler;
+        private final int priorityClass;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(PriorityScheduler scheduler, int priorityClass) {
+            this.scheduler = scheduler;
+            this.priorityClass = priorityClass;
+        }
+
+        public int getPriorityClass() {
+            return priorityClass;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                scheduler.release(priorityClass);
+            }
+        }
+    }
+
+    public record ClassStats(int priorityClass, double weight, int concurrencyLimit, long queueBudgetMs,
+                             int active, int queued, long admitted, long shed) {
+    }
+
+    public record Stats(int concurrencyLimit, int active, List<ClassStats> classes) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.ordersourcing.engine.util;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.dto.OrderItemDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Canonical content hashes of orders and order lines for quote caching and cart sessions. Every field
+ * takes part except the ones that identify the request rather than what is being sourced, so fields
+ * added to the DTOs later are included by default and can never produce a false hit.
+ */
+public final class QuoteKeys {
+
+    private static final Set<String> REQUEST_FIELDS = Set.of("tempOrderId", "requestTimestamp");
+    private static final Set<String> CONTEXT_EXCLUDED_FIELDS = Set.of("tempOrderId", "requestTimestamp", "orderItems");
+
+    // Fields only: derived getters such as getTotalQuantity() would tie order-level hashes to the lines
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .visibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .visibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+            .build();
+
+    private QuoteKeys() {
+    }
+
+    /**
+     * SHA-256 of the order's canonical JSON without tempOrderId and requestTimestamp, as hex
+     */
+    public static String canonicalHash(OrderDTO order) {
+        return hash(order, REQUEST_FIELDS);
+    }
+    
+    /**
+     * Hash of the order-level fields only (no lines, tempOrderId or requestTimestamp)
+     */
+    public static String contextHash(OrderDTO order) {
+        return hash(order, CONTEXT_EXCLUDED_FIELDS);
+    }
+    
+    /**
+     * Hash of one order line's content
+     */
+    public static String itemHash(OrderItemDTO orderItem) {
+        return hash(orderItem, Set.of());
+    }
+    
+    private static String hash(Object value, Set<String> excludedFields) {
+        try {
+            ObjectNode tree = CANONICAL_MAPPER.valueToTree(value);
+            tree.remove(excludedFields);
+            byte[] canonical = CANONICAL_MAPPER.writeValueAsString(tree).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot compute canonical hash of " + value.getClass().getSimpleName(), e);
+        }
+    }
+}
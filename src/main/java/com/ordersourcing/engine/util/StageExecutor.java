@@ -0,0 +1,204 @@
+package com.ordersourcing.engine.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Named, bounded executor for one kind of sourcing work (blocking I/O or CPU).
+ * In platform mode it is a fixed thread pool: when the queue is full the submitting thread runs
+ * the task itself, which throttles callers instead of dropping work, and is counted as a saturation
+ * event. In virtual mode every task gets its own virtual thread and a semaphore caps how many run
+ * at once. Fan-out from inside the executor runs inline, so tasks never block waiting on other
+ * tasks queued behind them.
+ */
+@Slf4j
+public class StageExecutor implements Executor {
+    
+    private static final ThreadLocal<StageExecutor> CURRENT = new ThreadLocal<>();
+    
+    // Set while tryExecute submits, so a full queue rejects the task instead of running it on the caller
+    private static final ThreadLocal<Boolean> REJECT_WHEN_FULL = new ThreadLocal<>();
+    
+    private final String name;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong callerRuns = new AtomicLong();
+    
+    // Virtual mode only
+    private final ThreadFactory virtualThreadFactory;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final AtomicLong virtualCompleted = new AtomicLong();
+    private volatile boolean shutdown;
+    
+    public StageExecutor(String name, int threads, int queueCapacity) {
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        this.virtualThreadFactory = null;
+        this.permits = null;
+        this.maxConcurrency = threads;
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(() -> {
+                CURRENT.set(this);
+                runnable.run();
+            }, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        
+        RejectedExecutionHandler callerRunsAndCount = (task, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor " + name + " is shut down");
+            }
+            if (REJECT_WHEN_FULL.get() != null) {
+                throw new RejectedExecutionException("Executor " + name + " is saturated");
+            }
+            callerRuns.incrementAndGet();
+            log.debug("Executor {} saturated ({} queued), running task on caller thread", name, executor.getQueue().size());
+            task.run();
+        };
+        
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, callerRunsAndCount);
+    }
+    
+    /**
+     * Per-task mode: every task gets a new thread from the factory, at most maxConcurrency at a time.
+     * Virtual mode passes a virtual thread factory; tests use platform threads on runtimes without them.
+     */
+    StageExecutor(String name, int maxConcurrency, ThreadFactory threadFactory) {
+        this.name = name;
+        this.queueCapacity = 0;
+        this.pool = null;
+        this.virtualThreadFactory = threadFactory;
+        this.permits = new Semaphore(maxConcurrency);
+        this.maxConcurrency = maxConcurrency;
+    }
+    
+    /**
+     * Executor that runs each task on a new virtual thread, at most maxConcurrency at a time.
+     * Requires a Java 21 runtime; see {@link VirtualThreads#isSupported()}.
+     */
+    public static StageExecutor virtual(String name, int maxConcurrency) {
+        return new StageExecutor(name, maxConcurrency, VirtualThreads.factory(name + "-"));
+    }
+    
+    @Override
+    public void execute(Runnable task) {
+        if (pool != null) {
+            pool.execute(task);
+            return;
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor " + name + " is shut down");
+        }
+        // Waiting for a permit parks the virtual thread, not a carrier thread
+        virtualThreadFactory.newThread(() -> {
+            CURRENT.set(this);
+            permits.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                permits.release();
+                virtualCompleted.incrementAndGet();
+            }
+        }).start();
+    }
+    
+    /**
+     * Hands the task to the executor without ever running it on the calling thread; false when the
+     * queue is full or the executor is shut down. For callers, such as timer threads, that must not block.
+     */
+    public boolean tryExecute(Runnable task) {
+        REJECT_WHEN_FULL.set(Boolean.TRUE);
+        try {
+            execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        } finally {
+            REJECT_WHEN_FULL.remove();
+        }
+    }
+    
+    public boolean isVirtual() {
+        return pool == null;
+    }
+    
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, this);
+    }
+    
+    /**
+     * Runs tasks in parallel on this pool and waits for all of them. The caller runs the first task itself;
+     * from a worker of this pool everything runs inline to avoid waiting on its own queue.
+     */
+    public void runAll(List<Runnable> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (tasks.size() == 1 || isWorkerThread()) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+        
+        List<CompletableFuture<Void>> futures = new ArrayList<>(tasks.size() - 1);
+        for (int i = 1; i < tasks.size(); i++) {
+            futures.add(CompletableFuture.runAsync(tasks.get(i), this));
+        }
+        tasks.get(0).run();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+    
+    /**
+     * True if the current thread is one of this pool's workers
+     */
+    public boolean isWorkerThread() {
+        return CURRENT.get() == this;
+    }
+    
+    public Stats getStats() {
+        if (pool == null) {
+            return new Stats(name, true, maxConcurrency, maxConcurrency - permits.availablePermits(),
+                    permits.getQueueLength(), 0, virtualCompleted.get(), 0, 0.0);
+        }
+        int queued = pool.getQueue().size();
+        return new Stats(name, false, pool.getMaximumPoolSize(), pool.getActiveCount(), queued, queueCapacity,
+                pool.getCompletedTaskCount(), callerRuns.get(), (double) queued / queueCapacity);
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void shutdown() {
+        shutdown = true;
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Point-in-time usage; callerRuns counts tasks that found the queue full. In virtual mode threads is
+     * the concurrency cap and queued counts tasks waiting for a permit.
+     */
+    public record Stats(String name, boolean virtual, int threads, int active, int queued, int queueCapacity,
+                        long completed, long callerRuns, double queueUtilization) {
+    }
+}
@@ -29,6 +29,18 @@ INSERT INTO carrier_configuration (carrier_code, service_level, delivery_type, b
 ('USPS', 'PRIORITY', 'STANDARD', 2, 3, 1.0, '17:00', '09:00', '09:00', '17:00', false, true, 2000, 3, false, false, false, 1000, 0.88, 2),
 ('LOCAL_COURIER', 'SAME_DAY', 'SAME_DAY', 0, 0, 1.0, '20:00', '06:00', '06:00', '22:00', true, true, 50, 1, false, true, false, 2000, 0.92, 0);
 
+-- Insert sample rate cards (cost = base_rate + rate_per_kg * shipment weight)
+INSERT INTO rate_card (carrier_code, service_level, min_distance_km, max_distance_km, min_weight_kg, max_weight_kg, base_rate, rate_per_kg) VALUES
+('UPS', 'GROUND', 0, 300, 0, 10, 8.50, 0.60),
+('UPS', 'GROUND', 0, 300, 10, NULL, 12.00, 0.45),
+('UPS', 'GROUND', 300, 1000, 0, NULL, 11.50, 0.75),
+('FEDEX', 'GROUND', 0, 300, 0, NULL, 8.00, 0.65),
+('FEDEX', 'GROUND', 300, 1000, 0, NULL, 11.00, 0.80),
+('USPS', 'PRIORITY', 0, 2000, 0, 10, 7.50, 0.90),
+('UPS', 'EXPRESS', 0, 500, 0, NULL, 18.00, 1.20),
+('FEDEX', 'OVERNIGHT', 0, 800, 0, NULL, 22.00, 1.50),
+('LOCAL_COURIER', 'SAME_DAY', 0, 50, 0, 25, 15.00, 0.50);
+
 -- Insert some sample locations for testing (these would typically come from your existing location data)
 INSERT INTO location (id, name, latitude, longitude, transit_time) VALUES
 (1, 'Downtown Warehouse', 40.7128, -74.0060, 1),
@@ -0,0 +1,49 @@
+package com.ordersourcing.engine.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BusinessCalendarTest {
+
+    // Friday 2025-07-04 is a holiday; 2025-07-05/06 is a weekend
+    private static final LocalDate START = LocalDate.of(2025, 6, 30);
+    private static final Set<LocalDate> HOLIDAYS = Set.of(LocalDate.of(2025, 7, 4));
+
+    @Test
+    void testWeekdayCalendarSkipsWeekendsAndHolidays() {
+        BusinessCalendar calendar = BusinessCalendar.build(START, 30, false, HOLIDAYS);
+
+        assertFalse(calendar.isOpen(LocalDate.of(2025, 7, 4)));
+        assertFalse(calendar.isOpen(LocalDate.of(2025, 7, 5)));
+        assertTrue(calendar.isOpen(LocalDate.of(2025, 7, 3)));
+        assertEquals(LocalDate.of(2025, 7, 7), calendar.nextOpenOnOrAfter(LocalDate.of(2025, 7, 4)));
+        assertEquals(LocalDate.of(2025, 7, 3), calendar.nextOpenOnOrAfter(LocalDate.of(2025, 7, 3)));
+        assertEquals(LocalDate.of(2025, 7, 7), calendar.addOpenDays(LocalDate.of(2025, 7, 3), 1));
+        assertEquals(LocalDate.of(2025, 7, 9), calendar.addOpenDays(LocalDate.of(2025, 7, 5), 3));
+    }
+
+    @Test
+    void testSevenDayCalendarOnlySkipsHolidays() {
+        BusinessCalendar calendar = BusinessCalendar.build(START, 30, true, HOLIDAYS);
+
+        assertTrue(calendar.isOpen(LocalDate.of(2025, 7, 5)));
+        assertEquals(LocalDate.of(2025, 7, 5), calendar.addOpenDays(LocalDate.of(2025, 7, 3), 1));
+    }
+
+    @Test
+    void testDatesOutsideWindowMatchPrecomputedRules() {
+        BusinessCalendar small = BusinessCalendar.build(START, 3, false, HOLIDAYS);
+        BusinessCalendar large = BusinessCalendar.build(START, 60, false, HOLIDAYS);
+
+        LocalDate date = START;
+        for (int day = 0; day < 40; day++, date = date.plusDays(1)) {
+            assertEquals(large.isOpen(date), small.isOpen(date));
+            assertEquals(large.nextOpenOnOrAfter(date), small.nextOpenOnOrAfter(date));
+            assertEquals(large.addOpenDays(date, 4), small.addOpenDays(date, 4));
+        }
+    }
+}
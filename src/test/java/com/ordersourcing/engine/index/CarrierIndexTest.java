@@ -0,0 +1,157 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.CarrierConfiguration;
+import com.ordersourcing.engine.model.RateCard;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CarrierIndexTest {
+
+    private CarrierConfiguration carrier(int id, String code, Double maxDistanceKm, int priority, boolean hazmat) {
+        CarrierConfiguration carrier = new CarrierConfiguration(code, "GROUND", "STANDARD", 3, LocalTime.of(17, 0));
+        carrier.setId(id);
+        carrier.setMaxDistanceKm(maxDistanceKm);
+        carrier.setCarrierPriority(priority);
+        carrier.setSupportsHazmat(hazmat);
+        return carrier;
+    }
+
+    @Test
+    void testBestCarrierHonorsDistanceAndPriority() {
+        CarrierIndex index = CarrierIndex.build(List.of(
+                carrier(1, "LOCAL", 50.0, 1, false),
+                carrier(2, "REGIONAL", 500.0, 2, true),
+                carrier(3, "NATIONAL", null, 3, false)), 1);
+
+        assertEquals("LOCAL", index.bestCarrier("STANDARD", 10.0, HandlingFlags.NONE).getCarrierCode());
+        assertEquals("LOCAL", index.bestCarrier("STANDARD", 50.0, HandlingFlags.NONE).getCarrierCode());
+        assertEquals("REGIONAL", index.bestCarrier("STANDARD", 50.1, HandlingFlags.NONE).getCarrierCode());
+        assertEquals("NATIONAL", index.bestCarrier("STANDARD", 5000.0, HandlingFlags.NONE).getCarrierCode());
+        assertEquals("NATIONAL", index.bestCarrier("STANDARD", Double.NaN, HandlingFlags.NONE).getCarrierCode());
+        assertNull(index.bestCarrier("SAME_DAY", 10.0, HandlingFlags.NONE));
+    }
+
+    @Test
+    void testBestCarrierHonorsHandlingMask() {
+        CarrierIndex index = CarrierIndex.build(List.of(
+                carrier(1, "LOCAL", 50.0, 1, false),
+                carrier(2, "REGIONAL", 500.0, 2, true)), 1);
+
+        assertEquals("REGIONAL", index.bestCarrier("STANDARD", 10.0, HandlingFlags.HAZMAT).getCarrierCode());
+        assertNull(index.bestCarrier("STANDARD", 600.0, HandlingFlags.HAZMAT));
+        assertNull(index.bestCarrier("STANDARD", 10.0, HandlingFlags.HAZMAT | HandlingFlags.COLD_CHAIN));
+    }
+
+    @Test
+    void testMaxServiceDistance() {
+        CarrierIndex index = CarrierIndex.build(List.of(
+                carrier(1, "LOCAL", 50.0, 1, true),
+                carrier(2, "REGIONAL", 500.0, 2, false)), 1);
+
+        assertEquals(500.0, index.maxServiceDistanceKm("STANDARD", HandlingFlags.NONE));
+        assertEquals(50.0, index.maxServiceDistanceKm("STANDARD", HandlingFlags.HAZMAT));
+        assertTrue(index.maxServiceDistanceKm("STANDARD", HandlingFlags.COLD_CHAIN) < 0);
+        assertTrue(index.maxServiceDistanceKm("NEXT_DAY", HandlingFlags.NONE) < 0);
+    }
+
+    @Test
+    void testCheapestCarrierNeverSlowerThanReference() {
+        CarrierConfiguration ups = carrier(1, "UPS", 1000.0, 1, false);
+        CarrierConfiguration fedex = carrier(2, "FEDEX", 1000.0, 2, false);
+        CarrierConfiguration slow = carrier(3, "SLOW", 1000.0, 3, false);
+        slow.setBaseTransitDays(5);
+        CarrierIndex index = CarrierIndex.build(List.of(ups, fedex, slow), List.of(
+                new RateCard(1, "UPS", "GROUND", 0.0, null, 0.0, null, 10.0, 1.0),
+                new RateCard(2, "FEDEX", "GROUND", 0.0, null, 0.0, null, 8.0, 1.0),
+                new RateCard(3, "SLOW", "GROUND", 0.0, null, 0.0, null, 1.0, 0.0)), 1);
+
+        CarrierConfiguration reference = index.bestCarrier("STANDARD", 100.0, HandlingFlags.NONE);
+        assertSame(ups, reference);
+        assertSame(fedex, index.cheapestCarrier("STANDARD", 100.0, HandlingFlags.NONE, 2.0, reference, 
+                CarrierIndexTest::transitPromise));
+        assertEquals(10.0, index.shippingCost(fedex, 100.0, 2.0), 1e-9);
+    }
+
+    @Test
+    void testCarriersWithoutRatesKeepPriorityChoice() {
+        CarrierConfiguration ups = carrier(1, "UPS", 1000.0, 1, false);
+        CarrierConfiguration fedex = carrier(2, "FEDEX", 1000.0, 2, false);
+        CarrierIndex index = CarrierIndex.build(List.of(ups, fedex), 1);
+
+        assertSame(ups, index.cheapestCarrier("STANDARD", 100.0, HandlingFlags.NONE, 2.0, ups, 
+                CarrierIndexTest::transitPromise));
+        assertTrue(Double.isNaN(index.shippingCost(ups, 100.0, 2.0)));
+    }
+
+    @Test
+    void testCheapestCarrierComparesPromiseDatesNotTransitDays() {
+        CarrierConfiguration ups = carrier(1, "UPS", 1000.0, 1, false);
+        CarrierConfiguration weekend = carrier(2, "WEEKEND", 1000.0, 2, false);
+        weekend.setBaseTransitDays(4);
+        CarrierConfiguration lateCutoff = carrier(3, "LATE", 1000.0, 3, false);
+        CarrierIndex index = CarrierIndex.build(List.of(ups, weekend, lateCutoff), List.of(
+                new RateCard(1, "UPS", "GROUND", 0.0, null, 0.0, null, 10.0, 0.0),
+                new RateCard(2, "WEEKEND", "GROUND", 0.0, null, 0.0, null, 8.0, 0.0),
+                new RateCard(3, "LATE", "GROUND", 0.0, null, 0.0, null, 5.0, 0.0)), 1);
+
+        // The weekend carrier's extra transit day still lands on the same date; the cheapest misses today's pickup
+        Map<String, LocalDateTime> promises = Map.of(
+                "UPS", LocalDateTime.parse("2026-10-20T18:00"),
+                "WEEKEND", LocalDateTime.parse("2026-10-20T18:00"),
+                "LATE", LocalDateTime.parse("2026-10-21T18:00"));
+        assertSame(weekend, index.cheapestCarrier("STANDARD", 100.0, HandlingFlags.NONE, 1.0, ups, 
+                carrier -> promises.get(carrier.getCarrierCode())));
+    }
+
+    @Test
+    void testSelectionPrecomputesOnlyCarriersThatCouldUndercutIt() {
+        CarrierConfiguration ups = carrier(1, "UPS", 1000.0, 1, true);
+        CarrierConfiguration local = carrier(2, "LOCAL", 50.0, 2, false);
+        CarrierConfiguration fedex = carrier(3, "FEDEX", 1000.0, 3, false);
+        CarrierConfiguration unrated = carrier(4, "UNRATED", 1000.0, 4, true);
+        CarrierIndex index = CarrierIndex.build(List.of(ups, local, fedex, unrated), List.of(
+                new RateCard(1, "UPS", "GROUND", 0.0, null, 0.0, null, 10.0, 0.0),
+                new RateCard(2, "LOCAL", "GROUND", 0.0, null, 0.0, null, 4.0, 0.0),
+                new RateCard(3, "FEDEX", "GROUND", 0.0, null, 0.0, null, 8.0, 0.0)), 1);
+
+        // Beyond LOCAL's reach only FEDEX could be cheaper; hazmat leaves nothing to compare
+        CarrierIndex.Selection far = index.select("STANDARD", 100.0, HandlingFlags.NONE);
+        assertSame(ups, far.carrier());
+        assertEquals(List.of(fedex), far.alternatives());
+        assertSame(far.alternatives(), index.select("STANDARD", 900.0, HandlingFlags.NONE).alternatives());
+        assertEquals(List.of(local, fedex), index.select("STANDARD", 10.0, HandlingFlags.NONE).alternatives());
+        CarrierIndex.Selection hazmat = index.select("STANDARD", 100.0, HandlingFlags.HAZMAT);
+        assertTrue(hazmat.alternatives().isEmpty());
+
+        // Same answer as comparing every eligible carrier, and no promise dates when nothing could undercut
+        assertSame(index.cheapestCarrier("STANDARD", 100.0, HandlingFlags.NONE, 2.0, ups, CarrierIndexTest::transitPromise),
+                index.cheapestCarrier(far, 100.0, 2.0, CarrierIndexTest::transitPromise));
+        assertSame(ups, index.cheapestCarrier(hazmat, 100.0, 2.0, carrier -> {
+            throw new AssertionError("Promise date computed for " + carrier.getCarrierCode());
+        }));
+    }
+
+    @Test
+    void testRateBandUpperBoundsAreExclusive() {
+        CarrierConfiguration ups = carrier(1, "UPS", null, 1, false);
+        CarrierIndex index = CarrierIndex.build(List.of(ups), List.of(
+                new RateCard(1, "UPS", "GROUND", 0.0, 100.0, 0.0, 5.0, 10.0, 0.0),
+                new RateCard(2, "UPS", "GROUND", 100.0, null, 0.0, 5.0, 20.0, 0.0),
+                new RateCard(3, "UPS", "GROUND", 0.0, 100.0, 5.0, null, 30.0, 0.0)), 1);
+
+        assertEquals(10.0, index.shippingCost(ups, 99.9, 1.0), 1e-9);
+        assertEquals(20.0, index.shippingCost(ups, 100.0, 1.0), 1e-9);
+        assertEquals(30.0, index.shippingCost(ups, 50.0, 5.0), 1e-9);
+        assertTrue(Double.isNaN(index.shippingCost(ups, 150.0, 5.0)));
+    }
+
+    private static LocalDateTime transitPromise(CarrierConfiguration carrier) {
+        return LocalDateTime.parse("2026-10-14T18:00").plusDays(carrier.getBaseTransitDays());
+    }
+}
@@ -0,0 +1,39 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.ScoringConfiguration;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SplitPenaltyTableTest {
+
+    @Test
+    void testLookupMatchesFormula() {
+        ScoringConfiguration config = new ScoringConfiguration("TEST_SCORING", "Test", "Default weights");
+        SplitPenaltyTable table = config.getSplitPenaltyTable();
+
+        for (int count = 2; count <= SplitPenaltyTable.MAX_PRECOMPUTED_LOCATIONS + 5; count++) {
+            double expected = 15.0 + Math.pow(count - 1, 1.5) * 10.0;
+            assertEquals(expected, table.lookup(count, SplitPenaltyTable.OTHER_DELIVERY, false), 1e-9);
+            assertEquals(expected + 25.0, table.lookup(count, SplitPenaltyTable.SAME_DAY, false), 1e-9);
+            assertEquals(expected + 15.0 + 20.0, table.lookup(count, SplitPenaltyTable.NEXT_DAY, true), 1e-9);
+        }
+    }
+
+    @Test
+    void testSingleLocationHasNoPenalty() {
+        SplitPenaltyTable table = new ScoringConfiguration("TEST_SCORING", "Test", "Default weights")
+                .getSplitPenaltyTable();
+
+        assertEquals(0.0, table.lookup(1, SplitPenaltyTable.SAME_DAY, true));
+        assertEquals(0.0, table.lookup(0, SplitPenaltyTable.OTHER_DELIVERY, false));
+    }
+
+    @Test
+    void testDeliveryTypeIndex() {
+        assertEquals(SplitPenaltyTable.SAME_DAY, SplitPenaltyTable.deliveryTypeIndex("SAME_DAY"));
+        assertEquals(SplitPenaltyTable.NEXT_DAY, SplitPenaltyTable.deliveryTypeIndex("NEXT_DAY"));
+        assertEquals(SplitPenaltyTable.OTHER_DELIVERY, SplitPenaltyTable.deliveryTypeIndex("STANDARD"));
+        assertEquals(SplitPenaltyTable.OTHER_DELIVERY, SplitPenaltyTable.deliveryTypeIndex(null));
+    }
+}
@@ -0,0 +1,65 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.Inventory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StockIndexTest {
+
+    @Test
+    void testPositionsAreSortedByLocation() {
+        StockIndex index = StockIndex.build(List.of(
+                inventory("SKU-1", 7, 4, 2),
+                inventory("SKU-1", 3, 10, 1),
+                inventory("SKU-2", 3, 1, 0)));
+
+        StockIndex.Stock stock = index.get("SKU-1");
+        assertEquals(2, stock.size());
+        assertEquals(3, stock.locationIdAt(0));
+        assertEquals(7, stock.locationIdAt(1));
+
+        int position = stock.positionOf(7);
+        assertEquals(4, stock.quantityAt(position));
+        assertEquals(2, stock.processingDaysAt(position));
+        assertEquals(-1, stock.positionOf(5));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testRowsForOneLocationAreMerged() {
+        StockIndex index = StockIndex.build(List.of(
+                inventory("SKU-1", 3, 4, 1),
+                inventory("SKU-1", 3, 6, 3),
+                inventory("SKU-1", 5, 0, 1)));
+
+        StockIndex.Stock stock = index.get("SKU-1");
+        assertEquals(1, stock.size());
+        assertEquals(10, stock.quantityAt(0));
+        assertEquals(3, stock.processingDaysAt(0));
+    }
+
+    @Test
+    void testReplaceSwapsOrRemovesStock() {
+        StockIndex index = StockIndex.build(List.of(inventory("SKU-1", 3, 4, 1)));
+
+        index.replace("SKU-1", List.of(inventory("SKU-1", 8, 2, 1)));
+        assertEquals(-1, index.get("SKU-1").positionOf(3));
+        assertEquals(2, index.get("SKU-1").quantityAt(index.get("SKU-1").positionOf(8)));
+
+        index.replace("SKU-1", List.of(inventory("SKU-1", 8, 0, 1)));
+        assertNull(index.get("SKU-1"));
+        assertEquals(0, index.size());
+    }
+
+    private static Inventory inventory(String sku, int locationId, int quantity, int processingDays) {
+        Inventory inventory = new Inventory();
+        inventory.setSku(sku);
+        inventory.setLocationId(locationId);
+        inventory.setQuantity(quantity);
+        inventory.setProcessingTime(processingDays);
+        return inventory;
+    }
+}
@@ -0,0 +1,40 @@
+package com.ordersourcing.engine.index;
+
+import com.ordersourcing.engine.model.CarrierConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransitDistributionTest {
+
+    private TransitDistribution distribution(int baseTransitDays, Integer maxTransitDays) {
+        CarrierConfiguration carrier = new CarrierConfiguration("UPS", "GROUND", "STANDARD", baseTransitDays, LocalTime.of(17, 0));
+        carrier.setMaxTransitDays(maxTransitDays);
+        return TransitDistribution.build(carrier);
+    }
+
+    @Test
+    void testReliableCarrierMeetsP90OnTime() {
+        assertEquals(0, distribution(3, 5).delayDaysAtQuantile(0.9, 0.95));
+    }
+
+    @Test
+    void testLateMassDecaysAcrossTransitSpan() {
+        TransitDistribution distribution = distribution(3, 5);
+
+        // 75% on time, late shipments: 2/3 one day late, 1/3 two days late
+        assertEquals(1, distribution.delayDaysAtQuantile(0.9, 0.75));
+        assertEquals(2, distribution.delayDaysAtQuantile(0.9, 0.5));
+        assertEquals(2, distribution.getMaxDelayDays());
+    }
+
+    @Test
+    void testMissingMaxTransitAllowsOneDayLate() {
+        TransitDistribution distribution = distribution(1, null);
+
+        assertEquals(1, distribution.getMaxDelayDays());
+        assertEquals(1, distribution.delayDaysAtQuantile(0.9, 0.5));
+    }
+}
@@ -3,6 +3,8 @@ package com.ordersourcing.engine.service;
 import com.ordersourcing.engine.dto.OrderDTO;
 import com.ordersourcing.engine.dto.OrderItemDTO;
 import com.ordersourcing.engine.dto.SourcingResponse;
+import com.ordersourcing.engine.model.Location;
+import com.ordersourcing.engine.util.Deadline;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,9 +14,18 @@ import org.springframework.test.context.TestPropertySource;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 @TestPropertySource(properties = {
@@ -348,6 +359,52 @@ public class BatchSourcingServiceTest {
         }
     }
 
+    @Test
+    void testSourceBulkEmitsEveryOrder() {
+        // Filters that ignore the order share one result per chunk
+        when(locationFilterService.sharedResultKey(anyString(), any(), anyDouble()))
+                .thenAnswer(call -> call.getArgument(0));
+        when(locationFilterService.executeFiltersAsync(anySet(), any(), any())).thenAnswer(call -> {
+            Map<String, CompletableFuture<List<Location>>> futures = new HashMap<>();
+            for (String filterId : call.<Set<String>>getArgument(0)) {
+                futures.put(filterId, CompletableFuture.completedFuture(Collections.emptyList()));
+            }
+            return futures;
+        });
+        when(inventoryApiService.batchFetchInventory(anyList()))
+                .thenReturn(CompletableFuture.completedFuture(InventoryApiService.InventoryLookup.of(Map.of())));
+        List<OrderDTO> orders = Arrays.asList(singleItemOrder, multiItemOrder, largeOrder);
+        List<SourcingResponse> responses = Collections.synchronizedList(new ArrayList<>());
+        
+        int sourced = batchSourcingService.sourceBulk(orders.iterator(), responses::add);
+        
+        // One response per order, in completion order
+        assertEquals(3, sourced);
+        assertEquals(3, responses.size());
+        Set<String> orderIds = new HashSet<>();
+        responses.forEach(response -> orderIds.add(response.getOrderId()));
+        assertEquals(Set.of("SINGLE_001", "MULTI_001", largeOrder.getTempOrderId()), orderIds);
+        
+        // The three orders fit one chunk: one inventory read and one execution per filter
+        verify(inventoryApiService, times(1)).batchFetchInventory(anyList());
+        for (String filterId : List.of("STANDARD_DELIVERY_RULE", "ELECTRONICS_SECURE_RULE", "SDD_FILTER_RULE")) {
+            verify(locationFilterService, times(1)).executeFiltersAsync(eq(Set.of(filterId)), any(), any());
+        }
+    }
+
+    @Test
+    void testSourceOrderProgressiveStreamsEachPlan() {
+        List<SourcingResponse.FulfillmentPlan> streamed = Collections.synchronizedList(new ArrayList<>());
+        
+        SourcingResponse.StreamSummary summary = batchSourcingService.sourceOrderProgressive(
+                multiItemOrder, Deadline.NONE, streamed::add).join();
+        
+        // Every plan is streamed before the summary completes
+        assertEquals("MULTI_001", summary.getOrderId());
+        assertEquals(summary.getPlanCount(), streamed.size());
+        assertTrue(summary.getDegradedLines().isEmpty());
+    }
+
     @Test
     void testErrorHandling() {
         // Test error handling scenarios
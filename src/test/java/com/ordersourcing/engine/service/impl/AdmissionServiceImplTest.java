@@ -0,0 +1,52 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.util.Deadline;
+import com.ordersourcing.engine.util.PriorityScheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * One slot and one class whose queue budget outlasts any request deadline
+ */
+public class AdmissionServiceImplTest {
+
+    private AdmissionServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AdmissionServiceImpl();
+        ReflectionTestUtils.setField(service, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(service, "weights", "1");
+        ReflectionTestUtils.setField(service, "classLimits", "1");
+        ReflectionTestUtils.setField(service, "maxQueued", "10");
+        ReflectionTestUtils.setField(service, "queueBudgetMs", "10000");
+        ReflectionTestUtils.setField(service, "bulkChannelList", "B2B");
+        ReflectionTestUtils.setField(service, "bulkClass", 0);
+        service.initialize();
+    }
+
+    @Test
+    void testQueuedOrderShedAtItsDeadline() {
+        PriorityScheduler.Permit held = service.admitBlocking(order(), Deadline.NONE);
+
+        long start = System.nanoTime();
+        assertThrows(RejectedExecutionException.class,
+                () -> service.admitBlocking(order(), Deadline.afterMillis(50)));
+        assertTrue(System.nanoTime() - start < 5_000_000_000L, "Waited past the deadline for the queue budget");
+
+        // The abandoned wait takes no slot once the held one is released
+        held.close();
+        assertEquals(0, service.getStats().active());
+        service.admitBlocking(order(), Deadline.afterMillis(50)).close();
+    }
+
+    private static OrderDTO order() {
+        return OrderDTO.builder().tempOrderId("ADMIT").orderPriority(1).build();
+    }
+}
@@ -0,0 +1,840 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.*;
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
+import com.ordersourcing.engine.index.DistanceVector;
+import com.ordersourcing.engine.index.LocationIndex;
+import com.ordersourcing.engine.model.Inventory;
+import com.ordersourcing.engine.model.Location;
+import com.ordersourcing.engine.model.ScoringConfiguration;
+import com.ordersourcing.engine.service.*;
+import com.ordersourcing.engine.util.Deadline;
+import com.ordersourcing.engine.util.PriorityScheduler;
+import com.ordersourcing.engine.util.StageExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Sourcing paths against mocked filter, inventory and promise-date services: two locations in Manhattan,
+ * L1 closer to the customer than L2, and a promise of one day per transit day.
+ */
+public class BatchSourcingServiceImplTest {
+
+    private static final double CUSTOMER_LATITUDE = 40.7128;
+    private static final double CUSTOMER_LONGITUDE = -74.0060;
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 14, 9, 0);
+
+    private BatchSourcingServiceImpl service;
+    private LocationFilterExecutionService locationFilterService;
+    private InventoryApiService inventoryApiService;
+    private PromiseDateService promiseDateService;
+    private CarrierService carrierService;
+    private ScoringConfigurationService scoringConfigurationService;
+    private QuickPromiseService quickPromiseService;
+    private StageExecutor cpuExecutor;
+    private StageExecutor ioExecutor;
+    private ScheduledExecutorService deadlineTimer;
+
+    private Location nearLocation;
+    private Location farLocation;
+    // Locations no carrier serves; their promise dates come back null
+    private final Set<Integer> unservedLocationIds = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        nearLocation = location(1, "L1", 40.7130, -74.0050, 1);
+        farLocation = location(2, "L2", 40.7800, -73.9700, 2);
+        LocationIndex index = LocationIndex.build(List.of(nearLocation, farLocation), 1);
+
+        locationFilterService = mock(LocationFilterExecutionService.class);
+        inventoryApiService = mock(InventoryApiService.class);
+        promiseDateService = mock(PromiseDateService.class);
+        carrierService = mock(CarrierService.class);
+        scoringConfigurationService = mock(ScoringConfigurationService.class);
+        quickPromiseService = mock(QuickPromiseService.class);
+        LocationIndexService locationIndexService = mock(LocationIndexService.class);
+        cpuExecutor = new StageExecutor("test-cpu", 4, 100);
+        ioExecutor = new StageExecutor("test-io", 4, 100);
+        deadlineTimer = Executors.newSingleThreadScheduledExecutor();
+
+        when(locationIndexService.computeDistances(any(), any()))
+                .thenAnswer(call -> DistanceVector.compute(index, call.getArgument(0), call.getArgument(1)));
+        when(carrierService.getMaxServiceDistanceKm(anyString(), anyInt())).thenReturn(500.0);
+        when(locationIndexService.isIndexLoaded()).thenReturn(true);
+        when(carrierService.isCarrierIndexLoaded()).thenReturn(true);
+
+        ScoringConfiguration scoringConfig = new ScoringConfiguration();
+        scoringConfig.setId("DEFAULT_SCORING");
+        when(scoringConfigurationService.getScoringConfigurationForItem(any())).thenReturn(scoringConfig);
+        when(scoringConfigurationService.findCachedScoringConfigurationForItem(any()))
+                .thenReturn(Optional.of(scoringConfig));
+        // Closer is better; the score is 100 minus the distance in km
+        when(scoringConfigurationService.calculateLocationScore(any(), any(), any(), anyMap()))
+                .thenAnswer(call -> 100.0 - (Double) call.<Map<String, Object>>getArgument(3).get("distance"));
+
+        when(promiseDateService.batchCalculateAllocationPromiseDates(anyList(), any(), any()))
+                .thenAnswer(call -> promiseDates(call.getArgument(0), false));
+        when(promiseDateService.estimateAllocationPromiseDates(anyList(), any(), any()))
+                .thenAnswer(call -> promiseDates(call.getArgument(0), true));
+
+        service = new BatchSourcingServiceImpl();
+        ReflectionTestUtils.setField(service, "locationFilterService", locationFilterService);
+        ReflectionTestUtils.setField(service, "inventoryApiService", inventoryApiService);
+        ReflectionTestUtils.setField(service, "promiseDateService", promiseDateService);
+        ReflectionTestUtils.setField(service, "scoringConfigurationService", scoringConfigurationService);
+        ReflectionTestUtils.setField(service, "locationIndexService", locationIndexService);
+        ReflectionTestUtils.setField(service, "carrierService", carrierService);
+        AdmissionService admissionService = mock(AdmissionService.class);
+        PriorityScheduler scheduler = new PriorityScheduler(4, new double[] {1, 1}, new int[] {4, 4}, 
+                new int[] {100, 100}, new long[] {1000, 1000});
+        when(admissionService.admitBulkBlocking(any())).thenAnswer(call -> scheduler.acquire(1).join());
+        ReflectionTestUtils.setField(service, "admissionService", admissionService);
+        ReflectionTestUtils.setField(service, "quickPromiseService", quickPromiseService);
+        ReflectionTestUtils.setField(service, "cpuExecutor", cpuExecutor);
+        ReflectionTestUtils.setField(service, "ioExecutor", ioExecutor);
+        ReflectionTestUtils.setField(service, "deadlineTimer", deadlineTimer);
+        setStrategyMode("BATCH");
+        ReflectionTestUtils.setField(service, "bulkChunkSize", 200);
+        ReflectionTestUtils.setField(service, "bulkDeadlineMs", 30000L);
+        ReflectionTestUtils.setField(service, "sessionMaxEntries", 100);
+        ReflectionTestUtils.setField(service, "sessionTtlMs", 600000L);
+        ReflectionTestUtils.setField(service, "lineTtlMs", 60000L);
+        service.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cpuExecutor.shutdown();
+        ioExecutor.shutdown();
+        deadlineTimer.shutdownNow();
+    }
+
+    @Test
+    void testSourceWaveGivesContendedStockToHigherPriority() {
+        // One unit at L1; the later order has the higher priority
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 1))));
+        OrderDTO standard = order("WAVE_STANDARD", 2, item("WIDGET", 1));
+        OrderDTO urgent = order("WAVE_URGENT", 1, item("WIDGET", 1));
+        stubWaveFilters(List.of(standard, urgent));
+
+        List<SourcingResponse> responses = service.sourceWave(List.of(standard, urgent));
+
+        assertTrue(responses.get(0).getFulfillmentPlans().isEmpty(), "Lower priority order should get no stock");
+        assertEquals(1, responses.get(1).getFulfillmentPlans().size(), "Higher priority order should win the unit");
+        assertEquals(1, responses.get(1).getFulfillmentPlans().get(0).getTotalFulfilled());
+    }
+
+    @Test
+    void testSourceWaveNeverAllocatesMoreThanStock() {
+        // Three units across both locations, four orders of one unit at equal priority
+        stubInventory(Map.of("WIDGET", List.of(
+                inventory("WIDGET", nearLocation, 2), inventory("WIDGET", farLocation, 1))));
+        List<OrderDTO> orders = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            orders.add(order("WAVE_" + i, 1, item("WIDGET", 1)));
+        }
+        stubWaveFilters(orders);
+
+        List<SourcingResponse> responses = service.sourceWave(orders);
+
+        int[] allocatedByLocation = new int[3];
+        responses.forEach(response -> response.getFulfillmentPlans().forEach(plan -> plan.getLocationAllocations()
+                .forEach(allocation -> allocatedByLocation[allocation.getLocationId()] += allocation.getAllocatedQuantity())));
+        assertEquals(2, allocatedByLocation[1], "L1 should be drawn down to zero");
+        assertEquals(1, allocatedByLocation[2], "L2 should be drawn down to zero");
+
+        // Equal priority and score: arrival order decides, so the last order goes without
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, responses.get(i).getFulfillmentPlans().size(), "Order " + i + " should be served");
+        }
+        assertTrue(responses.get(3).getFulfillmentPlans().isEmpty(), "Last order should find the stock exhausted");
+    }
+
+    @Test
+    void testSourceWaveKeepsOrderAndItemOrder() {
+        stubInventory(Map.of(
+                "WIDGET", List.of(inventory("WIDGET", nearLocation, 10)),
+                "GADGET", List.of(inventory("GADGET", farLocation, 10))));
+        List<OrderDTO> orders = List.of(
+                order("WAVE_LOW", 5, item("GADGET", 1), item("WIDGET", 1)),
+                order("WAVE_HIGH", 1, item("WIDGET", 2), item("GADGET", 2)));
+        stubWaveFilters(orders);
+
+        List<SourcingResponse> responses = service.sourceWave(orders);
+
+        // Responses follow the input orders, and plans the items, whatever the allocation order was
+        assertEquals(List.of("WAVE_LOW", "WAVE_HIGH"),
+                responses.stream().map(SourcingResponse::getOrderId).toList());
+        assertEquals(List.of("GADGET", "WIDGET"), skus(responses.get(0)));
+        assertEquals(List.of("WIDGET", "GADGET"), skus(responses.get(1)));
+    }
+
+    @Test
+    void testSourceWavePrunesEachLineOnce() {
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 10))));
+        List<OrderDTO> orders = List.of(order("WAVE_A", 1, item("WIDGET", 1)), order("WAVE_B", 1, item("WIDGET", 1)));
+        stubWaveFilters(orders);
+
+        service.sourceWave(orders);
+
+        verify(carrierService, times(2)).getMaxServiceDistanceKm(anyString(), anyInt());
+    }
+
+    @Test
+    void testLocationsWithoutDistanceAreExcluded() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation, farLocation))));
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))));
+        OrderDTO order = order("NO_COORDINATES", 1, item("WIDGET", 1));
+        order.setLatitude(null);
+        order.setLongitude(null);
+
+        SourcingResponse response = service.sourceOrder(order);
+
+        // NaN distances are never scored or allocated
+        assertTrue(response.getFulfillmentPlans().isEmpty());
+        verify(scoringConfigurationService, never()).calculateLocationScore(any(), any(), any(), anyMap());
+    }
+
+    @Test
+    void testUnpromisableLocationIsReallocated() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation, farLocation))));
+        stubInventory(Map.of("WIDGET", List.of(
+                inventory("WIDGET", nearLocation, 5), inventory("WIDGET", farLocation, 5))));
+        unservedLocationIds.add(nearLocation.getId());
+
+        SourcingResponse response = service.sourceOrder(order("NO_CARRIER_AT_L1", 1, item("WIDGET", 2)));
+
+        // L1 scores best but has no carrier, so the line moves to L2 instead of being dropped
+        assertEquals(1, response.getFulfillmentPlans().size());
+        SourcingResponse.FulfillmentPlan plan = response.getFulfillmentPlans().get(0);
+        assertEquals(2, plan.getTotalFulfilled());
+        assertEquals(List.of(farLocation.getId()), plan.getLocationAllocations().stream()
+                .map(SourcingResponse.LocationAllocation::getLocationId).toList());
+    }
+
+    @Test
+    void testSplitLineKeepsPromisableAllocations() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation, farLocation))));
+        stubInventory(Map.of("WIDGET", List.of(
+                inventory("WIDGET", nearLocation, 1), inventory("WIDGET", farLocation, 1))));
+        unservedLocationIds.add(farLocation.getId());
+
+        SourcingResponse response = service.sourceOrder(order("NO_CARRIER_AT_L2", 1, item("WIDGET", 2)));
+
+        // The split needs L2, which cannot be promised; what L1 holds is still shipped
+        SourcingResponse.FulfillmentPlan plan = response.getFulfillmentPlans().get(0);
+        assertEquals(1, plan.getTotalFulfilled());
+        assertTrue(plan.isPartialFulfillment());
+        assertEquals(nearLocation.getId(), plan.getLocationAllocations().get(0).getLocationId());
+    }
+
+    @Test
+    void testReactiveSourcingPlansFromMemoryWithoutDatabaseReads() {
+        stubStockSnapshot(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))), 1_000L);
+        when(locationFilterService.executeKnownFilter(eq("ALL_LOCATIONS"), any(), any()))
+                .thenReturn(Optional.of(List.of(nearLocation, farLocation)));
+
+        SourcingResponse response = service
+                .sourceOrderReactive(order("REACTIVE", 1, item("WIDGET", 1)), Deadline.NONE).block();
+
+        assertEquals(List.of("WIDGET"), skus(response));
+        assertEquals(nearLocation.getId(), response.getFulfillmentPlans().get(0).getLocationAllocations().get(0).getLocationId());
+        assertTrue(response.getDegradedLines().isEmpty());
+        assertEquals(1_000L, response.getStockAsOf());
+        verifyNoInteractions(inventoryApiService);
+        verify(locationFilterService, never()).executeFiltersAsync(anySet(), any(), any());
+        verify(scoringConfigurationService).findCachedScoringConfigurationForItem(any());
+    }
+
+    @Test
+    void testReactiveSourcingMarksLinesWhoseDataIsNotInMemory() {
+        stubStockSnapshot(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5)),
+                "GADGET", List.of(inventory("GADGET", nearLocation, 5)),
+                "GIZMO", List.of(inventory("GIZMO", nearLocation, 5))), 1_000L);
+        when(locationFilterService.executeKnownFilter(eq("ALL_LOCATIONS"), any(), any()))
+                .thenReturn(Optional.of(List.of(nearLocation, farLocation)));
+        when(locationFilterService.executeKnownFilter(eq("NEW_FILTER"), any(), any())).thenReturn(Optional.empty());
+        OrderItemDTO unknownFilter = item("GADGET", 1);
+        unknownFilter.setLocationFilterId("NEW_FILTER");
+        OrderItemDTO uncachedScoring = item("GIZMO", 1);
+        uncachedScoring.setScoringConfigurationId("NEW_SCORING");
+        when(scoringConfigurationService.findCachedScoringConfigurationForItem(uncachedScoring))
+                .thenReturn(Optional.empty());
+
+        SourcingResponse response = service.sourceOrderReactive(
+                order("REACTIVE_PARTIAL", 1, item("WIDGET", 1), unknownFilter, uncachedScoring), Deadline.NONE).block();
+
+        assertEquals(List.of("WIDGET"), skus(response));
+        assertEquals(List.of(1, 2), response.getDegradedLines().stream().map(SourcingResponse.DegradedLine::getLineIndex).toList());
+        assertTrue(response.getDegradedLines().stream()
+                .allMatch(line -> line.getReason() == SourcingResponse.DegradationReason.NOT_IN_MEMORY));
+        verifyNoInteractions(inventoryApiService);
+    }
+
+    @Test
+    void testReactiveSourcingPlansNothingUntilStockLoads() {
+        when(quickPromiseService.stockSnapshot(anyCollection())).thenReturn(Optional.empty());
+
+        SourcingResponse response = service
+                .sourceOrderReactive(order("REACTIVE_COLD", 1, item("WIDGET", 1)), Deadline.NONE).block();
+
+        assertTrue(response.getFulfillmentPlans().isEmpty());
+        assertEquals(SourcingResponse.DegradationReason.NOT_IN_MEMORY, response.getDegradedLines().get(0).getReason());
+        assertNull(response.getStockAsOf());
+        verifyNoInteractions(inventoryApiService, locationFilterService);
+    }
+
+    @Test
+    void testSlowFilterDoesNotHoldUpOtherLines() throws Exception {
+        CompletableFuture<List<Location>> slowFilter = new CompletableFuture<>();
+        stubFilters(Map.of(
+                "FAST", CompletableFuture.completedFuture(List.of(nearLocation)),
+                "SLOW", slowFilter));
+        stubInventory(Map.of(
+                "FAST_SKU", List.of(inventory("FAST_SKU", nearLocation, 5)),
+                "SLOW_SKU", List.of(inventory("SLOW_SKU", farLocation, 5))));
+        OrderItemDTO fastItem = item("FAST_SKU", 1);
+        fastItem.setLocationFilterId("FAST");
+        OrderItemDTO slowItem = item("SLOW_SKU", 1);
+        slowItem.setLocationFilterId("SLOW");
+
+        BlockingQueue<SourcingResponse.FulfillmentPlan> plans = new LinkedBlockingQueue<>();
+        CompletableFuture<SourcingResponse.StreamSummary> summary = service.sourceOrderProgressive(
+                order("SLOW_FILTER", 1, slowItem, fastItem), Deadline.NONE, plans::add);
+
+        // The fast line's plan arrives while the other line's filter is still running
+        SourcingResponse.FulfillmentPlan first = plans.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first, "Fast line should be planned without waiting for the slow filter");
+        assertEquals("FAST_SKU", first.getSku());
+        assertFalse(summary.isDone());
+
+        slowFilter.complete(List.of(farLocation));
+        summary.get(5, TimeUnit.SECONDS);
+        assertEquals("SLOW_SKU", plans.poll(5, TimeUnit.SECONDS).getSku());
+    }
+
+    @Test
+    void testHeuristicDecidesUntilBothPathsHaveSamples() {
+        setStrategyMode("AUTO");
+        ReflectionTestUtils.setField(service, "minSamples", 20);
+        ReflectionTestUtils.setField(service, "explorationRate", 0.0);
+        stubSequential();
+
+        // A single small line is sequential by the heuristic; warm-up no longer tries batch half the time
+        for (int i = 0; i < 20; i++) {
+            service.sourceOrder(order("WARM_UP_" + i, 1, item("WIDGET", 1)));
+        }
+
+        verify(locationFilterService, times(20)).executeLocationFilter(anyString(), any(), any());
+        verify(locationFilterService, never()).executeFiltersAsync(anySet(), any(), any());
+    }
+
+    @Test
+    void testOnlySmallOrdersAreExplored() {
+        setStrategyMode("AUTO");
+        ReflectionTestUtils.setField(service, "minSamples", 20);
+        ReflectionTestUtils.setField(service, "explorationRate", 1.0);
+        ReflectionTestUtils.setField(service, "explorationMaxItems", 1);
+        stubSequential();
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation, farLocation))));
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5)),
+                "GADGET", List.of(inventory("GADGET", nearLocation, 5))));
+
+        // Two lines is over the exploration cap, so the heuristic's sequential choice stands
+        service.sourceOrder(order("LARGE", 1, item("WIDGET", 1), item("GADGET", 1)));
+        verify(locationFilterService, never()).executeFiltersAsync(anySet(), any(), any());
+
+        // One line is explored on the batch path
+        service.sourceOrder(order("SMALL", 1, item("WIDGET", 1)));
+        verify(locationFilterService).executeFiltersAsync(anySet(), any(), any());
+    }
+
+    @Test
+    void testSlowLineYieldsGreedyPlanAtDeadline() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation, farLocation))));
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))));
+        // Exact promise dates never come back in time; estimates do
+        CountDownLatch release = new CountDownLatch(1);
+        when(promiseDateService.batchCalculateAllocationPromiseDates(anyList(), any(), any())).thenAnswer(call -> {
+            release.await(10, TimeUnit.SECONDS);
+            return promiseDates(call.getArgument(0), false);
+        });
+
+        try {
+            SourcingResponse response = service.sourceOrder(order("SLOW_LINE", 1, item("WIDGET", 2)), 
+                    Deadline.afterMillis(200));
+
+            assertEquals(List.of("WIDGET"), skus(response));
+            assertEquals(2, response.getFulfillmentPlans().get(0).getTotalFulfilled());
+            assertEquals(SourcingResponse.DegradationReason.GREEDY_ALLOCATION, 
+                    response.getDegradedLines().get(0).getReason());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testPendingFilterFallsBackToKnownDefinitionAtDeadline() {
+        stubFilters(Map.of("ALL_LOCATIONS", new CompletableFuture<>()));
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))));
+        when(locationFilterService.executeKnownFilter(eq("ALL_LOCATIONS"), any(), any()))
+                .thenReturn(Optional.of(List.of(nearLocation)));
+
+        SourcingResponse response = service.sourceOrder(order("SLOW_FILTER", 1, item("WIDGET", 1)), 
+                Deadline.afterMillis(100));
+
+        assertEquals(nearLocation.getId(), 
+                response.getFulfillmentPlans().get(0).getLocationAllocations().get(0).getLocationId());
+        assertEquals(SourcingResponse.DegradationReason.GREEDY_ALLOCATION, 
+                response.getDegradedLines().get(0).getReason());
+    }
+
+    @Test
+    void testUnreadInventoryTimesOutAtDeadline() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation))));
+        when(inventoryApiService.batchFetchInventory(anyList())).thenReturn(new CompletableFuture<>());
+
+        SourcingResponse response = service.sourceOrder(order("SLOW_INVENTORY", 1, item("WIDGET", 1)), 
+                Deadline.afterMillis(100));
+
+        // Stock is never guessed
+        assertTrue(response.getFulfillmentPlans().isEmpty());
+        assertEquals(SourcingResponse.DegradationReason.TIMED_OUT, response.getDegradedLines().get(0).getReason());
+    }
+
+    @Test
+    void testLineTimesOutWhenCpuPoolIsFullAtDeadline() {
+        stubFilters(Map.of("ALL_LOCATIONS", new CompletableFuture<>()));
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))));
+        when(locationFilterService.executeKnownFilter(eq("ALL_LOCATIONS"), any(), any()))
+                .thenReturn(Optional.of(List.of(nearLocation)));
+        // Occupy the only CPU worker and queue slot, so the fallback has nowhere to run but the timer thread
+        StageExecutor fullCpu = new StageExecutor("test-cpu-full", 1, 1);
+        ReflectionTestUtils.setField(service, "cpuExecutor", fullCpu);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        fullCpu.execute(blocked);
+        fullCpu.execute(blocked);
+
+        try {
+            SourcingResponse response = service.sourceOrder(order("FULL_CPU", 1, item("WIDGET", 1)), 
+                    Deadline.afterMillis(100));
+
+            assertTrue(response.getFulfillmentPlans().isEmpty());
+            assertEquals(SourcingResponse.DegradationReason.TIMED_OUT, 
+                    response.getDegradedLines().get(0).getReason());
+            verify(locationFilterService, never()).executeKnownFilter(any(), any(), any());
+        } finally {
+            release.countDown();
+            fullCpu.shutdown();
+        }
+    }
+
+    @Test
+    void testSequentialLookupsStopAtDeadline() {
+        setStrategyMode("SEQUENTIAL");
+        CountDownLatch release = new CountDownLatch(1);
+        when(locationFilterService.executeLocationFilter(anyString(), any(), any()))
+                .thenReturn(List.of(nearLocation));
+        when(inventoryApiService.fetchInventoryBySku(anyString())).thenAnswer(call -> {
+            release.await(10, TimeUnit.SECONDS);
+            return List.of(inventory("WIDGET", nearLocation, 5));
+        });
+
+        try {
+            long start = System.nanoTime();
+            SourcingResponse response = service.sourceOrder(order("SLOW_SEQUENTIAL", 1, item("WIDGET", 1)), 
+                    Deadline.afterMillis(100));
+
+            assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5, 
+                    "The inventory read should be abandoned at the deadline");
+            assertTrue(response.getFulfillmentPlans().isEmpty());
+            assertEquals(SourcingResponse.DegradationReason.TIMED_OUT, response.getDegradedLines().get(0).getReason());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testLastKnownInventoryMarksLineStale() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation, farLocation))));
+        stubInventory(new InventoryApiService.InventoryLookup(
+                Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))), Set.of("WIDGET")));
+
+        SourcingResponse response = service.sourceOrder(order("STALE", 1, item("WIDGET", 1)));
+
+        assertEquals(List.of("WIDGET"), skus(response));
+        assertEquals(SourcingResponse.DegradationReason.STALE_INVENTORY, response.getDegradedLines().get(0).getReason());
+    }
+
+    @Test
+    void testUnknownInventoryFailsLineInsteadOfReportingNoStock() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation, farLocation))));
+        // WIDGET read recently, GADGET never: only WIDGET's stock is known
+        stubInventory(new InventoryApiService.InventoryLookup(
+                Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))), Set.of("WIDGET")));
+
+        SourcingResponse response = service.sourceOrder(order("UNKNOWN", 1, item("WIDGET", 1), item("GADGET", 1)));
+
+        assertEquals(List.of("WIDGET"), skus(response));
+        SourcingResponse.DegradedLine unknown = response.getDegradedLines().get(1);
+        assertEquals(1, unknown.getLineIndex());
+        assertEquals(SourcingResponse.DegradationReason.INVENTORY_UNAVAILABLE, unknown.getReason());
+    }
+
+    @Test
+    void testWaveMarksLinesWithUnknownOrLastKnownStock() {
+        stubInventory(new InventoryApiService.InventoryLookup(
+                Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))), Set.of("WIDGET")));
+        OrderDTO wave = order("WAVE_DEGRADED", 1, item("WIDGET", 1), item("GADGET", 1));
+        stubWaveFilters(List.of(wave));
+
+        SourcingResponse response = service.sourceWave(List.of(wave)).get(0);
+
+        assertEquals(List.of("WIDGET"), skus(response));
+        assertEquals(List.of(SourcingResponse.DegradationReason.STALE_INVENTORY, 
+                        SourcingResponse.DegradationReason.INVENTORY_UNAVAILABLE),
+                response.getDegradedLines().stream().map(SourcingResponse.DegradedLine::getReason).toList());
+    }
+
+    @Test
+    void testFailedFilterMarksItsLinesUnavailable() {
+        stubFilters(Map.of(
+                "ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation)),
+                "BROKEN", CompletableFuture.failedFuture(new RejectedExecutionException("Database limit reached"))));
+        stubInventory(Map.of(
+                "WIDGET", List.of(inventory("WIDGET", nearLocation, 5)),
+                "GADGET", List.of(inventory("GADGET", nearLocation, 5))));
+        OrderItemDTO broken = item("GADGET", 1);
+        broken.setLocationFilterId("BROKEN");
+
+        SourcingResponse response = service.sourceOrder(order("BROKEN_FILTER", 1, item("WIDGET", 1), broken));
+
+        assertNull(response.getError());
+        assertEquals(List.of("WIDGET"), skus(response));
+        SourcingResponse.DegradedLine unavailable = response.getDegradedLines().get(0);
+        assertEquals(1, unavailable.getLineIndex());
+        assertEquals(SourcingResponse.DegradationReason.FILTER_UNAVAILABLE, unavailable.getReason());
+    }
+
+    @Test
+    void testWaveMarksLinesOfFailedFilterUnavailable() {
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))));
+        OrderDTO wave = order("WAVE_BROKEN_FILTER", 1, item("WIDGET", 1));
+        Map<String, List<List<Location>>> failed = new HashMap<>();
+        failed.put("ALL_LOCATIONS", null);
+        when(locationFilterService.batchExecuteFiltersForOrders(anySet(), anyList(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(failed));
+
+        SourcingResponse response = service.sourceWave(List.of(wave)).get(0);
+
+        assertTrue(response.getFulfillmentPlans().isEmpty());
+        assertEquals(SourcingResponse.DegradationReason.FILTER_UNAVAILABLE, 
+                response.getDegradedLines().get(0).getReason());
+    }
+
+    @Test
+    void testSequentialFilterRejectedByDatabaseLimitFallsBackToKnownDefinition() {
+        setStrategyMode("SEQUENTIAL");
+        when(locationFilterService.executeLocationFilter(anyString(), any(), any()))
+                .thenThrow(new RejectedExecutionException("Database limit reached"));
+        when(locationFilterService.executeKnownFilter(anyString(), any(), any()))
+                .thenReturn(Optional.of(List.of(nearLocation)));
+        when(inventoryApiService.fetchInventoryBySku(anyString()))
+                .thenReturn(List.of(inventory("WIDGET", nearLocation, 5)));
+
+        SourcingResponse response = service.sourceOrder(order("REJECTED_FILTER", 1, item("WIDGET", 1)));
+
+        assertEquals(nearLocation.getId(), 
+                response.getFulfillmentPlans().get(0).getLocationAllocations().get(0).getLocationId());
+    }
+
+    @Test
+    void testBulkHandsResponsesToCallerAndAnswersInvalidOrders() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation))));
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))));
+        OrderDTO noItems = order("NO_ITEMS", 1);
+        noItems.setOrderItems(null);
+        OrderItemDTO unfiltered = item("WIDGET", 1);
+        unfiltered.setLocationFilterId(null);
+        Map<String, SourcingResponse> responses = new HashMap<>();
+        Set<Thread> sinkThreads = new HashSet<>();
+
+        int sourced = service.sourceBulk(List.of(order("BULK", 1, item("WIDGET", 1)), noItems, 
+                order("NO_FILTER", 1, unfiltered)).iterator(), response -> {
+                    sinkThreads.add(Thread.currentThread());
+                    responses.put(response.getOrderId(), response);
+                });
+
+        assertEquals(3, sourced);
+        assertEquals(Set.of(Thread.currentThread()), sinkThreads);
+        assertEquals(List.of("WIDGET"), skus(responses.get("BULK")));
+        assertNull(responses.get("BULK").getError());
+        assertEquals("Order has no items", responses.get("NO_ITEMS").getError());
+        assertEquals("Missing location filter ID for item: WIDGET", responses.get("NO_FILTER").getError());
+    }
+
+    @Test
+    void testBulkAdmitsEachOrderAndAnswersShedOnesWithAnError() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation))));
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))));
+        AdmissionService admissionService = mock(AdmissionService.class);
+        PriorityScheduler scheduler = new PriorityScheduler(1, new double[] {1}, new int[] {1}, 
+                new int[] {10}, new long[] {10_000});
+        List<PriorityScheduler.Permit> permits = new ArrayList<>();
+        OrderDTO shed = order("SHED", 1, item("WIDGET", 1));
+        when(admissionService.admitBulkBlocking(any())).thenAnswer(call -> {
+            if (call.getArgument(0) == shed) {
+                throw new RejectedExecutionException("Sourcing is overloaded for priority class 3");
+            }
+            PriorityScheduler.Permit permit = scheduler.acquire(0).join();
+            permits.add(permit);
+            return permit;
+        });
+        ReflectionTestUtils.setField(service, "admissionService", admissionService);
+        Map<String, SourcingResponse> responses = new HashMap<>();
+
+        service.sourceBulk(List.of(order("FIRST", 1, item("WIDGET", 1)), shed, order("LAST", 1, item("WIDGET", 1)))
+                .iterator(), response -> responses.put(response.getOrderId(), response));
+
+        // The single slot is taken per order, so the last order waits until the first is planned
+        assertEquals(2, permits.size());
+        assertEquals(0, scheduler.getStats().active());
+        assertEquals(List.of("WIDGET"), skus(responses.get("FIRST")));
+        assertEquals(List.of("WIDGET"), skus(responses.get("LAST")));
+        assertEquals("Sourcing is overloaded for priority class 3", responses.get("SHED").getError());
+    }
+
+    @Test
+    void testBulkAnswersOrderStillRunningPastItsDeadline() {
+        ReflectionTestUtils.setField(service, "bulkDeadlineMs", 100L);
+        stubFilters(Map.of("ALL_LOCATIONS", new CompletableFuture<>()));
+        stubInventory(Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5))));
+        // The filter never answers, and planning at the deadline hangs on the filter's known definition
+        CountDownLatch release = new CountDownLatch(1);
+        when(locationFilterService.executeKnownFilter(anyString(), any(), any())).thenAnswer(call -> {
+            release.await();
+            return Optional.of(List.of(nearLocation));
+        });
+        List<SourcingResponse> responses = new ArrayList<>();
+
+        try {
+            service.sourceBulk(List.of(order("STUCK", 1, item("WIDGET", 1))).iterator(), responses::add);
+        } finally {
+            release.countDown();
+        }
+
+        assertEquals(1, responses.size());
+        assertEquals("Bulk quote not finished within 100ms", responses.get(0).getError());
+    }
+
+    @Test
+    void testIncrementalPlansOnlyAddedLines() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation, farLocation))));
+        stubInventory(Map.of(
+                "WIDGET", List.of(inventory("WIDGET", farLocation, 5)),
+                "GADGET", List.of(inventory("GADGET", nearLocation, 5))));
+        OrderDTO cart = order("CART", 1, item("WIDGET", 1));
+        service.sourceOrderIncremental(cart, Deadline.NONE);
+        clearInvocations(inventoryApiService, locationFilterService);
+
+        cart.getOrderItems().add(item("GADGET", 2));
+        SourcingResponse incremental = service.sourceOrderIncremental(cart, Deadline.NONE);
+
+        // Only the added SKU is read, and the session's filter result is not executed again
+        verify(inventoryApiService).batchFetchInventory(argThat(items -> 
+                items.stream().map(OrderItemDTO::getSku).toList().equals(List.of("GADGET"))));
+        verify(locationFilterService, never()).executeFiltersAsync(argThat(ids -> ids.contains("ALL_LOCATIONS")), 
+                any(), any());
+        assertEquals(allocations(service.sourceOrder(cart)), allocations(incremental));
+    }
+
+    @Test
+    void testSessionLinesSurviveChangesToOtherSkus() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation))));
+        // Another request's read reports GADGET changed while WIDGET is being planned
+        when(inventoryApiService.batchFetchInventory(anyList())).thenAnswer(call -> {
+            service.onSourcingDataChanged(new SourcingDataChangedEvent(this, 
+                    SourcingDataChangedEvent.DataType.INVENTORY, Set.of("GADGET")));
+            return CompletableFuture.completedFuture(InventoryApiService.InventoryLookup.of(
+                    Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5)))));
+        });
+        OrderDTO cart = order("CART", 1, item("WIDGET", 1));
+        service.sourceOrderIncremental(cart, Deadline.NONE);
+
+        service.sourceOrderIncremental(cart, Deadline.NONE);
+        verify(inventoryApiService, times(1)).batchFetchInventory(anyList());
+
+        service.onSourcingDataChanged(new SourcingDataChangedEvent(this, 
+                SourcingDataChangedEvent.DataType.INVENTORY, Set.of("WIDGET")));
+        service.sourceOrderIncremental(cart, Deadline.NONE);
+        verify(inventoryApiService, times(2)).batchFetchInventory(anyList());
+    }
+
+    @Test
+    void testLinePlannedAcrossChangeToItsSkuIsNotKept() {
+        stubFilters(Map.of("ALL_LOCATIONS", CompletableFuture.completedFuture(List.of(nearLocation))));
+        // The read that plans the line also reports WIDGET's stock changed
+        when(inventoryApiService.batchFetchInventory(anyList())).thenAnswer(call -> {
+            service.onSourcingDataChanged(new SourcingDataChangedEvent(this, 
+                    SourcingDataChangedEvent.DataType.INVENTORY, Set.of("WIDGET")));
+            return CompletableFuture.completedFuture(InventoryApiService.InventoryLookup.of(
+                    Map.of("WIDGET", List.of(inventory("WIDGET", nearLocation, 5)))));
+        });
+        OrderDTO cart = order("CART", 1, item("WIDGET", 1));
+
+        service.sourceOrderIncremental(cart, Deadline.NONE);
+        service.sourceOrderIncremental(cart, Deadline.NONE);
+
+        verify(inventoryApiService, times(2)).batchFetchInventory(anyList());
+    }
+
+    // Helpers
+
+    private void setStrategyMode(String mode) {
+        Field field = ReflectionUtils.findField(BatchSourcingServiceImpl.class, "strategyMode");
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Object value = Enum.valueOf((Class) field.getType(), mode);
+        ReflectionTestUtils.setField(service, "strategyMode", value);
+    }
+
+    private void stubFilters(Map<String, CompletableFuture<List<Location>>> filterResults) {
+        when(locationFilterService.executeFiltersAsync(anySet(), any(), any())).thenAnswer(call -> {
+            Map<String, CompletableFuture<List<Location>>> futures = new HashMap<>();
+            for (String filterId : call.<Set<String>>getArgument(0)) {
+                futures.put(filterId, filterResults.get(filterId));
+            }
+            return futures;
+        });
+    }
+
+    private void stubInventory(Map<String, List<Inventory>> inventoryBySku) {
+        stubInventory(InventoryApiService.InventoryLookup.of(inventoryBySku));
+    }
+
+    private void stubInventory(InventoryApiService.InventoryLookup lookup) {
+        when(inventoryApiService.batchFetchInventory(anyList()))
+                .thenReturn(CompletableFuture.completedFuture(lookup));
+    }
+
+    private void stubStockSnapshot(Map<String, List<Inventory>> inventoryBySku, long asOfMillis) {
+        when(quickPromiseService.stockSnapshot(anyCollection())).thenReturn(Optional.of(
+                new QuickPromiseService.StockSnapshot(InventoryApiService.InventoryLookup.of(inventoryBySku), asOfMillis)));
+    }
+
+    private void stubSequential() {
+        when(locationFilterService.executeLocationFilter(anyString(), any(), any()))
+                .thenReturn(List.of(nearLocation, farLocation));
+        when(inventoryApiService.fetchInventoryBySku(anyString()))
+                .thenAnswer(call -> List.of(inventory(call.getArgument(0), nearLocation, 5)));
+    }
+
+    private void stubWaveFilters(List<OrderDTO> orders) {
+        List<List<Location>> perOrder = Collections.nCopies(orders.size(), List.of(nearLocation, farLocation));
+        when(locationFilterService.batchExecuteFiltersForOrders(anySet(), anyList(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("ALL_LOCATIONS", perOrder)));
+    }
+
+    private List<PromiseDateBreakdown> promiseDates(List<PromiseDateRequest> requests, boolean estimated) {
+        List<PromiseDateBreakdown> promiseDates = new ArrayList<>(requests.size());
+        for (PromiseDateRequest request : requests) {
+            if (unservedLocationIds.contains(request.getLocation().getId())) {
+                promiseDates.add(null);
+                continue;
+            }
+            LocalDateTime delivery = NOW.plusDays(request.getLocation().getTransitTime());
+            promiseDates.add(PromiseDateBreakdown.builder()
+                    .promiseDate(delivery)
+                    .carrierPickupTime(NOW)
+                    .estimatedDeliveryDate(delivery)
+                    .carrierCode("UPS")
+                    .deliveryType(request.getOrderItem().getDeliveryType())
+                    .estimated(estimated)
+                    .build());
+        }
+        return promiseDates;
+    }
+
+    /**
+     * SKU, location, quantity and promise date of every allocation, in plan order
+     */
+    private static List<String> allocations(SourcingResponse response) {
+        List<String> allocations = new ArrayList<>();
+        for (SourcingResponse.FulfillmentPlan plan : response.getFulfillmentPlans()) {
+            for (SourcingResponse.LocationAllocation allocation : plan.getLocationAllocations()) {
+                allocations.add(plan.getSku() + '@' + allocation.getLocationId() + 'x' + allocation.getAllocatedQuantity()
+                        + ':' + allocation.getDeliveryTiming().getEstimatedDeliveryDate());
+            }
+        }
+        return allocations;
+    }
+
+    private static List<String> skus(SourcingResponse response) {
+        return response.getFulfillmentPlans().stream().map(SourcingResponse.FulfillmentPlan::getSku).toList();
+    }
+
+    private static OrderDTO order(String orderId, int priority, OrderItemDTO... items) {
+        return OrderDTO.builder()
+                .tempOrderId(orderId)
+                .latitude(CUSTOMER_LATITUDE)
+                .longitude(CUSTOMER_LONGITUDE)
+                .requestTimestamp(NOW)
+                .orderPriority(priority)
+                .orderItems(new ArrayList<>(Arrays.asList(items)))
+                .build();
+    }
+
+    private static OrderItemDTO item(String sku, int quantity) {
+        return OrderItemDTO.builder()
+                .sku(sku)
+                .quantity(quantity)
+                .deliveryType("STANDARD")
+                .locationFilterId("ALL_LOCATIONS")
+                .build();
+    }
+
+    private static Location location(int id, String name, double latitude, double longitude, int transitTime) {
+        Location location = new Location();
+        location.setId(id);
+        location.setName(name);
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.setTransitTime(transitTime);
+        return location;
+    }
+
+    private static Inventory inventory(String sku, Location location, int quantity) {
+        Inventory inventory = new Inventory();
+        inventory.setId(location.getId() * 1000 + sku.hashCode() % 1000);
+        inventory.setSku(sku);
+        inventory.setLocationId(location.getId());
+        inventory.setQuantity(quantity);
+        inventory.setProcessingTime(1);
+        return inventory;
+    }
+}
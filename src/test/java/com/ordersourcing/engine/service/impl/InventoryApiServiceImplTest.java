@@ -0,0 +1,136 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.model.Inventory;
+import com.ordersourcing.engine.repository.InventoryRepository;
+import com.ordersourcing.engine.service.InventoryApiService;
+import com.ordersourcing.engine.util.AdaptiveLimiter;
+import com.ordersourcing.engine.util.StageExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Batch inventory reads with a database limit of one, so holding its only slot forces the fallback
+ */
+public class InventoryApiServiceImplTest {
+
+    private static final long MAX_AGE_MS = 30_000;
+
+    private InventoryApiServiceImpl service;
+    private InventoryRepository inventoryRepository;
+    private AdaptiveLimiter databaseLimiter;
+    private StageExecutor ioExecutor;
+    private final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+
+    @BeforeEach
+    void setUp() {
+        inventoryRepository = mock(InventoryRepository.class);
+        databaseLimiter = new AdaptiveLimiter("test-db", 1, 1, 1, 0.2, 1.5);
+        ioExecutor = new StageExecutor("test-io", 2, 10);
+
+        service = new InventoryApiServiceImpl(100, MAX_AGE_MS);
+        ReflectionTestUtils.setField(service, "inventoryRepository", inventoryRepository);
+        ReflectionTestUtils.setField(service, "ioExecutor", ioExecutor);
+        ReflectionTestUtils.setField(service, "databaseLimiter", databaseLimiter);
+        ReflectionTestUtils.setField(service, "cacheManager", new ConcurrentMapCacheManager("inventory"));
+        ReflectionTestUtils.setField(service, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(service, "nanoClock", (LongSupplier) nanos::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ioExecutor.shutdown();
+    }
+
+    @Test
+    void testDatabaseReadReportsOutOfStockSkusAsKnown() {
+        when(inventoryRepository.findBySkusWithStock(anyList())).thenReturn(List.of(inventory("WIDGET", 5)));
+
+        InventoryApiService.InventoryLookup lookup = fetch("WIDGET", "GADGET");
+
+        assertEquals(5, lookup.get("WIDGET").get(0).getQuantity());
+        assertTrue(lookup.isKnown("GADGET"));
+        assertTrue(lookup.get("GADGET").isEmpty());
+        assertFalse(lookup.isLastKnown("WIDGET"));
+    }
+
+    @Test
+    void testRecentReadServedAsLastKnownPastTheLimit() {
+        when(inventoryRepository.findBySkusWithStock(anyList())).thenReturn(List.of(inventory("WIDGET", 5)));
+        fetch("WIDGET");
+        nanos.addAndGet(MAX_AGE_MS * 1_000_000L);
+
+        AdaptiveLimiter.Token held = databaseLimiter.tryAcquire();
+        InventoryApiService.InventoryLookup lookup = fetch("WIDGET");
+        held.success();
+
+        assertEquals(5, lookup.get("WIDGET").get(0).getQuantity());
+        assertTrue(lookup.isLastKnown("WIDGET"));
+        verify(inventoryRepository, times(1)).findBySkusWithStock(anyList());
+    }
+
+    @Test
+    void testOldOrMissingReadsAreUnknownNotOutOfStock() {
+        when(inventoryRepository.findBySkusWithStock(anyList())).thenReturn(List.of(inventory("WIDGET", 5)));
+        fetch("WIDGET");
+        nanos.addAndGet(MAX_AGE_MS * 1_000_000L + 1);
+
+        AdaptiveLimiter.Token held = databaseLimiter.tryAcquire();
+        InventoryApiService.InventoryLookup lookup = fetch("WIDGET", "GADGET");
+        held.success();
+
+        assertFalse(lookup.isKnown("WIDGET"));
+        assertFalse(lookup.isKnown("GADGET"));
+        assertNull(lookup.get("GADGET"));
+    }
+
+    @Test
+    void testPinnedReadServedPastTheLimitHoweverOld() {
+        when(inventoryRepository.findBySkusWithStock(anyList())).thenReturn(List.of(inventory("WIDGET", 5)));
+        service.pinSkus(Set.of("WIDGET"));
+        assertFalse(service.hasPinnedStock("WIDGET"));
+        fetch("WIDGET");
+        assertTrue(service.hasPinnedStock("WIDGET"));
+        nanos.addAndGet(10 * MAX_AGE_MS * 1_000_000L);
+
+        AdaptiveLimiter.Token held = databaseLimiter.tryAcquire();
+        InventoryApiService.InventoryLookup pinned = fetch("WIDGET");
+        service.unpinSkus(Set.of("WIDGET"));
+        InventoryApiService.InventoryLookup released = fetch("WIDGET");
+        held.success();
+
+        assertEquals(5, pinned.get("WIDGET").get(0).getQuantity());
+        assertTrue(pinned.isLastKnown("WIDGET"));
+        assertFalse(released.isKnown("WIDGET"));
+        assertFalse(service.hasPinnedStock("WIDGET"));
+    }
+
+    private InventoryApiService.InventoryLookup fetch(String... skus) {
+        List<OrderItemDTO> items = Arrays.stream(skus)
+                .map(sku -> OrderItemDTO.builder().sku(sku).quantity(1).build())
+                .toList();
+        return service.batchFetchInventory(items).join();
+    }
+
+    private static Inventory inventory(String sku, int quantity) {
+        Inventory inventory = new Inventory();
+        inventory.setSku(sku);
+        inventory.setLocationId(1);
+        inventory.setQuantity(quantity);
+        return inventory;
+    }
+}
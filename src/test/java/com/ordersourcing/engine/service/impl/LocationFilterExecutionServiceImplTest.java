@@ -0,0 +1,172 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.index.DistanceVector;
+import com.ordersourcing.engine.index.LocationIndex;
+import com.ordersourcing.engine.model.Location;
+import com.ordersourcing.engine.model.LocationFilter;
+import com.ordersourcing.engine.repository.LocationFilterRepository;
+import com.ordersourcing.engine.repository.LocationRepository;
+import com.ordersourcing.engine.service.LocationIndexService;
+import com.ordersourcing.engine.util.AdaptiveLimiter;
+import com.ordersourcing.engine.util.StageExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class LocationFilterExecutionServiceImplTest {
+
+    private LocationFilterExecutionServiceImpl service;
+    private LocationFilterRepository locationFilterRepository;
+    private LocationRepository locationRepository;
+    private StageExecutor ioExecutor;
+    private StageExecutor cpuExecutor;
+    private LocationIndex index;
+    private OrderDTO order;
+
+    @BeforeEach
+    void setUp() {
+        locationFilterRepository = mock(LocationFilterRepository.class);
+        locationRepository = mock(LocationRepository.class);
+        ioExecutor = new StageExecutor("test-io", 2, 10);
+        cpuExecutor = new StageExecutor("test-cpu", 2, 10);
+        index = LocationIndex.build(List.of(location(1, 40.7130, -74.0050), location(2, 41.8781, -87.6298)), 1);
+
+        service = new LocationFilterExecutionServiceImpl();
+        ReflectionTestUtils.setField(service, "locationFilterRepository", locationFilterRepository);
+        ReflectionTestUtils.setField(service, "locationRepository", locationRepository);
+        ReflectionTestUtils.setField(service, "locationIndexService", mock(LocationIndexService.class));
+        ReflectionTestUtils.setField(service, "ioExecutor", ioExecutor);
+        ReflectionTestUtils.setField(service, "cpuExecutor", cpuExecutor);
+        ReflectionTestUtils.setField(service, "databaseLimiter", new AdaptiveLimiter("test-db", 4, 1, 8, 0.2, 1.5));
+        ReflectionTestUtils.setField(service, "cacheManager", new ConcurrentMapCacheManager("locationFilters"));
+        ReflectionTestUtils.setField(service, "eventPublisher", mock(ApplicationEventPublisher.class));
+
+        order = OrderDTO.builder().tempOrderId("ORDER").latitude(40.75).longitude(-73.99)
+                .orderItems(new ArrayList<>()).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ioExecutor.shutdown();
+        cpuExecutor.shutdown();
+    }
+
+    @Test
+    void testDefinitionReadOnIoExecutor() {
+        AtomicReference<String> readOn = new AtomicReference<>();
+        when(locationFilterRepository.findByIdAndIsActiveTrue("NEARBY")).thenAnswer(call -> {
+            readOn.set(Thread.currentThread().getName());
+            return Optional.of(new LocationFilter("NEARBY", "Nearby", "distance < 100"));
+        });
+
+        List<Location> result = execute("NEARBY");
+
+        assertEquals(List.of(1), result.stream().map(Location::getId).toList());
+        assertTrue(readOn.get().startsWith("test-io"), "Definition read on " + readOn.get());
+        // Locations come from the distance vector's index snapshot, not the repository
+        verifyNoInteractions(locationRepository);
+    }
+
+    @Test
+    void testKnownDefinitionIsNotReadAgain() {
+        when(locationFilterRepository.findByIdAndIsActiveTrue("NEARBY"))
+                .thenReturn(Optional.of(new LocationFilter("NEARBY", "Nearby", "distance < 100")));
+        execute("NEARBY");
+
+        order.setLatitude(41.88);
+        order.setLongitude(-87.63);
+        assertEquals(List.of(2), execute("NEARBY").stream().map(Location::getId).toList());
+        verify(locationFilterRepository, times(1)).findByIdAndIsActiveTrue("NEARBY");
+    }
+
+    @Test
+    void testMissingFilterMatchesNothingAndIsNotCached() {
+        when(locationFilterRepository.findByIdAndIsActiveTrue("GONE")).thenReturn(Optional.empty());
+
+        assertTrue(execute("GONE").isEmpty());
+        assertTrue(execute("GONE").isEmpty());
+        verify(locationFilterRepository, times(2)).findByIdAndIsActiveTrue("GONE");
+    }
+
+    @Test
+    void testWaveEvaluatesEachOrderAgainstItsOwnDistances() {
+        when(locationFilterRepository.findByIdAndIsActiveTrue("NEARBY"))
+                .thenReturn(Optional.of(new LocationFilter("NEARBY", "Nearby", "distance < 100")));
+        OrderDTO chicago = OrderDTO.builder().tempOrderId("CHICAGO").latitude(41.88).longitude(-87.63)
+                .orderItems(new ArrayList<>()).build();
+        order.getOrderItems().add(item("NEARBY"));
+        chicago.getOrderItems().add(item("NEARBY"));
+
+        Map<String, List<List<Location>>> results = service.batchExecuteFiltersForOrders(Set.of("NEARBY"),
+                List.of(order, chicago), List.of(distances(order), distances(chicago))).join();
+
+        assertEquals(1, results.get("NEARBY").get(0).get(0).getId());
+        assertEquals(2, results.get("NEARBY").get(1).get(0).getId());
+        verifyNoInteractions(locationRepository);
+    }
+
+    @Test
+    void testUnreadFilterRejectedByDatabaseLimitIsNotCached() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test-db", 1, 1, 1, 0.2, 1.5);
+        ReflectionTestUtils.setField(service, "databaseLimiter", limiter);
+        when(locationFilterRepository.findByIdAndIsActiveTrue("NEARBY"))
+                .thenReturn(Optional.of(new LocationFilter("NEARBY", "Nearby", "distance < 100")));
+
+        AdaptiveLimiter.Token held = limiter.tryAcquire();
+        assertThrows(RejectedExecutionException.class, 
+                () -> service.executeLocationFilter("NEARBY", order, distances(order)));
+        // Unavailable, not a filter that matches nothing
+        CompletionException failed = assertThrows(CompletionException.class, () -> execute("NEARBY"));
+        assertInstanceOf(RejectedExecutionException.class, failed.getCause());
+        assertNull(service.batchExecuteFiltersForOrders(Set.of("NEARBY"), List.of(order), 
+                List.of(distances(order))).join().get("NEARBY"));
+        held.success();
+
+        // No path kept the rejected lookup, so the definition is read once the limit allows
+        assertEquals(List.of(1), execute("NEARBY").stream().map(Location::getId).toList());
+        verify(locationFilterRepository, times(1)).findByIdAndIsActiveTrue("NEARBY");
+    }
+
+    private List<Location> execute(String filterId) {
+        CompletableFuture<List<Location>> future = service
+                .executeFiltersAsync(Set.of(filterId), order, distances(order)).get(filterId);
+        return future.join();
+    }
+
+    private DistanceVector distances(OrderDTO forOrder) {
+        return DistanceVector.compute(index, forOrder.getLatitude(), forOrder.getLongitude());
+    }
+
+    private static OrderItemDTO item(String filterId) {
+        return OrderItemDTO.builder().sku("SKU").quantity(1)
+                .deliveryType("STANDARD").locationFilterId(filterId).build();
+    }
+
+    private static Location location(int id, double latitude, double longitude) {
+        Location location = new Location();
+        location.setId(id);
+        location.setName("L" + id);
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.setTransitTime(1);
+        return location;
+    }
+}
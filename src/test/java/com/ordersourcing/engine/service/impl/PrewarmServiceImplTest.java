@@ -0,0 +1,176 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.PrewarmPlan;
+import com.ordersourcing.engine.dto.PrewarmStatus;
+import com.ordersourcing.engine.dto.QuickPromiseResponse;
+import com.ordersourcing.engine.model.Inventory;
+import com.ordersourcing.engine.service.CarrierService;
+import com.ordersourcing.engine.service.InventoryApiService;
+import com.ordersourcing.engine.service.LocationFilterExecutionService;
+import com.ordersourcing.engine.service.QuickPromiseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pre-warm jobs on the real scheduler thread; events start now so warming begins at once
+ */
+public class PrewarmServiceImplTest {
+
+    private PrewarmServiceImpl service;
+    private InventoryApiService inventoryApiService;
+    private LocationFilterExecutionService locationFilterExecutionService;
+    private QuickPromiseService quickPromiseService;
+
+    @BeforeEach
+    void setUp() {
+        inventoryApiService = mock(InventoryApiService.class);
+        locationFilterExecutionService = mock(LocationFilterExecutionService.class);
+        quickPromiseService = mock(QuickPromiseService.class);
+
+        service = new PrewarmServiceImpl(1);
+        ReflectionTestUtils.setField(service, "carrierService", mock(CarrierService.class));
+        ReflectionTestUtils.setField(service, "inventoryApiService", inventoryApiService);
+        ReflectionTestUtils.setField(service, "locationFilterExecutionService", locationFilterExecutionService);
+        ReflectionTestUtils.setField(service, "quickPromiseService", quickPromiseService);
+        ReflectionTestUtils.setField(service, "leadMs", 600_000L);
+        ReflectionTestUtils.setField(service, "defaultWindowMs", 3_600_000L);
+        ReflectionTestUtils.setField(service, "maxCellsPerRegion", 400);
+
+        Inventory widget = new Inventory();
+        widget.setSku("WIDGET");
+        widget.setLocationId(1);
+        widget.setQuantity(5);
+        when(inventoryApiService.batchFetchInventory(anyList())).thenReturn(CompletableFuture.completedFuture(
+                InventoryApiService.InventoryLookup.of(Map.of("WIDGET", List.of(widget), "GADGET", List.of()))));
+        when(locationFilterExecutionService.loadDefinition("ALL")).thenReturn(true);
+        when(inventoryApiService.hasPinnedStock(anyString())).thenReturn(true);
+        when(quickPromiseService.quote(any())).thenReturn(QuickPromiseResponse.builder()
+                .promises(List.of(
+                        QuickPromiseResponse.SkuPromise.builder().sku("WIDGET").available(true).build(),
+                        QuickPromiseResponse.SkuPromise.builder().sku("GADGET").available(false).build()))
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testWarmsAtOnceAndReportsProgressAndCoverage() throws InterruptedException {
+        PrewarmStatus scheduled = service.schedule(plan(LocalDateTime.now(), null, 0.0));
+
+        PrewarmStatus warm = awaitState(scheduled.getId(), PrewarmStatus.State.WARM);
+
+        // Carrier index, stock index, inventory read, one filter, one geo-cell
+        assertEquals(5, warm.getTotalSteps());
+        assertEquals(5, warm.getCompletedSteps());
+        assertEquals(1, warm.getSkusInStock());
+        assertEquals(2, warm.getSkusHeld());
+        assertEquals(1, warm.getFiltersLoaded());
+        assertEquals(1, warm.getGeoCellsWarmed());
+        assertEquals(2, warm.getPromiseLines());
+        assertEquals(1, warm.getPromiseLinesAvailable());
+        assertNotNull(warm.getPinnedUntil());
+        verify(inventoryApiService).pinSkus(Set.of("WIDGET", "GADGET"));
+        verify(inventoryApiService, never()).fetchInventoryBySku(any());
+        verify(locationFilterExecutionService, never()).executeLocationFilter(any(), any(), any());
+        verify(quickPromiseService).pinCells(eq(Set.of("ALL")), anySet());
+    }
+
+    @Test
+    void testCancelReleasesPinsOnce() throws InterruptedException {
+        String id = service.schedule(plan(LocalDateTime.now(), null, 0.0)).getId();
+        awaitState(id, PrewarmStatus.State.WARM);
+
+        assertEquals(PrewarmStatus.State.CANCELLED, service.cancel(id).getState());
+        assertEquals(PrewarmStatus.State.CANCELLED, service.cancel(id).getState());
+
+        verify(inventoryApiService, times(1)).unpinSkus(Set.of("WIDGET", "GADGET"));
+        verify(quickPromiseService, times(1)).unpinCells(eq(Set.of("ALL")), anySet());
+        assertEquals(PrewarmStatus.State.CANCELLED, service.getStatus(id).getState());
+    }
+
+    @Test
+    void testCancelBeforeWarmingNeverPins() {
+        String id = service.schedule(plan(LocalDateTime.now().plusDays(1), null, 0.0)).getId();
+
+        assertEquals(PrewarmStatus.State.CANCELLED, service.cancel(id).getState());
+        verify(inventoryApiService, never()).pinSkus(any());
+        verifyNoInteractions(quickPromiseService);
+    }
+
+    @Test
+    void testEventEndReleasesPins() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        String id = service.schedule(plan(now, now.plusNanos(300_000_000L), 0.0)).getId();
+
+        awaitState(id, PrewarmStatus.State.RELEASED);
+        verify(inventoryApiService).unpinSkus(Set.of("WIDGET", "GADGET"));
+        verify(quickPromiseService).unpinCells(eq(Set.of("ALL")), anySet());
+    }
+
+    @Test
+    void testActiveJobsAreNotEvictedByFinishedOnes() {
+        LocalDateTime later = LocalDateTime.now().plusDays(1);
+        String first = service.schedule(plan(later, null, 0.0)).getId();
+        String second = service.schedule(plan(later, null, 0.0)).getId();
+        String cancelled = service.schedule(plan(later, null, 0.0)).getId();
+        String cancelledLast = service.schedule(plan(later, null, 0.0)).getId();
+        service.cancel(cancelled);
+        service.cancel(cancelledLast);
+
+        // The history holds one finished job; scheduled jobs are kept however many finish
+        assertEquals(PrewarmStatus.State.SCHEDULED, service.getStatus(first).getState());
+        assertEquals(PrewarmStatus.State.SCHEDULED, service.getStatus(second).getState());
+        assertNull(service.getStatus(cancelled));
+        assertEquals(PrewarmStatus.State.CANCELLED, service.getStatus(cancelledLast).getState());
+        assertEquals(3, service.getStatuses().size());
+    }
+
+    @Test
+    void testRegionOverCellLimitIsRejected() {
+        ReflectionTestUtils.setField(service, "maxCellsPerRegion", 5);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service.schedule(plan(LocalDateTime.now(), null, 10.0)));
+        assertTrue(e.getMessage().startsWith("Region Downtown"), e.getMessage());
+        assertTrue(service.getStatuses().isEmpty());
+    }
+
+    private PrewarmStatus awaitState(String id, PrewarmStatus.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        PrewarmStatus status = service.getStatus(id);
+        while (status.getState() != state && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = service.getStatus(id);
+        }
+        assertEquals(state, status.getState());
+        return status;
+    }
+
+    private static PrewarmPlan plan(LocalDateTime eventStart, LocalDateTime eventEnd, double radiusKm) {
+        return PrewarmPlan.builder()
+                .name("drop")
+                .skus(List.of("WIDGET", "GADGET"))
+                .locationFilterIds(List.of("ALL"))
+                .regions(List.of(PrewarmPlan.Region.builder()
+                        .name("Downtown").latitude(40.7128).longitude(-74.0060).radiusKm(radiusKm).build()))
+                .eventStart(eventStart)
+                .eventEnd(eventEnd)
+                .pin(true)
+                .build();
+    }
+}
@@ -0,0 +1,255 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.dto.PromiseDateBreakdown;
+import com.ordersourcing.engine.index.CarrierIndex;
+import com.ordersourcing.engine.index.LocationIndex;
+import com.ordersourcing.engine.model.CarrierConfiguration;
+import com.ordersourcing.engine.model.Location;
+import com.ordersourcing.engine.model.RateCard;
+import com.ordersourcing.engine.model.ScoringConfiguration;
+import com.ordersourcing.engine.service.CarrierService;
+import com.ordersourcing.engine.service.LocationIndexService;
+import com.ordersourcing.engine.service.ScoringConfigurationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Promise timelines against a fixed clock in a New York facility. 2026-10-14 is a Wednesday and
+ * 2026-10-16 a Friday; the carrier's pickup cutoff is 15:00 and its delivery window closes at 18:00.
+ */
+public class PromiseDateServiceImplTest {
+
+    private static final ZoneId FACILITY_ZONE = ZoneId.of("America/New_York");
+
+    private PromiseDateServiceImpl service;
+    private CarrierService carrierService;
+    private Location location;
+    private OrderItemDTO orderItem;
+    private OrderDTO order;
+
+    @BeforeEach
+    void setUp() {
+        carrierService = mock(CarrierService.class);
+        LocationIndexService locationIndexService = mock(LocationIndexService.class);
+        ScoringConfigurationService scoringConfigurationService = mock(ScoringConfigurationService.class);
+
+        location = new Location();
+        location.setId(1);
+        location.setName("DC1");
+        location.setTransitTime(1);
+        when(locationIndexService.getIndex()).thenReturn(LocationIndex.build(List.of(location), 1));
+        ScoringConfiguration scoringConfig = new ScoringConfiguration();
+        scoringConfig.setId("DEFAULT_SCORING");
+        when(scoringConfigurationService.getScoringConfigurationForItem(any())).thenReturn(scoringConfig);
+
+        service = new PromiseDateServiceImpl();
+        ReflectionTestUtils.setField(service, "carrierService", carrierService);
+        ReflectionTestUtils.setField(service, "locationIndexService", locationIndexService);
+        ReflectionTestUtils.setField(service, "scoringConfigurationService", scoringConfigurationService);
+        ReflectionTestUtils.setField(service, "facilityTimeZone", FACILITY_ZONE.getId());
+        ReflectionTestUtils.setField(service, "calendarHorizonDays", 60);
+
+        orderItem = OrderItemDTO.builder().sku("SKU").quantity(1).deliveryType("STANDARD").build();
+        order = OrderDTO.builder().tempOrderId("ORDER").latitude(40.75).longitude(-73.99)
+                .orderItems(new ArrayList<>()).build();
+    }
+
+    @Test
+    void testReadyBeforeCutoffShipsSameDay() {
+        useCarrier(carrier(false, false));
+        PromiseDateBreakdown breakdown = promiseAt("2026-10-14T09:00", 0);
+
+        assertEquals(LocalDateTime.parse("2026-10-14T15:00"), breakdown.getCarrierPickupTime());
+        assertEquals(LocalDateTime.parse("2026-10-15T18:00"), breakdown.getEstimatedDeliveryDate());
+    }
+
+    @Test
+    void testReadyAfterCutoffShipsAtNextPickup() {
+        CarrierConfiguration carrier = carrier(false, false);
+        carrier.setNextPickupTime(LocalTime.of(10, 0));
+        useCarrier(carrier);
+        PromiseDateBreakdown breakdown = promiseAt("2026-10-14T16:00", 0);
+
+        assertEquals(LocalDateTime.parse("2026-10-15T10:00"), breakdown.getCarrierPickupTime());
+        assertEquals(LocalDateTime.parse("2026-10-16T18:00"), breakdown.getEstimatedDeliveryDate());
+    }
+
+    @Test
+    void testProcessingDaysCountTowardsTheCutoff() {
+        useCarrier(carrier(false, false));
+        // Ready Thursday 09:00 after one processing day
+        PromiseDateBreakdown breakdown = promiseAt("2026-10-14T09:00", 1);
+
+        assertEquals(24, breakdown.getLocationProcessingHours());
+        assertEquals(LocalDateTime.parse("2026-10-15T15:00"), breakdown.getCarrierPickupTime());
+    }
+
+    @Test
+    void testWeekdayCarrierSkipsTheWeekend() {
+        useCarrier(carrier(false, false));
+        // Friday after the cutoff: next pickup Monday, delivery Tuesday
+        PromiseDateBreakdown breakdown = promiseAt("2026-10-16T16:00", 0);
+
+        assertEquals(LocalDateTime.parse("2026-10-19T15:00"), breakdown.getCarrierPickupTime());
+        assertEquals(LocalDateTime.parse("2026-10-20T18:00"), breakdown.getEstimatedDeliveryDate());
+    }
+
+    @Test
+    void testWeekendPickup() {
+        useCarrier(carrier(true, false));
+        PromiseDateBreakdown breakdown = promiseAt("2026-10-16T16:00", 0);
+
+        // Picked up Saturday, delivered on the next weekday
+        assertEquals(LocalDateTime.parse("2026-10-17T15:00"), breakdown.getCarrierPickupTime());
+        assertEquals(LocalDateTime.parse("2026-10-19T18:00"), breakdown.getEstimatedDeliveryDate());
+    }
+
+    @Test
+    void testWeekendDelivery() {
+        useCarrier(carrier(false, true));
+        PromiseDateBreakdown breakdown = promiseAt("2026-10-16T09:00", 0);
+
+        // Picked up Friday, delivered Saturday instead of Monday
+        assertEquals(LocalDateTime.parse("2026-10-16T15:00"), breakdown.getCarrierPickupTime());
+        assertEquals(LocalDateTime.parse("2026-10-17T18:00"), breakdown.getEstimatedDeliveryDate());
+    }
+
+    @Test
+    void testTimesReportedInTheOrderTimeZone() {
+        useCarrier(carrier(false, false));
+        order.setTimeZone("America/Los_Angeles");
+        PromiseDateBreakdown breakdown = promiseAt("2026-10-14T09:00", 0);
+
+        // 15:00 New York pickup is noon in Los Angeles; delivery closes at 18:00 customer time
+        assertEquals(LocalDateTime.parse("2026-10-14T12:00"), breakdown.getCarrierPickupTime());
+        assertEquals(LocalDateTime.parse("2026-10-15T18:00"), breakdown.getEstimatedDeliveryDate());
+        assertEquals(30, breakdown.getCarrierTransitHours());
+    }
+
+    @Test
+    void testUnknownTimeZoneFallsBackToFacility() {
+        useCarrier(carrier(false, false));
+        order.setTimeZone("Not/AZone");
+        PromiseDateBreakdown breakdown = promiseAt("2026-10-14T09:00", 0);
+
+        assertEquals(LocalDateTime.parse("2026-10-14T15:00"), breakdown.getCarrierPickupTime());
+    }
+
+    @Test
+    void testPriorityCarrierThatReachesTheDistance() {
+        CarrierConfiguration local = carrier(false, false);
+        local.setMaxDistanceKm(50.0);
+        CarrierConfiguration regional = carrier(2, "FEDEX", 2, 1000.0);
+        when(carrierService.getCarrierIndex()).thenReturn(CarrierIndex.build(List.of(local, regional), 1));
+        setClock("2026-10-14T09:00");
+
+        assertEquals("UPS", service.calculatePromiseDate(orderItem, location, 0, 1, order, 10.0).getCarrierCode());
+        // Beyond the local carrier's reach the regional one answers, with its own transit days
+        PromiseDateBreakdown far = service.calculatePromiseDate(orderItem, location, 0, 1, order, 200.0);
+        assertEquals("FEDEX", far.getCarrierCode());
+        assertEquals(LocalDateTime.parse("2026-10-16T18:00"), far.getEstimatedDeliveryDate());
+        // Nobody reaches this far
+        assertNull(service.calculatePromiseDate(orderItem, location, 0, 1, order, 2000.0));
+    }
+
+    @Test
+    void testHandlingNeedsSkipCarriersWithoutSupport() {
+        CarrierConfiguration hazmat = carrier(2, "FEDEX", 2, 500.0);
+        hazmat.setSupportsHazmat(true);
+        when(carrierService.getCarrierIndex()).thenReturn(CarrierIndex.build(List.of(carrier(false, false), hazmat), 1));
+        setClock("2026-10-14T09:00");
+        orderItem.setIsHazmat(true);
+
+        assertEquals("FEDEX", service.calculatePromiseDate(orderItem, location, 0, 1, order, 10.0).getCarrierCode());
+    }
+
+    @Test
+    void testNewCarrierIndexAppliesImmediately() {
+        useCarrier(carrier(false, false));
+        assertEquals("UPS", promiseAt("2026-10-14T09:00", 0).getCarrierCode());
+
+        // Carrier lookups read the current index; there is no derived table to rebuild first
+        when(carrierService.getCarrierIndex()).thenReturn(CarrierIndex.build(List.of(carrier(2, "FEDEX", 1, 500.0)), 2));
+        assertEquals("FEDEX", service.calculatePromiseDate(orderItem, location, 0, 1, order, 10.0).getCarrierCode());
+    }
+
+    @Test
+    void testCheaperCarrierMustDeliverNoLater() {
+        CarrierConfiguration ups = carrier(1, "UPS", 1, 500.0);
+        // Same transit days but an earlier cutoff: 09:00 readiness misses its pickup and delivers a day later
+        CarrierConfiguration early = carrier(2, "EARLY", 1, 500.0);
+        early.setPickupCutoffTime(LocalTime.of(8, 0));
+        early.setNextPickupTime(LocalTime.of(8, 0));
+        // Slower in transit, but weekend delivery lands before the priority carrier's Monday
+        CarrierConfiguration weekend = carrier(3, "WEEKEND", 2, 500.0);
+        weekend.setWeekendDelivery(true);
+        when(carrierService.getCarrierIndex()).thenReturn(CarrierIndex.build(List.of(ups, early, weekend), List.of(
+                new RateCard(1, "UPS", "GROUND", 0.0, null, 0.0, null, 10.0, 0.0),
+                new RateCard(2, "EARLY", "GROUND", 0.0, null, 0.0, null, 5.0, 0.0),
+                new RateCard(3, "WEEKEND", "GROUND", 0.0, null, 0.0, null, 8.0, 0.0)), 1));
+
+        // Friday 09:00: UPS picks up Friday and delivers Monday; WEEKEND delivers Sunday
+        PromiseDateBreakdown breakdown = promiseAt("2026-10-16T09:00", 0);
+        assertEquals("WEEKEND", breakdown.getCarrierCode());
+        assertEquals(LocalDateTime.parse("2026-10-18T18:00"), breakdown.getEstimatedDeliveryDate());
+        assertEquals(8.0, breakdown.getShippingCost(), 1e-9);
+    }
+
+    // Helpers
+
+    private PromiseDateBreakdown promiseAt(String facilityTime, int processingDays) {
+        setClock(facilityTime);
+        PromiseDateBreakdown breakdown = service.calculatePromiseDate(orderItem, location, processingDays, 1, order, 10.0);
+        assertNotNull(breakdown, "A carrier serves the line");
+        return breakdown;
+    }
+
+    private void setClock(String facilityTime) {
+        Clock clock = Clock.fixed(LocalDateTime.parse(facilityTime).atZone(FACILITY_ZONE).toInstant(), FACILITY_ZONE);
+        ReflectionTestUtils.setField(service, "clock", clock);
+        service.initialize();
+    }
+
+    private void useCarrier(CarrierConfiguration carrier) {
+        when(carrierService.getCarrierIndex()).thenReturn(CarrierIndex.build(List.of(carrier), 1));
+    }
+
+    private static CarrierConfiguration carrier(int id, String carrierCode, int transitDays, double maxDistanceKm) {
+        CarrierConfiguration carrier = carrier(false, false);
+        carrier.setId(id);
+        carrier.setCarrierCode(carrierCode);
+        carrier.setCarrierPriority(id);
+        carrier.setBaseTransitDays(transitDays);
+        carrier.setMaxDistanceKm(maxDistanceKm);
+        return carrier;
+    }
+
+    private static CarrierConfiguration carrier(boolean weekendPickup, boolean weekendDelivery) {
+        CarrierConfiguration carrier = new CarrierConfiguration();
+        carrier.setId(1);
+        carrier.setCarrierCode("UPS");
+        carrier.setServiceLevel("GROUND");
+        carrier.setDeliveryType("STANDARD");
+        carrier.setBaseTransitDays(1);
+        carrier.setPickupCutoffTime(LocalTime.of(15, 0));
+        carrier.setDeliveryEndTime(LocalTime.of(18, 0));
+        carrier.setWeekendPickup(weekendPickup);
+        carrier.setWeekendDelivery(weekendDelivery);
+        carrier.setMaxDistanceKm(500.0);
+        return carrier;
+    }
+}
@@ -0,0 +1,220 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.dto.PromiseDateBreakdown;
+import com.ordersourcing.engine.dto.QuickPromiseResponse;
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
+import com.ordersourcing.engine.index.LocationIndex;
+import com.ordersourcing.engine.model.Inventory;
+import com.ordersourcing.engine.model.Location;
+import com.ordersourcing.engine.repository.InventoryRepository;
+import com.ordersourcing.engine.service.LocationFilterExecutionService;
+import com.ordersourcing.engine.service.LocationIndexService;
+import com.ordersourcing.engine.service.PromiseDateService;
+import com.ordersourcing.engine.service.QuickPromiseService;
+import com.ordersourcing.engine.util.AdaptiveLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Quotes for a New York customer with New York, Philadelphia and Chicago eligible and two candidates compared
+ */
+public class QuickPromiseServiceImplTest {
+
+    private static final LocalDateTime TODAY = LocalDateTime.of(2024, 6, 3, 0, 0);
+
+    private QuickPromiseServiceImpl service;
+    private InventoryRepository inventoryRepository;
+    private LocationIndexService locationIndexService;
+    private LocationFilterExecutionService locationFilterExecutionService;
+    private PromiseDateService promiseDateService;
+    private AdaptiveLimiter databaseLimiter;
+    private List<Location> locations;
+
+    @BeforeEach
+    void setUp() {
+        inventoryRepository = mock(InventoryRepository.class);
+        locationIndexService = mock(LocationIndexService.class);
+        locationFilterExecutionService = mock(LocationFilterExecutionService.class);
+        promiseDateService = mock(PromiseDateService.class);
+        databaseLimiter = new AdaptiveLimiter("test-db", 1, 1, 1, 0.2, 1.5);
+        locations = List.of(location(1, 40.7130, -74.0050), location(2, 39.9526, -75.1652),
+                location(3, 41.8781, -87.6298));
+
+        service = new QuickPromiseServiceImpl(100);
+        ReflectionTestUtils.setField(service, "inventoryRepository", inventoryRepository);
+        ReflectionTestUtils.setField(service, "locationIndexService", locationIndexService);
+        ReflectionTestUtils.setField(service, "locationFilterExecutionService", locationFilterExecutionService);
+        ReflectionTestUtils.setField(service, "promiseDateService", promiseDateService);
+        ReflectionTestUtils.setField(service, "databaseLimiter", databaseLimiter);
+        ReflectionTestUtils.setField(service, "maxCandidates", 2);
+
+        when(locationIndexService.getIndex()).thenReturn(LocationIndex.build(locations, 1));
+        when(locationFilterExecutionService.executeKnownFilter(eq("ALL"), any(), any()))
+                .thenReturn(Optional.of(locations));
+        // Farther locations promise sooner, so only the candidate limit keeps Chicago out
+        when(promiseDateService.calculatePromiseDate(any(), any(), anyInt(), anyInt(), any(), anyDouble()))
+                .thenAnswer(call -> {
+                    Location location = call.getArgument(1);
+                    return PromiseDateBreakdown.builder()
+                            .promiseDate(TODAY.plusDays(4 - location.getId()))
+                            .carrierCode("UPS")
+                            .build();
+                });
+    }
+
+    @Test
+    void testEarliestPromiseAmongNearestCandidatesHoldingTheQuantity() {
+        when(inventoryRepository.findByQuantityGreaterThan(0)).thenReturn(List.of(
+                inventory("WIDGET", 1, 5), inventory("WIDGET", 2, 5), inventory("WIDGET", 3, 5),
+                inventory("GADGET", 1, 5), inventory("GADGET", 2, 1), inventory("GADGET", 3, 5)));
+        service.refreshStock();
+
+        QuickPromiseResponse response = service.quote(request(2, "WIDGET", "GADGET"));
+
+        QuickPromiseResponse.SkuPromise widget = response.getPromises().get(0);
+        assertTrue(widget.isAvailable());
+        assertEquals(2, widget.getLocationId());
+        assertEquals(TODAY.plusDays(2), widget.getPromiseDate());
+        // Philadelphia holds too little GADGET, so Chicago becomes the second candidate
+        QuickPromiseResponse.SkuPromise gadget = response.getPromises().get(1);
+        assertEquals(3, gadget.getLocationId());
+        assertEquals(TODAY.plusDays(1), gadget.getPromiseDate());
+        verify(promiseDateService, never()).calculatePromiseDate(argThat(item -> "WIDGET".equals(item.getSku())),
+                argThat(location -> location.getId() == 3), anyInt(), anyInt(), any(), anyDouble());
+        assertFalse(response.isStockUnknown());
+    }
+
+    @Test
+    void testEligibleLocationsCachedPerCellUntilFilterOrLocationsChange() {
+        when(inventoryRepository.findByQuantityGreaterThan(0)).thenReturn(List.of(inventory("WIDGET", 1, 5)));
+        service.refreshStock();
+
+        service.quote(request(1, "WIDGET"));
+        service.quote(request(1, "WIDGET"));
+        verify(locationFilterExecutionService, times(1)).executeKnownFilter(eq("ALL"), any(), any());
+
+        when(locationIndexService.getIndex()).thenReturn(LocationIndex.build(locations, 2));
+        service.quote(request(1, "WIDGET"));
+        verify(locationFilterExecutionService, times(2)).executeKnownFilter(eq("ALL"), any(), any());
+
+        service.onSourcingDataChanged(new SourcingDataChangedEvent(this,
+                SourcingDataChangedEvent.DataType.LOCATION_FILTER, Set.of("ALL")));
+        assertEquals(1, service.quote(request(1, "WIDGET")).getPromises().get(0).getLocationId());
+        verify(locationFilterExecutionService, times(3)).executeKnownFilter(eq("ALL"), any(), any());
+    }
+
+    @Test
+    void testStockUnknownUntilALoadSucceeds() {
+        when(inventoryRepository.findByQuantityGreaterThan(0)).thenReturn(List.of(inventory("WIDGET", 1, 5)));
+
+        AdaptiveLimiter.Token held = databaseLimiter.tryAcquire();
+        service.loadStockAtStartup();
+        held.success();
+
+        QuickPromiseResponse unknown = service.quote(request(1, "WIDGET"));
+        assertTrue(unknown.isStockUnknown());
+        assertNull(unknown.getStockAsOf());
+        assertEquals("WIDGET", unknown.getPromises().get(0).getSku());
+        verifyNoInteractions(locationFilterExecutionService, promiseDateService);
+
+        // The next change refresh retries the load
+        service.applyStockChanges();
+        QuickPromiseResponse answered = service.quote(request(1, "WIDGET"));
+        assertFalse(answered.isStockUnknown());
+        assertTrue(answered.getPromises().get(0).isAvailable());
+    }
+
+    @Test
+    void testChangesKeptWhenReloadIsRejected() {
+        when(inventoryRepository.findByQuantityGreaterThan(0)).thenReturn(List.of(inventory("WIDGET", 1, 5)));
+        service.refreshStock();
+        service.onSourcingDataChanged(new SourcingDataChangedEvent(this,
+                SourcingDataChangedEvent.DataType.INVENTORY, Set.of("WIDGET")));
+
+        AdaptiveLimiter.Token held = databaseLimiter.tryAcquire();
+        service.refreshStock();
+        held.success();
+
+        assertEquals(1, service.getStats().get("pendingSkuChanges"));
+        when(inventoryRepository.findBySkusWithStock(List.of("WIDGET"))).thenReturn(List.of());
+        service.applyStockChanges();
+        assertFalse(service.quote(request(1, "WIDGET")).getPromises().get(0).isAvailable());
+    }
+
+    @Test
+    void testStockAsOfIsTheOldestReadBehindTheLines() throws InterruptedException {
+        when(inventoryRepository.findByQuantityGreaterThan(0)).thenReturn(List.of(
+                inventory("WIDGET", 1, 5), inventory("GADGET", 1, 5)));
+        service.refreshStock();
+        long builtAt = service.quote(request(1, "WIDGET", "GADGET")).getStockAsOf();
+
+        Thread.sleep(5);
+        service.onSourcingDataChanged(new SourcingDataChangedEvent(this,
+                SourcingDataChangedEvent.DataType.INVENTORY, Set.of("WIDGET")));
+        when(inventoryRepository.findBySkusWithStock(List.of("WIDGET"))).thenReturn(List.of(inventory("WIDGET", 1, 3)));
+        service.applyStockChanges();
+
+        assertTrue(service.quote(request(1, "WIDGET")).getStockAsOf() > builtAt);
+        assertEquals(builtAt, service.quote(request(1, "WIDGET", "GADGET")).getStockAsOf());
+    }
+
+    @Test
+    void testStockSnapshotServesIndexRowsWithoutReadingTheDatabase() {
+        assertTrue(service.stockSnapshot(List.of("WIDGET")).isEmpty());
+        when(inventoryRepository.findByQuantityGreaterThan(0)).thenReturn(List.of(
+                inventory("WIDGET", 1, 2), inventory("WIDGET", 1, 3), inventory("WIDGET", 2, 4)));
+        service.refreshStock();
+        clearInvocations(inventoryRepository);
+
+        QuickPromiseService.StockSnapshot snapshot = service.stockSnapshot(List.of("WIDGET", "GADGET")).orElseThrow();
+
+        // Rows of one location are merged; a SKU without stock is known and empty
+        List<Inventory> widget = snapshot.lookup().get("WIDGET");
+        assertEquals(List.of(1, 2), widget.stream().map(Inventory::getLocationId).toList());
+        assertEquals(List.of(5, 4), widget.stream().map(Inventory::getQuantity).toList());
+        assertTrue(snapshot.lookup().isKnown("GADGET"));
+        assertTrue(snapshot.lookup().get("GADGET").isEmpty());
+        assertEquals(service.quote(request(1, "WIDGET")).getStockAsOf(), snapshot.asOfMillis());
+        verifyNoInteractions(inventoryRepository);
+    }
+
+    private static OrderDTO request(int quantity, String... skus) {
+        List<OrderItemDTO> items = new ArrayList<>();
+        Arrays.stream(skus).forEach(sku -> items.add(OrderItemDTO.builder().sku(sku).quantity(quantity)
+                .deliveryType("STANDARD").locationFilterId("ALL").build()));
+        return OrderDTO.builder().latitude(40.75).longitude(-73.99).orderItems(items).build();
+    }
+
+    private static Inventory inventory(String sku, int locationId, int quantity) {
+        Inventory inventory = new Inventory();
+        inventory.setSku(sku);
+        inventory.setLocationId(locationId);
+        inventory.setQuantity(quantity);
+        inventory.setProcessingTime(1);
+        return inventory;
+    }
+
+    private static Location location(int id, double latitude, double longitude) {
+        Location location = new Location();
+        location.setId(id);
+        location.setName("L" + id);
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.setTransitTime(1);
+        return location;
+    }
+}
@@ -0,0 +1,93 @@
+package com.ordersourcing.engine.service.impl;
+
+import com.ordersourcing.engine.dto.OrderItemDTO;
+import com.ordersourcing.engine.event.SourcingDataChangedEvent;
+import com.ordersourcing.engine.index.LocationIndex;
+import com.ordersourcing.engine.model.Location;
+import com.ordersourcing.engine.model.ScoringConfiguration;
+import com.ordersourcing.engine.service.LocationIndexService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ScoringConfigurationServiceImplTest {
+
+    private ScoringConfigurationServiceImpl service;
+    private LocationIndexService locationIndexService;
+    private ScoringConfiguration config;
+    private OrderItemDTO expressItem;
+
+    @BeforeEach
+    void setUp() {
+        locationIndexService = mock(LocationIndexService.class);
+        when(locationIndexService.getIndex()).thenReturn(LocationIndex.build(
+                List.of(location(1, 1), location(2, 3)), 1));
+
+        service = new ScoringConfigurationServiceImpl();
+        ReflectionTestUtils.setField(service, "locationIndexService", locationIndexService);
+        ReflectionTestUtils.setField(service, "cacheManager", mock(CacheManager.class));
+
+        config = new ScoringConfiguration();
+        config.setId("TEST_SCORING");
+        expressItem = OrderItemDTO.builder().sku("SKU").quantity(1).isExpressPriority(true).build();
+    }
+
+    @Test
+    void testPrecomputedScoresMatchWeights() {
+        // transit -10/day, inventory 50, express 20 for transit <= 1, processing -5/day, distance -0.5/km
+        Map<String, Object> context = Map.of("inventoryRatio", 1.0, "processingTime", 2, "distance", 10.0);
+
+        assertEquals(-10 + 50 + 20 - 10 - 5, service.calculateLocationScore(location(1, 1), config, expressItem, context), 1e-9);
+        assertEquals(-30 + 50 - 10 - 5, service.calculateLocationScore(location(2, 3), config, expressItem, context), 1e-9);
+        // Repeated lookups read the same precomputed terms
+        assertEquals(-10 + 50 + 20 - 10 - 5, service.calculateLocationScore(location(1, 1), config, expressItem, context), 1e-9);
+    }
+
+    @Test
+    void testLocationOutsideIndexIsScoredDirectly() {
+        Map<String, Object> context = Map.of("inventoryRatio", 1.0);
+
+        assertEquals(-20 + 50, service.calculateLocationScore(location(99, 2), config, expressItem, context), 1e-9);
+    }
+
+    @Test
+    void testConfigurationChangeRebuildsScores() {
+        Map<String, Object> context = Map.of("inventoryRatio", 0.0);
+        assertEquals(-30, service.calculateLocationScore(location(2, 3), config, expressItem, context), 1e-9);
+
+        config.setTransitTimeWeight(-1.0);
+        // Still the precomputed term until the configuration is reported changed
+        assertEquals(-30, service.calculateLocationScore(location(2, 3), config, expressItem, context), 1e-9);
+
+        service.onSourcingDataChanged(new SourcingDataChangedEvent(this,
+                SourcingDataChangedEvent.DataType.SCORING_CONFIGURATION, Set.of("TEST_SCORING")));
+        assertEquals(-3, service.calculateLocationScore(location(2, 3), config, expressItem, context), 1e-9);
+    }
+
+    @Test
+    void testNewLocationIndexRebuildsScores() {
+        Map<String, Object> context = Map.of("inventoryRatio", 0.0);
+        assertEquals(-30, service.calculateLocationScore(location(2, 3), config, expressItem, context), 1e-9);
+
+        // Location 2 moved to a 1-day lane in a newer snapshot
+        when(locationIndexService.getIndex()).thenReturn(LocationIndex.build(
+                List.of(location(1, 1), location(2, 1)), 2));
+        assertEquals(-10 + 20, service.calculateLocationScore(location(2, 1), config, expressItem, context), 1e-9);
+    }
+
+    private static Location location(int id, int transitTime) {
+        Location location = new Location();
+        location.setId(id);
+        location.setName("L" + id);
+        location.setTransitTime(transitTime);
+        return location;
+    }
+}
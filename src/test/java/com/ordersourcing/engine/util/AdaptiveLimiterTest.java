@@ -0,0 +1,84 @@
+package com.ordersourcing.engine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void testRejectsOverLimitWithoutQueuing() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 2, 1, 10, 0.2, 1.5, clock::get);
+
+        AdaptiveLimiter.Token first = limiter.tryAcquire();
+        AdaptiveLimiter.Token second = limiter.tryAcquire();
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(limiter.tryAcquire());
+        assertEquals("cached", limiter.call(() -> "queried", () -> "cached"));
+
+        first.success();
+        assertEquals("queried", limiter.call(() -> "queried", () -> "cached"));
+        assertEquals(2, limiter.getStats().rejected());
+    }
+
+    @Test
+    void testGrowsWhileRttIsSteady() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 4, 1, 50, 0.2, 1.5, clock::get);
+
+        for (int round = 0; round < 20; round++) {
+            saturate(limiter, 5);
+        }
+
+        assertTrue(limiter.getLimit() > 10, "limit was " + limiter.getLimit());
+    }
+
+    @Test
+    void testShrinksWhenRttRises() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 4, 1, 50, 0.2, 1.5, clock::get);
+        for (int round = 0; round < 20; round++) {
+            saturate(limiter, 5);
+        }
+        int grown = limiter.getLimit();
+
+        saturate(limiter, 50);
+        saturate(limiter, 50);
+
+        assertTrue(limiter.getLimit() < grown / 2, "limit went from " + grown + " to " + limiter.getLimit());
+    }
+
+    @Test
+    void testDroppedCallsBackOff() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 10, 1, 10, 0.2, 1.5, clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertThrows(IllegalStateException.class, () -> limiter.call(() -> {
+                throw new IllegalStateException("connection timeout");
+            }, () -> null));
+        }
+
+        assertEquals(3, limiter.getLimit());
+        assertEquals(10, limiter.getStats().dropped());
+        assertEquals(0, limiter.getStats().inFlight());
+    }
+
+    /**
+     * Fills every slot, advances the clock by the given RTT and completes them all
+     */
+    private void saturate(AdaptiveLimiter limiter, long rttMs) {
+        List<AdaptiveLimiter.Token> tokens = new ArrayList<>();
+        AdaptiveLimiter.Token token;
+        while ((token = limiter.tryAcquire()) != null) {
+            tokens.add(token);
+        }
+        clock.addAndGet(rttMs * 1_000_000L);
+        tokens.forEach(AdaptiveLimiter.Token::success);
+    }
+}
@@ -0,0 +1,85 @@
+package com.ordersourcing.engine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedCacheTest {
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(List.of("a", "c"), cache.keys());
+    }
+
+    @Test
+    void testPinnedEntriesSurviveEviction() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+        cache.pin(Set.of("a"));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+
+        assertEquals(List.of("a", "c"), cache.keys());
+
+        // Invalidation still applies to pinned entries
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void testGrowsPastBoundOnlyWhilePinned() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(1);
+        cache.pin(Set.of("a", "b"));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertEquals(2, cache.size());
+
+        cache.unpin(List.of("a", "b"));
+        assertEquals(List.of("b"), cache.keys());
+        cache.put("c", 3);
+        assertEquals(List.of("c"), cache.keys());
+    }
+
+    @Test
+    void testCachedEntryPinnedLaterSurvivesUntilEveryHolderReleases() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+        cache.put("a", 1);
+        cache.pin(Set.of("a"));
+        cache.pin(Set.of("a"));
+        cache.put("b", 2);
+        cache.put("c", 3);
+        assertEquals(List.of("a", "c"), cache.keys());
+        assertEquals(1, cache.pinnedKeys());
+
+        cache.unpin(Set.of("a"));
+        cache.put("d", 4);
+        assertEquals(1, cache.get("a"));
+
+        // Released, "a" rejoins the LRU order as most recently used
+        cache.unpin(Set.of("a"));
+        cache.put("e", 5);
+        assertEquals(List.of("a", "e"), cache.keys());
+    }
+
+    @Test
+    void testPinHeldUntilEveryHolderReleases() {
+        PinSet<String> pins = new PinSet<>();
+        pins.pin(Set.of("a"));
+        pins.pin(Set.of("a"));
+        pins.unpin(Set.of("a"));
+        assertTrue(pins.contains("a"));
+
+        pins.unpin(Set.of("a"));
+        assertFalse(pins.contains("a"));
+        assertEquals(0, pins.size());
+    }
+}
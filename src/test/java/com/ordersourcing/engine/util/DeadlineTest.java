@@ -0,0 +1,46 @@
+package com.ordersourcing.engine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlineTest {
+
+    @Test
+    void testNonPositiveBudgetIsUnbounded() {
+        Deadline deadline = Deadline.afterMillis(0);
+
+        assertSame(Deadline.NONE, deadline);
+        assertFalse(deadline.isBounded());
+        assertFalse(deadline.isExpired());
+        assertEquals(Long.MAX_VALUE, deadline.remainingMillis());
+    }
+
+    @Test
+    void testExpiresAfterBudget() {
+        AtomicLong nanos = new AtomicLong(1_000_000_000L);
+        Deadline deadline = Deadline.afterMillis(20, nanos::get);
+
+        assertTrue(deadline.isBounded());
+        assertFalse(deadline.isExpired());
+        assertEquals(20, deadline.remainingMillis());
+
+        nanos.addAndGet(19_000_000L);
+        assertFalse(deadline.isExpired());
+        assertEquals(1, deadline.remainingMillis());
+
+        nanos.addAndGet(1_000_000L);
+        assertTrue(deadline.isExpired());
+        assertEquals(0, deadline.remainingMillis());
+    }
+
+    @Test
+    void testSystemClockDeadlineStartsUnexpired() {
+        Deadline deadline = Deadline.afterMillis(60_000);
+
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remainingMillis() > 0 && deadline.remainingMillis() <= 60_000);
+    }
+}
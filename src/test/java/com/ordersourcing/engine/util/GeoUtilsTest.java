@@ -0,0 +1,45 @@
+package com.ordersourcing.engine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeoUtilsTest {
+
+    @Test
+    void testZeroRadiusCoversOwnCell() {
+        assertEquals(List.of(GeoUtils.toGeoCell(40.7128, -74.0060)),
+                GeoUtils.cellsWithin(40.7128, -74.0060, 0, 10));
+    }
+
+    @Test
+    void testCellsWithinRadiusNearestFirst() {
+        double latitude = 40.7128;
+        double longitude = -74.0060;
+        List<Long> cells = GeoUtils.cellsWithin(latitude, longitude, 3.0, 1000);
+
+        assertEquals(GeoUtils.toGeoCell(latitude, longitude), cells.get(0));
+        assertEquals(cells.size(), new HashSet<>(cells).size());
+        // Roughly pi * 3^2 km^2 of 1.1 km x 0.84 km cells
+        assertTrue(cells.size() > 20 && cells.size() < 40, "cells: " + cells.size());
+
+        double previous = 0;
+        for (long cell : cells.subList(1, cells.size())) {
+            double distance = GeoUtils.calculateDistance(latitude, longitude,
+                    GeoUtils.cellCenterLatitude(cell), GeoUtils.cellCenterLongitude(cell));
+            assertTrue(distance <= 3.0);
+            assertTrue(distance >= previous);
+            previous = distance;
+        }
+    }
+
+    @Test
+    void testRadiusOverCellLimitIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> GeoUtils.cellsWithin(40.7128, -74.0060, 10.0, 5));
+        assertEquals(List.of(GeoUtils.toGeoCell(40.7128, -74.0060)),
+                GeoUtils.cellsWithin(40.7128, -74.0060, 0, 1));
+    }
+}
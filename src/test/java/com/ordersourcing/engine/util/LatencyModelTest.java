@@ -0,0 +1,62 @@
+package com.ordersourcing.engine.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyModelTest {
+
+    @Test
+    void testPredictsNaNBeforeFirstObservation() {
+        LatencyModel model = new LatencyModel(2, 1.0, 1.0);
+
+        assertTrue(Double.isNaN(model.predict(new double[] {1, 1})));
+        assertNull(model.getCoefficients());
+    }
+
+    @Test
+    void testRecoversLinearCost() {
+        // latency = 5 + 3 * items + 10 * filters
+        LatencyModel model = new LatencyModel(2, 1.0, 1e-6);
+        for (int items = 1; items <= 10; items++) {
+            for (int filters = 1; filters <= 3; filters++) {
+                model.observe(new double[] {items, filters}, 5 + 3.0 * items + 10.0 * filters);
+            }
+        }
+
+        assertEquals(30, model.getSamples());
+        assertEquals(5 + 3.0 * 20 + 10.0 * 4, model.predict(new double[] {20, 4}), 1e-3);
+    }
+
+    @Test
+    void testDecayTracksChangedCosts() {
+        LatencyModel model = new LatencyModel(1, 0.9, 1e-6);
+        for (int i = 0; i < 200; i++) {
+            model.observe(new double[] {i % 5}, 100);
+        }
+        for (int i = 0; i < 200; i++) {
+            model.observe(new double[] {i % 5}, 10);
+        }
+
+        assertEquals(10, model.predict(new double[] {2}), 0.5);
+    }
+
+    @Test
+    void testInterceptIsNotShrunk() {
+        // A fixed 100ms path cost under a heavy penalty: only the feature coefficient is shrunk
+        LatencyModel model = new LatencyModel(1, 1.0, 1000.0);
+        for (int i = 0; i < 10; i++) {
+            model.observe(new double[] {0}, 100);
+        }
+
+        assertEquals(100, model.getCoefficients()[0], 1e-9);
+        assertEquals(100, model.predict(new double[] {0}), 1e-9);
+    }
+
+    @Test
+    void testRejectsWrongFeatureCount() {
+        LatencyModel model = new LatencyModel(2, 1.0, 1.0);
+
+        assertThrows(IllegalArgumentException.class, () -> model.observe(new double[] {1}, 1));
+    }
+}
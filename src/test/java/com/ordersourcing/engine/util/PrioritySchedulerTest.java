@@ -0,0 +1,83 @@
+package com.ordersourcing.engine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrioritySchedulerTest {
+
+    @Test
+    void testShedsWhenClassQueueIsFull() {
+        PriorityScheduler scheduler = new PriorityScheduler(1,
+                new double[] {2, 1}, new int[] {1, 1}, new int[] {1, 0}, new long[] {10_000, 10_000});
+
+        PriorityScheduler.Permit held = scheduler.acquire(0).join();
+        CompletableFuture<PriorityScheduler.Permit> queued = scheduler.acquire(0);
+        CompletableFuture<PriorityScheduler.Permit> overflow = scheduler.acquire(0);
+        CompletableFuture<PriorityScheduler.Permit> noQueue = scheduler.acquire(1);
+
+        assertFalse(queued.isDone());
+        assertRejected(overflow);
+        assertRejected(noQueue);
+
+        held.close();
+        assertEquals(0, queued.join().getPriorityClass());
+        assertEquals(1, scheduler.getStats().classes().get(1).shed());
+    }
+
+    @Test
+    void testWeightedFairDequeue() {
+        PriorityScheduler scheduler = new PriorityScheduler(1,
+                new double[] {3, 1}, new int[] {1, 1}, new int[] {100, 100}, new long[] {10_000, 10_000});
+
+        PriorityScheduler.Permit held = scheduler.acquire(0).join();
+        List<CompletableFuture<PriorityScheduler.Permit>> waiters = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            waiters.add(scheduler.acquire(i % 2));
+        }
+
+        // Release one slot at a time and record which class is served next
+        List<Integer> served = new ArrayList<>();
+        PriorityScheduler.Permit current = held;
+        for (int i = 0; i < 8; i++) {
+            current.close();
+            current = waiters.stream()
+                    .filter(w -> w.isDone() && !served.contains(waiters.indexOf(w)))
+                    .findFirst()
+                    .map(w -> {
+                        served.add(waiters.indexOf(w));
+                        return w.join();
+                    })
+                    .orElseThrow();
+        }
+
+        // Class 0 has three times the weight, so it takes three of the first four slots
+        long urgentInFirstFour = served.subList(0, 4).stream().filter(index -> index % 2 == 0).count();
+        assertEquals(3, urgentInFirstFour);
+        current.close();
+    }
+
+    @Test
+    void testQueueWaitOverBudgetIsShed() {
+        PriorityScheduler scheduler = new PriorityScheduler(1,
+                new double[] {1}, new int[] {1}, new int[] {10}, new long[] {20});
+
+        PriorityScheduler.Permit held = scheduler.acquire(0).join();
+        CompletableFuture<PriorityScheduler.Permit> waiter = scheduler.acquire(0);
+
+        assertRejected(waiter);
+        held.close();
+        assertEquals(0, scheduler.getStats().active());
+    }
+
+    private static void assertRejected(CompletableFuture<PriorityScheduler.Permit> future) {
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+}
@@ -0,0 +1,57 @@
+package com.ordersourcing.engine.util;
+
+import com.ordersourcing.engine.dto.OrderDTO;
+import com.ordersourcing.engine.dto.OrderItemDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuoteKeysTest {
+
+    @Test
+    void testIgnoresRequestIdentity() {
+        OrderDTO first = order("CART_1", LocalDateTime.of(2024, 1, 1, 10, 0), 2);
+        OrderDTO second = order("CART_2", LocalDateTime.of(2024, 1, 1, 10, 5), 2);
+
+        assertEquals(QuoteKeys.canonicalHash(first), QuoteKeys.canonicalHash(second));
+    }
+
+    @Test
+    void testSourcingFieldsChangeTheKey() {
+        OrderDTO base = order("CART_1", LocalDateTime.now(), 2);
+        OrderDTO moreUnits = order("CART_1", LocalDateTime.now(), 3);
+        OrderDTO otherChannel = order("CART_1", LocalDateTime.now(), 2);
+        otherChannel.setSalesChannel("B2B");
+
+        assertNotEquals(QuoteKeys.canonicalHash(base), QuoteKeys.canonicalHash(moreUnits));
+        assertNotEquals(QuoteKeys.canonicalHash(base), QuoteKeys.canonicalHash(otherChannel));
+    }
+
+    @Test
+    void testContextHashIgnoresLines() {
+        OrderDTO cart = order("CART_1", LocalDateTime.now(), 2);
+        OrderDTO grownCart = order("CART_1", LocalDateTime.now(), 5);
+
+        assertEquals(QuoteKeys.contextHash(cart), QuoteKeys.contextHash(grownCart));
+        assertNotEquals(QuoteKeys.itemHash(cart.getOrderItems().get(0)), 
+                QuoteKeys.itemHash(grownCart.getOrderItems().get(0)));
+    }
+
+    private static OrderDTO order(String tempOrderId, LocalDateTime requestTimestamp, int quantity) {
+        return OrderDTO.builder()
+                .tempOrderId(tempOrderId)
+                .requestTimestamp(requestTimestamp)
+                .latitude(40.7128)
+                .longitude(-74.0060)
+                .orderItems(List.of(OrderItemDTO.builder()
+                        .sku("PHONE123")
+                        .quantity(quantity)
+                        .deliveryType("STANDARD")
+                        .locationFilterId("STANDARD_DELIVERY_RULE")
+                        .build()))
+                .build();
+    }
+}
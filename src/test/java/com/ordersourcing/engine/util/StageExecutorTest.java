@@ -0,0 +1,215 @@
+package com.ordersourcing.engine.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Slf4j
+public class StageExecutorTest {
+
+    @Test
+    void testNestedRunAllDoesNotDeadlockOnSingleThreadPool() {
+        StageExecutor executor = new StageExecutor("test", 1, 1);
+        AtomicInteger ran = new AtomicInteger();
+
+        List<Runnable> outer = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            outer.add(() -> executor.runAll(List.of(ran::incrementAndGet, ran::incrementAndGet)));
+        }
+        executor.runAll(outer);
+
+        assertEquals(6, ran.get());
+        executor.shutdown();
+    }
+
+    @Test
+    void testFullQueueRunsOnCallerAndIsCounted() throws InterruptedException {
+        StageExecutor executor = new StageExecutor("test", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Occupy the only worker and the only queue slot
+        executor.execute(() -> awaitQuietly(release));
+        executor.execute(() -> awaitQuietly(release));
+
+        Thread caller = Thread.currentThread();
+        AtomicInteger ranOnCaller = new AtomicInteger();
+        executor.execute(() -> {
+            if (Thread.currentThread() == caller) {
+                ranOnCaller.incrementAndGet();
+            }
+        });
+        release.countDown();
+
+        assertEquals(1, ranOnCaller.get());
+        assertEquals(1, executor.getStats().callerRuns());
+        executor.shutdown();
+    }
+
+    @Test
+    void testTryExecuteNeverRunsOnCaller() throws InterruptedException {
+        StageExecutor executor = new StageExecutor("test", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> awaitQuietly(release));
+        CountDownLatch queuedRan = new CountDownLatch(1);
+
+        assertTrue(executor.tryExecute(queuedRan::countDown));
+        AtomicInteger ran = new AtomicInteger();
+        assertFalse(executor.tryExecute(ran::incrementAndGet));
+        release.countDown();
+
+        assertTrue(queuedRan.await(5, TimeUnit.SECONDS));
+        assertEquals(0, ran.get());
+        assertEquals(0, executor.getStats().callerRuns());
+        executor.shutdown();
+        assertFalse(executor.tryExecute(ran::incrementAndGet));
+    }
+
+    @Test
+    void testVirtualModeCapsConcurrency() {
+        assumeTrue(VirtualThreads.isSupported(), "Virtual threads need a Java 21 runtime");
+        StageExecutor executor = StageExecutor.virtual("test", 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleepQuietly(5);
+                running.decrementAndGet();
+            });
+        }
+        executor.runAll(tasks);
+
+        assertTrue(executor.isVirtual());
+        // The caller runs the first task itself, outside the cap
+        assertTrue(peak.get() <= 3);
+        executor.shutdown();
+    }
+
+    @Test
+    void testPerTaskModeCapsConcurrency() {
+        // Same code path as virtual mode, driven by platform threads so it also runs on Java 17
+        StageExecutor executor = new StageExecutor("test", 2, Thread::new);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger onWorker = new AtomicInteger();
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                if (executor.isWorkerThread()) {
+                    onWorker.incrementAndGet();
+                }
+                sleepQuietly(5);
+                running.decrementAndGet();
+            });
+        }
+        executor.runAll(tasks);
+
+        assertTrue(executor.isVirtual());
+        // The caller runs the first task itself, outside the cap
+        assertTrue(peak.get() <= 3);
+        assertEquals(19, onWorker.get());
+        StageExecutor.Stats stats = executor.getStats();
+        assertEquals(2, stats.threads());
+        executor.shutdown();
+    }
+
+    @Test
+    void testPerTaskModeRejectsAfterShutdown() {
+        StageExecutor executor = new StageExecutor("test", 2, Thread::new);
+        executor.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+    }
+
+    /**
+     * Simulated checkout load of many concurrent blocking stages, through a platform pool and virtual mode
+     * with the same concurrency cap, so the comparison is of the threading model rather than the cap.
+     * Run with -Dbenchmark=true on Java 21; results are logged.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkVirtualAgainstPlatformThreadsWithEqualCaps() {
+        assumeTrue(VirtualThreads.isSupported(), "Virtual threads need a Java 21 runtime");
+        int requests = 4000;
+        int cap = 200;
+        long blockingMillis = 20;
+
+        // Queue sized to the load, so no stage runs on the caller
+        StageExecutor platform = new StageExecutor("bench-platform", cap, requests);
+        StageExecutor virtual = StageExecutor.virtual("bench-virtual", cap);
+        try {
+            LoadResult platformResult = runBlockingLoad(platform, requests, blockingMillis);
+            LoadResult virtualResult = runBlockingLoad(virtual, requests, blockingMillis);
+            log.info("{} blocking stages of {}ms at a cap of {}: platform {}ms with {} platform threads started, "
+                            + "virtual {}ms with {} platform threads started",
+                    requests, blockingMillis, cap, platformResult.elapsedMillis(), platformResult.platformThreadsStarted(),
+                    virtualResult.elapsedMillis(), virtualResult.platformThreadsStarted());
+
+            // Equal caps bound both to the same throughput (the caller runs one stage outside the cap);
+            // virtual mode needs only its carrier threads
+            long floorMillis = requests / (cap + 1) * blockingMillis;
+            assertTrue(platformResult.elapsedMillis() >= floorMillis && virtualResult.elapsedMillis() >= floorMillis);
+            assertTrue(virtualResult.platformThreadsStarted() < platformResult.platformThreadsStarted());
+        } finally {
+            platform.shutdown();
+            virtual.shutdown();
+        }
+    }
+
+    private record LoadResult(long elapsedMillis, long platformThreadsStarted) {
+    }
+
+    private static LoadResult runBlockingLoad(StageExecutor executor, int requests, long blockingMillis) {
+        List<Runnable> tasks = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            tasks.add(() -> sleepQuietly(blockingMillis));
+        }
+        // The thread MXBean counts platform threads only
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long startedBefore = threads.getTotalStartedThreadCount();
+        long start = System.nanoTime();
+        executor.runAll(tasks);
+        return new LoadResult(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                threads.getTotalStartedThreadCount() - startedBefore);
+    }
+
+    @Test
+    void testVirtualModeUnavailableBeforeJava21() {
+        assumeFalse(VirtualThreads.isSupported(), "Runtime provides virtual threads");
+
+        assertThrows(UnsupportedOperationException.class, () -> StageExecutor.virtual("test", 2));
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}